@@ -0,0 +1,220 @@
+package com.rk.ai.rag.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Deterministic documents for the benchmarks, generated instead of checked in so that their size
+ * can be a benchmark parameter. Files hold ASCII text, which every format (including the standard
+ * PDF fonts) can hold.
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] WORDS = {"the", "system", "document", "retrieval", "vector", "embedding",
+        "chunk", "model", "query", "pipeline", "data", "store", "index", "search", "result", "answer", "context",
+        "section", "revenue", "quarter", "customer", "contract", "invoice", "shipment", "warehouse", "policy",
+        "approximately", "configuration", "authentication", "latency", "throughput", "availability"};
+
+    private static final String DENSE_LINE = "价格表 第3版: 1,234.56 € (含税) / 9.8% — 检索增强生成! SKU-4711-B x12 @ 0.07/unit";
+
+    /**
+     * Shapes of text for the chunker.
+     */
+    public enum Shape {
+        // Paragraphs of 20 to 100 words, now and then one far above the chunk size
+        PROSE,
+        // Ideographs, numbers and punctuation, several tokens per character
+        TOKEN_DENSE,
+        // Lines without blank lines between them, like a log or a table export: one huge paragraph
+        NO_PARAGRAPHS
+    }
+
+    /**
+     * File formats the readers are benchmarked with.
+     */
+    public enum Format {
+        TXT("txt"), MARKDOWN("md"), CSV("csv"), JSON("json"), NDJSON("ndjson"), PDF("pdf"), DOCX("docx"),
+        XLSX("xlsx"), XLS("xls");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * About {@code chars} characters of text of the given shape.
+     */
+    static String text(Shape shape, int chars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(chars + 1024);
+        while (text.length() < chars) {
+            switch (shape) {
+                case PROSE -> text.append(sentences(random, random.nextInt(20) == 0 ? 700 : 20 + random.nextInt(80)))
+                    .append("\n\n");
+                case TOKEN_DENSE -> text.append(DENSE_LINE).append(random.nextInt(4) == 0 ? "\n\n" : "\n");
+                case NO_PARAGRAPHS -> text.append(random.nextInt(100_000)).append(' ')
+                    .append(sentences(random, 8 + random.nextInt(12))).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a file of the given format holding about {@code chars} characters of text.
+     */
+    static Path write(Format format, int chars, Path directory) throws IOException {
+        Path file = directory.resolve("fixture-" + chars + "." + format.extension);
+        Random random = new Random(format.ordinal());
+        switch (format) {
+            case TXT -> Files.writeString(file, text(Shape.PROSE, chars, 1));
+            case MARKDOWN -> writeMarkdown(file, chars, random);
+            case CSV -> writeCsv(file, chars, random);
+            case JSON -> writeJson(file, chars, random, false);
+            case NDJSON -> writeJson(file, chars, random, true);
+            case PDF -> writePdf(file, chars, random);
+            case DOCX -> writeDocx(file, chars, random);
+            case XLSX -> writeWorkbook(file, chars, random, new SXSSFWorkbook(), Integer.MAX_VALUE);
+            case XLS -> writeWorkbook(file, chars, random, new HSSFWorkbook(), 65_000);
+        }
+        return file;
+    }
+
+    private static void writeMarkdown(Path file, int chars, Random random) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long written = 0;
+            for (int section = 1; written < chars; section++) {
+                String heading = "## Section " + section + ": " + sentences(random, 4) + "\n\n";
+                String body = sentences(random, 40 + random.nextInt(200)) + "\n\n- " + sentences(random, 10)
+                    + "\n- " + sentences(random, 10) + "\n\n";
+                out.write(heading);
+                out.write(body);
+                written += heading.length() + body.length();
+            }
+        }
+    }
+
+    private static void writeCsv(Path file, int chars, Random random) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("id,customer,amount,status,notes\n");
+            long written = 0;
+            for (int id = 1; written < chars; id++) {
+                String row = id + ",Customer " + random.nextInt(5_000) + "," + random.nextInt(100_000) / 100.0 + ","
+                    + (random.nextBoolean() ? "open" : "closed") + ",\"" + sentences(random, 5 + random.nextInt(20)) + "\"\n";
+                out.write(row);
+                written += row.length();
+            }
+        }
+    }
+
+    private static void writeJson(Path file, int chars, Random random, boolean newlineDelimited) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(newlineDelimited ? "" : "[\n");
+            long written = 0;
+            for (int id = 1; written < chars; id++) {
+                String record = "{\"id\": " + id + ", \"title\": \"" + sentences(random, 4) + "\", \"tags\": [\""
+                    + WORDS[random.nextInt(WORDS.length)] + "\", \"" + WORDS[random.nextInt(WORDS.length)]
+                    + "\"], \"body\": \"" + sentences(random, 20 + random.nextInt(60)) + "\"}";
+                out.write(id == 1 || newlineDelimited ? record : ",\n" + record);
+                out.write(newlineDelimited ? "\n" : "");
+                written += record.length();
+            }
+            out.write(newlineDelimited ? "" : "\n]\n");
+        }
+    }
+
+    private static void writePdf(Path file, int chars, Random random) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            long written = 0;
+            while (written < chars) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 9);
+                    content.newLineAtOffset(50, 740);
+                    for (int line = 0; line < 50 && written < chars; line++) {
+                        String text = sentences(random, 10);
+                        content.showText(text);
+                        content.newLineAtOffset(0, -14);
+                        written += text.length() + 1;
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    private static void writeDocx(Path file, int chars, Random random) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            long written = 0;
+            while (written < chars) {
+                String text = sentences(random, 20 + random.nextInt(80));
+                document.createParagraph().createRun().setText(text);
+                written += text.length() + 1;
+            }
+            document.write(out);
+        }
+    }
+
+    private static void writeWorkbook(Path file, int chars, Random random, Workbook workbook, int rowsPerSheet)
+            throws IOException {
+        try (workbook; OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = null;
+            long written = 0;
+            for (int rowIndex = 0; written < chars; rowIndex++) {
+                if (rowIndex % rowsPerSheet == 0) {
+                    sheet = workbook.createSheet("Sheet " + (rowIndex / rowsPerSheet + 1));
+                }
+                Row row = sheet.createRow(rowIndex % rowsPerSheet);
+                String notes = sentences(random, 3 + random.nextInt(10));
+                row.createCell(0).setCellValue(rowIndex + 1);
+                row.createCell(1).setCellValue("Customer " + random.nextInt(5_000));
+                row.createCell(2).setCellValue(random.nextInt(100_000) / 100.0);
+                row.createCell(3).setCellValue(notes);
+                written += notes.length() + 30;
+            }
+            workbook.write(out);
+            if (workbook instanceof SXSSFWorkbook streaming) {
+                streaming.dispose();
+            }
+        }
+    }
+
+    private static String sentences(Random random, int words) {
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (w % 12 == 0) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(word);
+            }
+            text.append(w == words - 1 || w % 12 == 11 ? "." : "").append(w == words - 1 ? "" : " ");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.rk.ai.rag.benchmark;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.ChunkingMode;
+import com.rk.ai.rag.service.ChunkingService;
+import com.rk.ai.rag.service.WordPieceTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ChunkingService#chunkDocument} over generated documents of several sizes and shapes, in
+ * both chunking modes, sequentially and with four workers.
+ */
+@State(Scope.Benchmark)
+public class ChunkingBenchmark {
+
+    @Param({"FIXED", "CONTENT_DEFINED"})
+    public ChunkingMode mode;
+
+    @Param({"PROSE", "TOKEN_DENSE", "NO_PARAGRAPHS"})
+    public BenchmarkFixtures.Shape shape;
+
+    @Param({"65536", "4194304"})
+    public int chars;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private ChunkingService chunkingService;
+    private String content;
+
+    @Setup
+    public void setUp() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getChunking().setMode(mode);
+        properties.getChunking().setParallelism(parallelism);
+        chunkingService = new ChunkingService(properties, new WordPieceTokenizer(properties));
+        content = BenchmarkFixtures.text(shape, chars, 42);
+    }
+
+    @TearDown
+    public void tearDown() {
+        chunkingService.shutdown();
+    }
+
+    @Benchmark
+    public List<Document> chunkDocument() {
+        return chunkingService.chunkDocument(content, Map.of(), "benchmark");
+    }
+}
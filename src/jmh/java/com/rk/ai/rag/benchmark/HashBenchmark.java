@@ -0,0 +1,56 @@
+package com.rk.ai.rag.benchmark;
+
+import com.rk.ai.rag.service.SpooledMultipartFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * SHA-256 of uploads, which decides whether a file can skip text extraction: hashed from a
+ * stream, and hashed while being spooled to disk as uploads are.
+ */
+@State(Scope.Benchmark)
+public class HashBenchmark {
+
+    @Param({"65536", "10485760"})
+    public int bytes;
+
+    private MockMultipartFile upload;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] content = BenchmarkFixtures.text(BenchmarkFixtures.Shape.PROSE, bytes, 7)
+            .substring(0, bytes).getBytes(StandardCharsets.UTF_8);
+        upload = new MockMultipartFile("files", "upload.txt", "text/plain", content);
+        directory = Files.createTempDirectory("hash-benchmark-");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public String hash() throws IOException {
+        return SpooledMultipartFile.hash(upload);
+    }
+
+    @Benchmark
+    public String spool() throws IOException {
+        SpooledMultipartFile spooled = SpooledMultipartFile.spool("upload.txt", "text/plain",
+            new ByteArrayInputStream(upload.getBytes()), directory);
+        spooled.release();
+        return spooled.getRawHash();
+    }
+}
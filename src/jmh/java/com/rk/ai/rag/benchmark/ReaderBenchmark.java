@@ -0,0 +1,91 @@
+package com.rk.ai.rag.benchmark;
+
+import com.rk.ai.rag.reader.CsvDocumentReader;
+import com.rk.ai.rag.reader.ExcelDocumentReader;
+import com.rk.ai.rag.reader.JsonDocumentReader;
+import com.rk.ai.rag.reader.PdfDocumentReader;
+import com.rk.ai.rag.reader.TextDocumentReader;
+import com.rk.ai.rag.reader.WordDocumentReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Every {@link com.rk.ai.rag.reader.DocumentReader} over a generated file, read the way the
+ * ingestion pipeline reads it: CSV and JSON as rows and records, PDF, Excel and text files in
+ * place on disk, Word documents from a stream. Legacy {@code .doc} files are not covered, as POI
+ * cannot write them.
+ */
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+
+    @Param({"TXT", "MARKDOWN", "CSV", "JSON", "NDJSON", "PDF", "DOCX", "XLSX", "XLS"})
+    public BenchmarkFixtures.Format format;
+
+    @Param({"1048576"})
+    public int chars;
+
+    private final TextDocumentReader textReader = new TextDocumentReader();
+    private final CsvDocumentReader csvReader = new CsvDocumentReader();
+    private final JsonDocumentReader jsonReader = new JsonDocumentReader();
+    private final PdfDocumentReader pdfReader = new PdfDocumentReader();
+    private final WordDocumentReader wordReader = new WordDocumentReader();
+    private final ExcelDocumentReader excelReader = new ExcelDocumentReader();
+
+    private Path directory;
+    private Path file;
+    private String filename;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("reader-benchmark-");
+        file = BenchmarkFixtures.write(format, chars, directory);
+        filename = file.getFileName().toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pdfReader.shutdown();
+        excelReader.shutdown();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws Exception {
+        switch (format) {
+            case TXT, MARKDOWN -> textReader.readSegmentsFromFile(file, filename, blackhole::consume);
+            case PDF -> pdfReader.readSegmentsFromFile(file, filename, blackhole::consume);
+            case XLSX, XLS -> excelReader.readSegmentsFromFile(file, filename, blackhole::consume);
+            case CSV -> {
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    csvReader.readRows(inputStream, filename, blackhole::consume);
+                }
+            }
+            case JSON, NDJSON -> {
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    jsonReader.readRecords(inputStream, filename, (jsonPath, text) -> blackhole.consume(text));
+                }
+            }
+            case DOCX -> {
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    wordReader.readSegments(inputStream, filename, blackhole::consume);
+                }
+            }
+        }
+    }
+}
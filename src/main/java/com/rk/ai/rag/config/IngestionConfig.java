@@ -0,0 +1,32 @@
+package com.rk.ai.rag.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Configuration for background document ingestion.
+ * Uploads are accepted on the request thread and handed to a bounded job executor,
+ * so a large batch no longer holds a servlet thread until every embedding is written.
+ */
+@Configuration
+@EnableConfigurationProperties(IngestionProperties.class)
+public class IngestionConfig {
+
+    /**
+     * Executor running ingestion jobs. Both the worker count and the wait queue are bounded;
+     * once full, new uploads are rejected instead of piling up in memory.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor ingestionJobExecutor(IngestionProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getJobWorkers());
+        executor.setMaxPoolSize(properties.getJobWorkers());
+        executor.setQueueCapacity(properties.getJobQueueCapacity());
+        executor.setThreadNamePrefix("ingest-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
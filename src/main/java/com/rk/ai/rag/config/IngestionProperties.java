@@ -0,0 +1,514 @@
+package com.rk.ai.rag.config;
+
+import com.rk.ai.rag.model.ChunkingMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Tunables for the document ingestion pipeline, bound from {@code rag.ingestion.*}.
+ */
+@ConfigurationProperties(prefix = "rag.ingestion")
+public class IngestionProperties {
+
+    // Number of ingestion jobs that may run at the same time
+    private int jobWorkers = 2;
+
+    // Jobs waiting for a free worker before uploads are rejected
+    private int jobQueueCapacity = 50;
+
+    // How long finished jobs stay queryable via /api/documents/jobs/{jobId}
+    private Duration jobRetention = Duration.ofHours(1);
+
+    // Directory uploads are copied to so they outlive the HTTP request
+    private String spoolDirectory = System.getProperty("java.io.tmpdir");
+
+    private final Pipeline pipeline = new Pipeline();
+
+    private final Embedding embedding = new Embedding();
+
+    private final Chunking chunking = new Chunking();
+
+    private final Deduplication deduplication = new Deduplication();
+
+    private final Sync sync = new Sync();
+
+    private final Archive archive = new Archive();
+
+    private final Maintenance maintenance = new Maintenance();
+
+    private final TextCache textCache = new TextCache();
+
+    public int getJobWorkers() {
+        return jobWorkers;
+    }
+
+    public void setJobWorkers(int jobWorkers) {
+        this.jobWorkers = jobWorkers;
+    }
+
+    public int getJobQueueCapacity() {
+        return jobQueueCapacity;
+    }
+
+    public void setJobQueueCapacity(int jobQueueCapacity) {
+        this.jobQueueCapacity = jobQueueCapacity;
+    }
+
+    public Duration getJobRetention() {
+        return jobRetention;
+    }
+
+    public void setJobRetention(Duration jobRetention) {
+        this.jobRetention = jobRetention;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public Embedding getEmbedding() {
+        return embedding;
+    }
+
+    public Chunking getChunking() {
+        return chunking;
+    }
+
+    public Deduplication getDeduplication() {
+        return deduplication;
+    }
+
+    public Sync getSync() {
+        return sync;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    public Maintenance getMaintenance() {
+        return maintenance;
+    }
+
+    public TextCache getTextCache() {
+        return textCache;
+    }
+
+    /**
+     * Sizing of the staged ingestion pipeline, bound from {@code rag.ingestion.pipeline.*}.
+     * Extraction, which chunks the text as it is read, is CPU-bound and runs on platform threads;
+     * embedding and storing are dominated by HTTP and database round-trips and run on virtual threads.
+     */
+    public static class Pipeline {
+
+        private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+        private final Stage extract = new Stage(CORES, 32);
+        // Many embed workers keep several documents waiting on the batcher so batches fill up
+        private final Stage embed = new Stage(32, 32);
+        private final Stage store = new Stage(8, 8);
+
+        public Stage getExtract() {
+            return extract;
+        }
+
+        public Stage getEmbed() {
+            return embed;
+        }
+
+        public Stage getStore() {
+            return store;
+        }
+    }
+
+    /**
+     * Cross-document embedding micro-batching, bound from {@code rag.ingestion.embedding.*}.
+     * Chunks of all in-flight documents are collected into one request until either limit is
+     * reached or the oldest chunk has waited for {@code linger}.
+     */
+    public static class Embedding {
+
+        // Maximum chunks per embedding request
+        private int batchSize = 64;
+
+        // Maximum estimated tokens per embedding request
+        private int maxBatchTokens = 16_384;
+
+        // How long a partial batch waits for more chunks before it is sent anyway
+        private Duration linger = Duration.ofMillis(50);
+
+        // Embedding requests in flight at the same time
+        private int maxConcurrentRequests = 2;
+
+        // Chunks waiting to be batched before submitters block
+        private int queueCapacity = 4096;
+
+        // Reuse stored embeddings of identical chunk texts (requires the embedding_cache table)
+        private boolean cacheEnabled = true;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxBatchTokens() {
+            return maxBatchTokens;
+        }
+
+        public void setMaxBatchTokens(int maxBatchTokens) {
+            this.maxBatchTokens = maxBatchTokens;
+        }
+
+        public Duration getLinger() {
+            return linger;
+        }
+
+        public void setLinger(Duration linger) {
+            this.linger = linger;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public boolean isCacheEnabled() {
+            return cacheEnabled;
+        }
+
+        public void setCacheEnabled(boolean cacheEnabled) {
+            this.cacheEnabled = cacheEnabled;
+        }
+    }
+
+    /**
+     * Chunking strategy, bound from {@code rag.ingestion.chunking.*}.
+     */
+    public static class Chunking {
+
+        private ChunkingMode mode = ChunkingMode.FIXED;
+
+        // WordPiece vocabulary chunk sizes are counted with; the embedding model's own vocab.txt gives exact counts
+        private String vocabulary = "classpath:tokenizer/vocab.txt";
+
+        // Threads that chunk segments of a large document at once; 1 chunks every document sequentially
+        private int parallelism = 1;
+
+        // Characters per segment in parallel mode
+        private int segmentChars = 256 * 1024;
+
+        public ChunkingMode getMode() {
+            return mode;
+        }
+
+        public void setMode(ChunkingMode mode) {
+            this.mode = mode;
+        }
+
+        public String getVocabulary() {
+            return vocabulary;
+        }
+
+        public void setVocabulary(String vocabulary) {
+            this.vocabulary = vocabulary;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getSegmentChars() {
+            return segmentChars;
+        }
+
+        public void setSegmentChars(int segmentChars) {
+            this.segmentChars = segmentChars;
+        }
+    }
+
+    /**
+     * Near-duplicate chunk detection, bound from {@code rag.ingestion.deduplication.*}.
+     * A chunk whose SimHash fingerprint is close enough to a stored chunk's is linked to that chunk
+     * in the {@code chunk_fingerprint} table instead of being embedded and stored again.
+     */
+    public static class Deduplication {
+
+        private boolean enabled = true;
+
+        // Share of the 64 fingerprint bits two chunks must have in common, between 0.8 and 1
+        private double similarity = 0.9;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        public void setSimilarity(double similarity) {
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Directory sync, bound from {@code rag.ingestion.sync.*}.
+     * Files below the directory are ingested under their relative path, kept up to date on change
+     * events and reconciled by a periodic full scan.
+     */
+    public static class Sync {
+
+        private boolean enabled = false;
+
+        // Directory to watch; subdirectories are included
+        private String directory;
+
+        // Interval of the full reconciling scan, which also catches events the watcher missed
+        private Duration scanInterval = Duration.ofMinutes(10);
+
+        // Quiet period after the last change event before changed files are ingested
+        private Duration debounce = Duration.ofSeconds(2);
+
+        // Files per ingestion job
+        private int batchSize = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public Duration getScanInterval() {
+            return scanInterval;
+        }
+
+        public void setScanInterval(Duration scanInterval) {
+            this.scanInterval = scanInterval;
+        }
+
+        public Duration getDebounce() {
+            return debounce;
+        }
+
+        public void setDebounce(Duration debounce) {
+            this.debounce = debounce;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Bulk import of zip and tar.gz archives, bound from {@code rag.ingestion.archive.*}.
+     * Entries are spooled and ingested in batches, so temporary disk use is bounded by the
+     * batch size rather than by the number of entries in the archive.
+     */
+    public static class Archive {
+
+        // Entries spooled and ingested together; also the size of one registry batch
+        private int batchSize = 256;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Vector store maintenance, bound from {@code rag.ingestion.maintenance.*}.
+     * Orphaned chunks are deleted in small batches with a pause in between so the sweep never
+     * competes with searches for long; the vector index is rebuilt concurrently once the share
+     * of dead rows exceeds {@code reindex-dead-ratio}.
+     */
+    public static class Maintenance {
+
+        // Run the sweep periodically; it can always be triggered via /api/documents/maintenance
+        private boolean enabled = false;
+
+        private Duration interval = Duration.ofHours(6);
+
+        // Chunks scanned per delete statement
+        private int batchSize = 500;
+
+        // Pause between batches, leaving the database to live queries
+        private Duration batchDelay = Duration.ofMillis(100);
+
+        // Dead row share of the vector table above which the vector index is rebuilt
+        private double reindexDeadRatio = 0.2;
+
+        // Index created by PgVectorStore for the default table name
+        private String vectorIndexName = "spring_ai_vector_index";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getBatchDelay() {
+            return batchDelay;
+        }
+
+        public void setBatchDelay(Duration batchDelay) {
+            this.batchDelay = batchDelay;
+        }
+
+        public double getReindexDeadRatio() {
+            return reindexDeadRatio;
+        }
+
+        public void setReindexDeadRatio(double reindexDeadRatio) {
+            this.reindexDeadRatio = reindexDeadRatio;
+        }
+
+        public String getVectorIndexName() {
+            return vectorIndexName;
+        }
+
+        public void setVectorIndexName(String vectorIndexName) {
+            this.vectorIndexName = vectorIndexName;
+        }
+    }
+
+    /**
+     * On-disk cache of extracted text, bound from {@code rag.ingestion.text-cache.*}.
+     * The text of every extracted file is kept gzip-compressed under the hash of the file's bytes,
+     * so documents can be re-chunked and re-embedded via /api/documents/reindex without the
+     * original uploads and without parsing them again.
+     */
+    public static class TextCache {
+
+        private boolean enabled = true;
+
+        // Should outlive restarts; a lost entry only means the document has to be uploaded again to reindex it
+        private String directory = Path.of(System.getProperty("java.io.tmpdir"), "rag-text-cache").toString();
+
+        // Documents re-chunked per registry batch during a reindex
+        private int reindexBatchSize = 256;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getReindexBatchSize() {
+            return reindexBatchSize;
+        }
+
+        public void setReindexBatchSize(int reindexBatchSize) {
+            this.reindexBatchSize = reindexBatchSize;
+        }
+    }
+
+    /**
+     * Worker count and inbound queue size of one pipeline stage.
+     */
+    public static class Stage {
+
+        private int workers;
+        private int queueCapacity;
+
+        public Stage() {
+        }
+
+        public Stage(int workers, int queueCapacity) {
+            this.workers = workers;
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.rk.ai.rag.controller;
 
+import com.rk.ai.rag.model.MaintenanceReport;
+import com.rk.ai.rag.model.PipelineStageStats;
 import com.rk.ai.rag.model.QueryRequest;
 import com.rk.ai.rag.model.QueryResponse;
 import com.rk.ai.rag.model.SearchRequest;
@@ -7,12 +9,17 @@ import com.rk.ai.rag.model.SearchResponse;
 import com.rk.ai.rag.model.UploadResponse;
 import com.rk.ai.rag.service.DocumentIngestionService;
 import com.rk.ai.rag.service.RagQueryService;
+import com.rk.ai.rag.service.VectorMaintenanceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/documents")
 public class DocumentController {
@@ -21,10 +28,13 @@ public class DocumentController {
     
     private final DocumentIngestionService ingestionService;
     private final RagQueryService ragQueryService;
+    private final VectorMaintenanceService maintenanceService;
     
-    public DocumentController(DocumentIngestionService ingestionService, RagQueryService ragQueryService) {
+    public DocumentController(DocumentIngestionService ingestionService, RagQueryService ragQueryService,
+                              VectorMaintenanceService maintenanceService) {
         this.ingestionService = ingestionService;
         this.ragQueryService = ragQueryService;
+        this.maintenanceService = maintenanceService;
     }
     
     @PostMapping("/upload")
@@ -46,18 +56,108 @@ public class DocumentController {
                 file.getOriginalFilename(), file.getSize());
         }
         
-        UploadResponse response = ingestionService.ingestDocuments(files);
+        UploadResponse response = ingestionService.submitDocuments(files);
+        
+        if ("REJECTED".equals(response.getStatus())) {
+            logger.warn("Upload request rejected: {}", response.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
         
         if ("FAILED".equals(response.getStatus())) {
             logger.error("Upload request failed: {}", response.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+        
+        logger.info("Upload request accepted: jobId={}, totalFiles={}", 
+            response.getJobId(), response.getTotalFiles());
+        
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    /**
+     * Bulk import of a zip or tar.gz archive sent as the raw request body.
+     * The body is streamed rather than parsed as multipart, so the multipart size limits do not apply.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<UploadResponse> importArchive(InputStream archive) {
+        logger.info("POST /api/documents/import - Received archive import request");
+        
+        UploadResponse response = ingestionService.submitArchive(archive);
+        
+        if ("INVALID".equals(response.getStatus())) {
+            logger.warn("Archive import rejected: {}", response.getMessage());
             return ResponseEntity.badRequest().body(response);
         }
         
-        logger.info("Upload request completed: status={}, processedFiles={}/{}, totalChunks={}", 
-            response.getStatus(), response.getProcessedFiles(), response.getTotalFiles(), 
-            response.getTotalChunks());
+        if ("REJECTED".equals(response.getStatus())) {
+            logger.warn("Archive import rejected: {}", response.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        
+        if ("FAILED".equals(response.getStatus())) {
+            logger.error("Archive import failed: {}", response.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+        
+        logger.info("Archive import accepted: jobId={}", response.getJobId());
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    /**
+     * Re-chunks and re-embeds all registered documents from their cached extracted text,
+     * e.g. after changing the chunking mode or the embedding model.
+     */
+    @PostMapping("/reindex")
+    public ResponseEntity<UploadResponse> reindex() {
+        logger.info("POST /api/documents/reindex - Received reindex request");
+        
+        UploadResponse response = ingestionService.submitReindex();
+        
+        if ("REJECTED".equals(response.getStatus())) {
+            logger.warn("Reindex request rejected: {}", response.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        
+        logger.info("Reindex accepted: jobId={}", response.getJobId());
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<UploadResponse> getJob(@PathVariable String jobId) {
+        logger.debug("GET /api/documents/jobs/{} - Received job status request", jobId);
+        
+        return ingestionService.getJob(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> {
+                logger.warn("Job status request for unknown job: {}", jobId);
+                return ResponseEntity.notFound().build();
+            });
+    }
+    
+    @GetMapping("/pipeline")
+    public ResponseEntity<List<PipelineStageStats>> getPipelineStats() {
+        logger.debug("GET /api/documents/pipeline - Received pipeline stats request");
+        return ResponseEntity.ok(ingestionService.getPipelineStats());
+    }
+    
+    @GetMapping("/maintenance")
+    public ResponseEntity<MaintenanceReport> getMaintenanceReport() {
+        logger.debug("GET /api/documents/maintenance - Received maintenance report request");
         
-        return ResponseEntity.ok(response);
+        return maintenanceService.getLastReport()
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/maintenance")
+    public ResponseEntity<Void> runMaintenance() {
+        logger.info("POST /api/documents/maintenance - Received maintenance request");
+        
+        if (!maintenanceService.trigger()) {
+            logger.warn("Maintenance request rejected: a run is already in progress");
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().build();
     }
     
     @PostMapping("/query")
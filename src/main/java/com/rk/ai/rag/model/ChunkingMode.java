@@ -0,0 +1,11 @@
+package com.rk.ai.rag.model;
+
+/**
+ * How {@code ChunkingService} places chunk boundaries.
+ */
+public enum ChunkingMode {
+    // Paragraphs accumulated up to a target size - an insertion shifts every later boundary
+    FIXED,
+    // Boundaries anchored on a rolling hash of the text - an edit only changes nearby chunks
+    CONTENT_DEFINED
+}
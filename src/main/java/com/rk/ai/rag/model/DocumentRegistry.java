@@ -22,9 +22,17 @@ public class DocumentRegistry {
     @Column(nullable = false, length = 64)
     private String contentHash;
     
+    // SHA-256 of the uploaded bytes, checked before text extraction; null for rows from older versions
+    @Column(length = 64)
+    private String rawHash;
+    
     @Column(nullable = false)
     private Long fileSize;
     
+    // MIME type of the uploaded file; null for rows from older versions
+    @Column
+    private String contentType;
+    
     @Column(nullable = false)
     private LocalDateTime uploadDate;
     
@@ -34,6 +42,10 @@ public class DocumentRegistry {
     @Column(nullable = false)
     private Integer chunkCount;
     
+    // Modification time of the source file for documents ingested from the sync directory, null for uploads
+    @Column
+    private LocalDateTime sourceLastModified;
+    
     // Constructors
     public DocumentRegistry() {
     }
@@ -73,6 +85,14 @@ public class DocumentRegistry {
         this.contentHash = contentHash;
     }
     
+    public String getRawHash() {
+        return rawHash;
+    }
+    
+    public void setRawHash(String rawHash) {
+        this.rawHash = rawHash;
+    }
+    
     public Long getFileSize() {
         return fileSize;
     }
@@ -81,6 +101,14 @@ public class DocumentRegistry {
         this.fileSize = fileSize;
     }
     
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
     public LocalDateTime getUploadDate() {
         return uploadDate;
     }
@@ -105,6 +133,14 @@ public class DocumentRegistry {
         this.chunkCount = chunkCount;
     }
     
+    public LocalDateTime getSourceLastModified() {
+        return sourceLastModified;
+    }
+    
+    public void setSourceLastModified(LocalDateTime sourceLastModified) {
+        this.sourceLastModified = sourceLastModified;
+    }
+    
     @PreUpdate
     public void preUpdate() {
         this.lastModified = LocalDateTime.now();
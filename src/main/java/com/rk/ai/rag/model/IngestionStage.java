@@ -0,0 +1,17 @@
+package com.rk.ai.rag.model;
+
+/**
+ * Progress of a single file through the ingestion pipeline.
+ * Stages are reported in order; a failed file keeps the last stage it reached.
+ */
+public enum IngestionStage {
+    PENDING,
+    EXTRACTED,
+    CHUNKED,
+    // Chunks embedded and written to the vector store
+    EMBEDDED,
+    // Document recorded in the registry - ingestion finished
+    STORED,
+    // Same filename and content already ingested, nothing to do
+    UNCHANGED
+}
@@ -0,0 +1,91 @@
+package com.rk.ai.rag.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one vector store maintenance run: orphaned chunks removed and whether the
+ * vector index was rebuilt.
+ */
+public class MaintenanceReport {
+
+    private String status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long scannedChunks;
+    private long deletedChunks;
+    private double deadTupleRatio;
+    private boolean reindexed;
+    private String message;
+
+    public MaintenanceReport() {
+    }
+
+    public MaintenanceReport(String status, LocalDateTime startedAt) {
+        this.status = status;
+        this.startedAt = startedAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public long getScannedChunks() {
+        return scannedChunks;
+    }
+
+    public void setScannedChunks(long scannedChunks) {
+        this.scannedChunks = scannedChunks;
+    }
+
+    public long getDeletedChunks() {
+        return deletedChunks;
+    }
+
+    public void setDeletedChunks(long deletedChunks) {
+        this.deletedChunks = deletedChunks;
+    }
+
+    public double getDeadTupleRatio() {
+        return deadTupleRatio;
+    }
+
+    public void setDeadTupleRatio(double deadTupleRatio) {
+        this.deadTupleRatio = deadTupleRatio;
+    }
+
+    public boolean isReindexed() {
+        return reindexed;
+    }
+
+    public void setReindexed(boolean reindexed) {
+        this.reindexed = reindexed;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,97 @@
+package com.rk.ai.rag.model;
+
+/**
+ * Runtime statistics of one ingestion pipeline stage, used to size worker pools and queues.
+ * A stage whose queue is constantly full while all workers are busy is the bottleneck.
+ */
+public class PipelineStageStats {
+
+    private String stage;
+    private int workers;
+    private int busyWorkers;
+    private int queueDepth;
+    private int queueCapacity;
+    private long processedItems;
+    private long failedItems;
+    private double throughputPerSecond;
+    private double averageProcessingMillis;
+
+    public PipelineStageStats() {
+    }
+
+    public PipelineStageStats(String stage) {
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getBusyWorkers() {
+        return busyWorkers;
+    }
+
+    public void setBusyWorkers(int busyWorkers) {
+        this.busyWorkers = busyWorkers;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getProcessedItems() {
+        return processedItems;
+    }
+
+    public void setProcessedItems(long processedItems) {
+        this.processedItems = processedItems;
+    }
+
+    public long getFailedItems() {
+        return failedItems;
+    }
+
+    public void setFailedItems(long failedItems) {
+        this.failedItems = failedItems;
+    }
+
+    public double getThroughputPerSecond() {
+        return throughputPerSecond;
+    }
+
+    public void setThroughputPerSecond(double throughputPerSecond) {
+        this.throughputPerSecond = throughputPerSecond;
+    }
+
+    public double getAverageProcessingMillis() {
+        return averageProcessingMillis;
+    }
+
+    public void setAverageProcessingMillis(double averageProcessingMillis) {
+        this.averageProcessingMillis = averageProcessingMillis;
+    }
+}
@@ -102,6 +102,7 @@ public class UploadResponse {
         private long fileSize;
         private int chunks;
         private String status;
+        private IngestionStage stage;
         private String errorMessage;
         
         public DocumentInfo() {
@@ -113,6 +114,16 @@ public class UploadResponse {
             this.fileSize = fileSize;
         }
         
+        public DocumentInfo(DocumentInfo other) {
+            this.documentId = other.documentId;
+            this.filename = other.filename;
+            this.fileSize = other.fileSize;
+            this.chunks = other.chunks;
+            this.status = other.status;
+            this.stage = other.stage;
+            this.errorMessage = other.errorMessage;
+        }
+        
         // Getters and Setters
         public String getDocumentId() {
             return documentId;
@@ -154,6 +165,14 @@ public class UploadResponse {
             this.status = status;
         }
         
+        public IngestionStage getStage() {
+            return stage;
+        }
+        
+        public void setStage(IngestionStage stage) {
+            this.stage = stage;
+        }
+        
         public String getErrorMessage() {
             return errorMessage;
         }
@@ -0,0 +1,173 @@
+package com.rk.ai.rag.pipeline;
+
+import com.rk.ai.rag.model.PipelineStageStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * One stage of a processing pipeline: a bounded inbound queue drained by a fixed set of workers.
+ * <p>
+ * {@link #submit(Object)} blocks while the queue is full. A handler that forwards its item to the
+ * next stage therefore stalls when that stage falls behind, which propagates backpressure all the
+ * way to the producer instead of buffering unbounded work in memory.
+ *
+ * @param <T> the work item type
+ */
+public class PipelineStage<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    /**
+     * Processes one item. Implementations forward the item to the next stage themselves.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    private final String name;
+    private final int workers;
+    private final int queueCapacity;
+    private final BlockingQueue<T> queue;
+    private final Handler<T> handler;
+    private final BiConsumer<T, Throwable> failureHandler;
+    private final ExecutorService executor;
+
+    private final LongAdder processedItems = new LongAdder();
+    private final LongAdder failedItems = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final long startedAtNanos = System.nanoTime();
+    private volatile boolean running = true;
+
+    /**
+     * @param name           stage name used for thread names, logs and stats
+     * @param workers        number of worker threads draining the queue
+     * @param queueCapacity  maximum number of items waiting in the inbound queue
+     * @param virtualThreads run workers on virtual threads (I/O-bound stages) instead of platform threads
+     * @param handler        processes each item
+     * @param failureHandler invoked when the handler throws, errors included; the item is not retried
+     */
+    public PipelineStage(String name, int workers, int queueCapacity, boolean virtualThreads,
+                         Handler<T> handler, BiConsumer<T, Throwable> failureHandler) {
+        this.name = name;
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.handler = handler;
+        this.failureHandler = failureHandler;
+
+        ThreadFactory threadFactory = virtualThreads
+            ? Thread.ofVirtual().name("pipeline-" + name + "-", 0).factory()
+            : Thread.ofPlatform().name("pipeline-" + name + "-", 0).daemon(true).factory();
+        this.executor = Executors.newFixedThreadPool(this.workers, threadFactory);
+        for (int i = 0; i < this.workers; i++) {
+            executor.execute(this::runWorker);
+        }
+
+        logger.info("Started pipeline stage '{}' with {} {} workers and queue capacity {}",
+            name, this.workers, virtualThreads ? "virtual" : "platform", this.queueCapacity);
+    }
+
+    /**
+     * Enqueues an item, blocking while the stage's queue is full.
+     */
+    public void submit(T item) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Pipeline stage '" + name + "' is shut down");
+        }
+        queue.put(item);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PipelineStageStats stats() {
+        long processed = processedItems.sum();
+        long failed = failedItems.sum();
+        long completed = processed + failed;
+        double uptimeSeconds = Math.max(1e-3, (System.nanoTime() - startedAtNanos) / 1e9);
+
+        PipelineStageStats stats = new PipelineStageStats(name);
+        stats.setWorkers(workers);
+        stats.setBusyWorkers(busyWorkers.get());
+        stats.setQueueDepth(queue.size());
+        stats.setQueueCapacity(queueCapacity);
+        stats.setProcessedItems(processed);
+        stats.setFailedItems(failed);
+        stats.setThroughputPerSecond(completed / uptimeSeconds);
+        stats.setAverageProcessingMillis(completed == 0 ? 0.0 : busyNanos.sum() / 1e6 / completed);
+        return stats;
+    }
+
+    private void runWorker() {
+        while (running || !queue.isEmpty()) {
+            T item;
+            try {
+                item = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (item == null) {
+                continue;
+            }
+
+            busyWorkers.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                handler.handle(item);
+                processedItems.increment();
+            } catch (Throwable e) {
+                // Errors such as an OutOfMemoryError from one huge document fail that item only;
+                // the worker keeps running so that the item's waiters are released and the stage stays at full size
+                failedItems.increment();
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                fail(item, e);
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+                busyWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    private void fail(T item, Throwable cause) {
+        try {
+            failureHandler.accept(item, cause);
+        } catch (Throwable e) {
+            logger.error("Failure handler of pipeline stage '{}' failed", name, e);
+        }
+    }
+
+    /**
+     * Stops accepting new items, lets workers drain the queue and waits for them to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Pipeline stage '{}' did not drain in time, {} items dropped", name, queue.size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -8,83 +8,100 @@ import org.springframework.stereotype.Component;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 /**
  * Reader for extracting text from CSV documents using OpenCSV.
+ * <p>
+ * Rows are read one at a time and handed out one by one, so a large export never has to exist as a
+ * single string. {@link #readRows} yields just the formatted data rows, which the chunking service
+ * groups into chunks; {@link #readSegments} also yields a preamble with the header line.
  */
 @Component
 public class CsvDocumentReader implements DocumentReader {
     
     private static final Logger logger = LoggerFactory.getLogger(CsvDocumentReader.class);
     
+    /**
+     * Receives one formatted row.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(String row) throws Exception;
+    }
+    
     @Override
     public String extractText(InputStream inputStream, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegments(inputStream, filename, segment -> content.append(segment.text()));
+        return content.toString().trim();
+    }
+    
+    /**
+     * Hands out the preamble with the header line, then every data row as a segment of its own
+     * with its 1-based {@code row} number as hint.
+     */
+    @Override
+    public void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.debug("Starting CSV text extraction for: {}", filename);
         
         try (CSVReader csvReader = new CSVReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            List<String[]> allRows = csvReader.readAll();
+            String[] header = readHeader(csvReader);
+            logger.trace("CSV has {} columns", header.length);
             
-            if (allRows.isEmpty()) {
-                throw new IllegalArgumentException("CSV file is empty");
-            }
+            StringBuilder content = new StringBuilder();
+            content.append("CSV Data:\n");
+            content.append("=".repeat(50)).append("\n\n");
             
-            logger.trace("CSV file has {} total rows", allRows.size());
+            // Add header
+            content.append(headerLine(header));
+            content.append("\n");
+            content.append("-".repeat(50)).append("\n");
+            consumer.accept(TextSegment.of(content.toString()));
             
-            StringBuilder content = new StringBuilder();
-            int dataRows = 0;
-            int columns = 0;
+            // Add data rows
+            long[] chars = {content.length()};
+            int[] rowNumber = {0};
+            int dataRows = forEachRow(csvReader, header, row -> {
+                chars[0] += row.length() + 1;
+                consumer.accept(TextSegment.of(row + "\n", "row", ++rowNumber[0]));
+            });
             
-            // Process header (first row)
-            if (!allRows.isEmpty()) {
-                String[] header = allRows.get(0);
-                columns = header.length;
-                logger.trace("CSV has {} columns", columns);
-                
-                content.append("CSV Data:\n");
-                content.append("=".repeat(50)).append("\n\n");
-                
-                // Add header
-                content.append("Headers: ");
-                content.append(String.join(" | ", header));
-                content.append("\n");
-                content.append("-".repeat(50)).append("\n");
-                
-                // Add data rows
-                for (int i = 1; i < allRows.size(); i++) {
-                    String[] row = allRows.get(i);
-                    
-                    // Skip empty rows
-                    if (isRowEmpty(row)) {
-                        continue;
-                    }
-                    
-                    dataRows++;
-                    
-                    // Format as "header: value" pairs for better context
-                    for (int j = 0; j < row.length && j < header.length; j++) {
-                        if (row[j] != null && !row[j].trim().isEmpty()) {
-                            content.append(header[j]).append(": ").append(row[j]);
-                            if (j < row.length - 1 && j < header.length - 1) {
-                                content.append(", ");
-                            }
-                        }
-                    }
-                    content.append("\n");
-                }
-            }
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.info("CSV extraction completed for '{}': extracted {} chars from {} data rows, {} columns in {}ms", 
+                filename, chars[0], dataRows, header.length, extractionTime);
+        } catch (Exception e) {
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.error("CSV extraction failed for '{}' after {}ms: {}", 
+                filename, extractionTime, e.getMessage());
+            throw e;
+        }
+    }
+    
+    /**
+     * Reads the CSV row by row and passes every non-empty data row, formatted as "header: value"
+     * pairs, to the consumer. The consumer sees the first row before the rest of the file is parsed.
+     * A file with a header but no data rows yields the header line.
+     *
+     * @return the number of data rows read
+     */
+    public int readRows(InputStream inputStream, String filename, RowConsumer consumer) throws Exception {
+        long startTime = System.currentTimeMillis();
+        logger.debug("Starting streaming CSV extraction for: {}", filename);
+        
+        try (CSVReader csvReader = new CSVReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String[] header = readHeader(csvReader);
             
-            String text = content.toString().trim();
-            if (text.isEmpty() || text.equals("CSV Data:\n" + "=".repeat(50))) {
-                throw new IllegalArgumentException("CSV file contains no data");
+            int dataRows = forEachRow(csvReader, header, consumer);
+            if (dataRows == 0) {
+                consumer.accept(headerLine(header));
             }
             
             long extractionTime = System.currentTimeMillis() - startTime;
-            logger.info("CSV extraction completed for '{}': extracted {} chars from {} data rows, {} columns in {}ms", 
-                filename, text.length(), dataRows, columns, extractionTime);
+            logger.info("CSV extraction completed for '{}': {} data rows, {} columns in {}ms", 
+                filename, dataRows, header.length, extractionTime);
             
-            return text;
+            return dataRows;
         } catch (Exception e) {
             long extractionTime = System.currentTimeMillis() - startTime;
             logger.error("CSV extraction failed for '{}' after {}ms: {}", 
@@ -93,6 +110,54 @@ public class CsvDocumentReader implements DocumentReader {
         }
     }
     
+    private String[] readHeader(CSVReader csvReader) throws Exception {
+        String[] header = csvReader.readNext();
+        if (header == null) {
+            throw new IllegalArgumentException("CSV file is empty");
+        }
+        return header;
+    }
+    
+    private String headerLine(String[] header) {
+        return "Headers: " + String.join(" | ", header);
+    }
+    
+    /**
+     * Reads the remaining rows lazily and passes every non-empty one, formatted, to the consumer.
+     *
+     * @return the number of non-empty rows
+     */
+    private int forEachRow(CSVReader csvReader, String[] header, RowConsumer consumer) throws Exception {
+        int dataRows = 0;
+        String[] row;
+        while ((row = csvReader.readNext()) != null) {
+            // Skip empty rows
+            if (isRowEmpty(row)) {
+                continue;
+            }
+            
+            dataRows++;
+            consumer.accept(formatRow(header, row));
+        }
+        return dataRows;
+    }
+    
+    /**
+     * Formats a row as "header: value" pairs for better context.
+     */
+    private String formatRow(String[] header, String[] row) {
+        StringBuilder line = new StringBuilder();
+        for (int j = 0; j < row.length && j < header.length; j++) {
+            if (row[j] != null && !row[j].trim().isEmpty()) {
+                line.append(header[j]).append(": ").append(row[j]);
+                if (j < row.length - 1 && j < header.length - 1) {
+                    line.append(", ");
+                }
+            }
+        }
+        return line.toString();
+    }
+    
     private boolean isRowEmpty(String[] row) {
         if (row == null || row.length == 0) {
             return true;
@@ -105,4 +170,4 @@ public class CsvDocumentReader implements DocumentReader {
         }
         return true;
     }
-}
+}
\ No newline at end of file
@@ -4,9 +4,21 @@ import java.io.InputStream;
 
 /**
  * Interface for extracting text content from various document formats.
+ * <p>
+ * {@link #readSegments} is the incremental form of {@link #extractText}: the text is handed out
+ * piece by piece while the document is read, so a caller can chunk and embed the first pages
+ * before the last ones are parsed and never has to hold the whole text.
  */
 public interface DocumentReader {
     
+    /**
+     * Receives the segments of a document in reading order.
+     */
+    @FunctionalInterface
+    interface SegmentConsumer {
+        void accept(TextSegment segment) throws Exception;
+    }
+    
     /**
      * Extracts text content from the provided input stream.
      * 
@@ -16,4 +28,20 @@ public interface DocumentReader {
      * @throws Exception if text extraction fails
      */
     String extractText(InputStream inputStream, String filename) throws Exception;
+    
+    /**
+     * Reads the document as a sequence of segments. Concatenated, the segments' text is the text
+     * {@link #extractText} returns, give or take leading and trailing whitespace.
+     * <p>
+     * The default hands out the whole text as one segment; readers override it to emit pages,
+     * sheets, rows or sections as soon as they are parsed.
+     *
+     * @param inputStream the input stream of the document
+     * @param filename the original filename (used for error messages)
+     * @param consumer receives every segment; an exception it throws aborts reading
+     * @throws Exception if text extraction fails
+     */
+    default void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
+        consumer.accept(TextSegment.of(extractText(inputStream, filename)));
+    }
 }
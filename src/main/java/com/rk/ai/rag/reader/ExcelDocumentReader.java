@@ -1,92 +1,236 @@
 package com.rk.ai.rag.reader;
 
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Reader for extracting text from Excel documents (.xls, .xlsx) using Apache POI.
+ * <p>
+ * {@code .xlsx} workbooks are streamed with POI's SAX event API instead of being loaded into the
+ * XSSF object model: the shared strings table is read once, each sheet's XML is parsed row by row,
+ * and sheets are parsed concurrently. Rows are handed out in groups as they are parsed, and a sheet
+ * parsed ahead of the consumer holds only a few groups, so heap use does not grow with the number
+ * of rows. When the extraction fails or the consumer throws, the sheets still being parsed stop at
+ * their next row. Legacy {@code .xls} files still go through the object model, handed out in the
+ * same row groups.
  */
 @Component
 public class ExcelDocumentReader implements DocumentReader {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(ExcelDocumentReader.class);
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    
+    // DateTimeFormatter is immutable, so one instance is safe across concurrently ingested files
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Rows are handed out in groups of about this many characters
+    private static final int ROW_GROUP_CHARS = 16 * 1024;
+
+    // Row groups a sheet parsed ahead of the consumer may hold before its parser waits
+    private static final int QUEUED_GROUPS_PER_SHEET = 4;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     @Override
     public String extractText(InputStream inputStream, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegments(inputStream, filename, segment -> content.append(segment.text()));
+        return content.toString().trim();
+    }
+
+    /**
+     * Extracts the text of a workbook that is already on disk, without copying it.
+     */
+    public String extractTextFromFile(Path file, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegmentsFromFile(file, filename, segment -> content.append(segment.text()));
+        return content.toString().trim();
+    }
+
+    @Override
+    public void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
+        if (!isXlsx(filename)) {
+            readWithObjectModel(inputStream, filename, consumer);
+            return;
+        }
+
+        // The event API reads the workbook's parts from a zip file on disk
+        Path spoolFile = Files.createTempFile("xlsx-", ".spool");
+        try {
+            Files.copy(inputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            readSegmentsFromFile(spoolFile, filename, consumer);
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    /**
+     * Hands out the rows of every sheet, in workbook order, as segments of about
+     * {@value #ROW_GROUP_CHARS} characters with a {@code sheet} hint. The first sheet is parsed on
+     * the calling thread and passed on as it is parsed; later sheets are parsed ahead on the pool,
+     * each holding at most {@value #QUEUED_GROUPS_PER_SHEET} row groups until the consumer gets to
+     * it. A sheet the pool has not started yet when its turn comes is parsed on the calling thread.
+     */
+    public void readSegmentsFromFile(Path file, String filename, SegmentConsumer consumer) throws Exception {
+        if (!isXlsx(filename)) {
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                readWithObjectModel(inputStream, filename, consumer);
+            }
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        logger.debug("Starting streaming Excel text extraction for: {}", filename);
+
+        List<SheetTask> sheets = new ArrayList<>();
+        // Fork-join tasks are not interrupted by cancel(true), so parsers poll this between rows
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = xssfReader.getStylesTable();
+
+            // Sheet parts are opened in order; parsing them runs concurrently
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            while (iterator.hasNext()) {
+                InputStream sheetData = iterator.next();
+                SheetTask sheet = new SheetTask(sheets.size(), iterator.getSheetName(), sheetData, sharedStrings,
+                    styles, cancelled);
+                sheets.add(sheet);
+                if (sheets.size() > 1) {
+                    sheet.ahead = pool.submit(sheet::parseAhead);
+                }
+            }
+
+            long chars = 0;
+            int totalRows = 0;
+            int totalCells = 0;
+            for (SheetTask sheet : sheets) {
+                SheetCollector collector = sheet.read(consumer);
+                chars += collector.chars;
+                totalRows += collector.rows;
+                totalCells += collector.cells;
+            }
+
+            if (chars == 0) {
+                throw new IllegalArgumentException("Excel file contains no data");
+            }
+
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.info("Excel extraction completed for '{}': extracted {} chars from {} sheets, {} rows, {} cells in {}ms",
+                filename, chars, sheets.size(), totalRows, totalCells, extractionTime);
+        } catch (Exception e) {
+            cancelled.set(true);
+            sheets.stream().filter(sheet -> sheet.ahead != null).forEach(sheet -> sheet.ahead.cancel(false));
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.error("Excel extraction failed for '{}' after {}ms: {}",
+                filename, extractionTime, e.getMessage());
+            throw e;
+        } finally {
+            // Also stops the parsers running ahead when the consumer failed with an error
+            cancelled.set(true);
+            sheets.forEach(SheetTask::discard);
+        }
+    }
+
+    private void readWithObjectModel(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.debug("Starting Excel text extraction for: {}", filename);
-        
+
         try (Workbook workbook = WorkbookFactory.create(inputStream)) {
             int sheetCount = workbook.getNumberOfSheets();
             logger.trace("Excel file has {} sheets", sheetCount);
-            
-            StringBuilder content = new StringBuilder();
+
+            long chars = 0;
             int totalRows = 0;
             int totalCells = 0;
-            
+
             for (int i = 0; i < sheetCount; i++) {
                 Sheet sheet = workbook.getSheetAt(i);
                 String sheetName = sheet.getSheetName();
                 logger.trace("Processing sheet {}: '{}'", i + 1, sheetName);
-                
-                if (i > 0) {
-                    content.append("\n\n");
-                }
-                content.append("Sheet: ").append(sheetName).append("\n");
-                content.append("=".repeat(50)).append("\n\n");
-                
-                int rowCount = 0;
-                for (Row row : sheet) {
-                    if (isRowEmpty(row)) {
-                        continue;
-                    }
-                    
-                    rowCount++;
-                    int cellCount = 0;
-                    for (Cell cell : row) {
-                        String cellValue = getCellValueAsString(cell);
-                        if (cellValue != null && !cellValue.isEmpty()) {
-                            content.append(cellValue).append("\t");
-                            cellCount++;
+
+                // The rows go through the same collector as the streamed sheets
+                SheetCollector collector = new SheetCollector(i, sheetName, consumer, null);
+                try {
+                    for (Row row : sheet) {
+                        if (isRowEmpty(row)) {
+                            continue;
+                        }
+
+                        collector.startRow(row.getRowNum());
+                        for (Cell cell : row) {
+                            collector.cell(null, getCellValueAsString(cell), null);
                         }
+                        collector.endRow(row.getRowNum());
                     }
-                    totalCells += cellCount;
-                    content.append("\n");
+                } catch (SinkFailure e) {
+                    throw e.getCause();
                 }
-                totalRows += rowCount;
-                logger.trace("Extracted {} rows from sheet '{}'", rowCount, sheetName);
+                collector.finish();
+                totalRows += collector.rows;
+                totalCells += collector.cells;
+                chars += collector.chars;
+                logger.trace("Extracted {} rows from sheet '{}'", collector.rows, sheetName);
             }
-            
-            String text = content.toString().trim();
-            if (text.isEmpty()) {
+
+            if (chars == 0) {
                 throw new IllegalArgumentException("Excel file contains no data");
             }
-            
+
             long extractionTime = System.currentTimeMillis() - startTime;
-            logger.info("Excel extraction completed for '{}': extracted {} chars from {} sheets, {} rows, {} cells in {}ms", 
-                filename, text.length(), sheetCount, totalRows, totalCells, extractionTime);
-            
-            return text;
+            logger.info("Excel extraction completed for '{}': extracted {} chars from {} sheets, {} rows, {} cells in {}ms",
+                filename, chars, sheetCount, totalRows, totalCells, extractionTime);
         } catch (Exception e) {
             long extractionTime = System.currentTimeMillis() - startTime;
-            logger.error("Excel extraction failed for '{}' after {}ms: {}", 
+            logger.error("Excel extraction failed for '{}' after {}ms: {}",
                 filename, extractionTime, e.getMessage());
             throw e;
         }
     }
-    
+
+    private static boolean isXlsx(String filename) {
+        return filename != null && filename.toLowerCase().endsWith(".xlsx");
+    }
+
+    private static void appendSheetHeader(StringBuilder content, String sheetName) {
+        content.append("Sheet: ").append(sheetName).append("\n");
+        content.append("=".repeat(50)).append("\n\n");
+    }
+
     private boolean isRowEmpty(Row row) {
         if (row == null) {
             return true;
         }
-        
+
         for (Cell cell : row) {
             if (cell != null && cell.getCellType() != CellType.BLANK) {
                 String value = getCellValueAsString(cell);
@@ -97,26 +241,20 @@ public class ExcelDocumentReader implements DocumentReader {
         }
         return true;
     }
-    
+
     private String getCellValueAsString(Cell cell) {
         if (cell == null) {
             return "";
         }
-        
+
         switch (cell.getCellType()) {
             case STRING:
                 return cell.getStringCellValue();
             case NUMERIC:
                 if (DateUtil.isCellDateFormatted(cell)) {
-                    Date date = cell.getDateCellValue();
-                    return DATE_FORMAT.format(date);
+                    return DATE_FORMAT.format(cell.getLocalDateTimeCellValue());
                 } else {
-                    double numericValue = cell.getNumericCellValue();
-                    if (numericValue == (long) numericValue) {
-                        return String.valueOf((long) numericValue);
-                    } else {
-                        return String.valueOf(numericValue);
-                    }
+                    return formatNumber(cell.getNumericCellValue());
                 }
             case BOOLEAN:
                 return String.valueOf(cell.getBooleanCellValue());
@@ -132,4 +270,234 @@ public class ExcelDocumentReader implements DocumentReader {
                 return "";
         }
     }
+
+    private static String formatNumber(double numericValue) {
+        if (numericValue == (long) numericValue) {
+            return String.valueOf((long) numericValue);
+        } else {
+            return String.valueOf(numericValue);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * One sheet of a streamed workbook. Whichever thread claims it first parses it: a pool worker
+     * parsing ahead hands its row groups over through a bounded queue, the calling thread passes
+     * them straight to the consumer.
+     */
+    private static final class SheetTask {
+
+        // Marks the end of a sheet in its queue
+        private static final TextSegment END = TextSegment.of("");
+
+        private final int index;
+        private final String name;
+        private final InputStream data;
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final AtomicBoolean cancelled;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final BlockingQueue<TextSegment> queue = new ArrayBlockingQueue<>(QUEUED_GROUPS_PER_SHEET);
+        private ForkJoinTask<SheetCollector> ahead;
+
+        private SheetTask(int index, String name, InputStream data, ReadOnlySharedStringsTable sharedStrings,
+                          StylesTable styles, AtomicBoolean cancelled) {
+            this.index = index;
+            this.name = name;
+            this.data = data;
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Runs on the pool: parses the sheet into the queue, unless the calling thread got to it first.
+         */
+        private SheetCollector parseAhead() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return parse(this::enqueue);
+            } finally {
+                enqueue(END);
+            }
+        }
+
+        /**
+         * Runs on the calling thread: passes the sheet's row groups on in order.
+         */
+        private SheetCollector read(SegmentConsumer consumer) throws Exception {
+            if (claimed.compareAndSet(false, true)) {
+                return parse(consumer);
+            }
+            for (TextSegment segment = queue.take(); segment != END; segment = queue.take()) {
+                consumer.accept(segment);
+            }
+            try {
+                return ahead.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        private SheetCollector parse(SegmentConsumer sink) throws Exception {
+            SheetCollector collector = new SheetCollector(index, name, sink, cancelled);
+            // DataFormatter caches formats and is not thread-safe, so every sheet gets its own
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, sharedStrings, collector,
+                new TextDataFormatter(), false));
+            try (data) {
+                parser.parse(new InputSource(data));
+            } catch (SinkFailure e) {
+                throw e.getCause();
+            }
+            collector.finish();
+            logger.trace("Extracted {} rows from sheet '{}'", collector.rows, name);
+            return collector;
+        }
+
+        /**
+         * Closes the sheet's data if no parser took it; a parser closes it when it is done.
+         */
+        private void discard() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    data.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close sheet '{}': {}", name, e.getMessage());
+                }
+            }
+        }
+
+        private void enqueue(TextSegment segment) throws InterruptedException {
+            // The consumer stops draining once the extraction failed, so a full queue is rechecked
+            while (!queue.offer(segment, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled.get()) {
+                    throw new CancellationException("Extraction of sheet '" + name + "' cancelled");
+                }
+            }
+        }
+    }
+
+    /**
+     * Formats numeric cells the same way as the object model path: dates with {@link #DATE_FORMAT},
+     * whole numbers without a fraction, everything else as a plain double.
+     */
+    private static final class TextDataFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString,
+                                            boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DATE_FORMAT.format(DateUtil.getLocalDateTime(value, use1904Windowing));
+            }
+            return formatNumber(value);
+        }
+    }
+
+    /**
+     * Collects the rows of one sheet as they are parsed, skipping rows without visible content, and
+     * passes them on in groups of about {@value #ROW_GROUP_CHARS} characters. The first group starts
+     * with the sheet header, so even an empty sheet is passed on.
+     */
+    private static final class SheetCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final String sheetName;
+        private final SegmentConsumer sink;
+        private final AtomicBoolean cancelled;
+        private final StringBuilder group = new StringBuilder();
+        private final StringBuilder row = new StringBuilder();
+        private boolean rowHasContent;
+        private int rowCells;
+        private int rows;
+        private int cells;
+        private long chars;
+
+        private SheetCollector(int index, String sheetName, SegmentConsumer sink, AtomicBoolean cancelled) {
+            this.sheetName = sheetName;
+            this.sink = sink;
+            this.cancelled = cancelled;
+            if (index > 0) {
+                group.append("\n\n");
+            }
+            appendSheetHeader(group, sheetName);
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (cancelled != null && cancelled.get()) {
+                throw new CancellationException("Extraction of sheet '" + sheetName + "' cancelled at row " + (rowNum + 1));
+            }
+            row.setLength(0);
+            rowHasContent = false;
+            rowCells = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!rowHasContent) {
+                return;
+            }
+            group.append(row).append("\n");
+            rows++;
+            cells += rowCells;
+            if (group.length() >= ROW_GROUP_CHARS) {
+                flush();
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue == null || formattedValue.isEmpty()) {
+                return;
+            }
+            row.append(formattedValue).append("\t");
+            rowCells++;
+            rowHasContent |= !formattedValue.trim().isEmpty();
+        }
+
+        private void finish() throws Exception {
+            try {
+                flush();
+            } catch (SinkFailure e) {
+                throw e.getCause();
+            }
+        }
+
+        private void flush() {
+            if (group.isEmpty()) {
+                return;
+            }
+            String text = group.toString();
+            group.setLength(0);
+            chars += text.length();
+            try {
+                sink.accept(TextSegment.of(text, "sheet", sheetName));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SinkFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Carries a checked exception of the segment consumer through the SAX callbacks.
+     */
+    private static final class SinkFailure extends RuntimeException {
+
+        private SinkFailure(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
 }
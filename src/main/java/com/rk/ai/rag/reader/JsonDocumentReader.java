@@ -1,111 +1,289 @@
 package com.rk.ai.rag.reader;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 
 /**
- * Reader for extracting text from JSON documents using Jackson.
+ * Reader for extracting text from JSON documents using Jackson's streaming parser.
+ * <p>
+ * Values are rendered token by token into one buffer instead of being bound to nested maps and
+ * lists first. {@link #readRecords} hands out one record at a time together with its JSON path,
+ * so a large dump of homogeneous records is never held in memory as a whole; {@link #readSegments}
+ * does the same for the document's plain text. Files ending in {@code .ndjson} or {@code .jsonl}
+ * are read as newline-delimited JSON, one record per value.
  */
 @Component
 public class JsonDocumentReader implements DocumentReader {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(JsonDocumentReader.class);
-    private final ObjectMapper objectMapper;
-    
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Receives one record with its JSON path.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(String jsonPath, String text) throws Exception;
+    }
+
     public JsonDocumentReader() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        this.jsonFactory = new JsonFactory();
     }
-    
+
     @Override
     public String extractText(InputStream inputStream, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegments(inputStream, filename, segment -> content.append(segment.text()));
+        return content.toString();
+    }
+
+    /**
+     * Hands out the text one top-level member at a time, with its path as {@code json_path} hint:
+     * the elements of a top-level array, the fields of a top-level object, or the values of a
+     * newline-delimited file.
+     */
+    @Override
+    public void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.debug("Starting JSON text extraction for: {}", filename);
-        
-        try (InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-            // Parse JSON into a generic object structure
-            Object jsonObject = objectMapper.readValue(reader, Object.class);
-            logger.trace("Parsed JSON object type: {}", jsonObject.getClass().getSimpleName());
-            
-            // Convert to human-readable format
-            String formattedJson = convertToReadableText(jsonObject, 0);
-            
-            if (formattedJson == null || formattedJson.trim().isEmpty()) {
+
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            SegmentWriter writer = new SegmentWriter(consumer);
+            int values = 0;
+            boolean lines = isNewlineDelimited(filename);
+            while (parser.nextToken() != null) {
+                if (lines) {
+                    if (values > 0) {
+                        writer.content.append("\n");
+                    }
+                    appendValue(parser, writer.content, 0);
+                    writer.flush("$[" + values + "]");
+                } else {
+                    writeMembers(parser, writer);
+                }
+                values++;
+                if (!lines) {
+                    // Like data binding, a .json file is one value; anything after it is ignored
+                    break;
+                }
+            }
+
+            if (writer.textChars == 0) {
                 throw new IllegalArgumentException("JSON file contains no data");
             }
-            
+
             long extractionTime = System.currentTimeMillis() - startTime;
-            int objectCount = countObjects(jsonObject);
-            logger.info("JSON extraction completed for '{}': extracted {} chars from {} objects in {}ms", 
-                filename, formattedJson.length(), objectCount, extractionTime);
-            
-            return formattedJson;
+            logger.info("JSON extraction completed for '{}': extracted {} chars from {} top-level values in {}ms",
+                filename, writer.chars, values, extractionTime);
         } catch (Exception e) {
             long extractionTime = System.currentTimeMillis() - startTime;
-            logger.error("JSON extraction failed for '{}' after {}ms: {}", 
+            logger.error("JSON extraction failed for '{}' after {}ms: {}",
                 filename, extractionTime, e.getMessage());
             throw e;
         }
     }
-    
-    private int countObjects(Object obj) {
-        if (obj instanceof java.util.Map) {
-            return ((java.util.Map<?, ?>) obj).size();
-        } else if (obj instanceof java.util.List) {
-            return ((java.util.List<?>) obj).size();
+
+    /**
+     * Renders the root value like {@link #appendValue}, but passes on each of its members separately.
+     */
+    private static void writeMembers(JsonParser parser, SegmentWriter writer) throws Exception {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                writer.content.append(name).append(": ");
+                parser.nextToken();
+                appendMember(parser, writer.content, 0);
+                writer.flush("$." + name);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                writer.content.append("- ");
+                appendMember(parser, writer.content, 0);
+                writer.flush("$[" + index++ + "]");
+            }
+        } else {
+            writer.content.append(scalarText(parser));
+            writer.flush("$");
         }
-        return 1;
     }
-    
-    private String convertToReadableText(Object obj, int indentLevel) {
-        if (obj == null) {
-            return "null";
+
+    /**
+     * Reads the document record by record, rendering each in the same format as {@link #extractText}.
+     * <ul>
+     *   <li>a top-level array yields its elements, {@code $[0]}, {@code $[1]}, ...</li>
+     *   <li>the elements of an array-valued field of a top-level object are records of their own,
+     *       {@code $.items[0]}, ...; each of the object's other fields is a record at {@code $}</li>
+     *   <li>newline-delimited JSON yields its values as if they were elements of one array</li>
+     * </ul>
+     * Empty records are skipped. Records are passed on whole; the chunking service joins small ones
+     * with the same path and splits large ones.
+     *
+     * @return the number of records read
+     */
+    public int readRecords(InputStream inputStream, String filename, RecordConsumer consumer) throws Exception {
+        long startTime = System.currentTimeMillis();
+        logger.debug("Starting streaming JSON extraction for: {}", filename);
+
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            RecordWriter writer = new RecordWriter(consumer);
+            if (isNewlineDelimited(filename)) {
+                int index = 0;
+                while (parser.nextToken() != null) {
+                    writer.writeValue(parser, "$[" + index++ + "]");
+                }
+            } else {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY) {
+                    writer.writeElements(parser, "$");
+                } else if (token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        if (parser.nextToken() == JsonToken.START_ARRAY) {
+                            writer.writeElements(parser, "$." + name);
+                        } else {
+                            writer.writeField(parser, name);
+                        }
+                    }
+                } else if (token != null) {
+                    writer.writeValue(parser, "$");
+                }
+            }
+
+            if (writer.records == 0) {
+                throw new IllegalArgumentException("JSON file contains no data");
+            }
+
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.info("JSON extraction completed for '{}': {} records in {}ms",
+                filename, writer.records, extractionTime);
+
+            return writer.records;
+        } catch (Exception e) {
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.error("JSON extraction failed for '{}' after {}ms: {}",
+                filename, extractionTime, e.getMessage());
+            throw e;
         }
-        
+    }
+
+    private static boolean isNewlineDelimited(String filename) {
+        String lower = filename == null ? "" : filename.toLowerCase();
+        return lower.endsWith(".ndjson") || lower.endsWith(".jsonl");
+    }
+
+    /**
+     * Appends the value at the current token: objects as indented "key: value" lines, arrays as
+     * "- item" lines and scalars as their text. Leaves the parser on the value's last token.
+     */
+    private static void appendValue(JsonParser parser, StringBuilder content, int indentLevel) throws IOException {
+        JsonToken token = parser.currentToken();
         String indent = "  ".repeat(indentLevel);
-        StringBuilder content = new StringBuilder();
-        
-        if (obj instanceof java.util.Map) {
-            @SuppressWarnings("unchecked")
-            java.util.Map<String, Object> map = (java.util.Map<String, Object>) obj;
-            
-            for (java.util.Map.Entry<String, Object> entry : map.entrySet()) {
-                content.append(indent).append(entry.getKey()).append(": ");
-                
-                Object value = entry.getValue();
-                if (value instanceof java.util.Map || value instanceof java.util.List) {
-                    content.append("\n");
-                    content.append(convertToReadableText(value, indentLevel + 1));
-                } else {
-                    content.append(convertToReadableText(value, 0)).append("\n");
-                }
+
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                content.append(indent).append(parser.currentName()).append(": ");
+                parser.nextToken();
+                appendMember(parser, content, indentLevel);
             }
-        } else if (obj instanceof java.util.List) {
-            @SuppressWarnings("unchecked")
-            java.util.List<Object> list = (java.util.List<Object>) obj;
-            
-            for (int i = 0; i < list.size(); i++) {
+        } else if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
                 content.append(indent).append("- ");
-                Object item = list.get(i);
-                
-                if (item instanceof java.util.Map || item instanceof java.util.List) {
-                    content.append("\n");
-                    content.append(convertToReadableText(item, indentLevel + 1));
-                } else {
-                    content.append(convertToReadableText(item, 0)).append("\n");
-                }
+                appendMember(parser, content, indentLevel);
             }
         } else {
-            return obj.toString();
+            content.append(scalarText(parser));
+        }
+    }
+
+    private static void appendMember(JsonParser parser, StringBuilder content, int indentLevel) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            content.append("\n");
+            appendValue(parser, content, indentLevel + 1);
+        } else {
+            content.append(scalarText(parser)).append("\n");
+        }
+    }
+
+    private static String scalarText(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT -> parser.getNumberValue().toString();
+            case VALUE_NUMBER_FLOAT -> String.valueOf(parser.getDoubleValue());
+            case VALUE_NULL -> "null";
+            default -> parser.getText();
+        };
+    }
+
+    /**
+     * Passes on the rendered text of one member at a time.
+     */
+    private static final class SegmentWriter {
+
+        private final SegmentConsumer consumer;
+        private final StringBuilder content = new StringBuilder();
+        private long chars;
+        private long textChars;
+
+        private SegmentWriter(SegmentConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void flush(String path) throws Exception {
+            String text = content.toString();
+            content.setLength(0);
+            chars += text.length();
+            textChars += text.trim().length();
+            consumer.accept(TextSegment.of(text, "json_path", path));
+        }
+    }
+
+    /**
+     * Renders records into one reused buffer and passes them on.
+     */
+    private static final class RecordWriter {
+
+        private final RecordConsumer consumer;
+        private final StringBuilder buffer = new StringBuilder();
+        private int records;
+
+        private RecordWriter(RecordConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        void writeElements(JsonParser parser, String path) throws Exception {
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                writeValue(parser, path + "[" + index++ + "]");
+            }
+        }
+
+        void writeValue(JsonParser parser, String path) throws Exception {
+            appendValue(parser, buffer, 0);
+            flush(path);
+        }
+
+        void writeField(JsonParser parser, String name) throws Exception {
+            buffer.append(name).append(": ");
+            appendMember(parser, buffer, 0);
+            flush("$");
+        }
+
+        private void flush(String path) throws Exception {
+            String text = buffer.toString().trim();
+            buffer.setLength(0);
+            if (text.isEmpty()) {
+                return;
+            }
+            records++;
+            consumer.accept(path, text);
         }
-        
-        return content.toString();
     }
 }
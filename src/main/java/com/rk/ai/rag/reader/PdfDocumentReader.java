@@ -1,53 +1,179 @@
 package com.rk.ai.rag.reader;
 
+import jakarta.annotation.PreDestroy;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Reader for extracting text from PDF documents using Apache PDFBox.
+ * <p>
+ * The PDF is read from a file with PDFBox's mixed memory setting, so only a bounded part of it is
+ * buffered on the heap and the rest goes to temp files. Large documents are split into page ranges
+ * that are extracted in parallel on a shared fork-join pool; since a {@link PDDocument} is not
+ * thread-safe, every range opens its own document and stripper on the same file. Pages are
+ * handed out as segments in page order while later ranges are still being extracted. When the
+ * extraction fails or the consumer throws, the ranges still running stop at their next page.
  */
 @Component
 public class PdfDocumentReader implements DocumentReader {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(PdfDocumentReader.class);
-    
+
+    // Heap buffer per open document before PDFBox spills to temp files
+    private static final long MAX_MAIN_MEMORY_BYTES = 16 * 1024 * 1024;
+
+    // Smaller documents are not worth opening more than once
+    private static final int MIN_PAGES_PER_RANGE = 16;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     @Override
     public String extractText(InputStream inputStream, String filename) throws Exception {
+        Path spoolFile = Files.createTempFile("pdf-", ".spool");
+        try {
+            Files.copy(inputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            return extractTextFromFile(spoolFile, filename);
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    /**
+     * Extracts the text of a PDF that is already on disk, without copying it.
+     */
+    public String extractTextFromFile(Path file, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegmentsFromFile(file, filename, segment -> content.append(segment.text()));
+        return content.toString().trim();
+    }
+
+    @Override
+    public void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
+        Path spoolFile = Files.createTempFile("pdf-", ".spool");
+        try {
+            Files.copy(inputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            readSegmentsFromFile(spoolFile, filename, consumer);
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    /**
+     * Hands out the text of every page, in page order, as one segment with a {@code page} hint.
+     * Pages of the first range are passed on as they are stripped; a later range is passed on as
+     * soon as it and every range before it are done, while the ranges after it are still running.
+     */
+    public void readSegmentsFromFile(Path file, String filename, SegmentConsumer consumer) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.debug("Starting PDF text extraction for: {}", filename);
-        
-        try {
-            byte[] pdfBytes = inputStream.readAllBytes();
-            logger.trace("Read {} bytes from PDF file", pdfBytes.length);
-            
-            try (PDDocument document = Loader.loadPDF(pdfBytes)) {
-                int pageCount = document.getNumberOfPages();
-                logger.trace("PDF has {} pages", pageCount);
-                
-                PDFTextStripper stripper = new PDFTextStripper();
-                String text = stripper.getText(document);
-                
-                if (text == null || text.trim().isEmpty()) {
-                    throw new IllegalArgumentException("PDF contains no extractable text");
+
+        List<ForkJoinTask<List<String>>> tasks = new ArrayList<>();
+        // Fork-join tasks are not interrupted by cancel(true), so running ranges poll this between pages
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try (PDDocument document = load(file)) {
+            int pageCount = document.getNumberOfPages();
+            int ranges = Math.max(1, Math.min(pool.getParallelism(), pageCount / MIN_PAGES_PER_RANGE));
+            logger.trace("PDF '{}' has {} pages, extracting in {} ranges", filename, pageCount, ranges);
+
+            int pagesPerRange = (pageCount + ranges - 1) / Math.max(1, ranges);
+            for (int first = pagesPerRange + 1; first <= pageCount; first += pagesPerRange) {
+                int from = first;
+                int to = Math.min(first + pagesPerRange - 1, pageCount);
+                tasks.add(pool.submit(() -> {
+                    try (PDDocument rangeDocument = load(file)) {
+                        return stripPages(rangeDocument, from, to, cancelled);
+                    }
+                }));
+            }
+
+            // The first range reuses the document opened for the page count, on the calling thread
+            PDFTextStripper stripper = new PDFTextStripper();
+            int page = 1;
+            long chars = 0;
+            boolean hasText = false;
+            for (; page <= Math.min(pagesPerRange, pageCount); page++) {
+                String text = stripPage(stripper, document, page);
+                chars += text.length();
+                hasText |= !text.trim().isEmpty();
+                consumer.accept(TextSegment.of(text, "page", page));
+            }
+            for (ForkJoinTask<List<String>> task : tasks) {
+                List<String> pages;
+                try {
+                    pages = task.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+                for (String text : pages) {
+                    chars += text.length();
+                    hasText |= !text.trim().isEmpty();
+                    consumer.accept(TextSegment.of(text, "page", page++));
                 }
-                
-                long extractionTime = System.currentTimeMillis() - startTime;
-                logger.info("PDF extraction completed for '{}': extracted {} chars from {} pages in {}ms", 
-                    filename, text.trim().length(), pageCount, extractionTime);
-                
-                return text.trim();
             }
+
+            if (!hasText) {
+                throw new IllegalArgumentException("PDF contains no extractable text");
+            }
+
+            long extractionTime = System.currentTimeMillis() - startTime;
+            logger.info("PDF extraction completed for '{}': extracted {} chars from {} pages in {}ms",
+                filename, chars, pageCount, extractionTime);
         } catch (Exception e) {
+            cancelled.set(true);
+            tasks.forEach(pending -> pending.cancel(false));
             long extractionTime = System.currentTimeMillis() - startTime;
-            logger.error("PDF extraction failed for '{}' after {}ms: {}", 
+            logger.error("PDF extraction failed for '{}' after {}ms: {}",
                 filename, extractionTime, e.getMessage());
             throw e;
+        } finally {
+            // Also stops the ranges when the consumer failed with an error
+            cancelled.set(true);
+        }
+    }
+
+    private static PDDocument load(Path file) throws IOException {
+        return Loader.loadPDF(file.toFile(), MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES).streamCache);
+    }
+
+    private static List<String> stripPages(PDDocument document, int from, int to, AtomicBoolean cancelled)
+            throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        List<String> pages = new ArrayList<>(to - from + 1);
+        for (int page = from; page <= to; page++) {
+            if (cancelled.get()) {
+                throw new CancellationException("Extraction of pages " + from + "-" + to + " cancelled at page " + page);
+            }
+            pages.add(stripPage(stripper, document, page));
         }
+        return pages;
+    }
+
+    private static String stripPage(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
     }
 }
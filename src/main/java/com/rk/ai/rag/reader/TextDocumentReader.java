@@ -5,42 +5,279 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Reader for extracting text from plain text and markdown documents (.txt, .md, .markdown).
+ * <p>
+ * The file is decoded window by window into one reusable char buffer and handed out in segments
+ * of whole lines, so memory use depends on the segment size rather than the file size. Files on
+ * disk are memory-mapped instead of being copied through a stream. In markdown files every heading
+ * starts a new segment, which carries the heading's text as hint.
  */
 @Component
 public class TextDocumentReader implements DocumentReader {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(TextDocumentReader.class);
-    
+
+    // Segments are cut at the first line break after this many characters
+    private static final int SEGMENT_CHARS = 8192;
+
+    // Bytes read or mapped at a time
+    private static final int READ_BYTES = 64 * 1024;
+    private static final long MAP_BYTES = 64L * 1024 * 1024;
+
     @Override
     public String extractText(InputStream inputStream, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegments(inputStream, filename, segment -> content.append(segment.text()));
+        return content.toString().trim();
+    }
+
+    @Override
+    public void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
+        read(filename, consumer, decoder -> {
+            ReadableByteChannel channel = Channels.newChannel(inputStream);
+            ByteBuffer bytes = ByteBuffer.allocate(READ_BYTES);
+            while (channel.read(bytes) != -1) {
+                bytes.flip();
+                decoder.decode(bytes, false);
+                bytes.compact();
+            }
+            bytes.flip();
+            decoder.decode(bytes, true);
+        });
+    }
+
+    /**
+     * Reads a file that is already on disk by mapping it window by window, without copying it
+     * onto the heap first.
+     */
+    public void readSegmentsFromFile(Path file, String filename, SegmentConsumer consumer) throws Exception {
+        read(filename, consumer, decoder -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long position = 0;
+                do {
+                    long length = Math.min(MAP_BYTES, size - position);
+                    ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    boolean last = position + length == size;
+                    decoder.decode(window, last);
+                    // A character split by the window's end is decoded again from the next window
+                    position += window.position();
+                    if (!last && window.position() == 0) {
+                        throw new IllegalStateException("Cannot decode " + filename + " at byte " + position);
+                    }
+                } while (position < size);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ByteSource {
+        void readInto(SegmentDecoder decoder) throws Exception;
+    }
+
+    private void read(String filename, SegmentConsumer consumer, ByteSource source) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.debug("Starting text/markdown extraction for: {}", filename);
-        
+
         try {
-            byte[] bytes = inputStream.readAllBytes();
-            logger.trace("Read {} bytes from text file", bytes.length);
-            
-            String content = new String(bytes, StandardCharsets.UTF_8);
-            
-            if (content.trim().isEmpty()) {
+            LineWriter writer = new LineWriter(consumer, isMarkdown(filename));
+            SegmentDecoder decoder = new SegmentDecoder(writer);
+            source.readInto(decoder);
+            decoder.finish();
+            writer.finish();
+
+            if (!writer.hasText) {
                 throw new IllegalArgumentException("File content is empty or contains only whitespace");
             }
-            
+
             long extractionTime = System.currentTimeMillis() - startTime;
-            int lineCount = content.split("\n").length;
-            logger.info("Text extraction completed for '{}': extracted {} chars, {} lines in {}ms", 
-                filename, content.trim().length(), lineCount, extractionTime);
-            
-            return content.trim();
+            logger.info("Text extraction completed for '{}': extracted {} chars, {} lines in {}ms",
+                filename, writer.chars, writer.lines, extractionTime);
         } catch (Exception e) {
             long extractionTime = System.currentTimeMillis() - startTime;
-            logger.error("Text extraction failed for '{}' after {}ms: {}", 
+            logger.error("Text extraction failed for '{}' after {}ms: {}",
                 filename, extractionTime, e.getMessage());
             throw e;
         }
     }
+
+    private static boolean isMarkdown(String filename) {
+        String lower = filename == null ? "" : filename.toLowerCase();
+        return lower.endsWith(".md") || lower.endsWith(".markdown");
+    }
+
+    /**
+     * Decodes UTF-8 into one reusable char buffer and passes each filled buffer to the line writer.
+     * Malformed input is replaced, as {@link java.io.InputStreamReader} does.
+     */
+    private static final class SegmentDecoder {
+
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(SEGMENT_CHARS);
+        private final LineWriter writer;
+
+        private SegmentDecoder(LineWriter writer) {
+            this.writer = writer;
+        }
+
+        void decode(ByteBuffer bytes, boolean endOfInput) throws Exception {
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, endOfInput);
+                drain();
+            } while (result.isOverflow());
+        }
+
+        void finish() throws Exception {
+            while (decoder.flush(chars).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void drain() throws Exception {
+            chars.flip();
+            writer.append(chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+            chars.clear();
+        }
+    }
+
+    /**
+     * Collects lines into segments. Complete lines are copied straight from the decode buffer; only
+     * a line split by the buffer's end is carried over. A line longer than a segment is cut.
+     */
+    private static final class LineWriter {
+
+        private final SegmentConsumer consumer;
+        private final boolean markdown;
+        private final StringBuilder partialLine = new StringBuilder();
+        private final StringBuilder segment = new StringBuilder();
+        private String heading;
+        private boolean inCodeBlock;
+        // Set after a line was cut, so its remainder is not mistaken for the start of a line
+        private boolean continuedLine;
+        private boolean hasText;
+        private long chars;
+        private int lines;
+        private CharBuffer view;
+
+        private LineWriter(SegmentConsumer consumer, boolean markdown) {
+            this.consumer = consumer;
+            this.markdown = markdown;
+        }
+
+        void append(char[] buffer, int start, int end) throws Exception {
+            chars += end - start;
+            int lineStart = start;
+            for (int i = start; i < end; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    endLine(buffer, lineStart, i + 1);
+                    lineStart = i + 1;
+                    continue;
+                }
+                if (c > ' ') {
+                    hasText = true;
+                }
+                // Cut at a fixed line length, independent of buffer boundaries, and never inside a surrogate pair
+                if (partialLine.length() + i + 1 - lineStart >= SEGMENT_CHARS && !Character.isHighSurrogate(c)) {
+                    partialLine.append(buffer, lineStart, i + 1 - lineStart);
+                    segment.append(partialLine);
+                    partialLine.setLength(0);
+                    lineStart = i + 1;
+                    continuedLine = true;
+                    flush();
+                }
+            }
+            partialLine.append(buffer, lineStart, end - lineStart);
+        }
+
+        void finish() throws Exception {
+            if (!partialLine.isEmpty()) {
+                char[] rest = new char[partialLine.length()];
+                partialLine.getChars(0, rest.length, rest, 0);
+                partialLine.setLength(0);
+                endLine(rest, 0, rest.length);
+            } else if (continuedLine) {
+                lines++;
+            }
+            flush();
+        }
+
+        private void endLine(char[] buffer, int start, int end) throws Exception {
+            lines++;
+            boolean lineStart = !continuedLine;
+            continuedLine = false;
+            if (!partialLine.isEmpty()) {
+                partialLine.append(buffer, start, end - start);
+                if (markdown && lineStart) {
+                    checkMarkdown(partialLine, 0, partialLine.length());
+                }
+                segment.append(partialLine);
+                partialLine.setLength(0);
+            } else {
+                if (markdown && lineStart) {
+                    checkMarkdown(view(buffer), start, end);
+                }
+                segment.append(buffer, start, end - start);
+            }
+            if (segment.length() >= SEGMENT_CHARS) {
+                flush();
+            }
+        }
+
+        // The decode buffer is the same array every time, so one wrapper serves all its lines
+        private CharBuffer view(char[] buffer) {
+            if (view == null || view.array() != buffer) {
+                view = CharBuffer.wrap(buffer);
+            }
+            return view;
+        }
+
+        /**
+         * Tracks code fences and starts a new segment at a heading. Only lines that start with
+         * {@code #} are turned into strings.
+         */
+        private void checkMarkdown(CharSequence line, int start, int end) throws Exception {
+            int first = start;
+            while (first < end && line.charAt(first) <= ' ') {
+                first++;
+            }
+            if (end - first >= 3 && line.charAt(first) == '`' && line.charAt(first + 1) == '`'
+                    && line.charAt(first + 2) == '`') {
+                inCodeBlock = !inCodeBlock;
+            } else if (!inCodeBlock && first < end && line.charAt(first) == '#') {
+                String trimmed = line.subSequence(start, end).toString().trim();
+                String title = trimmed.replaceFirst("^#{1,6}\\s+", "");
+                if (!title.equals(trimmed)) {
+                    flush();
+                    heading = title.replaceFirst("\\s+#+$", "").trim();
+                }
+            }
+        }
+
+        private void flush() throws Exception {
+            if (segment.isEmpty()) {
+                return;
+            }
+            String text = segment.toString();
+            segment.setLength(0);
+            consumer.accept(heading == null ? TextSegment.of(text) : TextSegment.of(text, "heading", heading));
+        }
+    }
 }
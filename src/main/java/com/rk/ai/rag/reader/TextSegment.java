@@ -0,0 +1,28 @@
+package com.rk.ai.rag.reader;
+
+import java.util.Map;
+
+/**
+ * A piece of a document's text in reading order, with hints about where it comes from.
+ * <p>
+ * Hints are small structural facts such as {@code page}, {@code sheet}, {@code row},
+ * {@code heading} or {@code json_path}. They end up in the metadata of the chunks that start
+ * inside the segment.
+ *
+ * @param text  the segment's text, including the separators that link it to its neighbours
+ * @param hints structural hints, possibly empty
+ */
+public record TextSegment(String text, Map<String, Object> hints) {
+
+    public TextSegment {
+        hints = Map.copyOf(hints);
+    }
+
+    public static TextSegment of(String text) {
+        return new TextSegment(text, Map.of());
+    }
+
+    public static TextSegment of(String text, String hint, Object value) {
+        return new TextSegment(text, Map.of(hint, value));
+    }
+}
@@ -15,32 +15,45 @@ import java.io.InputStream;
 
 /**
  * Reader for extracting text from Word documents (.doc, .docx) using Apache POI.
+ * <p>
+ * A {@code .docx} document is handed out section by section: a paragraph styled as a heading starts
+ * a new segment, which carries the heading's text as hint. A {@code .doc} document is one segment.
  */
 @Component
 public class WordDocumentReader implements DocumentReader {
     
     private static final Logger logger = LoggerFactory.getLogger(WordDocumentReader.class);
     
+    // Long sections are passed on in pieces of about this many characters
+    private static final int MAX_SEGMENT_CHARS = 8192;
+    
     @Override
     public String extractText(InputStream inputStream, String filename) throws Exception {
+        StringBuilder content = new StringBuilder();
+        readSegments(inputStream, filename, segment -> content.append(segment.text()));
+        return content.toString().trim();
+    }
+    
+    @Override
+    public void readSegments(InputStream inputStream, String filename, SegmentConsumer consumer) throws Exception {
         long startTime = System.currentTimeMillis();
         logger.debug("Starting Word document text extraction for: {}", filename);
         
         try {
-            String text;
+            long chars;
             if (filename.toLowerCase().endsWith(".docx")) {
-                text = extractFromDocx(inputStream);
+                chars = readDocx(inputStream, consumer);
             } else if (filename.toLowerCase().endsWith(".doc")) {
-                text = extractFromDoc(inputStream);
+                String text = extractFromDoc(inputStream);
+                consumer.accept(TextSegment.of(text));
+                chars = text.length();
             } else {
                 throw new IllegalArgumentException("Unsupported Word document format: " + filename);
             }
             
             long extractionTime = System.currentTimeMillis() - startTime;
             logger.info("Word extraction completed for '{}': extracted {} chars in {}ms", 
-                filename, text.length(), extractionTime);
-            
-            return text;
+                filename, chars, extractionTime);
         } catch (Exception e) {
             long extractionTime = System.currentTimeMillis() - startTime;
             logger.error("Word extraction failed for '{}' after {}ms: {}", 
@@ -49,10 +62,15 @@ public class WordDocumentReader implements DocumentReader {
         }
     }
     
-    private String extractFromDocx(InputStream inputStream) throws Exception {
+    /**
+     * Paragraphs first, then tables, each table surrounded by blank lines.
+     *
+     * @return the number of characters read, not counting whitespace around each segment
+     */
+    private long readDocx(InputStream inputStream, SegmentConsumer consumer) throws Exception {
         logger.trace("Extracting text from .docx format");
         try (XWPFDocument document = new XWPFDocument(inputStream)) {
-            StringBuilder content = new StringBuilder();
+            SectionWriter writer = new SectionWriter(consumer);
             
             // Extract paragraphs
             int paragraphCount = 0;
@@ -60,7 +78,11 @@ public class WordDocumentReader implements DocumentReader {
                 paragraphCount++;
                 String text = paragraph.getText();
                 if (text != null && !text.trim().isEmpty()) {
-                    content.append(text).append("\n");
+                    if (isHeading(paragraph)) {
+                        writer.startSection(text.trim());
+                    }
+                    writer.append(text).append("\n");
+                    writer.flushIfFull();
                 }
             }
             
@@ -70,30 +92,36 @@ public class WordDocumentReader implements DocumentReader {
             int tableCount = 0;
             for (XWPFTable table : document.getTables()) {
                 tableCount++;
-                content.append("\n");
+                writer.append("\n");
                 for (XWPFTableRow row : table.getRows()) {
                     for (XWPFTableCell cell : row.getTableCells()) {
                         String cellText = cell.getText();
                         if (cellText != null && !cellText.trim().isEmpty()) {
-                            content.append(cellText).append("\t");
+                            writer.append(cellText).append("\t");
                         }
                     }
-                    content.append("\n");
+                    writer.append("\n");
+                    writer.flushIfFull();
                 }
-                content.append("\n");
+                writer.append("\n");
             }
+            writer.flush();
             
             logger.trace("Extracted {} tables from .docx", tableCount);
             
-            String text = content.toString().trim();
-            if (text.isEmpty()) {
+            if (writer.textChars == 0) {
                 throw new IllegalArgumentException("Word document contains no text");
             }
             
-            return text;
+            return writer.textChars;
         }
     }
     
+    private static boolean isHeading(XWPFParagraph paragraph) {
+        String style = paragraph.getStyle();
+        return style != null && (style.startsWith("Heading") || style.equals("Title"));
+    }
+    
     private String extractFromDoc(InputStream inputStream) throws Exception {
         logger.trace("Extracting text from .doc format");
         try (HWPFDocument document = new HWPFDocument(inputStream);
@@ -109,4 +137,45 @@ public class WordDocumentReader implements DocumentReader {
             return text;
         }
     }
+    
+    /**
+     * Collects the text of the current section and passes it on when the next heading starts or
+     * when it grows past {@link #MAX_SEGMENT_CHARS}.
+     */
+    private static final class SectionWriter {
+        
+        private final SegmentConsumer consumer;
+        private final StringBuilder buffer = new StringBuilder();
+        private String heading;
+        private long textChars;
+        
+        private SectionWriter(SegmentConsumer consumer) {
+            this.consumer = consumer;
+        }
+        
+        StringBuilder append(String text) {
+            return buffer.append(text);
+        }
+        
+        void startSection(String heading) throws Exception {
+            flush();
+            this.heading = heading;
+        }
+        
+        void flushIfFull() throws Exception {
+            if (buffer.length() >= MAX_SEGMENT_CHARS) {
+                flush();
+            }
+        }
+        
+        void flush() throws Exception {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            String text = buffer.toString();
+            buffer.setLength(0);
+            textChars += text.trim().length();
+            consumer.accept(heading == null ? TextSegment.of(text) : TextSegment.of(text, "heading", heading));
+        }
+    }
 }
@@ -0,0 +1,153 @@
+package com.rk.ai.rag.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * JDBC access to the {@code chunk_fingerprint} table, which holds the SimHash fingerprint of every
+ * stored chunk and, for each near-duplicate chunk that was not stored, the chunk it is linked to.
+ */
+@Repository
+public class ChunkFingerprintRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * One row of the table.
+     *
+     * @param chunkId          the chunk's ID
+     * @param sourceDocumentId the document the chunk belongs to
+     * @param fingerprint      the chunk's SimHash
+     * @param duplicateOf      ID of the stored chunk that represents this one, {@code null} for stored chunks
+     */
+    public record Fingerprint(String chunkId, String sourceDocumentId, long fingerprint, String duplicateOf) {
+    }
+
+    public ChunkFingerprintRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Streams the fingerprints of all stored chunks, without the linked duplicates.
+     */
+    public void forEachStored(Consumer<Fingerprint> consumer) {
+        jdbcTemplate.query(
+            "SELECT chunk_id::text, source_document_id, fingerprint FROM chunk_fingerprint WHERE duplicate_of IS NULL",
+            rs -> {
+                consumer.accept(new Fingerprint(rs.getString(1), rs.getString(2), rs.getLong(3), null));
+            });
+    }
+
+    /**
+     * Writes fingerprints in one batch, replacing rows with the same chunk ID.
+     */
+    public void saveAll(List<Fingerprint> fingerprints) {
+        if (fingerprints.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(fingerprints.size());
+        for (Fingerprint row : fingerprints) {
+            rows.add(new Object[]{UUID.fromString(row.chunkId()), row.sourceDocumentId(), row.fingerprint(),
+                row.duplicateOf() == null ? null : UUID.fromString(row.duplicateOf())});
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO chunk_fingerprint (chunk_id, source_document_id, fingerprint, duplicate_of) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT (chunk_id) DO UPDATE SET source_document_id = EXCLUDED.source_document_id, "
+                + "fingerprint = EXCLUDED.fingerprint, duplicate_of = EXCLUDED.duplicate_of",
+            rows);
+    }
+
+    /**
+     * Deletes the fingerprints and links of a document, except the given chunks.
+     *
+     * @return the IDs of the deleted stored chunks
+     */
+    public List<String> deleteChunksExcept(String sourceDocumentId, Collection<String> keepIds) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM chunk_fingerprint"
+                + " WHERE source_document_id = ? AND NOT (chunk_id = ANY(?))"
+                + " RETURNING chunk_id::text, duplicate_of IS NULL");
+            ps.setString(1, sourceDocumentId);
+            ps.setArray(2, con.createArrayOf("uuid", keepIds.stream().map(UUID::fromString).toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getBoolean(2) ? rs.getString(1) : null).stream().filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Deletes the fingerprints and links of documents that have no registry entry.
+     *
+     * @param excludedDocumentIds documents being ingested, whose fingerprints are stored before their registry entry
+     * @return the IDs of the affected documents
+     */
+    public List<String> deleteUnregistered(Collection<String> excludedDocumentIds) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("WITH deleted AS (DELETE FROM chunk_fingerprint f"
+                + " WHERE NOT (f.source_document_id = ANY(?)) AND NOT EXISTS"
+                + " (SELECT 1 FROM document_registry r WHERE r.document_id::text = f.source_document_id)"
+                + " RETURNING source_document_id) SELECT DISTINCT source_document_id FROM deleted");
+            ps.setArray(1, con.createArrayOf("text", excludedDocumentIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+
+    /**
+     * Links of other documents to the stored chunks of a document, except the given chunks, ordered by
+     * the chunk they are linked to and then by their own ID.
+     */
+    public List<Fingerprint> findLinksTo(String sourceDocumentId, Collection<String> exceptIds) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT l.chunk_id::text, l.source_document_id, l.fingerprint,"
+                + " l.duplicate_of::text FROM chunk_fingerprint l JOIN chunk_fingerprint s ON s.chunk_id = l.duplicate_of"
+                + " WHERE s.source_document_id = ? AND s.duplicate_of IS NULL AND NOT (s.chunk_id = ANY(?))"
+                + " AND l.source_document_id <> ? ORDER BY l.duplicate_of, l.chunk_id");
+            ps.setString(1, sourceDocumentId);
+            ps.setArray(2, con.createArrayOf("uuid", exceptIds.stream().map(UUID::fromString).toArray()));
+            ps.setString(3, sourceDocumentId);
+            return ps;
+        }, (rs, rowNum) -> new Fingerprint(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getString(4)));
+    }
+
+    /**
+     * Turns linked chunks into stored chunks in place of the chunks they were linked to, and points
+     * the other links of those chunks to them.
+     *
+     * @param heirs ID of the linked chunk that takes over, by ID of the chunk it replaces
+     */
+    public void promote(Map<String, String> heirs) {
+        if (heirs.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(heirs.size());
+        heirs.forEach((chunkId, heirId) ->
+            rows.add(new Object[]{UUID.fromString(heirId), UUID.fromString(heirId), UUID.fromString(chunkId)}));
+        jdbcTemplate.batchUpdate("UPDATE chunk_fingerprint"
+            + " SET duplicate_of = CASE WHEN chunk_id = ? THEN NULL ELSE CAST(? AS uuid) END WHERE duplicate_of = ?", rows);
+    }
+
+    /**
+     * Documents other than {@code exceptDocumentId} with chunks linked to one of the given chunks.
+     */
+    public List<String> findDocumentsLinkedTo(Collection<String> chunkIds, String exceptDocumentId) {
+        if (chunkIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT DISTINCT source_document_id FROM chunk_fingerprint"
+                + " WHERE duplicate_of = ANY(?) AND source_document_id <> ?");
+            ps.setArray(1, con.createArrayOf("uuid", chunkIds.stream().map(UUID::fromString).toArray()));
+            ps.setString(2, exceptDocumentId);
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+}
@@ -4,6 +4,8 @@ import com.rk.ai.rag.model.DocumentRegistry;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,7 +14,8 @@ import java.util.UUID;
  * Provides CRUD operations and custom queries for document tracking.
  */
 @Repository
-public interface DocumentRegistryRepository extends JpaRepository<DocumentRegistry, UUID> {
+public interface DocumentRegistryRepository extends JpaRepository<DocumentRegistry, UUID>, 
+                                                    DocumentRegistryRepositoryCustom {
     
     /**
      * Find a document by filename.
@@ -22,6 +25,21 @@ public interface DocumentRegistryRepository extends JpaRepository<DocumentRegist
      */
     Optional<DocumentRegistry> findByFilename(String filename);
     
+    /**
+     * Find all documents with one of the given filenames in a single query.
+     * 
+     * @param filenames The names of the files
+     * @return The registered documents; unknown filenames are absent
+     */
+    List<DocumentRegistry> findByFilenameIn(Collection<String> filenames);
+    
+    /**
+     * Find all documents ingested from the sync directory.
+     * 
+     * @return Documents with a recorded source modification time
+     */
+    List<DocumentRegistry> findBySourceLastModifiedIsNotNull();
+    
     /**
      * Check if a document with the given filename exists.
      * 
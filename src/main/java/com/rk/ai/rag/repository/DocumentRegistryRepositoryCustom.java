@@ -0,0 +1,20 @@
+package com.rk.ai.rag.repository;
+
+import com.rk.ai.rag.model.DocumentRegistry;
+
+import java.util.Collection;
+
+/**
+ * Bulk operations on the document registry that bypass JPA's row-by-row persistence.
+ */
+public interface DocumentRegistryRepositoryCustom {
+    
+    /**
+     * Inserts or updates the given entries in a single JDBC batch.
+     * Entries whose filename is already registered keep their document ID and upload date;
+     * all other columns are overwritten.
+     * 
+     * @param documents The entries to write
+     */
+    void upsertAll(Collection<DocumentRegistry> documents);
+}
@@ -0,0 +1,58 @@
+package com.rk.ai.rag.repository;
+
+import com.rk.ai.rag.model.DocumentRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link DocumentRegistryRepositoryCustom}, picked up by Spring Data
+ * as the fragment behind {@link DocumentRegistryRepository}.
+ */
+public class DocumentRegistryRepositoryImpl implements DocumentRegistryRepositoryCustom {
+    
+    private static final String UPSERT_SQL = """
+        INSERT INTO document_registry
+            (document_id, filename, content_hash, raw_hash, file_size, content_type, upload_date, last_modified,
+             chunk_count, source_last_modified)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON CONFLICT (filename) DO UPDATE SET
+            content_hash = EXCLUDED.content_hash,
+            raw_hash = EXCLUDED.raw_hash,
+            file_size = EXCLUDED.file_size,
+            content_type = EXCLUDED.content_type,
+            last_modified = EXCLUDED.last_modified,
+            chunk_count = EXCLUDED.chunk_count,
+            source_last_modified = EXCLUDED.source_last_modified
+        """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public DocumentRegistryRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    public void upsertAll(Collection<DocumentRegistry> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(documents.size());
+        for (DocumentRegistry doc : documents) {
+            Timestamp uploadDate = doc.getUploadDate() != null ? Timestamp.valueOf(doc.getUploadDate()) : now;
+            Timestamp sourceLastModified = doc.getSourceLastModified() != null 
+                ? Timestamp.valueOf(doc.getSourceLastModified()) : null;
+            rows.add(new Object[]{
+                doc.getDocumentId(), doc.getFilename(), doc.getContentHash(), doc.getRawHash(),
+                doc.getFileSize(), doc.getContentType(), uploadDate, now, doc.getChunkCount(), sourceLastModified
+            });
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+}
@@ -0,0 +1,63 @@
+package com.rk.ai.rag.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to the {@code embedding_cache} table, which maps a chunk cache key to its embedding.
+ */
+@Repository
+public class EmbeddingCacheRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmbeddingCacheRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Loads the cached embeddings for the given keys in a single query.
+     *
+     * @return the embeddings found, by cache key; missing keys are absent
+     */
+    public Map<String, float[]> findByKeys(Collection<String> keys) {
+        Map<String, float[]> found = new HashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+
+        jdbcTemplate.query(
+            "SELECT cache_key, embedding::text FROM embedding_cache WHERE cache_key = ANY(?)",
+            ps -> {
+                Array keyArray = ps.getConnection().createArrayOf("varchar", keys.toArray());
+                ps.setArray(1, keyArray);
+            },
+            rs -> {
+                found.put(rs.getString(1), PgVectors.parse(rs.getString(2)));
+            });
+        return found;
+    }
+
+    /**
+     * Stores embeddings in one batch. Keys that are already cached are left untouched.
+     */
+    public void saveAll(Map<String, float[]> embeddings) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(embeddings.size());
+        embeddings.forEach((key, vector) -> rows.add(new Object[]{key, PgVectors.toLiteral(vector)}));
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO embedding_cache (cache_key, embedding) VALUES (?, ?::vector) "
+                + "ON CONFLICT (cache_key) DO NOTHING",
+            rows);
+    }
+}
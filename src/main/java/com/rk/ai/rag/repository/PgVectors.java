@@ -0,0 +1,36 @@
+package com.rk.ai.rag.repository;
+
+/**
+ * Conversion between float arrays and pgvector's text representation ({@code [0.1,0.2,...]}).
+ */
+final class PgVectors {
+
+    private PgVectors() {
+    }
+
+    static String toLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    static float[] parse(String literal) {
+        String body = literal.trim();
+        body = body.substring(1, body.length() - 1);
+        if (body.isBlank()) {
+            return new float[0];
+        }
+
+        String[] values = body.split(",");
+        float[] vector = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            vector[i] = Float.parseFloat(values[i].trim());
+        }
+        return vector;
+    }
+}
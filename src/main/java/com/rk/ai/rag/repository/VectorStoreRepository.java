@@ -0,0 +1,244 @@
+package com.rk.ai.rag.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Direct JDBC access to the pgvector table managed by Spring AI's PgVectorStore.
+ * Used where the ingestion path already holds the embeddings, so chunks can be written
+ * without the VectorStore embedding them a second time.
+ */
+@Repository
+public class VectorStoreRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String schemaName;
+    private final String relationName;
+    private final String tableName;
+
+    /**
+     * Result of one orphan sweep batch.
+     *
+     * @param lastId  the highest chunk ID scanned, where the next batch continues; {@code null} once the table is exhausted
+     * @param scanned chunks scanned in this batch
+     * @param deleted orphaned chunks deleted in this batch
+     */
+    public record SweepBatch(String lastId, int scanned, int deleted) {
+    }
+
+    /**
+     * A chunk handed over to another document under a new ID.
+     *
+     * @param chunkId          the chunk's current ID
+     * @param newId            the ID it takes
+     * @param sourceDocumentId the document it moves to
+     */
+    public record Reassignment(String chunkId, String newId, String sourceDocumentId) {
+    }
+
+    public VectorStoreRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schemaName,
+            @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schemaName = schemaName;
+        this.relationName = tableName;
+        this.tableName = schemaName + "." + tableName;
+    }
+
+    /**
+     * Writes chunks with precomputed embeddings in a single JDBC batch.
+     *
+     * @param chunks     the chunk documents
+     * @param embeddings one embedding per chunk, in the same order
+     */
+    public void saveChunks(List<Document> chunks, List<float[]> embeddings) {
+        if (chunks.size() != embeddings.size()) {
+            throw new IllegalArgumentException(String.format(
+                "Got %d embeddings for %d chunks", embeddings.size(), chunks.size()));
+        }
+
+        String sql = "INSERT INTO " + tableName + " (id, content, metadata, embedding) "
+            + "VALUES (?, ?, ?::jsonb, ?::vector) "
+            + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, "
+            + "metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Document chunk = chunks.get(i);
+                ps.setObject(1, UUID.fromString(chunk.getId()));
+                ps.setString(2, chunk.getText());
+                ps.setString(3, toJson(chunk));
+                ps.setString(4, PgVectors.toLiteral(embeddings.get(i)));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunks.size();
+            }
+        });
+    }
+
+    private String toJson(Document chunk) {
+        try {
+            return objectMapper.writeValueAsString(chunk.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Chunk metadata is not serializable: " + chunk.getId(), e);
+        }
+    }
+
+    /**
+     * Loads the ids of a document's stored chunks, grouped by their {@code chunk_hash} metadata.
+     * Chunks written before chunk hashes existed are not returned.
+     */
+    public Map<String, List<String>> findChunkIdsByHash(String sourceDocumentId) {
+        Map<String, List<String>> idsByHash = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT id, metadata->>'chunk_hash' FROM " + tableName
+                + " WHERE metadata->>'source_document_id' = ? AND metadata->>'chunk_hash' IS NOT NULL",
+            rs -> {
+                idsByHash.computeIfAbsent(rs.getString(2), hash -> new ArrayList<>()).add(rs.getString(1));
+            },
+            sourceDocumentId);
+        return idsByHash;
+    }
+
+    /**
+     * Deletes all chunks of a document in one statement, using the index on {@code source_document_id}.
+     *
+     * @return the number of deleted chunks
+     */
+    public int deleteBySourceDocumentId(String sourceDocumentId) {
+        return jdbcTemplate.update(
+            "DELETE FROM " + tableName + " WHERE metadata->>'source_document_id' = ?", sourceDocumentId);
+    }
+
+    /**
+     * Deletes all chunks of a document except the given ones.
+     *
+     * @return the number of deleted chunks
+     */
+    public int deleteChunksExcept(String sourceDocumentId, Collection<String> keepIds) {
+        if (keepIds.isEmpty()) {
+            return deleteBySourceDocumentId(sourceDocumentId);
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM " + tableName
+                + " WHERE metadata->>'source_document_id' = ? AND NOT (id = ANY(?))");
+            ps.setString(1, sourceDocumentId);
+            ps.setArray(2, con.createArrayOf("uuid", keepIds.stream().map(UUID::fromString).toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Moves chunks to other documents under new IDs, keeping their content and embeddings.
+     */
+    public void reassignChunks(List<Reassignment> reassignments) {
+        if (reassignments.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(reassignments.size());
+        for (Reassignment reassignment : reassignments) {
+            rows.add(new Object[]{UUID.fromString(reassignment.newId()), reassignment.sourceDocumentId(),
+                UUID.fromString(reassignment.chunkId())});
+        }
+        jdbcTemplate.batchUpdate("UPDATE " + tableName
+            + " SET id = ?, metadata = jsonb_set(metadata, '{source_document_id}', to_jsonb(?::text)) WHERE id = ?", rows);
+    }
+
+    /**
+     * Rewrites only the metadata of existing chunks, leaving content and embeddings untouched.
+     */
+    public void updateMetadata(List<Document> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(chunks.size());
+        for (Document chunk : chunks) {
+            rows.add(new Object[]{toJson(chunk), UUID.fromString(chunk.getId())});
+        }
+        jdbcTemplate.batchUpdate("UPDATE " + tableName + " SET metadata = ?::jsonb WHERE id = ?", rows);
+    }
+
+    /**
+     * Scans the next {@code batchSize} chunks in ID order after {@code afterId} and deletes those whose
+     * {@code source_document_id} has no registry entry. Walking the primary key keeps every batch a short
+     * index range scan plus an anti-join against the registry, however large the table is.
+     *
+     * @param afterId the {@code lastId} of the previous batch, or {@code null} to start from the beginning
+     * @param excludedDocumentIds documents being ingested, whose chunks are stored before their registry entry
+     */
+    public SweepBatch deleteOrphanedChunks(String afterId, int batchSize, Collection<String> excludedDocumentIds) {
+        String sql = "WITH page AS ("
+            + " SELECT id, metadata->>'source_document_id' AS source_document_id FROM " + tableName
+            + " WHERE id > ? ORDER BY id LIMIT ?"
+            + "), deleted AS ("
+            + " DELETE FROM " + tableName + " v USING page p"
+            + " WHERE v.id = p.id AND p.source_document_id IS NOT NULL"
+            + " AND NOT (p.source_document_id = ANY(?))"
+            + " AND NOT EXISTS (SELECT 1 FROM document_registry r WHERE r.document_id::text = p.source_document_id)"
+            + " RETURNING v.id"
+            + ") SELECT (SELECT id FROM page ORDER BY id DESC LIMIT 1)::text,"
+            + " (SELECT count(*) FROM page), (SELECT count(*) FROM deleted)";
+        UUID start = afterId != null ? UUID.fromString(afterId) : new UUID(0, 0);
+        List<SweepBatch> batches = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setObject(1, start);
+            ps.setInt(2, batchSize);
+            ps.setArray(3, con.createArrayOf("text", excludedDocumentIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> new SweepBatch(rs.getString(1), rs.getInt(2), rs.getInt(3)));
+        return batches.get(0);
+    }
+
+    /**
+     * Share of dead row versions in the table, from PostgreSQL's statistics views.
+     * Returns 0 when no statistics are available yet.
+     */
+    public double deadTupleRatio() {
+        List<Double> ratios = jdbcTemplate.query(
+            "SELECT n_dead_tup::float8 / NULLIF(n_live_tup + n_dead_tup, 0) FROM pg_stat_user_tables"
+                + " WHERE schemaname = ? AND relname = ?",
+            (rs, rowNum) -> rs.getDouble(1),
+            schemaName, relationName);
+        return ratios.isEmpty() ? 0 : ratios.get(0);
+    }
+
+    /**
+     * Rebuilds an index of the vector table without blocking reads or writes.
+     * Must not run inside a transaction.
+     *
+     * @return {@code false} if the index does not exist
+     */
+    public boolean reindexConcurrently(String indexName) {
+        if (!indexName.matches("[A-Za-z0-9_]+")) {
+            throw new IllegalArgumentException("Invalid index name: " + indexName);
+        }
+        String qualifiedName = schemaName + "." + indexName;
+        String existing = jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, qualifiedName);
+        if (existing == null) {
+            return false;
+        }
+        jdbcTemplate.execute("REINDEX INDEX CONCURRENTLY " + qualifiedName);
+        return true;
+    }
+}
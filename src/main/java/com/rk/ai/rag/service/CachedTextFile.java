@@ -0,0 +1,95 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.model.DocumentRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+
+/**
+ * MultipartFile stand-in for a registered document that is reindexed from its cached text.
+ * Only the registry's description of the file is known; the original bytes are not kept, so
+ * the content methods fail and the pipeline reads the text from {@link ExtractedTextCache} instead.
+ */
+public class CachedTextFile implements MultipartFile {
+
+    private final String filename;
+    private final long size;
+    private final String contentType;
+    private final String rawHash;
+    private final LocalDateTime sourceLastModified;
+
+    public CachedTextFile(DocumentRegistry document) {
+        this.filename = document.getFilename();
+        this.size = document.getFileSize();
+        this.contentType = document.getContentType();
+        this.rawHash = document.getRawHash();
+        this.sourceLastModified = document.getSourceLastModified();
+    }
+
+    /**
+     * Key of the document's entry in the extracted text cache.
+     */
+    public String getRawHash() {
+        return rawHash;
+    }
+
+    /**
+     * Modification time of the source file if the document came from the sync directory, otherwise {@code null}.
+     */
+    public LocalDateTime getSourceLastModified() {
+        return sourceLastModified;
+    }
+
+    @Override
+    public String getName() {
+        return filename;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getContentType() {
+        if (contentType != null) {
+            return contentType;
+        }
+        return MediaTypeFactory.getMediaType(filename).map(MediaType::toString).orElse(null);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        throw notKept();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        throw notKept();
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        throw notKept();
+    }
+
+    private FileNotFoundException notKept() {
+        return new FileNotFoundException("Only the extracted text of " + filename + " is kept");
+    }
+}
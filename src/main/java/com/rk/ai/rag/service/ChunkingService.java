@@ -1,193 +1,1059 @@
 package com.rk.ai.rag.service;
 
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.ChunkingMode;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 /**
  * Service for intelligently chunking text documents for optimal RAG performance.
  * Implements semantic chunking with overlapping windows to preserve context.
+ * <p>
+ * In {@link ChunkingMode#CONTENT_DEFINED} mode boundaries are anchored on a rolling hash of the
+ * text instead of accumulated paragraph sizes, so editing one part of a document leaves the chunks
+ * elsewhere byte-identical. Every chunk carries a {@code chunk_hash} that re-ingestion uses to keep
+ * unchanged chunks instead of embedding and writing them again.
+ * <p>
+ * Both modes also run incrementally through {@link #openChunker}, which takes the text piece by
+ * piece and passes on chunks as soon as their boundaries are known.
+ * <p>
+ * Chunk sizes and the overlap are counted in tokens of the {@link WordPieceTokenizer}, so code,
+ * tables and non-Latin text stay within the embedding model's input like prose does. Every chunk
+ * carries its {@code token_count}.
+ * <p>
+ * Chunk metadata holds only fields that differ per chunk plus the {@code source_document_id};
+ * document-level attributes are stored once in the registry and added to search results by
+ * {@link DocumentMetadataCache}.
+ * <p>
+ * With a {@code parallelism} above one, large documents are chunked in segments on a fork-join
+ * pool; the chunks are the same as those of sequential chunking.
  */
 @Service
 public class ChunkingService {
     
     private static final Logger logger = LoggerFactory.getLogger(ChunkingService.class);
     
-    // Optimal chunk size for retrieval (in characters, roughly 300-400 tokens)
-    private static final int CHUNK_SIZE = 1500;
+    // Optimal chunk size for retrieval (in tokens)
+    private static final int CHUNK_TOKENS = 384;
     
-    // Maximum chunk size - hard limit to prevent token overflow (roughly 500 tokens)
-    private static final int MAX_CHUNK_SIZE = 2000;
+    // Maximum chunk size - hard limit so the 512-token input of BERT-style embedding models is never truncated
+    private static final int MAX_CHUNK_TOKENS = 512;
     
     // Overlap between chunks to prevent context loss at boundaries
-    private static final int CHUNK_OVERLAP = 200;
+    private static final int CHUNK_OVERLAP_TOKENS = 48;
     
     // Minimum chunk size to avoid tiny fragments
-    private static final int MIN_CHUNK_SIZE = 100;
+    private static final int MIN_CHUNK_TOKENS = 16;
+    
+    // Larger paragraphs and sentences are split, so that they still fit behind an overlap
+    private static final int SPLIT_TOKENS = MAX_CHUNK_TOKENS - CHUNK_OVERLAP_TOKENS;
+    
+    // Size in characters of the chunks records are grouped into (roughly 300-400 tokens of prose)
+    private static final int CHUNK_SIZE = 1500;
+    
+    // Content-defined mode: no anchor is accepted before this many tokens
+    private static final int CDC_MIN_TOKENS = 112;
+    
+    // Content-defined mode: anchors get more likely past this size, keeping chunks near the target
+    private static final int CDC_NORMAL_TOKENS = 288;
+    
+    // Content-defined mode: forced cut so that overlap, piece and a merged tail stay within MAX_CHUNK_TOKENS
+    private static final int CDC_MAX_TOKENS = MAX_CHUNK_TOKENS - CHUNK_OVERLAP_TOKENS - MIN_CHUNK_TOKENS;
+    
+    // Anchor when the top bits of the rolling hash are zero: 1 in 1024 before the normal size, 1 in 512 after
+    private static final int CDC_STRICT_BITS = 10;
+    private static final int CDC_LOOSE_BITS = 9;
+    
+    // Random values per input byte for the gear rolling hash; fixed seed so boundaries are stable across restarts
+    private static final long[] GEAR = createGearTable(0x5DEECE66DL);
+    
+    // Parallel mode: text the sequential chunker reads at a time while looking for a checkpoint to take over from
+    private static final int SYNC_SLICE_CHARS = 16 * 1024;
+    
+    // Parallel mode: checkpoints kept per segment; the chunkers nearly always agree within the first few
+    private static final int MAX_CHECKPOINTS = 64;
+    
+    private final ChunkingMode mode;
+    private final WordPieceTokenizer tokenizer;
+    private final int parallelism;
+    private final int segmentChars;
+    private final ForkJoinPool pool;
+    
+    public ChunkingService() {
+        this(ChunkingMode.FIXED);
+    }
+    
+    @Autowired
+    public ChunkingService(IngestionProperties properties, WordPieceTokenizer tokenizer) {
+        this(properties.getChunking().getMode(), tokenizer, properties.getChunking().getParallelism(),
+            properties.getChunking().getSegmentChars());
+    }
+    
+    ChunkingService(ChunkingMode mode) {
+        this(mode, new WordPieceTokenizer(new IngestionProperties()));
+    }
+    
+    ChunkingService(ChunkingMode mode, WordPieceTokenizer tokenizer) {
+        this(mode, tokenizer, 1, 0);
+    }
+    
+    ChunkingService(ChunkingMode mode, WordPieceTokenizer tokenizer, int parallelism, int segmentChars) {
+        if (parallelism > 1 && segmentChars < SYNC_SLICE_CHARS / 4) {
+            throw new IllegalArgumentException("rag.ingestion.chunking.segment-chars must be at least " + SYNC_SLICE_CHARS / 4);
+        }
+        this.mode = mode;
+        this.tokenizer = tokenizer;
+        this.parallelism = Math.max(1, parallelism);
+        this.segmentChars = segmentChars;
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
     
     /**
-     * Chunks a document into overlapping segments with metadata preservation.
+     * Chunks a document into overlapping segments with chunk-level metadata.
+     * Document-level attributes such as the filename are kept once in the registry and
+     * referenced through {@code source_document_id}.
      * 
      * @param content The text content to chunk
-     * @param sourceMetadata Metadata from the source document (filename, upload date, etc.)
+     * @param sourceMetadata Chunk-level fields copied into every chunk's metadata
      * @param documentId The document ID to use (deterministic based on filename)
      * @return List of Spring AI Document objects ready for embedding and storage
      */
     public List<Document> chunkDocument(String content, Map<String, Object> sourceMetadata, String documentId) {
         long startTime = System.currentTimeMillis();
-        String filename = (String) sourceMetadata.getOrDefault("filename", "unknown");
         
         List<Document> chunks = new ArrayList<>();
         
-        if (content == null || content.trim().isEmpty()) {
-            logger.warn("Empty content provided for chunking: {}", filename);
+        if (content == null || !hasText(content)) {
+            logger.warn("Empty content provided for chunking: {}", documentId);
             return chunks;
         }
         
-        logger.debug("Starting document chunking for '{}' - content length: {} chars", filename, content.length());
+        logger.debug("Starting {} chunking for '{}' - content length: {} chars", mode, documentId, content.length());
+        
+        Chunker chunker = openChunker(sourceMetadata, documentId, chunks::add);
+        chunker.append(content, Map.of());
+        int totalChunks = chunker.finish();
+        
+        long processingTime = System.currentTimeMillis() - startTime;
+        logger.info("Chunking completed for '{}': {} chunks created from {} chars in {}ms", 
+                    documentId, totalChunks, content.length(), processingTime);
+        
+        return chunks;
+    }
+    
+    /**
+     * Starts chunking a document whose text arrives in pieces, such as the segments of a
+     * {@link com.rk.ai.rag.reader.DocumentReader}. Every chunk is passed to {@code consumer} as soon
+     * as it is final, so the first chunks can be embedded while the rest of the document is still
+     * being read; only the text after the last chunk boundary is buffered.
+     * <p>
+     * The chunks are the ones {@link #chunkDocument} creates for the concatenated text, however
+     * the text is split. Each chunk's metadata also holds the hints of the piece its text starts
+     * in; the number of chunks is returned by {@link Chunker#finish()}.
+     * <p>
+     * In parallel mode the text is collected until there is a segment for every worker, so the
+     * chunks of documents smaller than that are only passed on by {@link Chunker#finish()}.
+     */
+    public Chunker openChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer) {
+        return parallelism > 1
+            ? new ParallelChunker(sourceMetadata, documentId, consumer)
+            : newChunker(sourceMetadata, documentId, consumer, 0);
+    }
+    
+    /**
+     * Starts chunking a document that its reader hands out record by record, such as CSV rows or
+     * JSON records. Consecutive records with equal hints are joined with line breaks into one chunk
+     * while it stays within {@value #CHUNK_SIZE} characters and {@value #MAX_CHUNK_TOKENS} tokens, so
+     * dense rows of numbers and codes fit the embedding model's input like prose does. A larger
+     * record is cut into chunks of its own, at line breaks where possible and otherwise between
+     * words. Records are not overlapped, and the hints go into the chunk metadata. Grouping the
+     * records here instead of in the reader lets a reindex group the cached records again with the
+     * current limits.
+     */
+    public Chunker openRecordChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer) {
+        return new RecordChunker(sourceMetadata, documentId, consumer);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One document being chunked incrementally; see {@link #openChunker}. Not thread-safe.
+     */
+    public interface Chunker {
+        
+        /**
+         * Appends the next piece of the document's text and passes on every chunk it completes.
+         */
+        void append(CharSequence text, Map<String, Object> hints);
+        
+        /**
+         * Passes on the remaining chunks.
+         *
+         * @return the number of chunks of the document
+         */
+        int finish();
+    }
+    
+    /**
+     * Joins records into chunks; see {@link #openRecordChunker}. Only the current group is buffered.
+     */
+    private final class RecordChunker implements Chunker {
+        
+        private final Map<String, Object> sourceMetadata;
+        private final String documentId;
+        private final Consumer<Document> consumer;
+        private final StringBuilder group = new StringBuilder();
+        private Map<String, Object> groupHints = Map.of();
+        private int groupTokens;
+        private int chunkCount;
+        
+        private RecordChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer) {
+            this.sourceMetadata = sourceMetadata;
+            this.documentId = documentId;
+            this.consumer = consumer;
+        }
+        
+        @Override
+        public void append(CharSequence record, Map<String, Object> hints) {
+            if (!hasText(record)) {
+                return;
+            }
+            // Token counts of texts joined by a line break add up
+            int tokens = tokenizer.countTokens(record);
+            if (!group.isEmpty() && (!hints.equals(groupHints) || group.length() + 1 + record.length() > CHUNK_SIZE
+                    || groupTokens + tokens > MAX_CHUNK_TOKENS)) {
+                flush();
+            }
+            if (record.length() > CHUNK_SIZE || tokens > MAX_CHUNK_TOKENS) {
+                split(record, hints);
+                return;
+            }
+            if (!group.isEmpty()) {
+                group.append('\n');
+            }
+            group.append(record);
+            groupHints = hints;
+            groupTokens += tokens;
+        }
+        
+        @Override
+        public int finish() {
+            flush();
+            return chunkCount;
+        }
+        
+        private void flush() {
+            if (!group.isEmpty()) {
+                emit(group.toString(), groupTokens, groupHints);
+                group.setLength(0);
+                groupTokens = 0;
+            }
+        }
+        
+        // Cuts a record above either limit after its last line break within the limits, or else
+        // after the last whole word that fits
+        private void split(CharSequence record, Map<String, Object> hints) {
+            int start = 0;
+            int length = record.length();
+            while (start < length) {
+                int limit = Math.min(length, start + CHUNK_SIZE);
+                int end = tokenizer.prefixEnd(record, start, limit, MAX_CHUNK_TOKENS);
+                if (end < length) {
+                    int lineBreak = lastIndexOf(record, '\n', start, end);
+                    if (lineBreak > start) {
+                        end = lineBreak + 1;
+                    } else if (end == limit && record.charAt(end) > ' ') {
+                        // The character limit fell inside a word; keep that word for the next piece
+                        int space = lastIndexOf(record, ' ', start, end);
+                        if (space > start) {
+                            end = space;
+                        }
+                    }
+                }
+                int pieceStart = skipLeadingWhitespace(record, start, end);
+                int pieceEnd = skipTrailingWhitespace(record, pieceStart, end);
+                if (pieceEnd > pieceStart) {
+                    String piece = record.subSequence(pieceStart, pieceEnd).toString();
+                    emit(piece, tokenizer.countTokens(piece), hints);
+                }
+                start = end;
+            }
+        }
+        
+        private void emit(String content, int tokens, Map<String, Object> hints) {
+            consumer.accept(createDocument(content, tokens, documentId, chunkCount++, sourceMetadata, hints));
+        }
+
+    }
+    
+    private BufferedChunker newChunker(Map<String, Object> sourceMetadata, String documentId,
+                                       Consumer<Document> consumer, long start) {
+        return mode == ChunkingMode.CONTENT_DEFINED
+            ? new ContentDefinedChunker(sourceMetadata, documentId, consumer, start)
+            : new ParagraphChunker(sourceMetadata, documentId, consumer, start);
+    }
+    
+    /**
+     * State of a chunker after it created {@code chunkCount} chunks and read the document up to
+     * {@code position}. Two chunkers whose states are equal at the same position create the same
+     * chunks from there on, apart from their numbering.
+     */
+    private record Checkpoint(long position, int chunkCount, Object state) {
+    }
+    
+    /**
+     * Scans the text after the last chunk boundary once, as offsets into either the appended piece
+     * itself or, while a paragraph or piece spans several appends, a buffer holding the unfinished
+     * rest. Chunk text is only copied out of the scanned text when a chunk is assembled.
+     */
+    private abstract class BufferedChunker implements Chunker {
+        
+        private final Map<String, Object> sourceMetadata;
+        private final String documentId;
+        private final Consumer<Document> consumer;
+        // Hints of the pieces that are still (partly) buffered, by the offset of their first character
+        private final NavigableMap<Long, Map<String, Object>> hintsByOffset = new TreeMap<>();
+        // Unfinished text carried over between appends
+        private final StringBuilder buffer = new StringBuilder();
+        int chunkCount;
         
-        // Split by paragraphs first for semantic boundaries
-        String[] paragraphs = content.split("\\n\\n+");
-        StringBuilder currentChunk = new StringBuilder();
-        int chunkIndex = 0;
+        // Text being scanned: the appended piece while nothing is buffered, otherwise the buffer.
+        // window.charAt(0) is at windowOffset in the whole document; text before head is consumed.
+        CharSequence window = buffer;
+        long windowOffset;
+        int head;
         
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
+        // Receives the chunker's checkpoints while it takes part in parallel chunking
+        Consumer<Checkpoint> checkpoints;
+        
+        // start is the document offset of the first appended character, for chunkers of a later segment
+        private BufferedChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer,
+                                long start) {
+            this.sourceMetadata = sourceMetadata;
+            this.documentId = documentId;
+            this.consumer = consumer;
+            this.windowOffset = start;
+        }
+        
+        @Override
+        public void append(CharSequence text, Map<String, Object> hints) {
+            if (text.isEmpty()) {
+                return;
+            }
+            int scanFrom = buffer.length();
+            hintsByOffset.put(windowOffset + scanFrom, hints);
+            if (scanFrom == 0) {
+                window = text;
+            } else {
+                buffer.append(text);
+            }
+            process(scanFrom);
             
-            if (paragraph.isEmpty()) {
-                continue;
+            // Keep only what follows the last boundary, copying it once
+            if (window == buffer) {
+                buffer.delete(0, head);
+            } else {
+                buffer.append(text, head, text.length());
+                window = buffer;
+            }
+            windowOffset += head;
+            head = 0;
+        }
+        
+        @Override
+        public int finish() {
+            finishChunks();
+            buffer.setLength(0);
+            hintsByOffset.clear();
+            return chunkCount;
+        }
+        
+        /**
+         * Cuts chunks from the window; text before {@code scanFrom} was already looked at.
+         */
+        abstract void process(int scanFrom);
+        
+        abstract void finishChunks();
+        
+        /**
+         * Marks the window's text before {@code end} as consumed.
+         */
+        void consume(int end) {
+            head = end;
+            Long covering = hintsByOffset.floorKey(windowOffset + head);
+            if (covering != null) {
+                hintsByOffset.headMap(covering, false).clear();
             }
+        }
+        
+        /**
+         * Hints of the piece holding the window's character at {@code index}.
+         */
+        Map<String, Object> hintsAt(int index) {
+            Map.Entry<Long, Map<String, Object>> entry = hintsByOffset.floorEntry(windowOffset + index);
+            return entry == null ? Map.of() : entry.getValue();
+        }
+        
+        void checkpoint(long position, Object state) {
+            checkpoints.accept(new Checkpoint(position, chunkCount, state));
+        }
+        
+        // The chunkers know each chunk's token count, so it is not counted again
+        void emit(String content, int tokens, int chunkIndex, Map<String, Object> hints) {
+            consumer.accept(createDocument(content, tokens, documentId, chunkIndex, sourceMetadata, hints));
+            chunkCount++;
+        }
+    }
+    
+    /**
+     * Fixed mode: accumulates paragraphs up to {@code CHUNK_TOKENS} with a trailing overlap.
+     * Paragraphs are separated by blank lines; the window's head is the start of the paragraph still
+     * being read. Paragraphs larger than {@code SPLIT_TOKENS} are split after sentence ends.
+     */
+    private final class ParagraphChunker extends BufferedChunker {
+        
+        private final StringBuilder currentChunk = new StringBuilder();
+        private final StringBuilder sentenceChunk = new StringBuilder();
+        // Paragraphs and sentences are joined with a space, so their token counts add up
+        private int currentTokens;
+        private int sentenceTokens;
+        private Map<String, Object> currentHints;
+        private int chunkIndex = 0;
+        
+        private ParagraphChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer,
+                                 long start) {
+            super(sourceMetadata, documentId, consumer, start);
+        }
+        
+        @Override
+        void process(int scanFrom) {
+            CharSequence text = window;
+            int length = text.length();
+            // A break may straddle two pieces, so look one character back
+            for (int i = Math.max(head, scanFrom - 1); i < length - 1; i++) {
+                if (text.charAt(i) == '\n' && text.charAt(i + 1) == '\n') {
+                    int created = chunkCount;
+                    addParagraph(head, i);
+                    int next = i + 2;
+                    while (next < length && text.charAt(next) == '\n') {
+                        next++;
+                    }
+                    consume(next);
+                    i = next - 1;
+                    // After a chunk was cut, the state is little more than the overlap
+                    if (checkpoints != null && chunkCount != created) {
+                        checkpoint(windowOffset + next, new ParagraphState(currentChunk.toString(), currentTokens, currentHints));
+                    }
+                }
+            }
+        }
+        
+        @Override
+        void finishChunks() {
+            addParagraph(head, window.length());
+            
+            // Add remaining content as final chunk
+            if (currentTokens > MIN_CHUNK_TOKENS) {
+                emit(currentChunk.toString(), currentTokens, chunkIndex, currentHints);
+            }
+        }
+        
+        /**
+         * Adds the paragraph between the window offsets {@code start} and {@code end}.
+         */
+        private void addParagraph(int start, int end) {
+            CharSequence text = window;
+            int first = skipLeadingWhitespace(text, start, end);
+            int last = skipTrailingWhitespace(text, first, end);
+            
+            if (first == last) {
+                return;
+            }
+            Map<String, Object> hints = hintsAt(first);
+            int tokens = tokenizer.countTokens(text, first, last);
             
             // If paragraph itself is too large, split it further
-            if (paragraph.length() > MAX_CHUNK_SIZE) {
+            if (tokens > SPLIT_TOKENS) {
                 // Save current chunk if it has content
-                if (currentChunk.length() > MIN_CHUNK_SIZE) {
-                    chunks.add(createDocument(currentChunk.toString(), documentId, chunkIndex++, sourceMetadata));
+                if (currentTokens > MIN_CHUNK_TOKENS) {
+                    emit(currentChunk.toString(), currentTokens, chunkIndex++, currentHints);
                     currentChunk.setLength(0);
+                    currentTokens = 0;
+                    currentHints = null;
                 }
                 
-                // Split large paragraph into smaller chunks
-                List<String> paragraphChunks = splitLargeParagraph(paragraph);
-                for (String paraChunk : paragraphChunks) {
-                    chunks.add(createDocument(paraChunk, documentId, chunkIndex++, sourceMetadata));
-                }
-                continue;
+                splitLargeParagraph(text, first, last, hints);
+                return;
             }
             
             // If adding this paragraph exceeds chunk size, save current chunk first
-            if (currentChunk.length() + paragraph.length() + 1 > CHUNK_SIZE && currentChunk.length() > MIN_CHUNK_SIZE) {
-                chunks.add(createDocument(currentChunk.toString(), documentId, chunkIndex++, sourceMetadata));
-                String overlap = getOverlap(currentChunk.toString());
-                currentChunk.setLength(0);
-                currentChunk.append(overlap);
+            if (currentTokens + tokens > CHUNK_TOKENS && currentTokens > MIN_CHUNK_TOKENS) {
+                emit(currentChunk.toString(), currentTokens, chunkIndex++, currentHints);
+                currentTokens = keepOverlap(currentChunk);
+                currentHints = null;
             }
             
             // Add paragraph with spacing
             if (currentChunk.length() > 0) {
-                currentChunk.append(" ");
+                currentChunk.append(' ');
+            }
+            currentChunk.append(text, first, last);
+            currentTokens += tokens;
+            if (currentHints == null) {
+                currentHints = hints;
             }
-            currentChunk.append(paragraph);
         }
         
-        // Add remaining content as final chunk
-        if (currentChunk.length() > MIN_CHUNK_SIZE) {
-            chunks.add(createDocument(currentChunk.toString(), documentId, chunkIndex, sourceMetadata));
+        /**
+         * Splits a large paragraph into smaller chunks by sentences or fixed-size segments. A sentence
+         * ends at a run of whitespace that follows {@code .}, {@code !} or {@code ?}.
+         */
+        private void splitLargeParagraph(CharSequence text, int start, int end, Map<String, Object> hints) {
+            sentenceChunk.setLength(0);
+            sentenceTokens = 0;
+            int sentenceStart = start;
+            for (int i = start; i < end - 1; i++) {
+                char c = text.charAt(i);
+                if ((c == '.' || c == '!' || c == '?') && isSentenceSpace(text.charAt(i + 1))) {
+                    addSentence(text, sentenceStart, i + 1, hints);
+                    int next = i + 2;
+                    while (next < end && isSentenceSpace(text.charAt(next))) {
+                        next++;
+                    }
+                    sentenceStart = next;
+                    i = next - 1;
+                }
+            }
+            addSentence(text, sentenceStart, end, hints);
+            
+            // Add remaining content
+            if (sentenceChunk.length() > 0) {
+                emit(sentenceChunk.toString(), sentenceTokens, chunkIndex++, hints);
+            }
         }
         
-        // Add total chunks metadata to all chunks
-        int totalChunks = chunks.size();
-        chunks.forEach(doc -> doc.getMetadata().put("total_chunks", totalChunks));
-        
-        long processingTime = System.currentTimeMillis() - startTime;
-        logger.info("Chunking completed for '{}': {} chunks created from {} chars in {}ms", 
-                    filename, totalChunks, content.length(), processingTime);
-        
-        return chunks;
+        private void addSentence(CharSequence text, int start, int end, Map<String, Object> hints) {
+            int first = skipLeadingWhitespace(text, start, end);
+            int last = skipTrailingWhitespace(text, first, end);
+            
+            if (first == last) {
+                return;
+            }
+            int tokens = tokenizer.countTokens(text, first, last);
+            
+            // If a single sentence is too large, split it by fixed size
+            if (tokens > SPLIT_TOKENS) {
+                // Save current chunk if it has content
+                if (sentenceChunk.length() > 0) {
+                    emit(sentenceChunk.toString(), sentenceTokens, chunkIndex++, hints);
+                    sentenceChunk.setLength(0);
+                    sentenceTokens = 0;
+                }
+                
+                // Split by fixed size with overlap, between words where possible
+                int pieceStart = first;
+                while (true) {
+                    int pieceEnd = tokenizer.prefixEnd(text, pieceStart, last, CHUNK_TOKENS);
+                    emit(text.subSequence(pieceStart, pieceEnd).toString(), tokenizer.countTokens(text, pieceStart, pieceEnd),
+                        chunkIndex++, hints);
+                    if (pieceEnd >= last) {
+                        break;
+                    }
+                    int next = tokenizer.prefixEnd(text, pieceStart, last, CHUNK_TOKENS - CHUNK_OVERLAP_TOKENS);
+                    pieceStart = skipLeadingWhitespace(text, next, last);
+                }
+                return;
+            }
+            
+            // If adding this sentence exceeds chunk size, save current chunk
+            if (sentenceTokens + tokens > CHUNK_TOKENS && sentenceChunk.length() > 0) {
+                emit(sentenceChunk.toString(), sentenceTokens, chunkIndex++, hints);
+                sentenceTokens = keepOverlap(sentenceChunk);
+            }
+            
+            // Add sentence
+            if (sentenceChunk.length() > 0) {
+                sentenceChunk.append(' ');
+            }
+            sentenceChunk.append(text, first, last);
+            sentenceTokens += tokens;
+        }
+    }
+    
+    // The sentence fields of ParagraphChunker only hold state while a paragraph is split
+    private record ParagraphState(String currentChunk, int currentTokens, Map<String, Object> currentHints) {
     }
     
     /**
-     * Creates a Spring AI Document with enriched metadata.
+     * Content-defined mode: cuts where a gear rolling hash over the preceding ~64 characters hits
+     * an anchor, moved forward to the next whitespace so words stay intact. Whether a position is
+     * an anchor depends only on the text around it, so after an insertion or deletion the boundaries
+     * fall back onto the same anchors within a chunk or two and later chunks come out unchanged.
+     * <p>
+     * The last chunk is held back until the next one is cut, because a too-small tail is merged into it.
      */
-    private Document createDocument(String content, String documentId, int chunkIndex, Map<String, Object> sourceMetadata) {
-        Map<String, Object> metadata = new HashMap<>(sourceMetadata);
-        metadata.put("chunk_index", chunkIndex);
-        metadata.put("source_document_id", documentId);
-        metadata.put("chunk_size", content.length());
+    private final class ContentDefinedChunker extends BufferedChunker {
         
-        return new Document(content, metadata);
+        private int chunkIndex = 0;
+        private long position = 0;
+        private long lastWhitespace = -1;
+        private boolean anchorSeen = false;
+        private long hash = 0;
+        // Tokens of the chunk up to its last whitespace, and where the run of text after it starts
+        private int chunkTokens = 0;
+        private long runStart = 0;
+        // No need to count the current run before this position, as a character adds at most one token
+        private long nextSizeCheck = 0;
+        // End of the previous piece, which the next chunk starts with
+        private final StringBuilder overlap = new StringBuilder();
+        private int overlapTokens = 0;
+        private boolean hasPreviousPiece = false;
+        private final StringBuilder heldChunk = new StringBuilder();
+        private int heldTokens = 0;
+        private boolean holding = false;
+        private Map<String, Object> heldHints;
+        
+        private ContentDefinedChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer,
+                                      long start) {
+            super(sourceMetadata, documentId, consumer, start);
+            position = start;
+            runStart = start;
+            lastWhitespace = start - 1;
+        }
+        
+        @Override
+        void process(int scanFrom) {
+            CharSequence text = window;
+            // The window's head is the last cut, where the chunk being measured starts
+            for (long end = windowOffset + text.length(); position < end; position++) {
+                char c = text.charAt((int) (position - windowOffset));
+                hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xFF];
+                long cut = -1;
+                
+                if (Character.isWhitespace(c)) {
+                    // Token counts of runs separated by whitespace add up
+                    chunkTokens += tokenizer.countTokens(text, (int) (runStart - windowOffset), (int) (position - windowOffset));
+                    runStart = position + 1;
+                    lastWhitespace = position;
+                    if (anchorSeen || chunkTokens >= CDC_MAX_TOKENS) {
+                        cut = position + 1;
+                    }
+                } else if (chunkTokens + (position + 1 - runStart) >= CDC_MAX_TOKENS && position >= nextSizeCheck) {
+                    int runTokens = tokenizer.countTokens(text, (int) (runStart - windowOffset), (int) (position + 1 - windowOffset));
+                    int room = CDC_MAX_TOKENS - chunkTokens - runTokens;
+                    if (room > 0) {
+                        nextSizeCheck = position + room;
+                    } else if (chunkTokens >= CDC_MIN_TOKENS) {
+                        // No anchor in range: fall back to the last word boundary
+                        cut = lastWhitespace + 1;
+                    } else {
+                        // or cut the run itself
+                        cut = windowOffset + tokenizer.prefixEnd(text, (int) (runStart - windowOffset),
+                            (int) (position + 1 - windowOffset), CDC_MAX_TOKENS - chunkTokens);
+                        chunkTokens += tokenizer.countTokens(text, (int) (runStart - windowOffset), (int) (cut - windowOffset));
+                    }
+                }
+                if (cut < 0 && !anchorSeen && chunkTokens >= CDC_MIN_TOKENS) {
+                    int bits = chunkTokens < CDC_NORMAL_TOKENS ? CDC_STRICT_BITS : CDC_LOOSE_BITS;
+                    anchorSeen = (hash >>> (Long.SIZE - bits)) == 0;
+                }
+                
+                if (cut >= 0) {
+                    int cutAt = (int) (cut - windowOffset);
+                    int first = skipLeadingWhitespace(text, head, cutAt);
+                    int last = skipTrailingWhitespace(text, first, cutAt);
+                    if (first < last) {
+                        // chunkTokens now holds the tokens up to the cut
+                        hold(text, first, last, chunkTokens);
+                    }
+                    consume(cutAt);
+                    anchorSeen = false;
+                    chunkTokens = 0;
+                    runStart = Math.max(runStart, cut);
+                    nextSizeCheck = 0;
+                    if (checkpoints != null) {
+                        checkpoint(position, new ContentDefinedState(hash, windowOffset + head - position,
+                            runStart - position, lastWhitespace - position, overlap.toString(), overlapTokens,
+                            holding ? heldChunk.toString() : null, holding ? heldTokens : 0, holding ? heldHints : null));
+                    }
+                }
+            }
+        }
+        
+        @Override
+        void finishChunks() {
+            CharSequence text = window;
+            int first = skipLeadingWhitespace(text, head, text.length());
+            int last = skipTrailingWhitespace(text, first, text.length());
+            int tokens = tokenizer.countTokens(text, first, last);
+            if (first < last && (tokens >= MIN_CHUNK_TOKENS || !hasPreviousPiece)) {
+                hold(text, first, last, tokens);
+            } else if (first < last) {
+                // Too small to stand alone: append to the last chunk
+                heldChunk.append(' ').append(text, first, last);
+                heldTokens += tokens;
+            }
+            if (holding) {
+                emit(heldChunk.toString(), heldTokens, chunkIndex - 1, heldHints);
+                holding = false;
+            }
+        }
+        
+        /**
+         * Holds the piece between the window offsets {@code first} and {@code last}, which has
+         * {@code tokens} tokens, as the next chunk, after the end of the previous piece, and passes
+         * on the chunk held so far.
+         */
+        private void hold(CharSequence text, int first, int last, int tokens) {
+            if (holding) {
+                emit(heldChunk.toString(), heldTokens, chunkIndex - 1, heldHints);
+            }
+            heldChunk.setLength(0);
+            if (!overlap.isEmpty()) {
+                heldChunk.append(overlap).append(' ');
+            }
+            heldChunk.append(text, first, last);
+            heldTokens = overlapTokens + tokens;
+            heldHints = hintsAt(first);
+            holding = true;
+            chunkIndex++;
+            
+            overlap.setLength(0);
+            overlap.append(text, tokenizer.suffixStart(text, first, last, CHUNK_OVERLAP_TOKENS), last);
+            overlapTokens = tokenizer.countTokens(overlap);
+            hasPreviousPiece = true;
+        }
+    }
+    
+    // State of a ContentDefinedChunker right after a cut, with its offsets relative to the position
+    private record ContentDefinedState(long hash, long head, long runStart, long lastWhitespace, String overlap,
+                                       int overlapTokens, String heldChunk, int heldTokens,
+                                       Map<String, Object> heldHints) {
     }
     
     /**
-     * Splits a large paragraph into smaller chunks by sentences or fixed-size segments.
+     * Parallel mode: collects the appended text until there is a segment of {@code segmentChars}
+     * for every worker, then cuts it into segments at paragraph breaks. The sequential chunker goes
+     * on with the first segment on the calling thread, while a chunker on the pool reads each later
+     * segment as if the document started there. The sequential chunker then reads into the next
+     * segment only until it reaches a checkpoint with the same state as that segment's chunker;
+     * from there both would create the same chunks, so the segment's chunks are kept and its
+     * chunker goes on as the sequential one. Without such a checkpoint the segment is chunked
+     * sequentially, so the chunks are always those of sequential chunking.
      */
-    private List<String> splitLargeParagraph(String paragraph) {
-        List<String> chunks = new ArrayList<>();
+    private final class ParallelChunker implements Chunker {
         
-        // Try to split by sentences first
-        String[] sentences = paragraph.split("(?<=[.!?])\\s+");
+        private final Map<String, Object> sourceMetadata;
+        private final String documentId;
+        private final Consumer<Document> consumer;
+        // Text not yet chunked, from pendingStart to pendingEnd in the whole document
+        private final List<Piece> pending = new ArrayList<>();
+        private long pendingStart;
+        private long pendingEnd;
+        private BufferedChunker chunker;
+        private ChunkBuffer chunks = new ChunkBuffer();
+        private int passedOn;
         
-        StringBuilder currentChunk = new StringBuilder();
+        private ParallelChunker(Map<String, Object> sourceMetadata, String documentId, Consumer<Document> consumer) {
+            this.sourceMetadata = sourceMetadata;
+            this.documentId = documentId;
+            this.consumer = consumer;
+            this.chunker = newChunker(sourceMetadata, documentId, chunks, 0);
+        }
         
-        for (String sentence : sentences) {
-            sentence = sentence.trim();
-            
-            if (sentence.isEmpty()) {
-                continue;
+        @Override
+        public void append(CharSequence text, Map<String, Object> hints) {
+            if (text.isEmpty()) {
+                return;
+            }
+            // Callers may reuse the text once this returns
+            pending.add(new Piece(pendingEnd, text.toString(), hints));
+            pendingEnd += text.length();
+            if (pendingEnd - pendingStart >= (long) parallelism * segmentChars) {
+                chunkPending();
+            }
+        }
+        
+        @Override
+        public int finish() {
+            chunkPending();
+            chunker.finish();
+            passOn(chunks, chunks.created());
+            return passedOn;
+        }
+        
+        private void chunkPending() {
+            List<Long> starts = new ArrayList<>();
+            for (long start = nextParagraph(pendingStart + segmentChars); start < pendingEnd;
+                 start = nextParagraph(start + segmentChars)) {
+                starts.add(start);
             }
+            starts.add(pendingEnd);
             
-            // If a single sentence is too large, split it by fixed size
-            if (sentence.length() > MAX_CHUNK_SIZE) {
-                // Save current chunk if it has content
-                if (currentChunk.length() > 0) {
-                    chunks.add(currentChunk.toString());
-                    currentChunk.setLength(0);
+            List<ForkJoinTask<Speculation>> tasks = new ArrayList<>();
+            try {
+                for (int i = 0; i < starts.size() - 1; i++) {
+                    long from = starts.get(i);
+                    long to = starts.get(i + 1);
+                    tasks.add(pool.submit(() -> speculate(from, to)));
                 }
                 
-                // Split by fixed size with overlap
-                for (int i = 0; i < sentence.length(); i += CHUNK_SIZE - CHUNK_OVERLAP) {
-                    int end = Math.min(i + CHUNK_SIZE, sentence.length());
-                    chunks.add(sentence.substring(i, end));
+                // The first segment continues the sequential chunker on the calling thread
+                feed(chunker, pendingStart, starts.get(0));
+                passOn(chunks, chunks.created());
+                for (int i = 0; i < tasks.size(); i++) {
+                    takeOver(tasks.get(i).join(), starts.get(i), starts.get(i + 1));
                 }
-                continue;
+            } catch (RuntimeException e) {
+                tasks.forEach(task -> task.cancel(true));
+                throw e;
             }
-            
-            // If adding this sentence exceeds chunk size, save current chunk
-            if (currentChunk.length() + sentence.length() + 1 > CHUNK_SIZE && currentChunk.length() > 0) {
-                chunks.add(currentChunk.toString());
-                String overlap = getOverlap(currentChunk.toString());
-                currentChunk.setLength(0);
-                currentChunk.append(overlap).append(" ");
+            pending.clear();
+            pendingStart = pendingEnd;
+        }
+        
+        /**
+         * Chunks the text between the document offsets {@code from} and {@code to} as if the
+         * document started at {@code from}, recording the chunker's first checkpoints.
+         */
+        private Speculation speculate(long from, long to) {
+            ChunkBuffer segmentChunks = new ChunkBuffer();
+            BufferedChunker segmentChunker = newChunker(sourceMetadata, documentId, segmentChunks, from);
+            Map<Long, Checkpoint> recorded = new HashMap<>();
+            segmentChunker.checkpoints = checkpoint -> {
+                recorded.put(checkpoint.position(), checkpoint);
+                if (recorded.size() >= MAX_CHECKPOINTS) {
+                    segmentChunker.checkpoints = null;
+                }
+            };
+            feed(segmentChunker, from, to);
+            segmentChunker.checkpoints = null;
+            return new Speculation(segmentChunker, segmentChunks, recorded);
+        }
+        
+        /**
+         * Reads the segment between {@code from} and {@code to} with the sequential chunker until
+         * one of its checkpoints matches the speculation's, then continues with the speculation.
+         */
+        private void takeOver(Speculation speculation, long from, long to) {
+            long lastRecorded = speculation.checkpoints().keySet().stream().mapToLong(Long::longValue).max().orElse(-1);
+            Checkpoint[] match = new Checkpoint[2];
+            BufferedChunker sequential = chunker;
+            sequential.checkpoints = checkpoint -> {
+                Checkpoint recorded = speculation.checkpoints().get(checkpoint.position());
+                if (recorded != null && recorded.state().equals(checkpoint.state())) {
+                    match[0] = checkpoint;
+                    match[1] = recorded;
+                }
+                if (match[0] != null || checkpoint.position() >= lastRecorded) {
+                    sequential.checkpoints = null;
+                }
+            };
+            for (long start = from; start < to && match[0] == null; start += SYNC_SLICE_CHARS) {
+                feed(sequential, start, Math.min(to, start + SYNC_SLICE_CHARS));
+                if (sequential.checkpoints == null && match[0] == null) {
+                    // No checkpoint left to match, so chunk the rest of the segment sequentially
+                    feed(sequential, Math.min(to, start + SYNC_SLICE_CHARS), to);
+                    break;
+                }
             }
+            sequential.checkpoints = null;
             
-            // Add sentence
-            if (currentChunk.length() > 0) {
-                currentChunk.append(" ");
+            if (match[0] == null) {
+                passOn(chunks, chunks.created());
+                return;
             }
-            currentChunk.append(sentence);
+            logger.trace("Chunking of '{}' took over the segment at {} from position {}", documentId, from, match[0].position());
+            passOn(chunks, match[0].chunkCount());
+            speculation.chunks().skip(match[1].chunkCount());
+            chunker = speculation.chunker();
+            chunks = speculation.chunks();
+            passOn(chunks, chunks.created());
         }
         
-        // Add remaining content
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString());
+        /**
+         * Passes on a chunker's chunks up to its {@code end}th, numbered in the order of the
+         * whole document, and drops any others it created so far.
+         */
+        private void passOn(ChunkBuffer buffer, int end) {
+            for (int i = buffer.first; i < end; i++) {
+                Document chunk = buffer.chunks.get(i - buffer.first);
+                chunk.getMetadata().put("chunk_index", passedOn++);
+                consumer.accept(chunk);
+            }
+            buffer.skip(buffer.created());
         }
         
-        return chunks;
+        // Appends the pending text between the document offsets from and to, with the hints of its pieces
+        private void feed(BufferedChunker target, long from, long to) {
+            for (Piece piece : pending) {
+                long pieceEnd = piece.start() + piece.text().length();
+                if (pieceEnd <= from || piece.start() >= to) {
+                    continue;
+                }
+                int first = (int) (Math.max(from, piece.start()) - piece.start());
+                int last = (int) (Math.min(to, pieceEnd) - piece.start());
+                target.append(first == 0 && last == piece.text().length() ? piece.text() : piece.text().substring(first, last),
+                    piece.hints());
+            }
+        }
+        
+        // Start of the first paragraph after the document offset from, or pendingEnd
+        private long nextParagraph(long from) {
+            for (Piece piece : pending) {
+                String text = piece.text();
+                for (int i = (int) Math.max(0, from - piece.start()); i < text.length() - 1; i++) {
+                    if (text.charAt(i) == '\n' && text.charAt(i + 1) == '\n') {
+                        int next = i + 2;
+                        while (next < text.length() && text.charAt(next) == '\n') {
+                            next++;
+                        }
+                        return piece.start() + next;
+                    }
+                }
+            }
+            return pendingEnd;
+        }
+    }
+    
+    private record Piece(long start, String text, Map<String, Object> hints) {
+    }
+    
+    private record Speculation(BufferedChunker chunker, ChunkBuffer chunks, Map<Long, Checkpoint> checkpoints) {
+    }
+    
+    /**
+     * Chunks a chunker created that were not passed on yet; {@code first} is the number of earlier ones.
+     */
+    private static final class ChunkBuffer implements Consumer<Document> {
+        
+        private final List<Document> chunks = new ArrayList<>();
+        private int first;
+        
+        @Override
+        public void accept(Document chunk) {
+            chunks.add(chunk);
+        }
+        
+        int created() {
+            return first + chunks.size();
+        }
+        
+        // Drops the chunks before the end-th
+        void skip(int end) {
+            chunks.subList(0, end - first).clear();
+            first = end;
+        }
+    }
+    
+    /**
+     * Creates a Spring AI Document with the chunk-level metadata.
+     */
+    private Document createDocument(String content, int tokens, String documentId, int chunkIndex,
+                                    Map<String, Object> sourceMetadata, Map<String, Object> hints) {
+        Map<String, Object> metadata = HashMap.newHashMap(sourceMetadata.size() + hints.size() + 5);
+        metadata.putAll(sourceMetadata);
+        metadata.putAll(hints);
+        metadata.put("chunk_index", chunkIndex);
+        metadata.put("source_document_id", documentId);
+        metadata.put("chunk_size", content.length());
+        metadata.put("token_count", tokens);
+        metadata.put("chunk_hash", sha256(content));
+        
+        return new Document(content, metadata);
+    }
+    
+    /**
+     * Cuts an assembled chunk down to the whole words of its last {@code CHUNK_OVERLAP_TOKENS} tokens,
+     * which start the next chunk for continuity.
+     *
+     * @return the number of tokens kept
+     */
+    private int keepOverlap(StringBuilder chunk) {
+        chunk.delete(0, tokenizer.suffixStart(chunk, 0, chunk.length(), CHUNK_OVERLAP_TOKENS));
+        return tokenizer.countTokens(chunk);
+    }
+    
+    // Last index of c in text between start (exclusive) and end, or -1
+    private static int lastIndexOf(CharSequence text, char c, int start, int end) {
+        for (int i = end - 1; i > start; i--) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // Same characters as String.trim()
+    private static int skipLeadingWhitespace(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private static int skipTrailingWhitespace(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    
+    private static boolean hasText(CharSequence text) {
+        return skipLeadingWhitespace(text, 0, text.length()) < text.length();
+    }
+    
+    // The whitespace that ends a sentence: \s without UNICODE_CHARACTER_CLASS
+    private static boolean isSentenceSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
     
     /**
-     * Extracts overlap text from the end of a chunk for continuity.
+     * Fills the gear table with SplitMix64 output; written out rather than using a JDK random
+     * generator so the table (and therefore every chunk boundary) can never change between JDKs.
      */
-    private String getOverlap(String text) {
-        if (text.length() <= CHUNK_OVERLAP) {
-            return text;
+    private static long[] createGearTable(long seed) {
+        long[] table = new long[256];
+        long state = seed;
+        for (int i = 0; i < table.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
         }
-        return text.substring(text.length() - CHUNK_OVERLAP);
+        return table;
     }
 }
@@ -0,0 +1,337 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.model.UploadResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the vector store in sync with a directory.
+ * <p>
+ * A {@link WatchService} reports created, modified and deleted files, which are synced after a short
+ * quiet period; a periodic full scan reconciles anything the watcher missed (overflow, restarts,
+ * network shares without change events). Size and modification time are compared against the
+ * registry before a file is opened, so unchanged files cost a stat call. Changed files are read
+ * straight from disk and fed to {@link DocumentIngestionService}; files that disappeared have their
+ * chunks and registry entry deleted. Disabled unless {@code rag.ingestion.sync.enabled=true}.
+ */
+@Service
+public class DirectorySyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectorySyncService.class);
+
+    private final DocumentIngestionService ingestionService;
+    private final DocumentRegistryService registryService;
+    private final IngestionProperties.Sync settings;
+
+    private final Set<Path> pendingPaths = ConcurrentHashMap.newKeySet();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private WatchService watchService;
+    private ScheduledFuture<?> pendingFlush;
+    private final Path root;
+
+    /**
+     * Outcome of one sync run.
+     */
+    public record SyncResult(int ingested, int unchanged, int removed) {
+    }
+
+    public DirectorySyncService(
+            DocumentIngestionService ingestionService,
+            DocumentRegistryService registryService,
+            IngestionProperties properties) {
+        this.ingestionService = ingestionService;
+        this.registryService = registryService;
+        this.settings = properties.getSync();
+        this.root = settings.getDirectory() == null ? null : Path.of(settings.getDirectory()).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        if (root == null || !Files.isDirectory(root)) {
+            logger.error("Directory sync enabled but {} is not a directory", settings.getDirectory());
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("directory-sync").daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::runFullSync, 0, settings.getScanInterval().toMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            registerTree(root);
+            Thread.ofPlatform().name("directory-watcher").daemon(true).start(this::watch);
+        } catch (IOException e) {
+            logger.warn("Cannot watch {}, relying on periodic scans only: {}", root, e.getMessage());
+        }
+        logger.info("Syncing directory {} (full scan every {})", root, settings.getScanInterval());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close watch service: {}", e.getMessage());
+            }
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Scans the whole directory and brings the registry and vector store in line with it. Files and
+     * directories that cannot be read keep their documents, as they are not known to be gone.
+     */
+    public SyncResult syncAll() throws IOException {
+        Map<String, PathMultipartFile> onDisk = new LinkedHashMap<>();
+        Set<String> unreadable = new HashSet<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                PathMultipartFile candidate = toCandidate(file, attributes);
+                if (candidate != null) {
+                    onDisk.put(candidate.getOriginalFilename(), candidate);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.warn("Cannot read {}: {}", file, e.getMessage());
+                unreadable.add(relativeName(file));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (e != null) {
+                    logger.warn("Cannot list {} completely: {}", dir, e.getMessage());
+                    unreadable.add(relativeName(dir));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Map<String, DocumentRegistry> synced = registryService.findSyncedDocuments();
+        List<DocumentRegistry> removed = synced.values().stream()
+            .filter(doc -> !onDisk.containsKey(doc.getFilename()))
+            .filter(doc -> unreadable.stream().noneMatch(name -> isAtOrBelow(doc.getFilename(), name)))
+            .toList();
+        return apply(onDisk.values(), synced, removed);
+    }
+
+    /**
+     * Syncs only the given paths, as reported by the watcher. A path that no longer exists removes
+     * the file, or everything below it if it was a directory.
+     */
+    SyncResult syncPaths(Collection<Path> paths) throws IOException {
+        Map<String, PathMultipartFile> present = new LinkedHashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                continue;
+            }
+            if (Files.isRegularFile(path)) {
+                PathMultipartFile candidate = toCandidate(path, Files.readAttributes(path, BasicFileAttributes.class));
+                if (candidate != null) {
+                    present.put(candidate.getOriginalFilename(), candidate);
+                }
+            } else {
+                missing.add(relativeName(path));
+            }
+        }
+
+        Map<String, DocumentRegistry> synced = registryService.findSyncedDocuments();
+        List<DocumentRegistry> removed = synced.values().stream()
+            .filter(doc -> missing.stream().anyMatch(name -> isAtOrBelow(doc.getFilename(), name)))
+            .toList();
+        return apply(present.values(), synced, removed);
+    }
+
+    private SyncResult apply(Collection<PathMultipartFile> files, Map<String, DocumentRegistry> synced,
+                             List<DocumentRegistry> removed) {
+        List<PathMultipartFile> changed = new ArrayList<>();
+        for (PathMultipartFile file : files) {
+            DocumentRegistry registered = synced.get(file.getOriginalFilename());
+            boolean unchanged = registered != null
+                && Long.valueOf(file.getSize()).equals(registered.getFileSize())
+                && file.getLastModified().equals(registered.getSourceLastModified());
+            if (!unchanged) {
+                changed.add(file);
+            }
+        }
+
+        for (int from = 0; from < changed.size(); from += settings.getBatchSize()) {
+            List<PathMultipartFile> batch = changed.subList(from, Math.min(from + settings.getBatchSize(), changed.size()));
+            UploadResponse response = ingestionService.ingestDocuments(batch.toArray(new PathMultipartFile[0]));
+            logger.info("Synced {} changed files: {}", batch.size(), response.getMessage());
+        }
+
+        int deleted = 0;
+        for (DocumentRegistry doc : removed) {
+            try {
+                registryService.deleteDocument(doc.getDocumentId(), doc.getFilename());
+                deleted++;
+            } catch (Exception e) {
+                logger.error("Failed to remove deleted file {}: {}", doc.getFilename(), e.getMessage());
+            }
+        }
+
+        SyncResult result = new SyncResult(changed.size(), files.size() - changed.size(), deleted);
+        logger.info("Directory sync finished: {} ingested, {} unchanged, {} removed",
+            result.ingested(), result.unchanged(), result.removed());
+        return result;
+    }
+
+    private PathMultipartFile toCandidate(Path file, BasicFileAttributes attributes) {
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        String name = relativeName(file);
+        if (!DocumentIngestionService.isIngestible(name, attributes.size())) {
+            logger.debug("Skipping {}: unsupported type or size", name);
+            return null;
+        }
+        return new PathMultipartFile(file, name, attributes.size(),
+            PathMultipartFile.toRegistryTime(attributes.lastModifiedTime()));
+    }
+
+    /**
+     * Registry name of a file: its path relative to the sync directory, with forward slashes.
+     */
+    private String relativeName(Path file) {
+        return root.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Whether a registry name is the given file or directory, or lies below it; the empty name is the sync directory.
+     */
+    private static boolean isAtOrBelow(String filename, String name) {
+        return name.isEmpty() || filename.equals(name) || filename.startsWith(name + "/");
+    }
+
+    private void runFullSync() {
+        try {
+            syncAll();
+        } catch (Exception e) {
+            logger.error("Directory sync of {} failed", root, e);
+        }
+    }
+
+    private void runPendingSync() {
+        List<Path> paths = new ArrayList<>(pendingPaths);
+        pendingPaths.removeAll(paths);
+        if (paths.isEmpty()) {
+            return;
+        }
+        try {
+            syncPaths(paths);
+        } catch (Exception e) {
+            logger.error("Directory sync of {} changed paths failed", paths.size(), e);
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        logger.warn("Watch events lost for {}, scheduling full sync", root);
+                        scheduler.execute(this::runFullSync);
+                        continue;
+                    }
+                    Path changed = directory.resolve((Path) event.context());
+                    try {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                            // New directories are watched too; files copied in before registration are picked up by the walk
+                            registerTree(changed);
+                            try (var files = Files.walk(changed)) {
+                                files.filter(Files::isRegularFile).forEach(pendingPaths::add);
+                            }
+                        } else {
+                            pendingPaths.add(changed);
+                        }
+                    } catch (IOException | UncheckedIOException e) {
+                        // Whatever the walk missed below it is left to the periodic scan
+                        logger.warn("Cannot watch {}: {}", changed, e.getMessage());
+                        pendingPaths.add(changed);
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+                scheduleFlush();
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("Directory watcher stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Restarts the quiet period, so a file still being written is synced once, after the last event.
+     */
+    private synchronized void scheduleFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+        }
+        pendingFlush = scheduler.schedule(this::runPendingSync, settings.getDebounce().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void registerTree(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -1,28 +1,56 @@
 package com.rk.ai.rag.service;
 
+import com.rk.ai.rag.config.IngestionProperties;
 import com.rk.ai.rag.exception.DocumentProcessingException;
 import com.rk.ai.rag.exception.DocumentProcessingException.ProcessingStage;
 import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.model.IngestionStage;
+import com.rk.ai.rag.model.PipelineStageStats;
 import com.rk.ai.rag.model.UploadResponse;
+import com.rk.ai.rag.pipeline.PipelineStage;
 import com.rk.ai.rag.reader.*;
+import com.rk.ai.rag.repository.VectorStoreRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 @Service
 public class DocumentIngestionService {
@@ -35,10 +63,17 @@ public class DocumentIngestionService {
         ".doc", ".docx",             // Word files
         ".xls", ".xlsx",             // Excel files
         ".csv",                      // CSV files
-        ".json"                      // JSON files
+        ".json", ".ndjson", ".jsonl"  // JSON and newline-delimited JSON files
     );
+    private static final List<String> JSON_EXTENSIONS = List.of(".json", ".ndjson", ".jsonl");
+    // Embedding batches a new document may have in flight while it is read, before the oldest is stored
+    private static final int MAX_PREFETCHED_BATCHES = 4;
     
-    private final VectorStore vectorStore;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final EmbeddingCache embeddingCache;
+    private final ExtractedTextCache textCache;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final NearDuplicateIndex nearDuplicates;
     private final ChunkingService chunkingService;
     private final DocumentRegistryService documentRegistryService;
     private final PdfDocumentReader pdfReader;
@@ -47,9 +82,19 @@ public class DocumentIngestionService {
     private final CsvDocumentReader csvReader;
     private final JsonDocumentReader jsonReader;
     private final TextDocumentReader textReader;
+    private final IngestionJobService jobService;
+    private final TaskExecutor jobExecutor;
+    private final IngestionProperties properties;
+    private final PipelineStage<IngestionTask> extractStage;
+    private final PipelineStage<IngestionTask> embedStage;
+    private final PipelineStage<IngestionTask> storeStage;
     
     public DocumentIngestionService(
-            VectorStore vectorStore, 
+            EmbeddingBatcher embeddingBatcher,
+            EmbeddingCache embeddingCache,
+            ExtractedTextCache textCache,
+            VectorStoreRepository vectorStoreRepository,
+            NearDuplicateIndex nearDuplicates,
             ChunkingService chunkingService,
             DocumentRegistryService documentRegistryService,
             PdfDocumentReader pdfReader,
@@ -57,8 +102,15 @@ public class DocumentIngestionService {
             ExcelDocumentReader excelReader,
             CsvDocumentReader csvReader,
             JsonDocumentReader jsonReader,
-            TextDocumentReader textReader) {
-        this.vectorStore = vectorStore;
+            TextDocumentReader textReader,
+            IngestionJobService jobService,
+            @Qualifier("ingestionJobExecutor") TaskExecutor jobExecutor,
+            IngestionProperties properties) {
+        this.embeddingBatcher = embeddingBatcher;
+        this.embeddingCache = embeddingCache;
+        this.textCache = textCache;
+        this.vectorStoreRepository = vectorStoreRepository;
+        this.nearDuplicates = nearDuplicates;
         this.chunkingService = chunkingService;
         this.documentRegistryService = documentRegistryService;
         this.pdfReader = pdfReader;
@@ -67,130 +119,1044 @@ public class DocumentIngestionService {
         this.csvReader = csvReader;
         this.jsonReader = jsonReader;
         this.textReader = textReader;
+        this.jobService = jobService;
+        this.jobExecutor = jobExecutor;
+        this.properties = properties;
+        
+        // Build downstream stages first so each handler can forward to its successor
+        IngestionProperties.Pipeline pipeline = properties.getPipeline();
+        this.storeStage = new PipelineStage<>("store", pipeline.getStore().getWorkers(),
+            pipeline.getStore().getQueueCapacity(), true, this::store, this::handleFailure);
+        this.embedStage = new PipelineStage<>("embed", pipeline.getEmbed().getWorkers(),
+            pipeline.getEmbed().getQueueCapacity(), true, this::embed, this::handleFailure);
+        this.extractStage = new PipelineStage<>("extract", pipeline.getExtract().getWorkers(),
+            pipeline.getExtract().getQueueCapacity(), false, this::extract, this::handleFailure);
     }
     
+    /**
+     * Ingests the given files on the calling thread and returns the finished job.
+     */
     public UploadResponse ingestDocuments(MultipartFile[] files) {
-        String jobId = UUID.randomUUID().toString();
-        logger.info("Starting document ingestion job: {}", jobId);
+        IngestionJob job = createJob(files);
+        runJob(job, files);
+        return job.snapshot();
+    }
+    
+    /**
+     * Accepts the given files for background ingestion and returns immediately.
+     * Uploads are spooled to disk first because multipart data does not outlive the request.
+     * Progress can be polled via {@link #getJob(String)}.
+     */
+    public UploadResponse submitDocuments(MultipartFile[] files) {
+        List<SpooledMultipartFile> spooledFiles = new ArrayList<>();
+        try {
+            Path spoolDirectory = Path.of(properties.getSpoolDirectory());
+            for (MultipartFile file : files) {
+                spooledFiles.add(SpooledMultipartFile.spool(file, spoolDirectory));
+            }
+        } catch (IOException e) {
+            logger.error("Failed to spool uploaded files", e);
+            spooledFiles.forEach(SpooledMultipartFile::release);
+            return new UploadResponse(null, "FAILED", "Failed to store uploaded files: " + e.getMessage());
+        }
+        
+        MultipartFile[] jobFiles = spooledFiles.toArray(new MultipartFile[0]);
+        IngestionJob job = createJob(jobFiles);
+        
+        try {
+            jobExecutor.execute(() -> {
+                try {
+                    runJob(job, jobFiles);
+                } finally {
+                    spooledFiles.forEach(SpooledMultipartFile::release);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            logger.warn("Ingestion job {} rejected: job queue is full", job.getJobId());
+            discardJob(job, spooledFiles);
+            return new UploadResponse(null, "REJECTED", "Ingestion queue is full, please retry later");
+        }
         
-        UploadResponse response = new UploadResponse(jobId, "PROCESSING", "Document ingestion started");
-        response.setTotalFiles(files.length);
+        logger.info("Accepted ingestion job {} with {} files", job.getJobId(), jobFiles.length);
+        return job.snapshot();
+    }
+    
+    /**
+     * Accepts a zip or tar.gz archive for background ingestion and returns immediately.
+     * The request body is streamed to a spool file; the job then reads the archive entry by entry
+     * and ingests the entries in batches, so neither the archive nor its entries are held in memory.
+     * Entries are registered under their path inside the archive. The job's file count grows as
+     * entries are read.
+     */
+    public UploadResponse submitArchive(InputStream archive) {
+        Path spoolDirectory = Path.of(properties.getSpoolDirectory());
+        Path archivePath;
+        try {
+            Files.createDirectories(spoolDirectory);
+            archivePath = Files.createTempFile(spoolDirectory, "archive-", ".spool");
+        } catch (IOException e) {
+            logger.error("Failed to create archive spool file", e);
+            return new UploadResponse(null, "FAILED", "Failed to store uploaded archive: " + e.getMessage());
+        }
         
-        List<UploadResponse.DocumentInfo> documentInfos = new ArrayList<>();
-        int processedCount = 0;
-        int totalChunks = 0;
+        try {
+            Files.copy(archive, archivePath, StandardCopyOption.REPLACE_EXISTING);
+            // Fail fast on anything that is not a readable archive, before a job is created
+            openArchive(archivePath).close();
+        } catch (ArchiveException e) {
+            deleteSpoolFile(archivePath);
+            return new UploadResponse(null, "INVALID", "Not a zip or tar.gz archive");
+        } catch (IOException e) {
+            logger.error("Failed to spool uploaded archive", e);
+            deleteSpoolFile(archivePath);
+            return new UploadResponse(null, "FAILED", "Failed to store uploaded archive: " + e.getMessage());
+        }
         
+        IngestionJob job = jobService.createJob();
+        try {
+            jobExecutor.execute(() -> {
+                try {
+                    runArchiveJob(job, archivePath, spoolDirectory);
+                } finally {
+                    deleteSpoolFile(archivePath);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            logger.warn("Archive import job {} rejected: job queue is full", job.getJobId());
+            jobService.removeJob(job.getJobId());
+            deleteSpoolFile(archivePath);
+            return new UploadResponse(null, "REJECTED", "Ingestion queue is full, please retry later");
+        }
+        
+        logger.info("Accepted archive import job {}", job.getJobId());
+        return job.snapshot();
+    }
+    
+    /**
+     * Re-chunks and re-embeds every registered document from the extracted text cache in the
+     * background, e.g. after the chunking mode or the embedding model changed. Nothing is parsed
+     * again and no uploads are needed; documents whose text is not cached are reported as failed.
+     * Stored chunks are all replaced, as their embeddings may come from a different model.
+     */
+    public UploadResponse submitReindex() {
+        IngestionJob job = jobService.createJob();
+        try {
+            jobExecutor.execute(() -> runReindexJob(job));
+        } catch (TaskRejectedException e) {
+            logger.warn("Reindex job {} rejected: job queue is full", job.getJobId());
+            jobService.removeJob(job.getJobId());
+            return new UploadResponse(null, "REJECTED", "Ingestion queue is full, please retry later");
+        }
+        
+        logger.info("Accepted reindex job {}", job.getJobId());
+        return job.snapshot();
+    }
+    
+    /**
+     * Returns the current state of an ingestion job, if it is still known.
+     */
+    public Optional<UploadResponse> getJob(String jobId) {
+        return jobService.findJob(jobId).map(IngestionJob::snapshot);
+    }
+    
+    /**
+     * Returns live statistics for every pipeline stage.
+     */
+    public List<PipelineStageStats> getPipelineStats() {
+        return List.of(extractStage.stats(), embedStage.stats(), storeStage.stats());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // Close upstream first so every stage drains into a still-running successor
+        extractStage.close();
+        embedStage.close();
+        storeStage.close();
+    }
+    
+    private IngestionJob createJob(MultipartFile[] files) {
+        IngestionJob job = jobService.createJob();
         for (MultipartFile file : files) {
-            UploadResponse.DocumentInfo docInfo = new UploadResponse.DocumentInfo(
-                UUID.randomUUID().toString(),
-                file.getOriginalFilename(),
-                file.getSize()
-            );
-            
+            job.addDocument(file.getOriginalFilename(), file.getSize());
+        }
+        return job;
+    }
+    
+    private void discardJob(IngestionJob job, List<SpooledMultipartFile> spooledFiles) {
+        jobService.removeJob(job.getJobId());
+        spooledFiles.forEach(SpooledMultipartFile::release);
+    }
+    
+    /**
+     * Runs all files of a job through the pipeline and marks the job as finished.
+     */
+    private void runJob(IngestionJob job, MultipartFile[] files) {
+        logger.info("Starting document ingestion job: {} ({} files)", job.getJobId(), files.length);
+        
+        List<IngestionTask> tasks = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            tasks.add(new IngestionTask(job, i, files[i]));
+        }
+        runTasks(job, tasks);
+        
+        job.complete();
+        logger.info("Completed ingestion job {}: {}", job.getJobId(), job.getStatus());
+    }
+    
+    /**
+     * Feeds tasks into the pipeline and waits until every file is done.
+     * Submitting blocks while the extract stage is full, so a huge job cannot flood memory.
+     * Files sharing a filename go through in separate waves, in submission order, so their
+     * registry updates cannot race. A wave also waits for other jobs that are ingesting one of
+     * its filenames, and looks the filenames up in the registry only once they are done.
+     */
+    private void runTasks(IngestionJob job, List<IngestionTask> allTasks) {
+        List<List<IngestionTask>> waves = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (IngestionTask task : allTasks) {
+            String filename = Objects.requireNonNullElse(task.getFilename(), "");
+            int wave = occurrences.merge(filename, 1, Integer::sum) - 1;
+            if (wave == waves.size()) {
+                waves.add(new ArrayList<>());
+            }
+            waves.get(wave).add(task);
+        }
+        
+        for (List<IngestionTask> tasks : waves) {
+            List<String> filenames = tasks.stream().map(IngestionTask::getFilename).filter(Objects::nonNull).toList();
             try {
-                validateFile(file);
-                int chunks = processDocument(file, docInfo.getDocumentId());
-                
-                docInfo.setChunks(chunks);
-                docInfo.setStatus("SUCCESS");
-                processedCount++;
-                totalChunks += chunks;
-                
-                logger.info("Successfully processed document: {} ({} chunks)", 
-                    file.getOriginalFilename(), chunks);
+                jobService.lockFilenames(filenames);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.forEach(task -> task.fail("Ingestion interrupted"));
+                continue;
+            }
+            try {
+                runWave(job, tasks, filenames);
+            } finally {
+                jobService.unlockFilenames(filenames);
+            }
+        }
+    }
+    
+    private void runWave(IngestionJob job, List<IngestionTask> tasks, List<String> filenames) {
+        // One registry query for the whole wave instead of one per file
+        Map<String, DocumentRegistry> registered;
+        try {
+            registered = documentRegistryService.findByFilenames(filenames);
+        } catch (Exception e) {
+            logger.error("Failed to look up document registry for job {}", job.getJobId(), e);
+            tasks.forEach(task -> task.fail("Failed to look up document registry: " + e.getMessage()));
+            return;
+        }
+        
+        // New documents' chunks are stored before their registry entry, so maintenance must skip them
+        List<String> unregistered = new ArrayList<>();
+        for (IngestionTask task : tasks) {
+            task.setExisting(registered.get(task.getFilename()));
+            if (task.getExisting() == null) {
+                unregistered.add(task.getDocumentId());
+            }
+        }
+        jobService.markInFlight(unregistered);
+        try {
+            for (IngestionTask task : tasks) {
+                try {
+                    extractStage.submit(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.fail("Ingestion interrupted");
+                } catch (IllegalStateException e) {
+                    task.fail("Ingestion pipeline is shutting down");
+                }
+            }
+            CompletableFuture.allOf(tasks.stream().map(IngestionTask::getCompletion).toArray(CompletableFuture[]::new))
+                .join();
+            registerWave(tasks);
+        } finally {
+            jobService.clearInFlight(unregistered);
+        }
+    }
+    
+    /**
+     * Reads an archive entry by entry, spooling each supported entry and ingesting them in batches.
+     * While a batch runs the archive is not read further, so disk and memory use stay bounded
+     * by the batch size and the pipeline's queues.
+     */
+    private void runArchiveJob(IngestionJob job, Path archivePath, Path spoolDirectory) {
+        logger.info("Starting archive import job: {}", job.getJobId());
+        int batchSize = Math.max(1, properties.getArchive().getBatchSize());
+        List<IngestionTask> batch = new ArrayList<>(batchSize);
+        List<SpooledMultipartFile> spooledFiles = new ArrayList<>(batchSize);
+        String error = null;
+        
+        try (ArchiveInputStream<?> entries = openArchive(archivePath)) {
+            ArchiveEntry entry;
+            while ((entry = entries.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String filename = entry.getName().replaceFirst("^(\\./|/)+", "");
+                long size = entry.getSize();
                 
-            } catch (DocumentProcessingException e) {
-                logger.error("Failed to process document: {}", file.getOriginalFilename(), e);
-                docInfo.setStatus("FAILED");
-                docInfo.setErrorMessage(e.getMessage());
+                // Unknown sizes (streamed zip entries) are checked while spooling
+                if (!entries.canReadEntryData(entry) || !isIngestible(filename, size < 0 ? 1 : size)) {
+                    int index = job.addDocument(filename, Math.max(size, 0));
+                    job.markFailed(index, "Unsupported, empty, oversized or unreadable archive entry");
+                    continue;
+                }
                 
-            } catch (Exception e) {
-                logger.error("Unexpected error processing document: {}", file.getOriginalFilename(), e);
-                docInfo.setStatus("FAILED");
-                docInfo.setErrorMessage("Unexpected error: " + e.getMessage());
+                // The declared size is not trusted: reading stops one byte past it, or past the limit if unknown
+                long maxSize = size < 0 ? MAX_FILE_SIZE : size;
+                SpooledMultipartFile spooled = SpooledMultipartFile.spool(filename, null, entries, spoolDirectory, maxSize);
+                if (spooled.getSize() > maxSize) {
+                    spooled.release();
+                    int index = job.addDocument(filename, spooled.getSize());
+                    job.markFailed(index, "Archive entry is larger than " + (size < 0 ? "the maximum file size" : "its declared size"));
+                    continue;
+                }
+                spooledFiles.add(spooled);
+                batch.add(new IngestionTask(job, job.addDocument(filename, spooled.getSize()), spooled));
+                if (batch.size() == batchSize) {
+                    runArchiveBatch(job, batch, spooledFiles);
+                }
             }
-            
-            documentInfos.add(docInfo);
+        } catch (IOException | ArchiveException e) {
+            logger.error("Failed to read archive of job {}", job.getJobId(), e);
+            error = "Failed to read archive: " + e.getMessage();
         }
         
-        response.setProcessedFiles(processedCount);
-        response.setTotalChunks(totalChunks);
-        response.setDocuments(documentInfos);
+        // Entries read before a broken part of the archive are still ingested
+        runArchiveBatch(job, batch, spooledFiles);
         
-        if (processedCount == files.length) {
-            response.setStatus("COMPLETED");
-            response.setMessage(String.format("Successfully processed all %d documents (%d chunks)", 
-                processedCount, totalChunks));
-        } else if (processedCount == 0) {
-            response.setStatus("FAILED");
-            response.setMessage("Failed to process any documents");
+        if (error != null) {
+            job.abort(error);
         } else {
-            response.setStatus("PARTIAL_SUCCESS");
-            response.setMessage(String.format("Processed %d/%d documents (%d chunks)", 
-                processedCount, files.length, totalChunks));
+            job.complete();
+        }
+        logger.info("Completed archive import job {}: {}", job.getJobId(), job.getStatus());
+    }
+    
+    private void runArchiveBatch(IngestionJob job, List<IngestionTask> batch, List<SpooledMultipartFile> spooledFiles) {
+        try {
+            runTasks(job, batch);
+        } finally {
+            spooledFiles.forEach(SpooledMultipartFile::release);
+            spooledFiles.clear();
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Feeds all registered documents with cached text through the pipeline in batches, then drops
+     * cache entries that no registered document refers to any more.
+     */
+    private void runReindexJob(IngestionJob job) {
+        logger.info("Starting reindex job: {}", job.getJobId());
+        FileTime startedAt = FileTime.from(Instant.now());
+        List<DocumentRegistry> documents;
+        try {
+            documents = documentRegistryService.findAll();
+        } catch (Exception e) {
+            logger.error("Failed to load document registry for reindex job {}", job.getJobId(), e);
+            job.abort("Failed to load document registry: " + e.getMessage());
+            return;
         }
         
-        logger.info("Completed ingestion job {}: {}", jobId, response.getStatus());
-        return response;
+        int batchSize = Math.max(1, properties.getTextCache().getReindexBatchSize());
+        List<IngestionTask> batch = new ArrayList<>(batchSize);
+        for (DocumentRegistry document : documents) {
+            int index = job.addDocument(document.getFilename(), document.getFileSize());
+            if (!textCache.contains(document.getRawHash())) {
+                job.markFailed(index, "Extracted text is not cached, upload the file again to reindex it");
+                continue;
+            }
+            batch.add(new IngestionTask(job, index, new CachedTextFile(document)));
+            if (batch.size() == batchSize) {
+                runTasks(job, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            runTasks(job, batch);
+        }
+        
+        Set<String> rawHashes = documents.stream().map(DocumentRegistry::getRawHash).filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        int pruned = textCache.retainOnly(rawHashes, startedAt);
+        job.complete();
+        logger.info("Completed reindex job {}: {} ({} unused cache entries removed)", job.getJobId(), job.getStatus(), pruned);
     }
     
-    private int processDocument(MultipartFile file, String documentId) {
-        String filename = file.getOriginalFilename();
+    /**
+     * Opens a zip, tar or gzip-compressed tar file, detected from its leading bytes.
+     */
+    private static ArchiveInputStream<?> openArchive(Path archivePath) throws IOException, ArchiveException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(archivePath));
+        try {
+            in.mark(2);
+            byte[] signature = in.readNBytes(2);
+            in.reset();
+            if (GzipCompressorInputStream.matches(signature, signature.length)) {
+                in = new BufferedInputStream(new GzipCompressorInputStream(in));
+            }
+            return new ArchiveStreamFactory().createArchiveInputStream(in);
+        } catch (IOException | ArchiveException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    private static void deleteSpoolFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spooled archive {}: {}", path, e.getMessage());
+        }
+    }
+    
+    /**
+     * Writes the registry entries of all stored files of a wave in one batch upsert.
+     */
+    private void registerWave(List<IngestionTask> tasks) {
+        List<IngestionTask> pending = tasks.stream().filter(task -> task.getRegistration() != null).toList();
+        if (pending.isEmpty()) {
+            return;
+        }
         
         try {
-            // Extract content first
-            String content = extractContent(file);
-            
-            // Calculate content hash for duplicate detection
-            String contentHash = calculateHash(content);
-            
-            // Check for existing document with same filename
-            Optional<DocumentRegistry> existingDoc = documentRegistryService.findByFilename(filename);
-            
-            if (existingDoc.isPresent()) {
-                DocumentRegistry existing = existingDoc.get();
-                
-                // Check if content has changed
-                if (contentHash.equals(existing.getContentHash())) {
-                    logger.info("Document {} already exists with same content hash. Skipping ingestion.", filename);
-                    return existing.getChunkCount();
-                }
-                
-                // Content has changed - delete old chunks before adding new ones (upsert)
-                logger.info("Document {} exists but content has changed. Updating...", filename);
-                documentRegistryService.deleteDocument(existing.getDocumentId(), filename);
+            documentRegistryService.registerAll(pending.stream().map(IngestionTask::getRegistration).toList());
+            pending.forEach(IngestionTask::registered);
+        } catch (Exception e) {
+            logger.error("Failed to register {} documents", pending.size(), e);
+            pending.forEach(task -> task.registrationFailed("Failed to register document: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Extract stage: validates the file, skips it if its bytes are unchanged, extracts and chunks
+     * its text and decides whether it needs re-ingestion.
+     */
+    private void extract(IngestionTask task) throws Exception {
+        MultipartFile file = task.getFile();
+        String filename = task.getFilename();
+        if (file instanceof CachedTextFile cached) {
+            extractCached(task, cached);
+            return;
+        }
+        validateFile(file);
+        
+        // Identical bytes are detected before any reader parses the file
+        String rawHash;
+        try {
+            rawHash = SpooledMultipartFile.hash(file);
+        } catch (IOException e) {
+            logger.error("IO error processing document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to read document", filename, ProcessingStage.FILE_READING, e);
+        }
+        task.setRawHash(rawHash);
+        
+        // Registry entry with the same filename, looked up for the whole wave in runJob
+        DocumentRegistry existing = task.getExisting();
+        if (existing != null && rawHash.equals(existing.getRawHash())) {
+            logger.info("Document {} already exists with same file hash. Skipping extraction.", filename);
+            LocalDateTime sourceLastModified = sourceLastModified(file);
+            if (sourceLastModified != null && !sourceLastModified.equals(existing.getSourceLastModified())) {
+                // Touched but identical synced file: record the new time so the next scan skips it without reading
+                existing.setSourceLastModified(sourceLastModified);
+                task.awaitRegistration(existing, IngestionStage.UNCHANGED);
             } else {
-                logger.info("New document {}. Processing...", filename);
+                task.advance(IngestionStage.UNCHANGED);
+                task.succeed(existing.getChunkCount());
             }
-            
-            // Process the document
-            Map<String, Object> metadata = createMetadata(file, documentId);
-            metadata.put("content_hash", contentHash);
-            
-            List<Document> chunks = chunkDocument(content, filename, metadata);
-            storeChunks(chunks, filename);
-
-            // Register the document in the registry
-            documentRegistryService.register(
-                UUID.fromString(documentId),
-                filename,
-                contentHash,
-                file.getSize(),
-                chunks.size()
-            );
-
-            logger.info("Successfully processed and registered document: {} ({} chunks)", filename, chunks.size());
-            return chunks.size();
-
+            return;
+        }
+        
+        // Rows and records are grouped into chunks as they are, without the overlapping text chunker
+        String filenameLower = filename.toLowerCase();
+        if (filenameLower.endsWith(".csv")) {
+            extractRecords(task, sink -> {
+                try (InputStream inputStream = file.getInputStream()) {
+                    csvReader.readRows(inputStream, filename, row -> sink.accept(row, Map.of()));
+                }
+            });
+            return;
+        }
+        if (JSON_EXTENSIONS.stream().anyMatch(filenameLower::endsWith)) {
+            extractRecords(task, sink -> {
+                try (InputStream inputStream = file.getInputStream()) {
+                    jsonReader.readRecords(inputStream, filename,
+                        (jsonPath, text) -> sink.accept(text, Map.of("json_path", jsonPath)));
+                }
+            });
+            return;
+        }
+        extractSegments(task);
+    }
+    
+    /**
+     * Extract stage of a reindex: the text is replayed from the extracted text cache exactly as the
+     * reader once produced it, and chunked again as if the file had been read.
+     */
+    private void extractCached(IngestionTask task, CachedTextFile file) throws Exception {
+        DocumentRegistry existing = task.getExisting();
+        if (existing == null) {
+            throw new DocumentProcessingException("Document is no longer registered", task.getFilename(),
+                ProcessingStage.FILE_READING);
+        }
+        if (!file.getRawHash().equals(existing.getRawHash())) {
+            // Re-ingested since the reindex started, so it is already chunked with the current settings
+            task.advance(IngestionStage.UNCHANGED);
+            task.succeed(existing.getChunkCount());
+            return;
+        }
+        
+        task.setRawHash(file.getRawHash());
+        String filenameLower = task.getFilename().toLowerCase();
+        if (filenameLower.endsWith(".csv") || JSON_EXTENSIONS.stream().anyMatch(filenameLower::endsWith)) {
+            // The cache holds the rows or records, so they are grouped with the current chunk limits
+            extractRecords(task, sink -> textCache.read(file.getRawHash(),
+                segment -> sink.accept(segment.text(), segment.hints())));
+            return;
+        }
+        extractSegments(task);
+    }
+    
+    /**
+     * Reads a file record by record.
+     */
+    @FunctionalInterface
+    private interface RecordReader {
+        void read(RecordSink sink) throws Exception;
+    }
+    
+    /**
+     * Receives one record, such as a CSV row or a JSON record, and its hints.
+     */
+    @FunctionalInterface
+    private interface RecordSink {
+        void accept(String text, Map<String, Object> hints) throws Exception;
+    }
+    
+    /**
+     * Extract stage for files whose reader yields records, such as CSV rows or JSON records. The
+     * records are cached as they are and grouped into chunks while they are read, so the file never
+     * exists as one string.
+     */
+    private void extractRecords(IngestionTask task, RecordReader reader) throws Exception {
+        String filename = task.getFilename();
+        String documentId = prepareDocumentId(task);
+        
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        StreamedChunks chunks = new StreamedChunks(task);
+        ChunkingService.Chunker chunker = chunkingService.openRecordChunker(Map.of(), documentId, chunks::add);
+        try (ExtractedTextCache.Writer cached = textCache.open(task.getRawHash())) {
+            reader.read((text, hints) -> {
+                cached.write(new TextSegment(text, hints));
+                if (!hints.isEmpty()) {
+                    digest.update((hints + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((text + "\n").getBytes(StandardCharsets.UTF_8));
+                try {
+                    chunker.append(text, hints);
+                } catch (RuntimeException e) {
+                    logger.error("Error chunking document: {}", filename, e);
+                    throw new DocumentProcessingException("Failed to chunk document", filename, ProcessingStage.CHUNKING, e);
+                }
+                chunks.prefetchFullBatch();
+            });
+            cached.commit();
+        } catch (DocumentProcessingException | InterruptedException e) {
+            throw e;
         } catch (IOException e) {
             logger.error("IO error processing document: {}", filename, e);
             throw new DocumentProcessingException("Failed to read document", filename, ProcessingStage.FILE_READING, e);
         } catch (Exception e) {
-            logger.error("Error processing document: {}", filename, e);
-            throw new DocumentProcessingException("Failed to process document", filename, ProcessingStage.CHUNKING, e);
+            logger.error("Error extracting text from document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to extract text", filename, ProcessingStage.TEXT_EXTRACTION, e);
         }
+        try {
+            chunker.finish();
+        } catch (RuntimeException e) {
+            logger.error("Error chunking document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to chunk document", filename, ProcessingStage.CHUNKING, e);
+        }
+        completeExtraction(task, chunks, HexFormat.of().formatHex(digest.digest()));
     }
-
+    
+    /**
+     * Extract stage for every other format: the reader hands out the text segment by segment (pages,
+     * sheets, sections) and each segment goes straight into the chunker, so the text never exists
+     * as one string and the first chunks are ready while later pages are still being parsed.
+     */
+    private void extractSegments(IngestionTask task) throws Exception {
+        MultipartFile file = task.getFile();
+        String filename = task.getFilename();
+        String documentId = prepareDocumentId(task);
+        
+        StreamedChunks chunks = new StreamedChunks(task);
+        ChunkingService.Chunker chunker = chunkingService.openChunker(Map.of(), documentId, chunks::add);
+        TrimmedText text = new TrimmedText(chunker);
+        try (ExtractedTextCache.Writer cached = textCache.open(task.getRawHash())) {
+            readSegments(file, segment -> {
+                cached.write(segment);
+                try {
+                    text.append(segment);
+                } catch (RuntimeException e) {
+                    logger.error("Error chunking document: {}", filename, e);
+                    throw new DocumentProcessingException("Failed to chunk document", filename, ProcessingStage.CHUNKING, e);
+                }
+                chunks.prefetchFullBatch();
+            });
+            cached.commit();
+        } catch (DocumentProcessingException | InterruptedException e) {
+            throw e;
+        } catch (IOException e) {
+            logger.error("IO error processing document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to read document", filename, ProcessingStage.FILE_READING, e);
+        } catch (Exception e) {
+            logger.error("Error extracting text from document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to extract text", filename, ProcessingStage.TEXT_EXTRACTION, e);
+        }
+        try {
+            chunker.finish();
+        } catch (RuntimeException e) {
+            logger.error("Error chunking document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to chunk document", filename, ProcessingStage.CHUNKING, e);
+        }
+        completeExtraction(task, chunks, text.hash());
+    }
+    
+    /**
+     * Whether none of the stored chunks will be kept: the document is new, or it is being reindexed,
+     * possibly for a new embedding model. Embeddings can then be requested while the text is read.
+     */
+    private static boolean replacesAllChunks(IngestionTask task) {
+        return task.getExisting() == null || task.getFile() instanceof CachedTextFile;
+    }
+    
+    /**
+     * Chunks are created while reading, so an existing document's stored ID is needed up front.
+     */
+    private static String prepareDocumentId(IngestionTask task) {
+        if (task.getExisting() != null) {
+            task.setDocumentId(task.getExisting().getDocumentId().toString());
+        }
+        return task.getDocumentId();
+    }
+    
+    /**
+     * Skips the file if its text is unchanged, otherwise hands the task to the embed stage.
+     */
+    private void completeExtraction(IngestionTask task, StreamedChunks chunks, String contentHash) throws Exception {
+        task.advance(IngestionStage.EXTRACTED);
+        if (task.getFile() instanceof CachedTextFile) {
+            logger.info("Reindexing document {} from its cached text", task.getFilename());
+        } else if (task.getExisting() != null) {
+            if (skipIfContentUnchanged(task, contentHash)) {
+                return;
+            }
+            logger.info("Document {} exists but content has changed. Updating...", task.getFilename());
+        } else {
+            logger.info("New document {}. Processing...", task.getFilename());
+        }
+        
+        if (chunks.linked > 0) {
+            logger.info("Linked {} of {} chunks of {} to near-duplicate stored chunks",
+                chunks.linked, chunks.size(), task.getFilename());
+        }
+        chunks.prefetchRest();
+        
+        task.setContentHash(contentHash);
+        task.setTotalChunks(chunks.size());
+        task.setChunks(chunks.chunks);
+        task.setPrefetchedEmbeddings(chunks.prefetched);
+        task.advance(IngestionStage.CHUNKED);
+        embedStage.submit(task);
+    }
+    
+    /**
+     * Chunks of a file that is still being read. A new document has no stored chunks to keep, so
+     * its embeddings are requested batch by batch while the rest of the file is still being parsed;
+     * near-duplicates of stored chunks are linked to those right away and never requested. Once
+     * more than {@value #MAX_PREFETCHED_BATCHES} batches are in flight, the oldest one is awaited and
+     * its chunks are written, so a new document holds a bounded number of chunks however large it
+     * is. A reindexed document keeps all of its chunks until the store stage, as its stored version
+     * is only replaced once the new one is complete.
+     */
+    private final class StreamedChunks {
+        
+        private final IngestionTask task;
+        // Chunks not written yet, in order; the first ones belong to the prefetched batches
+        private final List<Document> chunks = new ArrayList<>();
+        private final List<PendingEmbeddings> prefetched;
+        private final boolean storesEarly;
+        private final int batchSize = Math.max(1, properties.getEmbedding().getBatchSize());
+        private int requested;
+        private int created;
+        private int linked;
+        
+        private StreamedChunks(IngestionTask task) {
+            this.task = task;
+            this.prefetched = replacesAllChunks(task) ? new ArrayList<>() : null;
+            this.storesEarly = task.getExisting() == null;
+        }
+        
+        void add(Document chunk) {
+            created++;
+            // Without prefetching, the embed stage checks the chunks once the retained ones are known
+            if (prefetched != null && nearDuplicates.claim(task, task.getDocumentId(), chunk) != null) {
+                linked++;
+                return;
+            }
+            chunks.add(chunk);
+        }
+        
+        /**
+         * Number of chunks created, including linked near-duplicates.
+         */
+        int size() {
+            return created;
+        }
+        
+        /**
+         * Requests embeddings for the chunks added since the last request once they fill a batch.
+         */
+        void prefetchFullBatch() throws InterruptedException {
+            if (chunks.size() - requested >= batchSize) {
+                prefetchRest();
+                while (storesEarly && prefetched.size() > MAX_PREFETCHED_BATCHES) {
+                    storeOldestBatch();
+                }
+            }
+        }
+        
+        void prefetchRest() throws InterruptedException {
+            if (prefetched != null && requested < chunks.size()) {
+                prefetched.add(requestEmbeddings(chunkTexts(chunks.subList(requested, chunks.size()))));
+                requested = chunks.size();
+            }
+        }
+        
+        /**
+         * Waits for the oldest batch of embeddings and writes its chunks. The document is not
+         * registered yet, so the chunks stay out of the maintenance sweep until its wave is done.
+         */
+        private void storeOldestBatch() throws InterruptedException {
+            PendingEmbeddings batch = prefetched.remove(0);
+            List<float[]> embeddings = awaitEmbeddings(batch, task.getFilename());
+            List<Document> batchChunks = chunks.subList(0, embeddings.size());
+            try {
+                vectorStoreRepository.saveChunks(List.copyOf(batchChunks), embeddings);
+            } catch (Exception e) {
+                logger.error("Error storing document: {}", task.getFilename(), e);
+                throw new DocumentProcessingException("Failed to store document", task.getFilename(),
+                    ProcessingStage.VECTOR_STORAGE, e);
+            } finally {
+                // Counted even if the write failed part way, so that a failure removes what was written
+                task.addStoredChunks(batchChunks.size());
+            }
+            logger.debug("Stored {} chunks of {} while it is still being read", batchChunks.size(), task.getFilename());
+            batchChunks.clear();
+            requested -= embeddings.size();
+        }
+    }
+    
+    /**
+     * Passes a document's text to the chunker and the content hash without its leading and
+     * trailing whitespace, as if the whole text had been trimmed first. Whitespace at the end of a
+     * segment is held back until more text follows it.
+     */
+    private static final class TrimmedText {
+        
+        private final ChunkingService.Chunker chunker;
+        private final MessageDigest digest;
+        private final StringBuilder heldWhitespace = new StringBuilder();
+        private Map<String, Object> heldHints = Map.of();
+        private boolean started;
+        
+        private TrimmedText(ChunkingService.Chunker chunker) throws NoSuchAlgorithmException {
+            this.chunker = chunker;
+            this.digest = MessageDigest.getInstance("SHA-256");
+        }
+        
+        void append(TextSegment segment) {
+            String text = segment.text();
+            int start = 0;
+            if (!started) {
+                while (start < text.length() && text.charAt(start) <= ' ') {
+                    start++;
+                }
+            }
+            int end = text.length();
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (end > start) {
+                if (!heldWhitespace.isEmpty()) {
+                    write(heldWhitespace.toString(), heldHints);
+                    heldWhitespace.setLength(0);
+                }
+                write(text.substring(start, end), segment.hints());
+                started = true;
+            }
+            if (started) {
+                heldWhitespace.append(text, end, text.length());
+                heldHints = segment.hints();
+            }
+        }
+        
+        String hash() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        
+        private void write(String text, Map<String, Object> hints) {
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            chunker.append(text, hints);
+        }
+    }
+    
+    /**
+     * Finishes the task without re-ingestion if its text matches the registered version.
+     */
+    private boolean skipIfContentUnchanged(IngestionTask task, String contentHash) {
+        DocumentRegistry existing = task.getExisting();
+        if (!contentHash.equals(existing.getContentHash())) {
+            return false;
+        }
+        
+        logger.info("Document {} already exists with same content hash. Skipping ingestion.", task.getFilename());
+        // Different bytes, same text (e.g. re-saved file): remember the new bytes for next time
+        existing.setRawHash(task.getRawHash());
+        existing.setSourceLastModified(sourceLastModified(task.getFile()));
+        existing.setFileSize(task.getFile().getSize());
+        existing.setContentType(task.getFile().getContentType());
+        task.awaitRegistration(existing, IngestionStage.UNCHANGED);
+        return true;
+    }
+    
+    /**
+     * Embed stage: keeps chunks already stored for the previous version, reuses cached embeddings
+     * and hands the remaining chunks to the cross-document batcher.
+     */
+    private void embed(IngestionTask task) throws Exception {
+        if (task.getPrefetchedEmbeddings() != null) {
+            // Requested batch by batch while the file was still being read; no chunks to retain
+            List<float[]> embeddings = new ArrayList<>(task.getChunks().size());
+            for (PendingEmbeddings batch : task.getPrefetchedEmbeddings()) {
+                embeddings.addAll(awaitEmbeddings(batch, task.getFilename()));
+            }
+            task.setPrefetchedEmbeddings(null);
+            task.setEmbeddings(embeddings);
+            task.advance(IngestionStage.EMBEDDED);
+            storeStage.submit(task);
+            return;
+        }
+        
+        if (task.getExisting() != null) {
+            retainUnchangedChunks(task);
+        }
+        linkNearDuplicates(task);
+        
+        List<Document> chunks = task.getChunks();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!task.getRetainedChunkIds().contains(chunks.get(i).getId())) {
+                pending.add(i);
+            }
+        }
+        
+        List<String> texts = pending.stream().map(i -> chunks.get(i).getText()).toList();
+        PendingEmbeddings requested = requestEmbeddings(texts);
+        logger.debug("Reusing {} stored chunks and {} cached embeddings, embedding {} chunks for document: {}", 
+            task.getRetainedChunkIds().size(), texts.size() - requested.missing().size(), requested.missing().size(), 
+            task.getFilename());
+        List<float[]> vectors = awaitEmbeddings(requested, task.getFilename());
+        
+        // Align with the chunk list; retained chunks keep their stored embedding
+        List<float[]> embeddings = new ArrayList<>(Collections.nCopies(chunks.size(), (float[]) null));
+        for (int i = 0; i < pending.size(); i++) {
+            embeddings.set(pending.get(i), vectors.get(i));
+        }
+        task.setEmbeddings(embeddings);
+        task.advance(IngestionStage.EMBEDDED);
+        storeStage.submit(task);
+    }
+    
+    /**
+     * Embeddings of a list of texts: the cached ones, and a batcher request for the rest.
+     */
+    record PendingEmbeddings(List<float[]> vectors, List<Integer> missing, List<String> missingTexts,
+                             CompletableFuture<List<float[]>> computed) {
+    }
+    
+    /**
+     * Looks up cached embeddings and queues the missing texts with the batcher without waiting for them.
+     */
+    private PendingEmbeddings requestEmbeddings(List<String> texts) throws InterruptedException {
+        List<float[]> vectors = new ArrayList<>(embeddingCache.lookup(texts));
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            if (vectors.get(i) == null) {
+                missing.add(i);
+            }
+        }
+        List<String> missingTexts = missing.stream().map(texts::get).toList();
+        CompletableFuture<List<float[]>> computed = missing.isEmpty() ? null : embeddingBatcher.embed(missingTexts);
+        return new PendingEmbeddings(vectors, missing, missingTexts, computed);
+    }
+    
+    /**
+     * Waits for the batcher's part of the request and caches it; returns one vector per requested text.
+     */
+    private List<float[]> awaitEmbeddings(PendingEmbeddings requested, String filename) throws InterruptedException {
+        if (requested.computed() == null) {
+            return requested.vectors();
+        }
+        
+        List<float[]> computed;
+        try {
+            computed = requested.computed().get();
+        } catch (ExecutionException e) {
+            logger.error("Error embedding document: {}", filename, e.getCause());
+            throw new DocumentProcessingException("Failed to generate embeddings", filename, 
+                ProcessingStage.EMBEDDING_GENERATION, e.getCause());
+        }
+        List<float[]> vectors = requested.vectors();
+        for (int i = 0; i < requested.missing().size(); i++) {
+            vectors.set(requested.missing().get(i), computed.get(i));
+        }
+        embeddingCache.put(requested.missingTexts(), computed);
+        return vectors;
+    }
+    
+    private static List<String> chunkTexts(List<Document> chunks) {
+        return chunks.stream().map(Document::getText).toList();
+    }
+    
+    /**
+     * Matches the new chunks against the previous version's stored chunks by {@code chunk_hash}.
+     * A matching chunk takes over the stored row's ID so its content and embedding are not written again.
+     */
+    private void retainUnchangedChunks(IngestionTask task) {
+        Map<String, List<String>> storedIds;
+        try {
+            storedIds = vectorStoreRepository.findChunkIdsByHash(task.getDocumentId());
+        } catch (Exception e) {
+            logger.warn("Could not load stored chunks of {}, rewriting all chunks: {}", task.getFilename(), e.getMessage());
+            return;
+        }
+        if (storedIds.isEmpty()) {
+            return;
+        }
+        
+        List<Document> chunks = new ArrayList<>(task.getChunks().size());
+        Set<String> retained = new HashSet<>();
+        for (Document chunk : task.getChunks()) {
+            List<String> ids = storedIds.get((String) chunk.getMetadata().get("chunk_hash"));
+            if (ids != null && !ids.isEmpty()) {
+                String storedId = ids.remove(ids.size() - 1);
+                chunks.add(new Document(storedId, chunk.getText(), chunk.getMetadata()));
+                retained.add(storedId);
+            } else {
+                chunks.add(chunk);
+            }
+        }
+        
+        logger.info("{} of {} chunks unchanged for document: {}", retained.size(), chunks.size(), task.getFilename());
+        task.setChunks(chunks);
+        task.setRetainedChunkIds(retained);
+    }
+    
+    /**
+     * Drops the chunks that are not retained and nearly repeat a stored chunk; they are linked to
+     * that chunk instead of being embedded.
+     */
+    private void linkNearDuplicates(IngestionTask task) {
+        List<Document> chunks = new ArrayList<>(task.getChunks().size());
+        for (Document chunk : task.getChunks()) {
+            if (task.getRetainedChunkIds().contains(chunk.getId())
+                    || nearDuplicates.claim(task, task.getDocumentId(), chunk) == null) {
+                chunks.add(chunk);
+            }
+        }
+        if (chunks.size() < task.getChunks().size()) {
+            logger.info("Linked {} of {} chunks of {} to near-duplicate stored chunks",
+                task.getChunks().size() - chunks.size(), task.getChunks().size(), task.getFilename());
+            task.setChunks(chunks);
+        }
+    }
+    
+    /**
+     * Store stage: writes the embedded chunks and queues the document's registry entry.
+     */
+    private void store(IngestionTask task) {
+        String filename = task.getFilename();
+        List<Document> chunks = task.getChunks();
+        
+        try {
+            storeChunks(task);
+        } catch (Exception e) {
+            logger.error("Error storing document: {}", filename, e);
+            throw new DocumentProcessingException("Failed to store document", filename, ProcessingStage.VECTOR_STORAGE, e);
+        }
+        nearDuplicates.commit(task, task.getDocumentId(), task.getExisting() != null, task.getRetainedChunkIds());
+        
+        // Registry entries of the whole wave are written together once every file is stored
+        DocumentRegistry registration = new DocumentRegistry(
+            UUID.fromString(task.getDocumentId()),
+            filename,
+            task.getContentHash(),
+            task.getFile().getSize(),
+            task.getTotalChunks()
+        );
+        registration.setRawHash(task.getRawHash());
+        registration.setContentType(task.getFile().getContentType());
+        registration.setSourceLastModified(sourceLastModified(task.getFile()));
+        
+        logger.info("Successfully processed document: {} ({} chunks)", filename, task.getStoredChunks() + chunks.size());
+        task.awaitRegistration(registration, IngestionStage.STORED);
+    }
+    
+    private void handleFailure(IngestionTask task, Throwable e) {
+        String filename = task.getFilename();
+        nearDuplicates.release(task);
+        if (task.getStoredChunks() > 0) {
+            // A new document's batches written while it was read; it is never registered
+            try {
+                vectorStoreRepository.deleteBySourceDocumentId(task.getDocumentId());
+            } catch (Exception cleanup) {
+                logger.warn("Could not remove the stored chunks of failed document {}, maintenance will: {}",
+                    filename, cleanup.getMessage());
+            }
+        }
+        if (e instanceof DocumentProcessingException) {
+            logger.error("Failed to process document: {}", filename, e);
+            task.fail(e.getMessage());
+        } else {
+            logger.error("Unexpected error processing document: {}", filename, e);
+            task.fail("Unexpected error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Whether a file would pass validation, judged by name and size alone.
+     */
+    static boolean isIngestible(String filename, long size) {
+        String filenameLower = filename.toLowerCase();
+        return size > 0 && size <= MAX_FILE_SIZE && ALLOWED_EXTENSIONS.stream().anyMatch(filenameLower::endsWith);
+    }
+    
+    /**
+     * Modification time of the source file for files read from the sync directory, otherwise {@code null}.
+     */
+    private LocalDateTime sourceLastModified(MultipartFile file) {
+        if (file instanceof CachedTextFile cached) {
+            return cached.getSourceLastModified();
+        }
+        return file instanceof PathMultipartFile pathFile ? pathFile.getLastModified() : null;
+    }
+    
     private void validateFile(MultipartFile file) {
         String filename = file.getOriginalFilename();
         final String filenameForError = (filename != null) ? filename : "unknown";
@@ -224,63 +1190,99 @@ public class DocumentIngestionService {
         }
     }
 
-    private String extractContent(MultipartFile file) throws Exception {
+    private void readSegments(MultipartFile file, DocumentReader.SegmentConsumer consumer) throws Exception {
         String filename = file.getOriginalFilename();
         if (filename == null) {
             throw new DocumentProcessingException("Invalid filename", "unknown", ProcessingStage.FILE_READING);
         }
 
+        if (file instanceof CachedTextFile cached) {
+            textCache.read(cached.getRawHash(), consumer);
+            return;
+        }
+        
         String extension = filename.substring(filename.lastIndexOf('.')).toLowerCase();
 
-        return switch (extension) {
-            case ".pdf" -> pdfReader.extractText(file.getInputStream(), filename);
-            case ".doc", ".docx" -> wordReader.extractText(file.getInputStream(), filename);
-            case ".xls", ".xlsx" -> excelReader.extractText(file.getInputStream(), filename);
-            case ".csv" -> csvReader.extractText(file.getInputStream(), filename);
-            case ".json" -> jsonReader.extractText(file.getInputStream(), filename);
-            case ".txt", ".md", ".markdown" -> textReader.extractText(file.getInputStream(), filename);
+        DocumentReader reader = switch (extension) {
+            case ".pdf" -> pdfReader;
+            case ".doc", ".docx" -> wordReader;
+            case ".xls", ".xlsx" -> excelReader;
+            case ".txt", ".md", ".markdown" -> textReader;
             default -> throw new DocumentProcessingException("Unsupported file type: " + extension, filename, ProcessingStage.TEXT_EXTRACTION);
         };
-    }
 
-    private String calculateHash(String content) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+        // Files already on disk are opened in place instead of being copied again
+        Path path = localPath(file);
+        if (path != null && reader == pdfReader) {
+            pdfReader.readSegmentsFromFile(path, filename, consumer);
+        } else if (path != null && reader == excelReader) {
+            excelReader.readSegmentsFromFile(path, filename, consumer);
+        } else if (path != null && reader == textReader) {
+            textReader.readSegmentsFromFile(path, filename, consumer);
+        } else {
+            try (InputStream inputStream = file.getInputStream()) {
+                reader.readSegments(inputStream, filename, consumer);
             }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new DocumentProcessingException("Failed to calculate content hash", "unknown", ProcessingStage.TEXT_EXTRACTION, e);
         }
     }
 
-    private Map<String, Object> createMetadata(MultipartFile file, String documentId) {
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("document_id", documentId);
-        metadata.put("filename", file.getOriginalFilename());
-        metadata.put("file_size", file.getSize());
-        metadata.put("content_type", file.getContentType());
-        metadata.put("upload_timestamp", LocalDateTime.now().toString());
-        return metadata;
-    }
-
-    private List<Document> chunkDocument(String content, String filename, Map<String, Object> metadata) {
-        String documentId = (String) metadata.get("document_id");
-        return chunkingService.chunkDocument(content, metadata, documentId);
+    private static Path localPath(MultipartFile file) {
+        if (file instanceof SpooledMultipartFile spooled) {
+            return spooled.getPath();
+        }
+        if (file instanceof PathMultipartFile pathFile) {
+            return pathFile.getPath();
+        }
+        return null;
     }
 
-    private void storeChunks(List<Document> chunks, String filename) {
+    /**
+     * Writes the changed chunks and the metadata of the kept ones before dropping the previous
+     * version's other chunks, so a failed write leaves the stored version searchable instead of
+     * removing it.
+     */
+    private void storeChunks(IngestionTask task) {
+        String filename = task.getFilename();
+        List<Document> chunks = task.getChunks();
+        Set<String> retainedIds = task.getRetainedChunkIds();
+        
         if (chunks.isEmpty()) {
             logger.warn("No chunks generated for document: {}", filename);
-            return;
         }
-
-        logger.info("Storing {} chunks for document: {}", chunks.size(), filename);
-        vectorStore.add(chunks);
+        
+        List<Document> changed = new ArrayList<>();
+        List<float[]> changedEmbeddings = new ArrayList<>();
+        List<Document> retained = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            if (retainedIds.contains(chunk.getId())) {
+                retained.add(chunk);
+            } else {
+                changed.add(chunk);
+                changedEmbeddings.add(task.getEmbeddings().get(i));
+            }
+        }
+        
+        if (!chunks.isEmpty()) {
+            logger.info("Storing {} chunks for document: {} ({} unchanged)", changed.size(), filename, retained.size());
+        }
+        if (!changed.isEmpty()) {
+            vectorStoreRepository.saveChunks(changed, changedEmbeddings);
+        }
+        // Positions of kept chunks may have changed
+        vectorStoreRepository.updateMetadata(retained);
+        
+        if (task.getExisting() != null) {
+            // Drop the previous version's chunks that did not survive the edit, now that the new ones are stored
+            Set<String> currentIds = new HashSet<>(chunks.size());
+            for (Document chunk : chunks) {
+                currentIds.add(chunk.getId());
+            }
+            // A linked chunk may have taken over the chunk it repeats from a document deleted meanwhile
+            currentIds.addAll(nearDuplicates.claimedChunkIds(task));
+            nearDuplicates.handOverLinkedChunks(task.getDocumentId(), currentIds);
+            int deleted = vectorStoreRepository.deleteChunksExcept(task.getDocumentId(), currentIds);
+            logger.info("Removed {} outdated chunks of document: {}", deleted, filename);
+        }
     }
 }
@@ -0,0 +1,142 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.repository.DocumentRegistryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Adds document-level attributes to chunks read back from the vector store.
+ * <p>
+ * Chunks only carry their own fields and the {@code source_document_id} of their document; the
+ * filename, size, content type, ingestion time, content hash and chunk count are kept once in
+ * {@code document_registry}. Search results are joined with the registry here, through an LRU
+ * cache of the attributes of recently returned documents, so a search costs at most one registry
+ * query for the documents not seen recently. Registry writes evict the documents they change.
+ */
+@Service
+public class DocumentMetadataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentMetadataCache.class);
+
+    static final int MAX_DOCUMENTS = 10_000;
+
+    private final DocumentRegistryRepository repository;
+
+    // Attributes by document ID; empty for IDs without a registry entry
+    private final Map<String, Map<String, Object>> attributes = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+            return size() > MAX_DOCUMENTS;
+        }
+    };
+    // Bumped by every eviction, so that a lookup racing with a registry write does not cache stale rows
+    private long evictions;
+
+    public DocumentMetadataCache(DocumentRegistryRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Adds the attributes of each chunk's document to the chunk's metadata, in place. Values from
+     * the registry replace copies that chunks written by older versions still hold.
+     */
+    public void hydrate(List<Document> chunks) {
+        Set<String> documentIds = new HashSet<>();
+        for (Document chunk : chunks) {
+            if (chunk.getMetadata().get("source_document_id") instanceof String documentId) {
+                documentIds.add(documentId);
+            }
+        }
+        if (documentIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, Object>> found = lookup(documentIds);
+        for (Document chunk : chunks) {
+            Map<String, Object> document = found.get(chunk.getMetadata().get("source_document_id"));
+            if (document != null) {
+                chunk.getMetadata().putAll(document);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached attributes of documents whose registry entry was written or deleted.
+     */
+    public synchronized void evict(Collection<UUID> documentIds) {
+        documentIds.forEach(documentId -> attributes.remove(documentId.toString()));
+        evictions++;
+    }
+
+    private Map<String, Map<String, Object>> lookup(Set<String> documentIds) {
+        Map<String, Map<String, Object>> found = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        long evictionsBefore;
+        synchronized (this) {
+            for (String documentId : documentIds) {
+                Map<String, Object> cached = attributes.get(documentId);
+                if (cached != null) {
+                    found.put(documentId, cached);
+                } else {
+                    toUuid(documentId, missing);
+                }
+            }
+            evictionsBefore = evictions;
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<String, Map<String, Object>> loaded = new HashMap<>();
+        for (DocumentRegistry document : repository.findAllById(missing)) {
+            loaded.put(document.getDocumentId().toString(), toAttributes(document));
+        }
+        for (UUID documentId : missing) {
+            loaded.putIfAbsent(documentId.toString(), Map.of());
+        }
+        logger.debug("Loaded registry attributes of {} documents", missing.size());
+
+        synchronized (this) {
+            if (evictions == evictionsBefore) {
+                attributes.putAll(loaded);
+            }
+        }
+        found.putAll(loaded);
+        return found;
+    }
+
+    private static void toUuid(String documentId, Set<UUID> documentIds) {
+        try {
+            documentIds.add(UUID.fromString(documentId));
+        } catch (IllegalArgumentException e) {
+            // Not a registry ID, so there is nothing to join
+        }
+    }
+
+    private static Map<String, Object> toAttributes(DocumentRegistry document) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("document_id", document.getDocumentId().toString());
+        attributes.put("filename", document.getFilename());
+        attributes.put("file_size", document.getFileSize());
+        if (document.getContentType() != null) {
+            attributes.put("content_type", document.getContentType());
+        }
+        attributes.put("upload_timestamp", document.getLastModified().toString());
+        attributes.put("content_hash", document.getContentHash());
+        attributes.put("total_chunks", document.getChunkCount());
+        return Collections.unmodifiableMap(attributes);
+    }
+}
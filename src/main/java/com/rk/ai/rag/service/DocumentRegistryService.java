@@ -2,14 +2,20 @@ package com.rk.ai.rag.service;
 
 import com.rk.ai.rag.model.DocumentRegistry;
 import com.rk.ai.rag.repository.DocumentRegistryRepository;
+import com.rk.ai.rag.repository.VectorStoreRepository;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing document registry operations.
@@ -21,11 +27,16 @@ public class DocumentRegistryService {
     private static final Logger logger = LoggerFactory.getLogger(DocumentRegistryService.class);
     
     private final DocumentRegistryRepository repository;
-    private final VectorStore vectorStore;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final DocumentMetadataCache documentMetadataCache;
     
-    public DocumentRegistryService(DocumentRegistryRepository repository, VectorStore vectorStore) {
+    public DocumentRegistryService(DocumentRegistryRepository repository, VectorStoreRepository vectorStoreRepository,
+                                   NearDuplicateIndex nearDuplicateIndex, DocumentMetadataCache documentMetadataCache) {
         this.repository = repository;
-        this.vectorStore = vectorStore;
+        this.vectorStoreRepository = vectorStoreRepository;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.documentMetadataCache = documentMetadataCache;
     }
     
     /**
@@ -35,6 +46,34 @@ public class DocumentRegistryService {
         return repository.findByFilename(filename);
     }
     
+    /**
+     * Find the registered documents for a batch of filenames with a single query.
+     * 
+     * @return Registered documents by filename; unknown filenames are absent
+     */
+    public Map<String, DocumentRegistry> findByFilenames(Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return Map.of();
+        }
+        return repository.findByFilenameIn(filenames).stream()
+            .collect(Collectors.toMap(DocumentRegistry::getFilename, Function.identity()));
+    }
+    
+    /**
+     * Find all registered documents.
+     */
+    public List<DocumentRegistry> findAll() {
+        return repository.findAll();
+    }
+    
+    /**
+     * Find all documents that were ingested from the sync directory, by filename.
+     */
+    public Map<String, DocumentRegistry> findSyncedDocuments() {
+        return repository.findBySourceLastModifiedIsNotNull().stream()
+            .collect(Collectors.toMap(DocumentRegistry::getFilename, Function.identity()));
+    }
+    
     /**
      * Check if a document exists.
      */
@@ -48,6 +87,15 @@ public class DocumentRegistryService {
     @Transactional
     public DocumentRegistry register(UUID documentId, String filename, String contentHash, 
                                      Long fileSize, Integer chunkCount) {
+        return register(documentId, filename, contentHash, null, fileSize, chunkCount);
+    }
+    
+    /**
+     * Register a new document or update existing one, recording the hash of the raw uploaded bytes.
+     */
+    @Transactional
+    public DocumentRegistry register(UUID documentId, String filename, String contentHash, String rawHash,
+                                     Long fileSize, Integer chunkCount) {
         
         Optional<DocumentRegistry> existing = repository.findByFilename(filename);
         
@@ -55,8 +103,10 @@ public class DocumentRegistryService {
             // Update existing entry
             DocumentRegistry doc = existing.get();
             doc.setContentHash(contentHash);
+            doc.setRawHash(rawHash);
             doc.setFileSize(fileSize);
             doc.setChunkCount(chunkCount);
+            documentMetadataCache.evict(List.of(doc.getDocumentId()));
             
             logger.info("Updated registry entry for document: {}", filename);
             return repository.save(doc);
@@ -64,11 +114,24 @@ public class DocumentRegistryService {
             // Create new entry
             DocumentRegistry doc = new DocumentRegistry(documentId, filename, contentHash, 
                                                        fileSize, chunkCount);
+            doc.setRawHash(rawHash);
+            documentMetadataCache.evict(List.of(documentId));
             logger.info("Registered new document: {} with ID: {}", filename, documentId);
             return repository.save(doc);
         }
     }
     
+    /**
+     * Register or update a batch of documents with one JDBC batch upsert.
+     * Already registered filenames keep their document ID.
+     */
+    @Transactional
+    public void registerAll(Collection<DocumentRegistry> documents) {
+        repository.upsertAll(documents);
+        documentMetadataCache.evict(documents.stream().map(DocumentRegistry::getDocumentId).toList());
+        logger.info("Registered {} documents", documents.size());
+    }
+    
     /**
      * Delete document from registry and vector store.
      * 
@@ -78,13 +141,15 @@ public class DocumentRegistryService {
     @Transactional
     public void deleteDocument(UUID documentId, String filename) {
         try {
-            // Delete from vector store first
-            logger.info("Deleting {} chunks from vector store for document: {}", 
-                       documentId, filename);
-            vectorStore.delete(java.util.List.of(documentId.toString()));
+            nearDuplicateIndex.handOverLinkedChunks(documentId.toString(), Set.of());
+            // Chunks have their own IDs, so they are matched by the document ID in their metadata
+            int deleted = vectorStoreRepository.deleteBySourceDocumentId(documentId.toString());
+            logger.info("Deleted {} chunks from vector store for document: {}", deleted, filename);
+            nearDuplicateIndex.removeDocument(documentId.toString());
             
             // Delete from registry
             repository.deleteById(documentId);
+            documentMetadataCache.evict(List.of(documentId));
             logger.info("Deleted document from registry: {}", filename);
             
         } catch (Exception e) {
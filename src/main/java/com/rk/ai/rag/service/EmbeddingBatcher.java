@@ -0,0 +1,189 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micro-batches embedding requests across documents.
+ * <p>
+ * Callers submit the chunk texts of one document and get a future for their vectors. A collector
+ * thread packs texts from all in-flight documents into requests of up to {@code batch-size} chunks
+ * or {@code max-batch-tokens} tokens, counted with the chunker's tokenizer, sends a partial batch once its oldest text has
+ * waited {@code linger}, and routes each returned vector back to the document it belongs to.
+ * Small documents share requests and huge ones are split, so the embedding server sees evenly
+ * sized batches and far fewer round-trips.
+ */
+@Service
+public class EmbeddingBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBatcher.class);
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    private final EmbeddingModel embeddingModel;
+    private final WordPieceTokenizer tokenizer;
+    private final int batchSize;
+    private final int maxBatchTokens;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingText> queue;
+    private final Semaphore inFlightRequests;
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread collector;
+    private volatile boolean running = true;
+
+    public EmbeddingBatcher(EmbeddingModel embeddingModel, WordPieceTokenizer tokenizer, IngestionProperties properties) {
+        IngestionProperties.Embedding settings = properties.getEmbedding();
+        this.embeddingModel = embeddingModel;
+        this.tokenizer = tokenizer;
+        this.batchSize = Math.max(1, settings.getBatchSize());
+        this.maxBatchTokens = Math.max(1, settings.getMaxBatchTokens());
+        this.lingerNanos = settings.getLinger().toNanos();
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+        this.inFlightRequests = new Semaphore(Math.max(1, settings.getMaxConcurrentRequests()));
+        this.collector = Thread.ofPlatform().name("embedding-batcher").daemon(true).start(this::collect);
+    }
+
+    /**
+     * Queues the texts of one document for embedding. Blocks while the batcher's queue is full.
+     *
+     * @return a future completing with one vector per text, in input order
+     */
+    public CompletableFuture<List<float[]>> embed(List<String> texts) throws InterruptedException {
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        if (!running) {
+            throw new IllegalStateException("Embedding batcher is shut down");
+        }
+
+        PendingRequest request = new PendingRequest(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            queue.put(new PendingText(text, estimateTokens(text), request, i));
+        }
+        return request.future;
+    }
+
+    private void collect() {
+        PendingText carry = null;
+        while (running || carry != null || !queue.isEmpty()) {
+            try {
+                PendingText first = carry != null ? carry : queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                carry = null;
+                if (first == null) {
+                    continue;
+                }
+
+                List<PendingText> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                int tokens = first.tokens();
+                long deadline = System.nanoTime() + lingerNanos;
+
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingText next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (tokens + next.tokens() > maxBatchTokens) {
+                        carry = next;
+                        break;
+                    }
+                    batch.add(next);
+                    tokens += next.tokens();
+                }
+
+                inFlightRequests.acquire();
+                dispatch(batch, tokens);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dispatch(List<PendingText> batch, int tokens) {
+        dispatcher.execute(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                List<String> texts = batch.stream().map(PendingText::text).toList();
+                List<float[]> vectors = embeddingModel.embed(texts);
+                if (vectors.size() != batch.size()) {
+                    throw new IllegalStateException(String.format(
+                        "Embedding model returned %d vectors for %d texts", vectors.size(), batch.size()));
+                }
+
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingText pending = batch.get(i);
+                    pending.owner().complete(pending.position(), vectors.get(i));
+                }
+                logger.debug("Embedded batch of {} chunks (~{} tokens) in {}ms",
+                    batch.size(), tokens, System.currentTimeMillis() - startTime);
+            } catch (Exception e) {
+                logger.error("Embedding batch of {} chunks failed: {}", batch.size(), e.getMessage());
+                batch.forEach(pending -> pending.owner().fail(e));
+            } finally {
+                inFlightRequests.release();
+            }
+        });
+    }
+
+    private int estimateTokens(String text) {
+        return Math.max(1, tokenizer.countTokens(text));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            collector.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatcher.close();
+    }
+
+    private record PendingText(String text, int tokens, PendingRequest owner, int position) {
+    }
+
+    /**
+     * Collects the vectors of one caller's texts, which may arrive in different batches.
+     */
+    private static final class PendingRequest {
+
+        private final float[][] vectors;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<float[]>> future = new CompletableFuture<>();
+
+        private PendingRequest(int size) {
+            this.vectors = new float[size][];
+            this.remaining = new AtomicInteger(size);
+        }
+
+        private void complete(int position, float[] vector) {
+            vectors[position] = vector;
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(Arrays.asList(vectors));
+            }
+        }
+
+        private void fail(Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
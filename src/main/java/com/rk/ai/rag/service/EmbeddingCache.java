@@ -0,0 +1,108 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.repository.EmbeddingCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent cache of chunk embeddings.
+ * <p>
+ * Entries are keyed by a SHA-256 hash of the embedding model name, its dimensions and the chunk
+ * text, so re-uploading an edited document only embeds the chunks whose text actually changed,
+ * and switching models never serves stale vectors. The cache is best effort: if the table cannot
+ * be read or written, ingestion falls back to embedding every chunk.
+ */
+@Service
+public class EmbeddingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private final EmbeddingCacheRepository repository;
+    private final boolean enabled;
+    private final String keyPrefix;
+
+    public EmbeddingCache(
+            EmbeddingCacheRepository repository,
+            IngestionProperties properties,
+            @Value("${spring.ai.openai.embedding.options.model:default}") String modelName,
+            @Value("${spring.ai.vectorstore.pgvector.dimensions:0}") int dimensions) {
+        this.repository = repository;
+        this.enabled = properties.getEmbedding().isCacheEnabled();
+        this.keyPrefix = modelName + '\n' + dimensions + '\n';
+    }
+
+    /**
+     * Looks up the embeddings of the given texts.
+     *
+     * @return one entry per text, in input order; {@code null} where the text is not cached
+     */
+    public List<float[]> lookup(List<String> texts) {
+        float[][] vectors = new float[texts.size()][];
+        if (!enabled || texts.isEmpty()) {
+            return Arrays.asList(vectors);
+        }
+
+        List<String> keys = texts.stream().map(this::cacheKey).toList();
+        Set<String> distinctKeys = new LinkedHashSet<>(keys);
+        Map<String, float[]> cached;
+        try {
+            cached = repository.findByKeys(distinctKeys);
+        } catch (DataAccessException e) {
+            logger.warn("Embedding cache lookup failed, embedding all {} chunks: {}", texts.size(), e.getMessage());
+            return Arrays.asList(vectors);
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            vectors[i] = cached.get(keys.get(i));
+        }
+        logger.debug("Embedding cache hits: {}/{}", cached.size(), distinctKeys.size());
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * Stores freshly computed embeddings.
+     *
+     * @param texts   the chunk texts
+     * @param vectors one embedding per text, in the same order
+     */
+    public void put(List<String> texts, List<float[]> vectors) {
+        if (!enabled || texts.isEmpty()) {
+            return;
+        }
+
+        Map<String, float[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            entries.putIfAbsent(cacheKey(texts.get(i)), vectors.get(i));
+        }
+        try {
+            repository.saveAll(entries);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to cache {} embeddings: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    private String cacheKey(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(keyPrefix.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.reader.DocumentReader;
+import com.rk.ai.rag.reader.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local store of the text extracted from each file, keyed by the SHA-256 of the file's bytes.
+ * <p>
+ * Entries hold the reader's segments with their hints, gzip-compressed, one file per raw hash
+ * below {@code rag.ingestion.text-cache.directory}. Replaying an entry yields exactly the segments
+ * the reader produced, so re-chunking or re-embedding a document needs neither the original upload
+ * nor another pass through PDFBox or POI. Like the embedding cache it is best effort: a failed
+ * write only leaves the entry out, and ingestion never fails because of the cache.
+ */
+@Service
+public class ExtractedTextCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractedTextCache.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".txt.gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+
+    public ExtractedTextCache(IngestionProperties properties) {
+        this.enabled = properties.getTextCache().isEnabled();
+        this.directory = Path.of(properties.getTextCache().getDirectory());
+    }
+
+    /**
+     * Whether the text of the file with the given raw hash is cached.
+     */
+    public boolean contains(String rawHash) {
+        return enabled && rawHash != null && Files.isRegularFile(entryPath(rawHash));
+    }
+
+    /**
+     * Starts writing the text of a file. The entry only becomes visible once {@link Writer#commit()}
+     * is called; closing an uncommitted writer discards it. If the text is already cached, or the
+     * cache is disabled, the writer ignores everything it is given.
+     */
+    public Writer open(String rawHash) {
+        if (!enabled || rawHash == null || contains(rawHash)) {
+            return new Writer(null, null, null);
+        }
+        Path entry = entryPath(rawHash);
+        Path temp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            temp = Files.createTempFile(entry.getParent(), rawHash, ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE), BUFFER_SIZE));
+            out.writeInt(FORMAT_VERSION);
+            return new Writer(entry, temp, out);
+        } catch (IOException e) {
+            logger.warn("Cannot cache extracted text {}: {}", rawHash, e.getMessage());
+            deleteQuietly(temp);
+            return new Writer(null, null, null);
+        }
+    }
+
+    /**
+     * Hands the cached segments of a file to the consumer, in the order they were written.
+     *
+     * @throws NoSuchFileException if the text is not cached
+     * @throws IOException         if the entry cannot be read; a corrupt entry is removed
+     */
+    public void read(String rawHash, DocumentReader.SegmentConsumer consumer) throws Exception {
+        Path entry = entryPath(rawHash);
+        if (!enabled) {
+            throw new NoSuchFileException(entry.toString(), null, "extracted text cache is disabled");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(entry), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache entry format");
+            }
+            while (in.readBoolean()) {
+                consumer.accept(readSegment(in));
+            }
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (EOFException e) {
+            deleteQuietly(entry);
+            throw new IOException("Truncated cache entry " + entry, e);
+        } catch (IOException e) {
+            deleteQuietly(entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the entries of files that are no longer registered. Entries written after
+     * {@code writtenBefore} are kept, as they may belong to documents still being ingested.
+     *
+     * @return the number of entries removed
+     */
+    public int retainOnly(Set<String> rawHashes, FileTime writtenBefore) {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return 0;
+        }
+        int removed = 0;
+        try (Stream<Path> entries = Files.walk(directory, 2)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (!name.endsWith(SUFFIX) || rawHashes.contains(name.substring(0, name.length() - SUFFIX.length()))) {
+                    continue;
+                }
+                if (Files.getLastModifiedTime(entry).compareTo(writtenBefore) < 0 && Files.deleteIfExists(entry)) {
+                    removed++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to prune extracted text cache: {}", e.getMessage());
+        }
+        return removed;
+    }
+
+    // Two-character fan-out keeps directories small for large corpora
+    private Path entryPath(String rawHash) {
+        return directory.resolve(rawHash.substring(0, 2)).resolve(rawHash + SUFFIX);
+    }
+
+    private static void writeSegment(DataOutputStream out, TextSegment segment) throws IOException {
+        writeString(out, segment.text());
+        out.writeShort(segment.hints().size());
+        for (Map.Entry<String, Object> hint : segment.hints().entrySet()) {
+            writeString(out, hint.getKey());
+            if (hint.getValue() instanceof Integer number) {
+                out.writeByte('I');
+                out.writeInt(number);
+            } else if (hint.getValue() instanceof Long number) {
+                out.writeByte('L');
+                out.writeLong(number);
+            } else {
+                out.writeByte('S');
+                writeString(out, String.valueOf(hint.getValue()));
+            }
+        }
+    }
+
+    private static TextSegment readSegment(DataInputStream in) throws IOException {
+        String text = readString(in);
+        int hintCount = in.readUnsignedShort();
+        Map<String, Object> hints = new HashMap<>(hintCount * 2);
+        for (int i = 0; i < hintCount; i++) {
+            String key = readString(in);
+            Object value = switch (in.readByte()) {
+                case 'I' -> in.readInt();
+                case 'L' -> in.readLong();
+                case 'S' -> readString(in);
+                default -> throw new IOException("Corrupt hint in cache entry");
+            };
+            hints.put(key, value);
+        }
+        return new TextSegment(text, hints);
+    }
+
+    // writeUTF is limited to 64 KB, which a single page can exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt string length " + length + " in cache entry");
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Cache entry ends inside a string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete cache file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the segments of one file to a temporary file that {@link #commit()} moves into place.
+     * A write error is logged once and turns the writer into a no-op.
+     */
+    public final class Writer implements AutoCloseable {
+
+        private final Path entry;
+        private Path temp;
+        private DataOutputStream out;
+
+        private Writer(Path entry, Path temp, DataOutputStream out) {
+            this.entry = entry;
+            this.temp = temp;
+            this.out = out;
+        }
+
+        public void write(TextSegment segment) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeBoolean(true);
+                writeSegment(out, segment);
+            } catch (IOException e) {
+                logger.warn("Failed to cache extracted text in {}: {}", temp, e.getMessage());
+                close();
+            }
+        }
+
+        /**
+         * Completes the entry and makes it visible to {@link #read} under its raw hash.
+         */
+        public void commit() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeBoolean(false);
+                out.close();
+                out = null;
+                try {
+                    Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+                }
+                temp = null;
+            } catch (IOException e) {
+                logger.warn("Failed to cache extracted text in {}: {}", entry, e.getMessage());
+                close();
+            }
+        }
+
+        /**
+         * Discards the entry unless it was committed.
+         */
+        @Override
+        public void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // The file is deleted anyway
+                }
+                out = null;
+            }
+            deleteQuietly(temp);
+            temp = null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.model.IngestionStage;
+import com.rk.ai.rag.model.UploadResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Live state of one ingestion job.
+ * Workers report per-file progress through the synchronized mutators while the
+ * job status endpoint reads consistent copies via {@link #snapshot()}.
+ */
+public class IngestionJob {
+
+    private final String jobId;
+    private final UploadResponse response;
+    private final List<UploadResponse.DocumentInfo> documents = new ArrayList<>();
+    private volatile Instant finishedAt;
+
+    public IngestionJob(String jobId) {
+        this.jobId = jobId;
+        this.response = new UploadResponse(jobId, "PROCESSING", "Document ingestion started");
+        this.response.setDocuments(documents);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Adds a file to the job and returns its index for later progress updates.
+     */
+    public synchronized int addDocument(String filename, long fileSize) {
+        UploadResponse.DocumentInfo docInfo = new UploadResponse.DocumentInfo(
+            UUID.randomUUID().toString(), filename, fileSize);
+        docInfo.setStatus("PENDING");
+        docInfo.setStage(IngestionStage.PENDING);
+        documents.add(docInfo);
+        response.setTotalFiles(documents.size());
+        return documents.size() - 1;
+    }
+
+    public synchronized String getDocumentId(int index) {
+        return documents.get(index).getDocumentId();
+    }
+
+    /**
+     * Replaces the generated document ID, e.g. to keep the ID of a previously ingested version.
+     */
+    public synchronized void setDocumentId(int index, String documentId) {
+        documents.get(index).setDocumentId(documentId);
+    }
+
+    public synchronized void updateStage(int index, IngestionStage stage) {
+        UploadResponse.DocumentInfo docInfo = documents.get(index);
+        docInfo.setStage(stage);
+        docInfo.setStatus("PROCESSING");
+    }
+
+    public synchronized void markSucceeded(int index, int chunks) {
+        UploadResponse.DocumentInfo docInfo = documents.get(index);
+        docInfo.setChunks(chunks);
+        docInfo.setStatus("SUCCESS");
+        response.setProcessedFiles(response.getProcessedFiles() + 1);
+        response.setTotalChunks(response.getTotalChunks() + chunks);
+    }
+
+    public synchronized void markFailed(int index, String errorMessage) {
+        UploadResponse.DocumentInfo docInfo = documents.get(index);
+        docInfo.setStatus("FAILED");
+        docInfo.setErrorMessage(errorMessage);
+    }
+
+    /**
+     * Marks the job as finished and derives the overall status from the per-file results.
+     */
+    public synchronized void complete() {
+        int totalFiles = documents.size();
+        int processedCount = response.getProcessedFiles();
+        int totalChunks = response.getTotalChunks();
+
+        if (processedCount == totalFiles) {
+            response.setStatus("COMPLETED");
+            response.setMessage(String.format("Successfully processed all %d documents (%d chunks)",
+                processedCount, totalChunks));
+        } else if (processedCount == 0) {
+            response.setStatus("FAILED");
+            response.setMessage("Failed to process any documents");
+        } else {
+            response.setStatus("PARTIAL_SUCCESS");
+            response.setMessage(String.format("Processed %d/%d documents (%d chunks)",
+                processedCount, totalFiles, totalChunks));
+        }
+        finishedAt = Instant.now();
+    }
+
+    /**
+     * Finishes a job whose input could not be read to the end, e.g. a truncated archive.
+     * Files read before the failure keep their results, but the job never counts as completed.
+     */
+    public synchronized void abort(String reason) {
+        complete();
+        if ("COMPLETED".equals(response.getStatus())) {
+            response.setStatus(response.getProcessedFiles() == 0 ? "FAILED" : "PARTIAL_SUCCESS");
+        }
+        response.setMessage(reason + ". " + response.getMessage());
+    }
+
+    public synchronized String getStatus() {
+        return response.getStatus();
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Returns a copy of the current job state that is safe to serialize while workers keep running.
+     */
+    public synchronized UploadResponse snapshot() {
+        UploadResponse copy = new UploadResponse(jobId, response.getStatus(), response.getMessage());
+        copy.setUploadedAt(response.getUploadedAt());
+        copy.setTotalFiles(response.getTotalFiles());
+        copy.setProcessedFiles(response.getProcessedFiles());
+        copy.setTotalChunks(response.getTotalChunks());
+        copy.setDocuments(documents.stream()
+            .map(UploadResponse.DocumentInfo::new)
+            .toList());
+        return copy;
+    }
+}
@@ -0,0 +1,112 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory registry of ingestion jobs.
+ * Finished jobs are kept for the configured retention period so clients can poll their outcome.
+ * Also keeps concurrent jobs from ingesting the same filename at the same time, and tracks the
+ * documents whose chunks are being written before their registry entry exists.
+ */
+@Service
+public class IngestionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Set<String> lockedFilenames = new HashSet<>();
+    private final Set<String> inFlightDocuments = new HashSet<>();
+    private final IngestionProperties properties;
+
+    public IngestionJobService(IngestionProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Creates and registers a new job with a fresh job ID.
+     */
+    public IngestionJob createJob() {
+        evictExpiredJobs();
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString());
+        jobs.put(job.getJobId(), job);
+        logger.debug("Registered ingestion job: {}", job.getJobId());
+        return job;
+    }
+
+    public Optional<IngestionJob> findJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public void removeJob(String jobId) {
+        jobs.remove(jobId);
+    }
+
+    /**
+     * Waits until no other job ingests any of the filenames, then claims all of them at once.
+     * Without this, two jobs uploading the same new filename would both see it unregistered and
+     * store chunks under two document IDs, while the registry upsert keeps only one of them.
+     */
+    public void lockFilenames(Collection<String> filenames) throws InterruptedException {
+        synchronized (lockedFilenames) {
+            while (filenames.stream().anyMatch(lockedFilenames::contains)) {
+                lockedFilenames.wait();
+            }
+            lockedFilenames.addAll(filenames);
+        }
+    }
+
+    public void unlockFilenames(Collection<String> filenames) {
+        synchronized (lockedFilenames) {
+            lockedFilenames.removeAll(filenames);
+            lockedFilenames.notifyAll();
+        }
+    }
+
+    /**
+     * Marks documents that are not registered yet as being ingested. Must be called before any of
+     * their chunks are stored; waits while {@link #excludingInFlight} runs.
+     */
+    public void markInFlight(Collection<String> documentIds) {
+        synchronized (inFlightDocuments) {
+            inFlightDocuments.addAll(documentIds);
+        }
+    }
+
+    /**
+     * Ends the ingestion of documents, once they are registered or have failed.
+     */
+    public void clearInFlight(Collection<String> documentIds) {
+        synchronized (inFlightDocuments) {
+            inFlightDocuments.removeAll(documentIds);
+        }
+    }
+
+    /**
+     * Runs a cleanup of unregistered documents, passing it the documents being ingested, which it
+     * must leave alone. No ingestion can start while it runs, so every document whose chunks the
+     * cleanup can see is either registered or among the passed IDs. Keep the action short.
+     */
+    public <T> T excludingInFlight(Function<Set<String>, T> cleanup) {
+        synchronized (inFlightDocuments) {
+            return cleanup.apply(Set.copyOf(inFlightDocuments));
+        }
+    }
+
+    private void evictExpiredJobs() {
+        Instant cutoff = Instant.now().minus(properties.getJobRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+}
@@ -0,0 +1,199 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.model.IngestionStage;
+import org.springframework.ai.document.Document;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One file travelling through the ingestion pipeline.
+ * Each stage fills in its results and hands the task to the next stage; intermediate results
+ * are dropped as soon as they are consumed so queued tasks hold as little memory as possible.
+ */
+class IngestionTask {
+
+    private final IngestionJob job;
+    private final int index;
+    private final MultipartFile file;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private String rawHash;
+    private String contentHash;
+    private DocumentRegistry existing;
+    // Chunks created from the text, including those linked to near-duplicates instead of stored
+    private int totalChunks;
+    private List<Document> chunks;
+    private List<float[]> embeddings;
+    private List<DocumentIngestionService.PendingEmbeddings> prefetchedEmbeddings;
+    private int storedChunks;
+    private Set<String> retainedChunkIds = Set.of();
+    private DocumentRegistry registration;
+    private IngestionStage registeredStage;
+
+    IngestionTask(IngestionJob job, int index, MultipartFile file) {
+        this.job = job;
+        this.index = index;
+        this.file = file;
+    }
+
+    IngestionJob getJob() {
+        return job;
+    }
+
+    MultipartFile getFile() {
+        return file;
+    }
+
+    String getFilename() {
+        return file.getOriginalFilename();
+    }
+
+    String getDocumentId() {
+        return job.getDocumentId(index);
+    }
+
+    void setDocumentId(String documentId) {
+        job.setDocumentId(index, documentId);
+    }
+
+    void advance(IngestionStage stage) {
+        job.updateStage(index, stage);
+    }
+
+    void succeed(int chunkCount) {
+        job.markSucceeded(index, chunkCount);
+        completion.complete(null);
+    }
+
+    void fail(String errorMessage) {
+        job.markFailed(index, errorMessage);
+        completion.complete(null);
+    }
+
+    /**
+     * Hands the registry entry to the job, which writes the entries of all files in one batch
+     * and then marks this file as {@code finalStage} and succeeded.
+     */
+    void awaitRegistration(DocumentRegistry registration, IngestionStage finalStage) {
+        this.registration = registration;
+        this.registeredStage = finalStage;
+        completion.complete(null);
+    }
+
+    /**
+     * Registry entry waiting to be written, or {@code null} if the file is already finished.
+     */
+    DocumentRegistry getRegistration() {
+        return registration;
+    }
+
+    /**
+     * Marks the file as done once its registry entry has been written.
+     */
+    void registered() {
+        job.updateStage(index, registeredStage);
+        job.markSucceeded(index, registration.getChunkCount());
+        registration = null;
+    }
+
+    /**
+     * Marks the file as failed because its registry entry could not be written.
+     */
+    void registrationFailed(String errorMessage) {
+        job.markFailed(index, errorMessage);
+        registration = null;
+    }
+
+    /**
+     * Completes once the file has been skipped, has failed or is waiting for its registry entry.
+     */
+    CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    String getRawHash() {
+        return rawHash;
+    }
+
+    void setRawHash(String rawHash) {
+        this.rawHash = rawHash;
+    }
+
+    String getContentHash() {
+        return contentHash;
+    }
+
+    void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    DocumentRegistry getExisting() {
+        return existing;
+    }
+
+    void setExisting(DocumentRegistry existing) {
+        this.existing = existing;
+    }
+
+    int getTotalChunks() {
+        return totalChunks;
+    }
+
+    void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    List<Document> getChunks() {
+        return chunks;
+    }
+
+    void setChunks(List<Document> chunks) {
+        this.chunks = chunks;
+    }
+
+    List<float[]> getEmbeddings() {
+        return embeddings;
+    }
+
+    void setEmbeddings(List<float[]> embeddings) {
+        this.embeddings = embeddings;
+    }
+
+    /**
+     * Embedding requests made while the file was read, in chunk order, or {@code null} if the embed
+     * stage has to request them itself.
+     */
+    List<DocumentIngestionService.PendingEmbeddings> getPrefetchedEmbeddings() {
+        return prefetchedEmbeddings;
+    }
+
+    void setPrefetchedEmbeddings(List<DocumentIngestionService.PendingEmbeddings> prefetchedEmbeddings) {
+        this.prefetchedEmbeddings = prefetchedEmbeddings;
+    }
+
+    /**
+     * Chunks of a new document already written while its file was read; they are not in {@link #getChunks()}.
+     */
+    int getStoredChunks() {
+        return storedChunks;
+    }
+
+    void addStoredChunks(int count) {
+        storedChunks += count;
+    }
+
+    /**
+     * IDs of chunks whose stored row is kept from the previous version; they have no embedding in this task.
+     */
+    Set<String> getRetainedChunkIds() {
+        return retainedChunkIds;
+    }
+
+    void setRetainedChunkIds(Set<String> retainedChunkIds) {
+        this.retainedChunkIds = retainedChunkIds;
+    }
+}
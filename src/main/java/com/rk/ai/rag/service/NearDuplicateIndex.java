@@ -0,0 +1,569 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.repository.ChunkFingerprintRepository;
+import com.rk.ai.rag.repository.ChunkFingerprintRepository.Fingerprint;
+import com.rk.ai.rag.repository.VectorStoreRepository;
+import com.rk.ai.rag.repository.VectorStoreRepository.Reassignment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Finds chunks that nearly repeat a chunk already stored, such as legal footers, cover pages or
+ * header blocks shared by many documents, so they are linked to that chunk instead of being
+ * embedded and stored again.
+ * <p>
+ * Every chunk gets a 64-bit SimHash over its word triples. Two chunks are near-duplicates when at
+ * most {@code (1 - similarity) * 64} of their bits differ. The fingerprint is cut into one band more
+ * than that, so a near-duplicate agrees in at least one whole band, and each band is kept in hash
+ * buckets: a lookup compares only the chunks that share a band with it. The index holds about 70
+ * bytes per stored chunk in plain arrays and is loaded from the {@code chunk_fingerprint} table on
+ * first use; linked chunks are recorded there with the chunk they repeat.
+ * <p>
+ * An ingestion claims its chunks while it runs and writes them once its document is stored. Chunks
+ * are only linked to stored chunks and to the ingestion's own claims: a chunk claimed by another
+ * running ingestion may never be stored if that ingestion fails. A document is never matched
+ * against the stored version of itself that it replaces. Before a document that other chunks are
+ * linked to is deleted or replaced, each of its linked chunks is handed over to the first chunk
+ * linked to it, which takes over its row in the vector store, and the other links follow. Like the
+ * embedding cache, the index is best effort: if the table cannot be read, every chunk is stored,
+ * and if a hand-over fails, the documents left with unreachable chunks are logged for reindexing.
+ */
+@Service
+public class NearDuplicateIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearDuplicateIndex.class);
+
+    // Chunks with fewer word triples carry too little text for a meaningful fingerprint
+    static final int MIN_SHINGLES = 8;
+
+    // Below this similarity the bands get so narrow that lookups compare most of the index
+    static final double MIN_SIMILARITY = 0.8;
+
+    private static final int BUCKET_BITS = 16;
+    private static final int NONE = -1;
+
+    private final ChunkFingerprintRepository repository;
+    private final VectorStoreRepository vectorStoreRepository;
+    private final int maxDistance;
+    private final int bands;
+    private volatile boolean enabled;
+    private boolean loaded;
+
+    // One entry per stored or claimed chunk; removed entries are skipped until the arrays are compacted
+    private int size;
+    private int removedCount;
+    private long[] fingerprints = new long[0];
+    private long[] idHigh = new long[0];
+    private long[] idLow = new long[0];
+    private int[] documentOf = new int[0];
+    // Number of the claiming ingestion, 0 once the chunk is stored
+    private int[] ownerOf = new int[0];
+    private final BitSet removed = new BitSet();
+
+    // Chains of entries per band bucket and per document, linked through the next arrays
+    private final int[] bucketHeads;
+    private int[] bucketNext = new int[0];
+    private int[] documentHeads = new int[0];
+    private int[] documentNext = new int[0];
+    private final Map<String, Integer> documentNumbers = new HashMap<>();
+
+    private final Map<Object, Claim> claims = new IdentityHashMap<>();
+    private int claimCount;
+
+    public NearDuplicateIndex(ChunkFingerprintRepository repository, VectorStoreRepository vectorStoreRepository,
+            IngestionProperties properties) {
+        IngestionProperties.Deduplication settings = properties.getDeduplication();
+        double similarity = settings.getSimilarity();
+        if (similarity < MIN_SIMILARITY || similarity > 1) {
+            throw new IllegalArgumentException(
+                "rag.ingestion.deduplication.similarity must be between " + MIN_SIMILARITY + " and 1, was " + similarity);
+        }
+        this.repository = repository;
+        this.vectorStoreRepository = vectorStoreRepository;
+        this.enabled = settings.isEnabled();
+        this.maxDistance = (int) Math.floor((1 - similarity) * Long.SIZE + 1e-9);
+        this.bands = maxDistance + 1;
+        this.bucketHeads = new int[bands << BUCKET_BITS];
+        Arrays.fill(bucketHeads, NONE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks a chunk of a running ingestion against the index. A near-duplicate is linked to the
+     * chunk it repeats; any other chunk is claimed by the ingestion.
+     *
+     * @param owner identifies the ingestion; the same object for all its calls
+     * @return the ID of the chunk it repeats, or {@code null} if the chunk is to be stored
+     */
+    public String claim(Object owner, String documentId, Document chunk) {
+        if (!enabled) {
+            return null;
+        }
+        OptionalLong fingerprint = fingerprint(chunk.getText());
+        if (fingerprint.isEmpty()) {
+            return null;
+        }
+        long value = fingerprint.getAsLong();
+        synchronized (this) {
+            if (!ensureLoaded()) {
+                return null;
+            }
+            Claim claim = claims.computeIfAbsent(owner, key -> new Claim(++claimCount));
+            int match = find(value, documentNumber(documentId), claim.number);
+            if (match != NONE) {
+                String duplicateOf = chunkId(match);
+                claim.links.add(new Fingerprint(chunk.getId(), documentId, value, duplicateOf));
+                return duplicateOf;
+            }
+            UUID chunkId = UUID.fromString(chunk.getId());
+            claim.entries.add(add(chunkId.getMostSignificantBits(), chunkId.getLeastSignificantBits(),
+                documentNumber(documentId), value, claim.number));
+            return null;
+        }
+    }
+
+    /**
+     * Writes the claims of an ingestion once its document is stored. If the document replaced its
+     * previous version, the fingerprints of the previous chunks are dropped, except those kept.
+     */
+    public void commit(Object owner, String documentId, boolean replaced, Set<String> keptChunkIds) {
+        if (!enabled) {
+            return;
+        }
+        List<Fingerprint> rows = new ArrayList<>();
+        synchronized (this) {
+            // While the claim is registered, compacting the arrays keeps its entries up to date
+            if (replaced && loaded) {
+                removeStoredEntries(documentNumber(documentId), keptChunkIds);
+            }
+            Claim claim = claims.remove(owner);
+            if (claim != null) {
+                for (int entry : claim.entries) {
+                    ownerOf[entry] = 0;
+                    rows.add(new Fingerprint(chunkId(entry), documentId, fingerprints[entry], null));
+                }
+                rows.addAll(claim.links);
+            }
+        }
+        if (rows.isEmpty() && !replaced) {
+            return;
+        }
+
+        try {
+            if (replaced) {
+                Set<String> current = new HashSet<>(keptChunkIds);
+                rows.forEach(row -> current.add(row.chunkId()));
+                warnAboutLinks(repository.deleteChunksExcept(documentId, current), documentId);
+            }
+            repository.saveAll(rows);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to write {} chunk fingerprints of document {}: {}", rows.size(), documentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the claims of an ingestion that failed before its document was stored.
+     */
+    public synchronized void release(Object owner) {
+        Claim claim = claims.remove(owner);
+        if (claim == null) {
+            return;
+        }
+        // No other ingestion links to claimed chunks, so nothing points to the released ones
+        for (int entry : claim.entries) {
+            remove(entry);
+        }
+        compactIfSparse();
+    }
+
+    /**
+     * Keeps the chunks linked to a document's stored chunks reachable before those chunks are deleted
+     * from the vector store. Each stored chunk, except the kept ones, that other documents are linked
+     * to takes the ID and document of the first chunk linked to it, and the other links point to that
+     * chunk from then on. If only running ingestions link to it, the first of them takes it over.
+     */
+    public void handOverLinkedChunks(String documentId, Collection<String> keptChunkIds) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            Map<String, Fingerprint> heirs = new LinkedHashMap<>();
+            Map<String, Claim> adopters = new HashMap<>();
+            try {
+                repository.findLinksTo(documentId, keptChunkIds).forEach(link -> heirs.putIfAbsent(link.duplicateOf(), link));
+            } catch (DataAccessException e) {
+                logger.warn("Failed to find chunks linked to document {}: {}", documentId, e.getMessage());
+                return;
+            }
+            if (loaded) {
+                // Dropped now, so that no ingestion links to them while the document is deleted
+                Set<String> removedIds = removeStoredEntries(documentNumber(documentId), keptChunkIds);
+                for (Claim claim : claims.values()) {
+                    for (Fingerprint link : claim.links) {
+                        if (removedIds.contains(link.duplicateOf()) && heirs.putIfAbsent(link.duplicateOf(), link) == null) {
+                            adopters.put(link.duplicateOf(), claim);
+                        }
+                    }
+                }
+            }
+            if (heirs.isEmpty()) {
+                return;
+            }
+
+            List<Reassignment> reassignments = new ArrayList<>(heirs.size());
+            Map<String, String> storedHeirs = new HashMap<>();
+            heirs.forEach((chunkId, heir) -> {
+                reassignments.add(new Reassignment(chunkId, heir.chunkId(), heir.sourceDocumentId()));
+                if (!adopters.containsKey(chunkId)) {
+                    storedHeirs.put(chunkId, heir.chunkId());
+                }
+            });
+            try {
+                vectorStoreRepository.reassignChunks(reassignments);
+                repository.promote(storedHeirs);
+            } catch (DataAccessException e) {
+                logger.warn("Failed to hand over {} linked chunks of document {}: {}", heirs.size(), documentId, e.getMessage());
+                return;
+            }
+
+            heirs.forEach((chunkId, heir) -> {
+                Claim adopter = adopters.get(chunkId);
+                if (adopter != null) {
+                    adopter.links.remove(heir);
+                }
+                if (adopter != null || loaded) {
+                    UUID heirId = UUID.fromString(heir.chunkId());
+                    int entry = add(heirId.getMostSignificantBits(), heirId.getLeastSignificantBits(),
+                        documentNumber(heir.sourceDocumentId()), heir.fingerprint(), adopter != null ? adopter.number : 0);
+                    if (adopter != null) {
+                        adopter.entries.add(entry);
+                    }
+                }
+            });
+            for (Claim claim : claims.values()) {
+                claim.links.replaceAll(link -> heirs.containsKey(link.duplicateOf())
+                    ? new Fingerprint(link.chunkId(), link.sourceDocumentId(), link.fingerprint(), heirs.get(link.duplicateOf()).chunkId())
+                    : link);
+            }
+            logger.info("Handed {} chunks of document {} over to chunks linked to them", heirs.size(), documentId);
+        }
+    }
+
+    /**
+     * IDs of the chunks claimed or linked by a running ingestion. A linked chunk may take over the
+     * chunk it repeats while the ingestion runs, so its ID is to be kept when outdated chunks are deleted.
+     */
+    public synchronized Set<String> claimedChunkIds(Object owner) {
+        Claim claim = claims.get(owner);
+        if (claim == null) {
+            return Set.of();
+        }
+        Set<String> chunkIds = new HashSet<>();
+        claim.entries.forEach(entry -> chunkIds.add(chunkId(entry)));
+        claim.links.forEach(link -> chunkIds.add(link.chunkId()));
+        return chunkIds;
+    }
+
+    /**
+     * Drops the fingerprints and links of a deleted document.
+     */
+    public void removeDocument(String documentId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                removeStoredEntries(documentNumber(documentId), Set.of());
+            }
+        }
+        try {
+            warnAboutLinks(repository.deleteChunksExcept(documentId, List.of()), documentId);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to remove chunk fingerprints of document {}: {}", documentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the fingerprints and links of documents that are no longer registered. Documents being
+     * ingested are not registered yet although their fingerprints may be committed; they keep both
+     * their rows and their entries in the index.
+     *
+     * @param inFlightDocumentIds documents being ingested
+     * @return the number of such documents
+     */
+    public int removeUnregisteredDocuments(Collection<String> inFlightDocumentIds) {
+        if (!enabled) {
+            return 0;
+        }
+        List<String> documentIds;
+        try {
+            documentIds = repository.deleteUnregistered(inFlightDocumentIds);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to remove chunk fingerprints of unregistered documents: {}", e.getMessage());
+            return 0;
+        }
+        synchronized (this) {
+            if (loaded) {
+                documentIds.forEach(documentId -> removeStoredEntries(documentNumber(documentId), Set.of()));
+            }
+        }
+        return documentIds.size();
+    }
+
+    /**
+     * Number of stored and claimed chunks in the index.
+     */
+    synchronized int size() {
+        return size - removedCount;
+    }
+
+    /**
+     * SimHash of the text's word triples, words being runs of letters and digits compared without
+     * case. Empty if the text has fewer than {@value #MIN_SHINGLES} triples.
+     */
+    static OptionalLong fingerprint(CharSequence text) {
+        int[] weights = new int[Long.SIZE];
+        long previous = 0;
+        long beforePrevious = 0;
+        int words = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            // FNV-1a over the lower-cased word
+            long word = 0xcbf29ce484222325L;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                word = (word ^ Character.toLowerCase(text.charAt(i))) * 0x100000001b3L;
+                i++;
+            }
+            if (++words >= 3) {
+                long shingle = mix(mix(mix(beforePrevious) + previous) + word);
+                for (int bit = 0; bit < Long.SIZE; bit++) {
+                    weights[bit] += (shingle >>> bit & 1) != 0 ? 1 : -1;
+                }
+            }
+            beforePrevious = previous;
+            previous = word;
+        }
+        if (words - 2 < MIN_SHINGLES) {
+            return OptionalLong.empty();
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return OptionalLong.of(fingerprint);
+    }
+
+    // Finalizer of MurmurHash3, so that similar inputs give unrelated bits
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private boolean ensureLoaded() {
+        if (loaded || !enabled) {
+            return loaded;
+        }
+        try {
+            repository.forEachStored(row -> {
+                UUID chunkId = UUID.fromString(row.chunkId());
+                add(chunkId.getMostSignificantBits(), chunkId.getLeastSignificantBits(),
+                    documentNumber(row.sourceDocumentId()), row.fingerprint(), 0);
+            });
+            loaded = true;
+            logger.info("Loaded {} chunk fingerprints for near-duplicate detection", size);
+        } catch (DataAccessException e) {
+            logger.warn("Near-duplicate detection disabled, chunk fingerprints cannot be loaded: {}", e.getMessage());
+            enabled = false;
+            size = 0;
+            Arrays.fill(bucketHeads, NONE);
+            Arrays.fill(documentHeads, NONE);
+        }
+        return loaded;
+    }
+
+    /**
+     * The closest entry within the distance among the stored chunks of other documents and the
+     * chunks claimed by the same ingestion.
+     */
+    private int find(long fingerprint, int document, int owner) {
+        int best = NONE;
+        int bestDistance = maxDistance + 1;
+        for (int band = 0; band < bands; band++) {
+            for (int entry = bucketHeads[bucket(fingerprint, band)]; entry != NONE; entry = bucketNext[entry * bands + band]) {
+                int distance = Long.bitCount(fingerprint ^ fingerprints[entry]);
+                if (distance < bestDistance && !removed.get(entry)
+                        && (ownerOf[entry] == owner || ownerOf[entry] == 0 && documentOf[entry] != document)) {
+                    if (distance == 0) {
+                        return entry;
+                    }
+                    best = entry;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int bucket(long fingerprint, int band) {
+        int width = Long.SIZE / bands;
+        int shift = band * width;
+        // The last band takes the bits left over
+        long value = band == bands - 1 ? fingerprint >>> shift : (fingerprint >>> shift) & ((1L << width) - 1);
+        return band << BUCKET_BITS | (int) (mix(value + band) >>> (Long.SIZE - BUCKET_BITS));
+    }
+
+    private int add(long high, long low, int document, long fingerprint, int owner) {
+        if (size == fingerprints.length) {
+            int capacity = Math.max(1024, size * 2);
+            fingerprints = Arrays.copyOf(fingerprints, capacity);
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            documentOf = Arrays.copyOf(documentOf, capacity);
+            ownerOf = Arrays.copyOf(ownerOf, capacity);
+            bucketNext = Arrays.copyOf(bucketNext, capacity * bands);
+            documentNext = Arrays.copyOf(documentNext, capacity);
+        }
+        int entry = size++;
+        fingerprints[entry] = fingerprint;
+        idHigh[entry] = high;
+        idLow[entry] = low;
+        documentOf[entry] = document;
+        ownerOf[entry] = owner;
+        for (int band = 0; band < bands; band++) {
+            int bucket = bucket(fingerprint, band);
+            bucketNext[entry * bands + band] = bucketHeads[bucket];
+            bucketHeads[bucket] = entry;
+        }
+        documentNext[entry] = documentHeads[document];
+        documentHeads[document] = entry;
+        return entry;
+    }
+
+    private void remove(int entry) {
+        removed.set(entry);
+        removedCount++;
+    }
+
+    // Stored entries of the document that are not kept; entries claimed by a running ingestion stay
+    private Set<String> removeStoredEntries(int document, Collection<String> keptChunkIds) {
+        Set<String> removedIds = new HashSet<>();
+        for (int entry = documentHeads[document]; entry != NONE; entry = documentNext[entry]) {
+            if (!removed.get(entry) && ownerOf[entry] == 0 && !keptChunkIds.contains(chunkId(entry))) {
+                removedIds.add(chunkId(entry));
+                remove(entry);
+            }
+        }
+        compactIfSparse();
+        return removedIds;
+    }
+
+    /**
+     * Rebuilds the arrays without the removed entries once they make up most of the index.
+     */
+    private void compactIfSparse() {
+        if (removedCount < 1024 || removedCount * 2 < size) {
+            return;
+        }
+        long[] oldFingerprints = fingerprints;
+        long[] oldHigh = idHigh;
+        long[] oldLow = idLow;
+        int[] oldDocuments = documentOf;
+        int[] oldOwners = ownerOf;
+        int oldSize = size;
+        int[] moved = new int[oldSize];
+
+        fingerprints = new long[0];
+        idHigh = new long[0];
+        idLow = new long[0];
+        documentOf = new int[0];
+        ownerOf = new int[0];
+        bucketNext = new int[0];
+        documentNext = new int[0];
+        Arrays.fill(bucketHeads, NONE);
+        Arrays.fill(documentHeads, NONE);
+        size = 0;
+        for (int entry = 0; entry < oldSize; entry++) {
+            moved[entry] = removed.get(entry) ? NONE
+                : add(oldHigh[entry], oldLow[entry], oldDocuments[entry], oldFingerprints[entry], oldOwners[entry]);
+        }
+        removed.clear();
+        removedCount = 0;
+        for (Claim claim : claims.values()) {
+            claim.entries.replaceAll(entry -> moved[entry]);
+        }
+    }
+
+    private int documentNumber(String documentId) {
+        Integer number = documentNumbers.get(documentId);
+        if (number == null) {
+            number = documentNumbers.size();
+            documentNumbers.put(documentId, number);
+            if (number == documentHeads.length) {
+                int oldLength = documentHeads.length;
+                documentHeads = Arrays.copyOf(documentHeads, Math.max(256, oldLength * 2));
+                Arrays.fill(documentHeads, oldLength, documentHeads.length, NONE);
+            }
+        }
+        return number;
+    }
+
+    private String chunkId(int entry) {
+        return new UUID(idHigh[entry], idLow[entry]).toString();
+    }
+
+    /**
+     * Logs the documents whose linked chunks still pointed to removed chunks, as those chunks are no
+     * longer found. That happens only if they could not be handed over.
+     */
+    private void warnAboutLinks(Collection<String> removedChunkIds, String documentId) {
+        Set<String> documents = new TreeSet<>(repository.findDocumentsLinkedTo(removedChunkIds, documentId));
+        if (!documents.isEmpty()) {
+            logger.warn("Chunks of documents {} were linked to removed chunks of document {}; reindex them to store those chunks",
+                documents, documentId);
+        }
+    }
+
+    /**
+     * Chunks claimed and links made by one running ingestion.
+     */
+    private static final class Claim {
+
+        private final int number;
+        private final List<Integer> entries = new ArrayList<>();
+        private final List<Fingerprint> links = new ArrayList<>();
+
+        private Claim(int number) {
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.rk.ai.rag.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * MultipartFile view of a file that already lives on disk, used by directory sync.
+ * Content is streamed from the file through NIO on demand; nothing is buffered or copied up front.
+ */
+public class PathMultipartFile implements MultipartFile {
+
+    private final Path path;
+    private final String name;
+    private final long size;
+    private final LocalDateTime lastModified;
+
+    /**
+     * @param path         the file on disk
+     * @param name         the name the document is registered under
+     * @param size         the file size seen when the file was scanned
+     * @param lastModified the modification time seen when the file was scanned
+     */
+    public PathMultipartFile(Path path, String name, long size, LocalDateTime lastModified) {
+        this.path = path;
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Converts a file time to the precision the registry stores, so scanned and stored times compare equal.
+     */
+    public static LocalDateTime toRegistryTime(FileTime fileTime) {
+        return LocalDateTime.ofInstant(fileTime.toInstant(), ZoneId.systemDefault()).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return name;
+    }
+
+    @Override
+    public String getContentType() {
+        try {
+            return Files.probeContentType(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -26,9 +26,12 @@ public class RagQueryService {
     
     private final ChatClient chatClient;
     private final VectorStore vectorStore;
+    private final DocumentMetadataCache documentMetadata;
     
-    public RagQueryService(ChatClient.Builder chatClientBuilder, VectorStore vectorStore) {
+    public RagQueryService(ChatClient.Builder chatClientBuilder, VectorStore vectorStore,
+                           DocumentMetadataCache documentMetadata) {
         this.vectorStore = vectorStore;
+        this.documentMetadata = documentMetadata;
         this.chatClient = chatClientBuilder.build();
     }
     
@@ -69,6 +72,7 @@ public class RagQueryService {
             }
             
             logger.info("Retrieved {} relevant documents", similarDocuments.size());
+            documentMetadata.hydrate(similarDocuments);
             
             // Step 2: Build context from retrieved documents
             String context = similarDocuments.stream()
@@ -134,6 +138,7 @@ public class RagQueryService {
             List<Document> similarDocuments = vectorStore.similaritySearch(searchRequest);
             
             logger.info("Vector search returned {} documents", similarDocuments.size());
+            documentMetadata.hydrate(similarDocuments);
             
             // Convert to response model
             List<SearchResponse.DocumentChunk> chunks = similarDocuments.stream()
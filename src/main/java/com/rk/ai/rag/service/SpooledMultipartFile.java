@@ -0,0 +1,166 @@
+package com.rk.ai.rag.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * MultipartFile backed by a temporary copy of an upload.
+ * The servlet container discards multipart data once the request completes, so uploads
+ * processed in the background are spooled to disk first and released when the job is done.
+ * The SHA-256 of the bytes is computed while copying, so unchanged re-uploads can be
+ * recognised without reading the file again.
+ */
+public class SpooledMultipartFile implements MultipartFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpooledMultipartFile.class);
+
+    private final String originalFilename;
+    private final String contentType;
+    private final Path path;
+    private final long size;
+    private final String rawHash;
+
+    private SpooledMultipartFile(String originalFilename, String contentType, Path path, long size, String rawHash) {
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.path = path;
+        this.size = size;
+        this.rawHash = rawHash;
+    }
+
+    /**
+     * Copies the upload into a temporary file inside the given directory.
+     */
+    public static SpooledMultipartFile spool(MultipartFile file, Path directory) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return spool(file.getOriginalFilename(), file.getContentType(), inputStream, directory, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Copies a stream into a temporary file inside the given directory, e.g. one entry of an archive.
+     * At most {@code maxSize + 1} bytes are copied, so a copy larger than {@code maxSize} means the
+     * stream was longer and has been cut. The stream is not closed.
+     */
+    public static SpooledMultipartFile spool(String filename, String contentType, InputStream content, Path directory,
+            long maxSize) throws IOException {
+        Files.createDirectories(directory);
+        Path path = Files.createTempFile(directory, "upload-", ".spool");
+        MessageDigest digest = sha256();
+        InputStream in = new DigestInputStream(content, digest);
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(path)) {
+            long limit = maxSize == Long.MAX_VALUE ? maxSize : maxSize + 1;
+            byte[] buffer = new byte[8192];
+            int read;
+            while (size < limit && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - size))) != -1) {
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new SpooledMultipartFile(filename, contentType, path, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Computes the SHA-256 of an upload's bytes in a streaming fashion.
+     */
+    public static String hash(MultipartFile file) throws IOException {
+        if (file instanceof SpooledMultipartFile spooled) {
+            return spooled.rawHash;
+        }
+        MessageDigest digest = sha256();
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Deletes the spooled copy. Safe to call more than once.
+     */
+    public void release() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spooled upload {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * The spooled copy on disk.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * SHA-256 of the spooled bytes, as a hex string.
+     */
+    public String getRawHash() {
+        return rawHash;
+    }
+
+    @Override
+    public String getName() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
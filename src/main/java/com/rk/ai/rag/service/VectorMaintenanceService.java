@@ -0,0 +1,171 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.MaintenanceReport;
+import com.rk.ai.rag.repository.VectorStoreRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes chunks and chunk fingerprints whose document is no longer registered and keeps the
+ * vector index compact.
+ * <p>
+ * The sweep walks {@code vector_store} in primary key order, deleting orphaned chunks of one
+ * small batch per statement and pausing between batches, so it holds no long locks or
+ * transactions while searches run. Afterwards, if the share of dead rows in the table exceeds
+ * the configured ratio, the vector index is rebuilt with {@code REINDEX CONCURRENTLY}, which
+ * does not block reads or writes. Documents that are still being ingested have chunks but no
+ * registry entry yet; {@link IngestionJobService} keeps them and their fingerprints out of the sweep. Runs periodically when {@code rag.ingestion.maintenance.enabled}
+ * is set and on demand via {@link #trigger()}.
+ */
+@Service
+public class VectorMaintenanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorMaintenanceService.class);
+
+    private final VectorStoreRepository vectorStoreRepository;
+    private final NearDuplicateIndex nearDuplicates;
+    private final IngestionJobService jobService;
+    private final IngestionProperties.Maintenance settings;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("vector-maintenance").daemon(true).factory());
+    private volatile MaintenanceReport lastReport;
+
+    public VectorMaintenanceService(VectorStoreRepository vectorStoreRepository, NearDuplicateIndex nearDuplicates,
+                                    IngestionJobService jobService, IngestionProperties properties) {
+        this.vectorStoreRepository = vectorStoreRepository;
+        this.nearDuplicates = nearDuplicates;
+        this.jobService = jobService;
+        this.settings = properties.getMaintenance();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        long interval = settings.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::runQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Vector store maintenance scheduled every {}", settings.getInterval());
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Interrupts the pause between batches; the batch in progress is a single statement
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Starts a maintenance run in the background.
+     *
+     * @return {@code false} if a run is already in progress
+     */
+    public boolean trigger() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::runQuietly);
+        return true;
+    }
+
+    /**
+     * Report of the last finished run, or of the run in progress.
+     */
+    public Optional<MaintenanceReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    /**
+     * Sweeps orphaned chunks and rebuilds the vector index if needed, on the calling thread.
+     *
+     * @return the report, or empty if another run is in progress
+     */
+    public Optional<MaintenanceReport> run() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        MaintenanceReport report = new MaintenanceReport("RUNNING", LocalDateTime.now());
+        lastReport = report;
+        try {
+            sweep(report);
+            if (!"INTERRUPTED".equals(report.getStatus())) {
+                int documents = jobService.excludingInFlight(nearDuplicates::removeUnregisteredDocuments);
+                if (documents > 0) {
+                    logger.info("Removed chunk fingerprints of {} unregistered documents", documents);
+                }
+                compact(report);
+                report.setStatus("COMPLETED");
+            }
+        } catch (Exception e) {
+            logger.error("Vector store maintenance failed", e);
+            report.setStatus("FAILED");
+            report.setMessage(e.getMessage());
+        } finally {
+            report.setFinishedAt(LocalDateTime.now());
+            running.set(false);
+        }
+        logger.info("Vector store maintenance {}: scanned {} chunks, deleted {} orphaned, reindexed: {}",
+            report.getStatus(), report.getScannedChunks(), report.getDeletedChunks(), report.isReindexed());
+        return Optional.of(report);
+    }
+
+    private void sweep(MaintenanceReport report) {
+        int batchSize = Math.max(1, settings.getBatchSize());
+        long delayMillis = settings.getBatchDelay().toMillis();
+        String lastId = null;
+        do {
+            String afterId = lastId;
+            VectorStoreRepository.SweepBatch batch = jobService.excludingInFlight(
+                inFlight -> vectorStoreRepository.deleteOrphanedChunks(afterId, batchSize, inFlight));
+            report.setScannedChunks(report.getScannedChunks() + batch.scanned());
+            report.setDeletedChunks(report.getDeletedChunks() + batch.deleted());
+            lastId = batch.lastId();
+            if (lastId != null && delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    report.setStatus("INTERRUPTED");
+                    report.setMessage("Stopped after scanning " + report.getScannedChunks() + " chunks");
+                    return;
+                }
+            }
+        } while (lastId != null);
+    }
+
+    private void compact(MaintenanceReport report) {
+        double deadRatio = vectorStoreRepository.deadTupleRatio();
+        report.setDeadTupleRatio(deadRatio);
+        if (deadRatio < settings.getReindexDeadRatio()) {
+            return;
+        }
+
+        logger.info("Dead rows at {}% of the vector table, rebuilding index {}",
+            Math.round(deadRatio * 100), settings.getVectorIndexName());
+        if (vectorStoreRepository.reindexConcurrently(settings.getVectorIndexName())) {
+            report.setReindexed(true);
+        } else {
+            logger.warn("Vector index {} not found, skipping reindex", settings.getVectorIndexName());
+            report.setMessage("Vector index " + settings.getVectorIndexName() + " not found");
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (Exception e) {
+            logger.error("Vector store maintenance failed", e);
+        }
+    }
+}
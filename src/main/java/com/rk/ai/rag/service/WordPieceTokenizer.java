@@ -0,0 +1,404 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts tokens the way BERT-style embedding models split text, from a WordPiece vocabulary
+ * ({@code vocab.txt}, one piece per line, {@code ##} marking pieces that continue a word).
+ * <p>
+ * Text is lower-cased and split at whitespace, punctuation and CJK ideographs; each word is then
+ * matched greedily against the vocabulary, longest piece first. Unlike the reference tokenizer, a
+ * character the vocabulary cannot match counts as one token instead of turning the whole word into
+ * a single {@code [UNK]}, and words are counted in slices of {@value #MAX_WORD_CHARS} characters,
+ * so unknown scripts and long runs such as encoded blobs still use up the budget.
+ * <p>
+ * The bundled vocabulary is a compact English one; pointing {@code rag.ingestion.chunking.vocabulary}
+ * at the embedding model's own {@code vocab.txt} makes the counts exact. Counts per word are cached,
+ * and counting never copies the text. Thread-safe.
+ */
+@Component
+public class WordPieceTokenizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(WordPieceTokenizer.class);
+
+    // Longer words are counted in slices of this many characters
+    static final int MAX_WORD_CHARS = 100;
+
+    private static final String CONTINUATION_PREFIX = "##";
+
+    // Direct-mapped cache of word counts; a collision simply replaces the older word
+    private static final int CACHE_SIZE = 1 << 16;
+
+    // ASCII characters that continue a word: letters and digits, as the rest are separators or punctuation
+    private static final boolean[] ASCII_WORD = new boolean[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            ASCII_WORD[c] = Character.isLetterOrDigit(c);
+        }
+    }
+
+    private final PieceTable wordStarts;
+    private final PieceTable continuations;
+    private final WordCount[] cache = new WordCount[CACHE_SIZE];
+
+    public WordPieceTokenizer(IngestionProperties properties) {
+        this(properties.getChunking().getVocabulary());
+    }
+
+    WordPieceTokenizer(String vocabularyLocation) {
+        List<String> starts = new ArrayList<>();
+        List<String> continued = new ArrayList<>();
+        Resource resource = new DefaultResourceLoader().getResource(vocabularyLocation);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith(CONTINUATION_PREFIX) && line.length() > CONTINUATION_PREFIX.length()) {
+                    continued.add(line.substring(CONTINUATION_PREFIX.length()));
+                } else {
+                    starts.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load tokenizer vocabulary " + vocabularyLocation, e);
+        }
+        this.wordStarts = new PieceTable(starts);
+        this.continuations = new PieceTable(continued);
+        logger.info("Loaded tokenizer vocabulary {}: {} word pieces", vocabularyLocation, starts.size() + continued.size());
+    }
+
+    public int countTokens(CharSequence text) {
+        return countTokens(text, 0, text.length());
+    }
+
+    /**
+     * Number of tokens in {@code text} between {@code start} and {@code end}. Counts of ranges
+     * separated by whitespace add up.
+     */
+    public int countTokens(CharSequence text, int start, int end) {
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            if (isSeparator(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            long word = scanWord(text, i, end);
+            tokens += wordTokens(text, i, word);
+            i = (int) word;
+        }
+        return tokens;
+    }
+
+    /**
+     * End of the longest prefix of {@code text} from {@code start} that holds at most
+     * {@code maxTokens} tokens and ends with a whole word. A first word that alone exceeds the
+     * budget is cut between its word pieces. At least one token is taken if there is any.
+     */
+    public int prefixEnd(CharSequence text, int start, int end, int maxTokens) {
+        int tokens = 0;
+        int i = start;
+        int lastFit = start;
+        while (i < end) {
+            if (isSeparator(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            long word = scanWord(text, i, end);
+            int wordEnd = (int) word;
+            int wordTokens = wordTokens(text, i, word);
+            if (tokens + wordTokens > maxTokens) {
+                return lastFit > start ? lastFit : pieceEnd(text, i, wordEnd, Math.max(1, maxTokens - tokens));
+            }
+            tokens += wordTokens;
+            i = wordEnd;
+            lastFit = wordEnd;
+        }
+        return lastFit > start ? lastFit : end;
+    }
+
+    /**
+     * Start of the shortest suffix of {@code text} before {@code end} that begins with a whole
+     * word and holds at most {@code maxTokens} tokens; {@code end} if not even the last word fits.
+     * Only the tail of the range is counted, growing it until it holds more than the budget.
+     */
+    public int suffixStart(CharSequence text, int start, int end, int maxTokens) {
+        int window = Math.max(64, maxTokens * 8);
+        while (true) {
+            // Words never span a separator, so counting from one gives the same words as from start
+            int from = Math.max(start, end - window);
+            while (from > start && !isSeparator(text.charAt(from - 1))) {
+                from--;
+            }
+            int remaining = countTokens(text, from, end);
+            if (remaining > maxTokens || from == start) {
+                return dropWords(text, from, end, remaining, maxTokens);
+            }
+            window *= 2;
+        }
+    }
+
+    // Skips whole words from start until the rest holds at most maxTokens of the remaining tokens
+    private int dropWords(CharSequence text, int start, int end, int remaining, int maxTokens) {
+        int i = start;
+        while (i < end && remaining > maxTokens) {
+            if (isSeparator(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            long word = scanWord(text, i, end);
+            remaining -= wordTokens(text, i, word);
+            i = (int) word;
+        }
+        while (i < end && isSeparator(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the word starting at {@code start}: one punctuation character or ideograph, or a run
+     * of other characters up to the next separator, at most {@value #MAX_WORD_CHARS} long. Returns
+     * the word's end in the low and a hash of its characters as written in the high half, so the
+     * word is read only once.
+     */
+    private static long scanWord(CharSequence text, int start, int end) {
+        char first = text.charAt(start);
+        int i;
+        if (first < 128) {
+            i = start + 1;
+            if (!ASCII_WORD[first]) {
+                return (long) PieceTable.spread(first) << 32 | i;
+            }
+        } else {
+            int codePoint = Character.codePointAt(text, start);
+            i = Math.min(end, start + Character.charCount(codePoint));
+            if (isSingleCharacterWord(codePoint)) {
+                return (long) PieceTable.spread(PieceTable.rawHash(0, text, start, i)) << 32 | i;
+            }
+        }
+        int hash = PieceTable.rawHash(0, text, start, i);
+        while (i < end && i - start < MAX_WORD_CHARS) {
+            char c = text.charAt(i);
+            if (c < 128) {
+                if (!ASCII_WORD[c]) {
+                    break;
+                }
+                hash = 31 * hash + c;
+                i++;
+                continue;
+            }
+            if (isSeparator(c)) {
+                break;
+            }
+            int codePoint = Character.codePointAt(text, i);
+            if (isSingleCharacterWord(codePoint)) {
+                break;
+            }
+            int next = Math.min(end, i + Character.charCount(codePoint));
+            hash = PieceTable.rawHash(hash, text, i, next);
+            i = next;
+        }
+        return (long) PieceTable.spread(hash) << 32 | i;
+    }
+
+    private int wordTokens(CharSequence text, int start, long word) {
+        int end = (int) word;
+        int hash = (int) (word >>> 32);
+        int slot = hash & (CACHE_SIZE - 1);
+        WordCount cached = cache[slot];
+        if (cached != null && cached.hash == hash && cached.matches(text, start, end)) {
+            return cached.tokens;
+        }
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            i = nextPiece(text, start, i, end);
+            tokens++;
+        }
+        cache[slot] = new WordCount(text, start, end, hash, tokens);
+        return tokens;
+    }
+
+    // End of the word piece starting at i, cut as late as possible
+    private int pieceEnd(CharSequence text, int start, int end, int maxTokens) {
+        int i = start;
+        for (int tokens = 0; i < end && tokens < maxTokens; tokens++) {
+            i = nextPiece(text, start, i, end);
+        }
+        return i;
+    }
+
+    /**
+     * End of the longest vocabulary piece at {@code i} within the word {@code wordStart..end},
+     * or of its first character if no piece matches.
+     */
+    private int nextPiece(CharSequence text, int wordStart, int i, int end) {
+        PieceTable table = i == wordStart ? wordStarts : continuations;
+        for (int j = Math.min(end, i + table.maxLength); j > i; j--) {
+            if (j < end && Character.isLowSurrogate(text.charAt(j)) && Character.isHighSurrogate(text.charAt(j - 1))) {
+                continue;
+            }
+            if (table.contains(text, i, j)) {
+                return j;
+            }
+        }
+        return Math.min(end, i + Character.charCount(Character.codePointAt(text, i)));
+    }
+
+    private static boolean isSeparator(char c) {
+        if (c < 128) {
+            return c <= ' ' || c == 127;
+        }
+        return Character.isWhitespace(c) || Character.isSpaceChar(c) || Character.isISOControl(c);
+    }
+
+    private static char toLowerCase(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static boolean isSingleCharacterWord(int codePoint) {
+        if (codePoint < 128) {
+            return (codePoint >= 33 && codePoint <= 47) || (codePoint >= 58 && codePoint <= 64)
+                || (codePoint >= 91 && codePoint <= 96) || (codePoint >= 123 && codePoint <= 126);
+        }
+        if (Character.isIdeographic(codePoint)) {
+            return true;
+        }
+        return switch (Character.getType(codePoint)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Open-addressing set of lower-cased pieces that is probed with a range of the text, so
+     * looking up a candidate piece does not create a string.
+     */
+    private static final class PieceTable {
+
+        private final char[][] pieces;
+        private final int[] hashes;
+        private final int maxLength;
+
+        private PieceTable(List<String> entries) {
+            int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 2) - 1) << 1;
+            this.pieces = new char[capacity][];
+            this.hashes = new int[capacity];
+            int longest = 0;
+            for (String entry : entries) {
+                String piece = entry.toLowerCase();
+                int hash = hash(piece, 0, piece.length());
+                int slot = hash & (capacity - 1);
+                while (pieces[slot] != null && !(hashes[slot] == hash && equalTo(pieces[slot], piece, 0, piece.length()))) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                pieces[slot] = piece.toCharArray();
+                hashes[slot] = hash;
+                longest = Math.max(longest, piece.length());
+            }
+            this.maxLength = longest;
+        }
+
+        boolean contains(CharSequence text, int start, int end) {
+            int hash = hash(text, start, end);
+            int mask = pieces.length - 1;
+            for (int slot = hash & mask; pieces[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && equalTo(pieces[slot], text, start, end)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static int hash(CharSequence text, int start, int end) {
+            return spread(hash(0, text, start, end));
+        }
+
+        // Continues a hash over more of the text; spread it once it covers the whole piece
+        static int hash(int hash, CharSequence text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + toLowerCase(text.charAt(i));
+            }
+            return hash;
+        }
+
+        // Hash of the characters as written, for the word count cache
+        static int rawHash(int hash, CharSequence text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            return hash;
+        }
+
+        // Spreads the bits, as the tables are indexed by the low ones
+        static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        static boolean equalTo(char[] piece, CharSequence text, int start, int end) {
+            if (piece.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < piece.length; i++) {
+                if (piece[i] != toLowerCase(text.charAt(start + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A word as written, with its count; case variants of a word are cached separately, which
+     * spares lower-casing it on every lookup.
+     */
+    private static final class WordCount {
+
+        private final char[] word;
+        private final int hash;
+        private final int tokens;
+
+        private WordCount(CharSequence text, int start, int end, int hash, int tokens) {
+            this.word = new char[end - start];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = text.charAt(start + i);
+            }
+            this.hash = hash;
+            this.tokens = tokens;
+        }
+
+        boolean matches(CharSequence text, int start, int end) {
+            if (word.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < word.length; i++) {
+                if (word[i] != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -118,7 +118,7 @@ public class DocumentUploadView extends VerticalLayout {
             .set("gap", "8px")
             .set("margin-top", "16px");
 
-        String[] formats = {".pdf", ".doc/.docx", ".xls/.xlsx", ".csv", ".json", ".md", ".txt"};
+        String[] formats = {".pdf", ".doc/.docx", ".xls/.xlsx", ".csv", ".json/.ndjson", ".md", ".txt"};
         for (String format : formats) {
             Span badge = new Span(format);
             badge.getElement().getThemeList().add("badge");
@@ -159,7 +159,7 @@ public class DocumentUploadView extends VerticalLayout {
             ".doc", ".docx",
             ".xls", ".xlsx",
             ".csv",
-            ".json"
+            ".json", ".ndjson", ".jsonl"
         );
         upload.setMaxFileSize(10 * 1024 * 1024);
         upload.setMaxFiles(10);
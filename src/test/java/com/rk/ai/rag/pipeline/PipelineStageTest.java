@@ -0,0 +1,49 @@
+package com.rk.ai.rag.pipeline;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PipelineStage Tests")
+class PipelineStageTest {
+
+    @Test
+    @DisplayName("Should fail an item whose handler throws an error and keep the worker running")
+    void shouldFailItemOnErrorAndKeepWorker() throws Exception {
+        // Given - a single worker, so a dead worker would leave the second item unprocessed
+        List<String> processed = new CopyOnWriteArrayList<>();
+        Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(2);
+        try (PipelineStage<String> stage = new PipelineStage<>("test", 1, 4, false,
+            item -> {
+                if (item.equals("huge.pdf")) {
+                    throw new OutOfMemoryError("Java heap space");
+                }
+                processed.add(item);
+                done.countDown();
+            },
+            (item, error) -> {
+                failed.put(item, error);
+                done.countDown();
+            })) {
+
+            // When
+            stage.submit("huge.pdf");
+            stage.submit("small.txt");
+
+            // Then
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(failed.get("huge.pdf")).isInstanceOf(OutOfMemoryError.class);
+            assertThat(processed).containsExactly("small.txt");
+            assertThat(stage.stats().getFailedItems()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.rk.ai.rag.reader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("CsvDocumentReader Tests")
+class CsvDocumentReaderTest {
+
+    private CsvDocumentReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new CsvDocumentReader();
+    }
+
+    @Test
+    @DisplayName("Should hand out every data row formatted with its headers and skip empty rows")
+    void shouldReadFormattedRows() throws Exception {
+        // Given
+        InputStream csv = stream("name,city\nAda,London\n,\nAlan,Wilmslow\nGrace,Arlington\n");
+        List<String> rows = new ArrayList<>();
+
+        // When
+        int count = reader.readRows(csv, "people.csv", rows::add);
+
+        // Then
+        assertThat(count).isEqualTo(3);
+        assertThat(rows).containsExactly(
+            "name: Ada, city: London", "name: Alan, city: Wilmslow", "name: Grace, city: Arlington");
+    }
+
+    @Test
+    @DisplayName("Should pass a long row on whole")
+    void shouldPassLongRowWhole() throws Exception {
+        // Given
+        InputStream csv = stream("text\n" + "x".repeat(5000) + "\n");
+        List<String> rows = new ArrayList<>();
+
+        // When
+        reader.readRows(csv, "long.csv", rows::add);
+
+        // Then - cutting it to chunk size is up to the chunking service
+        assertThat(rows).containsExactly("text: " + "x".repeat(5000));
+    }
+
+    @Test
+    @DisplayName("Should emit the header line when there are no data rows")
+    void shouldEmitHeaderWithoutDataRows() throws Exception {
+        // Given
+        List<String> rows = new ArrayList<>();
+
+        // When
+        int count = reader.readRows(stream("name,city\n"), "empty.csv", rows::add);
+
+        // Then
+        assertThat(count).isZero();
+        assertThat(rows).containsExactly("Headers: name | city");
+    }
+
+    @Test
+    @DisplayName("Should throw exception for empty file")
+    void shouldThrowExceptionForEmptyFile() {
+        // When & Then
+        assertThatThrownBy(() -> reader.readRows(stream(""), "empty.csv", row -> { }))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("CSV file is empty");
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
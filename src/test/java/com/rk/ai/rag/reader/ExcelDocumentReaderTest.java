@@ -0,0 +1,184 @@
+package com.rk.ai.rag.reader;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ExcelDocumentReader Tests")
+class ExcelDocumentReaderTest {
+
+    private static final String RULE = "=".repeat(50);
+
+    private ExcelDocumentReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new ExcelDocumentReader();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reader.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should stream every sheet of an xlsx workbook in sheet order")
+    void shouldStreamSheetsInOrder(@TempDir Path directory) throws Exception {
+        // Given
+        Path file = directory.resolve("people.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet people = workbook.createSheet("People");
+            row(people, 0, "Name", "Age");
+            Row ada = people.createRow(1);
+            ada.createCell(0).setCellValue("Ada");
+            ada.createCell(1).setCellValue(36);
+            people.createRow(2).createCell(0).setCellValue("   ");
+            Row grace = people.createRow(4);
+            grace.createCell(0).setCellValue("Grace");
+            grace.createCell(1).setCellValue(85.5);
+
+            Sheet dates = workbook.createSheet("Dates");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            Row date = dates.createRow(0);
+            date.createCell(0).setCellValue(LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+            date.getCell(0).setCellStyle(dateStyle);
+            workbook.write(out);
+        }
+
+        // When
+        String text = reader.extractTextFromFile(file, "people.xlsx");
+
+        // Then
+        assertThat(text).isEqualTo(
+            "Sheet: People\n" + RULE + "\n\n"
+                + "Name\tAge\t\n"
+                + "Ada\t36\t\n"
+                + "Grace\t85.5\t\n"
+                + "\n\n"
+                + "Sheet: Dates\n" + RULE + "\n\n"
+                + "2024-01-02 03:04:05");
+    }
+
+    @Test
+    @DisplayName("Should read an xlsx workbook from a stream")
+    void shouldReadXlsxFromStream() throws Exception {
+        // Given
+        byte[] content;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            row(workbook.createSheet("Data"), 0, "alpha", "beta");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            content = out.toByteArray();
+        }
+
+        // When
+        String text = reader.extractText(new ByteArrayInputStream(content), "data.xlsx");
+
+        // Then
+        assertThat(text).endsWith("alpha\tbeta");
+    }
+
+    @Test
+    @DisplayName("Should hand out every sheet with the sheet name as hint")
+    void shouldReadSegmentsWithSheetHint(@TempDir Path directory) throws Exception {
+        // Given
+        Path file = directory.resolve("budget.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            row(workbook.createSheet("Q1"), 0, "rent", "1200");
+            row(workbook.createSheet("Q2"), 0, "rent", "1250");
+            workbook.write(out);
+        }
+
+        // When
+        List<TextSegment> segments = new ArrayList<>();
+        reader.readSegmentsFromFile(file, "budget.xlsx", segments::add);
+
+        // Then
+        assertThat(segments).extracting(segment -> segment.hints().get("sheet")).containsExactly("Q1", "Q2");
+        assertThat(segments.get(1).text()).startsWith("\n\nSheet: Q2");
+        assertThat(segments.stream().map(TextSegment::text).collect(Collectors.joining()).trim())
+            .isEqualTo(reader.extractTextFromFile(file, "budget.xlsx"));
+    }
+
+    @Test
+    @DisplayName("Should hand out large sheets in row groups, in sheet order")
+    void shouldReadLargeSheetsInRowGroups(@TempDir Path directory) throws Exception {
+        // Given - three sheets of about 180,000 characters each
+        Path file = workbook(directory.resolve("ledger.xlsx"), 3, 4000);
+
+        // When
+        List<TextSegment> segments = new ArrayList<>();
+        reader.readSegmentsFromFile(file, "ledger.xlsx", segments::add);
+
+        // Then - rows come in groups, never a whole sheet, and never cut inside a row
+        assertThat(segments).hasSizeGreaterThan(3 * 10);
+        assertThat(segments).allSatisfy(segment -> {
+            assertThat(segment.text().length()).isLessThan(20 * 1024);
+            assertThat(segment.text()).endsWith("\n");
+        });
+        assertThat(segments.stream().map(segment -> segment.hints().get("sheet")).distinct().toList())
+            .containsExactly("Sheet 1", "Sheet 2", "Sheet 3");
+        String text = segments.stream().map(TextSegment::text).collect(Collectors.joining());
+        assertThat(text.lines().filter(line -> line.startsWith("Row ")).count()).isEqualTo(3 * 4000);
+        assertThat(text).contains("Row 4000 of Sheet 1\t", "\n\nSheet: Sheet 2\n", "Row 1 of Sheet 3\t");
+    }
+
+    @Test
+    @DisplayName("Should stop the sheets parsed ahead when the consumer fails")
+    void shouldStopSheetsWhenConsumerFails(@TempDir Path directory) throws Exception {
+        // Given - more sheets than the pool runs at once, each more than its queue holds
+        Path file = workbook(directory.resolve("ledger.xlsx"), Runtime.getRuntime().availableProcessors() + 2, 4000);
+
+        // When / Then - the failure surfaces, and the sheets left behind do not hold up the next read
+        assertThatThrownBy(() -> reader.readSegmentsFromFile(file, "ledger.xlsx", segment -> {
+            throw new IllegalStateException("consumer gone");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("consumer gone");
+
+        List<TextSegment> segments = new ArrayList<>();
+        reader.readSegmentsFromFile(file, "ledger.xlsx", segments::add);
+        assertThat(segments.stream().map(TextSegment::text).collect(Collectors.joining()))
+            .contains("Row 4000 of Sheet " + (Runtime.getRuntime().availableProcessors() + 2) + "\t");
+    }
+
+    private static Path workbook(Path file, int sheets, int rows) throws Exception {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            for (int s = 1; s <= sheets; s++) {
+                Sheet sheet = workbook.createSheet("Sheet " + s);
+                for (int r = 0; r < rows; r++) {
+                    row(sheet, r, "Row " + (r + 1) + " of Sheet " + s, "Customer " + (r * 31 % 997), String.valueOf(r * 7));
+                }
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+        return file;
+    }
+
+    private static void row(Sheet sheet, int index, String... values) {
+        Row row = sheet.createRow(index);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+    }
+}
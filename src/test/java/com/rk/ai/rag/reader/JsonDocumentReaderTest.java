@@ -0,0 +1,109 @@
+package com.rk.ai.rag.reader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("JsonDocumentReader Tests")
+class JsonDocumentReaderTest {
+
+    private JsonDocumentReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new JsonDocumentReader();
+    }
+
+    @Test
+    @DisplayName("Should render nested objects and arrays as indented text")
+    void shouldRenderNestedStructure() throws Exception {
+        // Given
+        InputStream json = stream("{\"name\":\"rag\",\"tags\":[\"a\",\"b\"],\"owner\":{\"id\":7,\"score\":1.5}}");
+
+        // When
+        String text = reader.extractText(json, "config.json");
+
+        // Then
+        assertThat(text).isEqualTo("name: rag\ntags: \n  - a\n  - b\nowner: \n  id: 7\n  score: 1.5\n");
+    }
+
+    @Test
+    @DisplayName("Should read each element of a top-level array as a record with its path")
+    void shouldReadArrayElementsAsRecords() throws Exception {
+        // Given
+        InputStream json = stream("[{\"id\":1,\"title\":\"first\"},{},{\"id\":2,\"title\":\"second\"}]");
+        List<String> records = new ArrayList<>();
+
+        // When
+        int count = reader.readRecords(json, "dump.json", (path, text) -> records.add(path + " " + text));
+
+        // Then
+        assertThat(count).isEqualTo(2);
+        assertThat(records).containsExactly("$[0] id: 1\ntitle: first", "$[2] id: 2\ntitle: second");
+    }
+
+    @Test
+    @DisplayName("Should split array fields of a top-level object into records and pass other fields at the root path")
+    void shouldReadArrayFieldsOfTopLevelObject() throws Exception {
+        // Given
+        InputStream json = stream("{\"source\":\"crm\",\"version\":3,\"items\":[{\"id\":1},{\"id\":2}]}");
+        List<String> records = new ArrayList<>();
+
+        // When
+        reader.readRecords(json, "export.json", (path, text) -> records.add(path + " " + text));
+
+        // Then
+        assertThat(records).containsExactly("$ source: crm", "$ version: 3", "$.items[0] id: 1", "$.items[1] id: 2");
+    }
+
+    @Test
+    @DisplayName("Should read every line of newline-delimited JSON as a record")
+    void shouldReadNewlineDelimitedRecords() throws Exception {
+        // Given
+        InputStream json = stream("{\"id\":1}\n{\"id\":2}\n");
+        List<String> records = new ArrayList<>();
+
+        // When
+        reader.readRecords(json, "events.ndjson", (path, text) -> records.add(path + " " + text));
+
+        // Then
+        assertThat(records).containsExactly("$[0] id: 1", "$[1] id: 2");
+    }
+
+    @Test
+    @DisplayName("Should pass a large record on whole")
+    void shouldPassLargeRecordWhole() throws Exception {
+        // Given
+        String value = "v".repeat(5000);
+        InputStream json = stream("[{\"a\":\"" + value + "\",\"b\":\"" + value + "\"}]");
+        List<String> records = new ArrayList<>();
+
+        // When
+        reader.readRecords(json, "dump.json", (path, text) -> records.add(path + " " + text));
+
+        // Then - cutting it to chunk size is up to the chunking service
+        assertThat(records).containsExactly("$[0] a: " + value + "\nb: " + value);
+    }
+
+    @Test
+    @DisplayName("Should throw exception for a document without data")
+    void shouldThrowExceptionForEmptyDocument() {
+        // When & Then
+        assertThatThrownBy(() -> reader.readRecords(stream("[]"), "empty.json", (path, text) -> { }))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("JSON file contains no data");
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,11 +1,25 @@
 package com.rk.ai.rag.reader;
 
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -20,6 +34,11 @@ class PdfDocumentReaderTest {
         reader = new PdfDocumentReader();
     }
 
+    @AfterEach
+    void tearDown() {
+        reader.shutdown();
+    }
+
     @Test
     @DisplayName("Should throw exception for null input stream")
     void shouldThrowExceptionForNullInputStream() {
@@ -67,25 +86,76 @@ class PdfDocumentReaderTest {
             });
     }
 
-    // Note: Testing actual PDF extraction would require a valid PDF file
-    // In a real scenario, you would:
-    // 1. Add a small test PDF to src/test/resources/
-    // 2. Load it in the test
-    // 3. Verify the extracted text matches expected content
+    @Test
+    @DisplayName("Should hand out the pages of a large PDF in order, extracted in parallel ranges")
+    void shouldReadPagesInOrder(@TempDir Path directory) throws Exception {
+        // Given - enough pages to be split into several ranges
+        Path pdf = createPdf(directory.resolve("manual.pdf"), 70);
+
+        // When
+        List<TextSegment> pages = new ArrayList<>();
+        reader.readSegmentsFromFile(pdf, "manual.pdf", pages::add);
+
+        // Then
+        assertThat(pages).hasSize(70);
+        for (int i = 0; i < pages.size(); i++) {
+            assertThat(pages.get(i).text()).contains("Page " + (i + 1) + " of the manual");
+            assertThat(pages.get(i).hints()).containsEntry("page", i + 1);
+        }
+    }
 
-    /*
     @Test
-    @DisplayName("Should extract text from valid PDF")
-    void shouldExtractTextFromValidPdf() throws Exception {
-        // Given - Load test PDF from resources
-        InputStream pdfStream = getClass().getResourceAsStream("/test-documents/sample.pdf");
+    @DisplayName("Should produce the same text as a single stripper over the whole document")
+    void shouldMatchSingleThreadedExtraction(@TempDir Path directory) throws Exception {
+        // Given
+        Path pdf = createPdf(directory.resolve("manual.pdf"), 70);
+        String expected;
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            expected = new PDFTextStripper().getText(document).trim();
+        }
 
         // When
-        String extractedText = reader.extractText(pdfStream, "sample.pdf");
+        String text;
+        try (InputStream stream = Files.newInputStream(pdf)) {
+            text = reader.extractText(stream, "manual.pdf");
+        }
 
         // Then
-        assertThat(extractedText).isNotEmpty();
-        assertThat(extractedText).contains("expected content");
+        assertThat(text).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Should stop the running page ranges when the consumer fails")
+    void shouldStopRangesWhenConsumerFails(@TempDir Path directory) throws Exception {
+        // Given
+        Path pdf = createPdf(directory.resolve("manual.pdf"), 70);
+
+        // When / Then - the failure surfaces, and the ranges left behind do not hold up the next read
+        assertThatThrownBy(() -> reader.readSegmentsFromFile(pdf, "manual.pdf", segment -> {
+            throw new IllegalStateException("consumer gone");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("consumer gone");
+
+        List<TextSegment> pages = new ArrayList<>();
+        reader.readSegmentsFromFile(pdf, "manual.pdf", pages::add);
+        assertThat(pages).hasSize(70);
+    }
+
+    private Path createPdf(Path path, int pageCount) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= pageCount; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(50, 700);
+                    content.showText("Page " + i + " of the manual");
+                    content.endText();
+                }
+            }
+            document.save(path.toFile());
+        }
+        return path;
     }
-    */
 }
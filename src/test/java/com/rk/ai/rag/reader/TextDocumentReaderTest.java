@@ -0,0 +1,81 @@
+package com.rk.ai.rag.reader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("TextDocumentReader Tests")
+class TextDocumentReaderTest {
+
+    private TextDocumentReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new TextDocumentReader();
+    }
+
+    @Test
+    @DisplayName("Should start a segment at every markdown heading outside code blocks")
+    void shouldStartSegmentAtMarkdownHeadings() throws Exception {
+        // Given
+        String markdown = "Intro\n# Install ##\nRun it.\n```\n# not a heading\n```\n## Usage\nCall it.";
+
+        // When
+        List<TextSegment> segments = read(markdown, "guide.md");
+
+        // Then
+        assertThat(segments).extracting(TextSegment::text)
+            .containsExactly("Intro\n", "# Install ##\nRun it.\n```\n# not a heading\n```\n", "## Usage\nCall it.");
+        assertThat(segments).extracting(segment -> segment.hints().get("heading"))
+            .containsExactly(null, "Install", "Usage");
+    }
+
+    @Test
+    @DisplayName("Should read a mapped file exactly like a stream")
+    void shouldReadMappedFileLikeStream(@TempDir Path directory) throws Exception {
+        // Given - multi-byte characters across buffer boundaries and one line longer than a segment
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("Zeile ").append(i).append(": Größe 日本 😀\n");
+        }
+        text.append("x".repeat(20_000)).append('\n');
+        Path file = directory.resolve("notes.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        // When
+        List<TextSegment> fromFile = new ArrayList<>();
+        reader.readSegmentsFromFile(file, "notes.txt", fromFile::add);
+        List<TextSegment> fromStream = read(text.toString(), "notes.txt");
+
+        // Then - every segment stays small, whatever the file size
+        assertThat(fromFile).isEqualTo(fromStream);
+        assertThat(fromFile.stream().map(TextSegment::text).collect(Collectors.joining())).isEqualTo(text.toString());
+        assertThat(fromFile).allSatisfy(segment -> assertThat(segment.text().length()).isLessThan(3 * 8192));
+    }
+
+    @Test
+    @DisplayName("Should reject whitespace-only content")
+    void shouldRejectWhitespaceOnlyContent() {
+        assertThatThrownBy(() -> read(" \n\t\r\n ", "empty.txt"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("empty");
+    }
+
+    private List<TextSegment> read(String text, String filename) throws Exception {
+        List<TextSegment> segments = new ArrayList<>();
+        reader.readSegments(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), filename, segments::add);
+        return segments;
+    }
+}
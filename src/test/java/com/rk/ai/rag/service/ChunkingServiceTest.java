@@ -1,13 +1,25 @@
 package com.rk.ai.rag.service;
 
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.ChunkingMode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.ai.document.Document;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -43,7 +55,6 @@ class ChunkingServiceTest {
         assertThat(chunks.get(0).getText()).isEqualTo(content);
         assertThat(chunks.get(0).getMetadata()).containsEntry("filename", "test.txt");
         assertThat(chunks.get(0).getMetadata()).containsEntry("chunk_index", 0);
-        assertThat(chunks.get(0).getMetadata()).containsEntry("total_chunks", 1);
         assertThat(chunks.get(0).getMetadata()).containsEntry("source_document_id", documentId);
     }
 
@@ -69,7 +80,6 @@ class ChunkingServiceTest {
         for (int i = 0; i < chunks.size(); i++) {
             Document chunk = chunks.get(i);
             assertThat(chunk.getMetadata()).containsEntry("chunk_index", i);
-            assertThat(chunk.getMetadata()).containsEntry("total_chunks", chunks.size());
             assertThat(chunk.getMetadata()).containsEntry("source_document_id", documentId);
             assertThat(chunk.getMetadata()).containsKey("chunk_size");
         }
@@ -221,8 +231,8 @@ class ChunkingServiceTest {
     }
 
     @Test
-    @DisplayName("Should maintain total chunks count across all chunks")
-    void shouldMaintainTotalChunksCount() {
+    @DisplayName("Should number chunks and leave the chunk count to the document registry")
+    void shouldLeaveTotalChunksToRegistry() {
         // Given
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < 50; i++) {
@@ -234,10 +244,10 @@ class ChunkingServiceTest {
         // When
         List<Document> chunks = chunkingService.chunkDocument(content, metadata, documentId);
 
-        // Then
-        int totalChunks = chunks.size();
-        for (Document chunk : chunks) {
-            assertThat(chunk.getMetadata().get("total_chunks")).isEqualTo(totalChunks);
+        // Then - total_chunks is a document-level attribute, added to search results from the registry
+        for (int i = 0; i < chunks.size(); i++) {
+            assertThat(chunks.get(i).getMetadata()).containsEntry("chunk_index", i);
+            assertThat(chunks.get(i).getMetadata()).doesNotContainKey("total_chunks");
         }
     }
 
@@ -278,4 +288,317 @@ class ChunkingServiceTest {
         assertThat(chunks).isNotEmpty();
         assertThat(chunks.get(0).getText()).contains("Header 1");
     }
+
+    @Test
+    @DisplayName("Should add content hash to every chunk")
+    void shouldAddContentHashToEveryChunk() {
+        // Given
+        String content = generateContent(20, 1);
+
+        // When
+        List<Document> first = chunkingService.chunkDocument(content, metadata, documentId);
+        List<Document> second = chunkingService.chunkDocument(content, metadata, documentId);
+
+        // Then - same text, same hash
+        assertThat(first).allSatisfy(chunk -> assertThat((String) chunk.getMetadata().get("chunk_hash")).hasSize(64));
+        assertThat(hashes(first)).isEqualTo(hashes(second));
+    }
+
+    @Test
+    @DisplayName("Should keep content-defined chunks within size bounds")
+    void shouldKeepContentDefinedChunksWithinSizeBounds() {
+        // Given
+        ChunkingService contentDefined = new ChunkingService(ChunkingMode.CONTENT_DEFINED);
+        String content = generateContent(150, 7);
+
+        // When
+        List<Document> chunks = contentDefined.chunkDocument(content, metadata, documentId);
+
+        // Then
+        assertThat(chunks).hasSizeGreaterThan(10);
+        assertThat(chunks).allSatisfy(chunk -> assertThat((int) chunk.getMetadata().get("token_count")).isBetween(16, 512));
+        assertThat(chunks.get(chunks.size() - 1).getMetadata()).containsEntry("chunk_index", chunks.size() - 1);
+    }
+
+    @Test
+    @DisplayName("Should keep chunks of token-dense text within the model's token limit")
+    void shouldKeepTokenDenseChunksWithinTokenLimit() {
+        // Given - ideographs, numbers and punctuation take far more tokens per character than prose
+        String content = "价格表 第3版: 1,234.56 € (含税) / 9.8% — 检索增强生成!\n\n".repeat(400);
+
+        for (ChunkingMode mode : ChunkingMode.values()) {
+            // When
+            List<Document> chunks = new ChunkingService(mode).chunkDocument(content, metadata, documentId);
+
+            // Then
+            assertThat(chunks).hasSizeGreaterThan(10);
+            assertThat(chunks).allSatisfy(chunk -> assertThat((int) chunk.getMetadata().get("token_count")).isBetween(1, 512));
+        }
+    }
+
+    @Test
+    @DisplayName("Should only change content-defined chunks around an insertion")
+    void shouldOnlyChangeContentDefinedChunksAroundInsertion() {
+        // Given - a long paragraph inserted near the top
+        ChunkingService contentDefined = new ChunkingService(ChunkingMode.CONTENT_DEFINED);
+        String original = generateContent(150, 7);
+        String inserted = "This paragraph was added in the new revision of the manual. ".repeat(8) + "\n\n";
+        String edited = original.substring(0, 2500) + inserted + original.substring(2500);
+
+        // When
+        Set<String> before = hashes(contentDefined.chunkDocument(original, metadata, documentId));
+        List<Document> after = contentDefined.chunkDocument(edited, metadata, documentId);
+
+        // Then - at most the chunks touching the insertion are new
+        long changed = after.stream()
+            .filter(chunk -> !before.contains((String) chunk.getMetadata().get("chunk_hash")))
+            .count();
+        assertThat(changed).isLessThanOrEqualTo(3);
+        assertThat(after.size()).isGreaterThan(10);
+    }
+
+    @Test
+    @DisplayName("Should chunk text handed out in pieces like the whole text and keep the piece hints")
+    void shouldChunkPiecesLikeWholeText() {
+        // Given - the text cut at arbitrary points, one piece per "page"
+        String content = generateContent(60, 3);
+        List<Document> whole = chunkingService.chunkDocument(content, metadata, documentId);
+        List<Document> pieces = new ArrayList<>();
+        ChunkingService.Chunker chunker = chunkingService.openChunker(metadata, documentId, pieces::add);
+
+        // When
+        int page = 1;
+        for (int start = 0; start < content.length(); start += 997, page++) {
+            chunker.append(content.substring(start, Math.min(content.length(), start + 997)), Map.of("page", page));
+        }
+        int created = chunker.finish();
+
+        // Then
+        assertThat(created).isEqualTo(whole.size());
+        assertThat(pieces).extracting(Document::getText).containsExactlyElementsOf(whole.stream().map(Document::getText).toList());
+        assertThat(pieces.get(0).getMetadata()).containsEntry("page", 1);
+        assertThat(pieces).allSatisfy(chunk -> assertThat(chunk.getMetadata()).containsKey("page"));
+    }
+
+    @Test
+    @DisplayName("Should create the same chunks in parallel mode as sequentially")
+    void shouldChunkInParallelLikeSequentially() {
+        // Given - many small segments, so the sequential chunker takes over from most of them
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(new IngestionProperties());
+        String content = generateContent(1500, 11) + "Heading without sentence ends ".repeat(400) + "\n\n"
+            + generateContent(1500, 12);
+
+        for (ChunkingMode mode : ChunkingMode.values()) {
+            ChunkingService parallel = new ChunkingService(mode, tokenizer, 4, 8192);
+            try {
+                // When
+                List<Document> sequentialChunks = new ChunkingService(mode, tokenizer).chunkDocument(content, metadata, documentId);
+                List<Document> parallelChunks = parallel.chunkDocument(content, metadata, documentId);
+
+                // Then
+                assertThat(parallelChunks).hasSize(sequentialChunks.size());
+                assertThat(parallelChunks).extracting(Document::getText)
+                    .containsExactlyElementsOf(sequentialChunks.stream().map(Document::getText).toList());
+                assertThat(parallelChunks).extracting(Document::getMetadata)
+                    .containsExactlyElementsOf(sequentialChunks.stream().map(Document::getMetadata).toList());
+            } finally {
+                parallel.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should join records with the same hints into chunks up to the size limit")
+    void shouldGroupRecordsUpToSizeLimit() {
+        // Given - rows of 100 characters of plain words, then two records of a JSON object's field
+        String row = "id: 1, note:" + " the".repeat(22);
+        List<Document> chunks = new ArrayList<>();
+        ChunkingService.Chunker chunker = chunkingService.openRecordChunker(Map.of(), documentId, chunks::add);
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            chunker.append(row, Map.of());
+        }
+        chunker.append("source: crm", Map.of("json_path", "$"));
+        chunker.append("version: 3", Map.of("json_path", "$"));
+        int count = chunker.finish();
+
+        // Then - 14 rows and their line breaks fit in 1500 characters, other hints start a new chunk
+        assertThat(count).isEqualTo(3);
+        assertThat(chunks.get(0).getText()).isEqualTo(String.join("\n", Collections.nCopies(14, row)));
+        assertThat(chunks.get(1).getText()).isEqualTo(String.join("\n", Collections.nCopies(6, row)));
+        assertThat(chunks.get(2).getText()).isEqualTo("source: crm\nversion: 3");
+        assertThat(chunks.get(2).getMetadata()).containsEntry("json_path", "$").containsEntry("chunk_index", 2)
+            .containsEntry("source_document_id", documentId);
+    }
+
+    @Test
+    @DisplayName("Should cut a record above the size limit at line breaks")
+    void shouldSplitOversizedRecordAtLineBreaks() {
+        // Given - two lines of 1000 characters
+        String line = "v".repeat(1000);
+        List<Document> chunks = new ArrayList<>();
+        ChunkingService.Chunker chunker = chunkingService.openRecordChunker(Map.of(), documentId, chunks::add);
+
+        // When
+        chunker.append(line + "\n" + line, Map.of("json_path", "$[0]"));
+        chunker.finish();
+
+        // Then
+        assertThat(chunks).extracting(Document::getText).containsExactly(line, line);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.getMetadata()).containsEntry("json_path", "$[0]"));
+    }
+
+    @Test
+    @DisplayName("Should keep groups of dense numeric rows within the model's token limit")
+    void shouldKeepDenseNumericRowsWithinTokenLimit() {
+        // Given - CSV rows of codes and figures, far more tokens per character than prose
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(new IngestionProperties());
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add("sku: 4711-B" + i + ", price: 1,234.56, tax: 9.8%, qty: " + (i * 37 % 1000) + ", ean: 40" + (1_000_000 + i * 7919));
+        }
+        List<Document> chunks = new ArrayList<>();
+        ChunkingService.Chunker chunker = chunkingService.openRecordChunker(Map.of(), documentId, chunks::add);
+
+        // When
+        rows.forEach(row -> chunker.append(row, Map.of()));
+        chunker.finish();
+
+        // Then - every chunk fits the model, and the rows are joined whole
+        assertThat(chunks).hasSizeGreaterThan(200 * rows.get(0).length() / 1500);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat((int) chunk.getMetadata().get("token_count")).isBetween(1, 512)
+                .isEqualTo(tokenizer.countTokens(chunk.getText()));
+            assertThat(chunk.getText().length()).isLessThanOrEqualTo(1500);
+        });
+        assertThat(chunks.stream().flatMap(chunk -> chunk.getText().lines()).toList()).isEqualTo(rows);
+    }
+
+    @Test
+    @DisplayName("Should cut a record above the token limit between words")
+    void shouldSplitTokenDenseRecordBetweenWords() {
+        // Given - one line of numbers, below the size limit in characters but not in tokens
+        WordPieceTokenizer tokenizer = new WordPieceTokenizer(new IngestionProperties());
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; record.length() < 1400; i++) {
+            record.append(i == 0 ? "" : " ").append(1.5 + i * 0.25).append('%');
+        }
+        assertThat(tokenizer.countTokens(record)).isGreaterThan(512);
+        List<Document> chunks = new ArrayList<>();
+        ChunkingService.Chunker chunker = chunkingService.openRecordChunker(Map.of(), documentId, chunks::add);
+
+        // When
+        chunker.append(record.toString(), Map.of("json_path", "$[0].values"));
+        chunker.finish();
+
+        // Then
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat((int) chunk.getMetadata().get("token_count")).isBetween(1, 512);
+            assertThat(chunk.getMetadata()).containsEntry("json_path", "$[0].values");
+        });
+        assertThat(chunks.stream().map(Document::getText).collect(Collectors.joining(" "))).isEqualTo(record.toString());
+    }
+
+    private Set<String> hashes(List<Document> chunks) {
+        return chunks.stream()
+            .map(chunk -> (String) chunk.getMetadata().get("chunk_hash"))
+            .collect(Collectors.toSet());
+    }
+
+    // Deterministic pseudo-text with paragraphs of varying length
+    @Test
+    @DisplayName("Should reproduce the recorded chunks of generated documents")
+    void shouldReproduceRecordedChunks() throws Exception {
+        // Given - one line per mode and seed: chunk count and digest of the whole text, then of the text in pieces
+        List<String> expected;
+        try (InputStream in = getClass().getResourceAsStream("/chunking/golden-chunks.txt")) {
+            expected = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                .toList();
+        }
+
+        // When
+        List<String> actual = new ArrayList<>();
+        for (String line : expected) {
+            String[] fields = line.split(" ");
+            ChunkingMode mode = ChunkingMode.valueOf(fields[0]);
+            long seed = Long.parseLong(fields[1]);
+            actual.add(goldenLine(new ChunkingService(mode), mode, seed));
+        }
+
+        // Then
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    // Chunks a generated text whole and in pieces with page hints, as recorded in golden-chunks.txt
+    static String goldenLine(ChunkingService service, ChunkingMode mode, long seed) throws Exception {
+        String text = goldenText(seed);
+        Map<String, Object> source = Map.of("filename", "doc.txt");
+        List<Document> whole = service.chunkDocument(text, source, "doc");
+        List<Document> pieces = new ArrayList<>();
+        ChunkingService.Chunker chunker = service.openChunker(source, "doc", pieces::add);
+        Random random = new Random(-seed);
+        int page = 1;
+        for (int i = 0; i < text.length(); page++) {
+            int end = Math.min(text.length(), i + 1 + random.nextInt(3000));
+            chunker.append(text.substring(i, end), Map.of("page", page));
+            i = end;
+        }
+        chunker.finish();
+        return mode + " " + seed + " " + whole.size() + " " + digest(whole) + " " + pieces.size() + " " + digest(pieces);
+    }
+
+    // Paragraphs of mixed length and scripts, with sentence ends, runs without one, and unbroken blobs
+    static String goldenText(long seed) {
+        String[] words = {"the", "retrieval", "of", "vectors", "\u00e9", "Stra\u00dfe", "\u6570\u636e", "a", "chunk",
+            "embedding", "pipeline", "model", "x", "context"};
+        String[] ends = {". ", "! ", "? ", ", ", " ", " ", " ", "; ", ".\n", " - "};
+        String[] breaks = {"\n\n", "\n\n\n", "\r\n\r\n", "\n \n", "\n\t\n", "\n"};
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        int paragraphs = 1 + random.nextInt(40);
+        for (int p = 0; p < paragraphs; p++) {
+            int length = switch (random.nextInt(8)) {
+                case 0 -> 400 + random.nextInt(800);
+                case 1 -> 1 + random.nextInt(5);
+                default -> 5 + random.nextInt(150);
+            };
+            boolean run = random.nextInt(12) == 0;
+            for (int w = 0; w < length; w++) {
+                text.append(words[random.nextInt(words.length)]);
+                text.append(run ? " " : ends[random.nextInt(ends.length)]);
+            }
+            if (random.nextInt(15) == 0) {
+                text.append("y".repeat(2500 + random.nextInt(2000)));
+            }
+            text.append(breaks[random.nextInt(breaks.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String digest(List<Document> chunks) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (Document chunk : chunks) {
+            digest.update(chunk.getText().getBytes(StandardCharsets.UTF_8));
+            digest.update(new TreeMap<>(chunk.getMetadata()).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+    }
+
+    private String generateContent(int paragraphs, long seed) {
+        String[] words = {"the", "system", "document", "retrieval", "vector", "embedding", "chunk", "model",
+            "query", "pipeline", "data", "store", "index", "search", "result", "answer", "context", "section"};
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < paragraphs; p++) {
+            int length = 20 + random.nextInt(80);
+            for (int w = 0; w < length; w++) {
+                sb.append(words[random.nextInt(words.length)]).append(w % 12 == 11 ? ". " : " ");
+            }
+            sb.append("\n\n");
+        }
+        return sb.toString();
+    }
 }
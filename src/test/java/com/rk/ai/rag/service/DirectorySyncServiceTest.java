@@ -0,0 +1,183 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.model.UploadResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DirectorySyncService Tests")
+class DirectorySyncServiceTest {
+
+    @Mock
+    private DocumentIngestionService ingestionService;
+
+    @Mock
+    private DocumentRegistryService registryService;
+
+    @TempDir
+    private Path directory;
+
+    private DirectorySyncService service;
+
+    @BeforeEach
+    void setUp() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getSync().setDirectory(directory.toString());
+        properties.getSync().setBatchSize(2);
+        service = new DirectorySyncService(ingestionService, registryService, properties);
+    }
+
+    @Test
+    @DisplayName("Should ingest new files in batches under their relative path")
+    void shouldIngestNewFilesInBatches() throws IOException {
+        // Given
+        write("a.txt", "alpha");
+        write("b.txt", "beta");
+        write("nested/c.md", "gamma");
+        write("image.png", "not a document");
+        when(registryService.findSyncedDocuments()).thenReturn(Map.of());
+        when(ingestionService.ingestDocuments(any())).thenReturn(new UploadResponse("job", "COMPLETED", "done"));
+
+        // When
+        DirectorySyncService.SyncResult result = service.syncAll();
+
+        // Then
+        ArgumentCaptor<MultipartFile[]> batches = ArgumentCaptor.forClass(MultipartFile[].class);
+        verify(ingestionService, times(2)).ingestDocuments(batches.capture());
+        assertThat(batches.getAllValues()).extracting(batch -> batch.length).containsExactlyInAnyOrder(2, 1);
+        assertThat(batches.getAllValues().stream().flatMap(Arrays::stream).map(MultipartFile::getOriginalFilename))
+            .containsExactlyInAnyOrder("a.txt", "b.txt", "nested/c.md");
+        assertThat(result.ingested()).isEqualTo(3);
+        verify(registryService, never()).deleteDocument(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should skip files whose size and modification time match the registry")
+    void shouldSkipUnchangedFiles() throws IOException {
+        // Given
+        Path file = write("a.txt", "alpha");
+        DocumentRegistry registered = new DocumentRegistry(UUID.randomUUID(), "a.txt", "hash", Files.size(file), 1);
+        registered.setSourceLastModified(PathMultipartFile.toRegistryTime(Files.getLastModifiedTime(file)));
+        when(registryService.findSyncedDocuments()).thenReturn(Map.of("a.txt", registered));
+
+        // When
+        DirectorySyncService.SyncResult result = service.syncAll();
+
+        // Then
+        assertThat(result.unchanged()).isEqualTo(1);
+        assertThat(result.ingested()).isZero();
+        verify(ingestionService, never()).ingestDocuments(any());
+    }
+
+    @Test
+    @DisplayName("Should re-ingest a file whose size changed")
+    void shouldReingestModifiedFile() throws IOException {
+        // Given
+        Path file = write("a.txt", "alpha, now longer");
+        DocumentRegistry registered = new DocumentRegistry(UUID.randomUUID(), "a.txt", "hash", 5L, 1);
+        registered.setSourceLastModified(PathMultipartFile.toRegistryTime(Files.getLastModifiedTime(file)));
+        when(registryService.findSyncedDocuments()).thenReturn(Map.of("a.txt", registered));
+        when(ingestionService.ingestDocuments(any())).thenReturn(new UploadResponse("job", "COMPLETED", "done"));
+
+        // When
+        DirectorySyncService.SyncResult result = service.syncAll();
+
+        // Then
+        assertThat(result.ingested()).isEqualTo(1);
+        verify(ingestionService).ingestDocuments(argThat(batch ->
+            batch.length == 1 && batch[0] instanceof PathMultipartFile path && path.getPath().equals(file)));
+    }
+
+    @Test
+    @DisplayName("Should delete documents of files removed from the directory")
+    void shouldDeleteRemovedFiles() throws IOException {
+        // Given
+        UUID removedId = UUID.randomUUID();
+        DocumentRegistry removed = new DocumentRegistry(removedId, "gone.txt", "hash", 5L, 2);
+        when(registryService.findSyncedDocuments()).thenReturn(Map.of("gone.txt", removed));
+
+        // When
+        DirectorySyncService.SyncResult result = service.syncAll();
+
+        // Then
+        assertThat(result.removed()).isEqualTo(1);
+        verify(registryService).deleteDocument(removedId, "gone.txt");
+        verify(ingestionService, never()).ingestDocuments(any());
+    }
+
+    @Test
+    @DisplayName("Should remove every file below a deleted directory when syncing changed paths")
+    void shouldRemoveFilesBelowDeletedDirectory() throws IOException {
+        // Given
+        UUID inside = UUID.randomUUID();
+        UUID outside = UUID.randomUUID();
+        when(registryService.findSyncedDocuments()).thenReturn(Map.of(
+            "docs/a.txt", new DocumentRegistry(inside, "docs/a.txt", "hash", 5L, 1),
+            "docs-archive/b.txt", new DocumentRegistry(outside, "docs-archive/b.txt", "hash", 5L, 1)));
+
+        // When
+        DirectorySyncService.SyncResult result = service.syncPaths(List.of(directory.resolve("docs")));
+
+        // Then
+        assertThat(result.removed()).isEqualTo(1);
+        verify(registryService).deleteDocument(inside, "docs/a.txt");
+        verify(registryService, never()).deleteDocument(outside, "docs-archive/b.txt");
+    }
+
+    @Test
+    @DisplayName("Should keep the documents of a directory that cannot be read")
+    void shouldKeepDocumentsOfUnreadableDirectory() throws IOException {
+        // Given
+        write("locked/a.txt", "alpha");
+        Path locked = directory.resolve("locked");
+        UUID inside = UUID.randomUUID();
+        UUID gone = UUID.randomUUID();
+        when(registryService.findSyncedDocuments()).thenReturn(Map.of(
+            "locked/a.txt", new DocumentRegistry(inside, "locked/a.txt", "hash", 5L, 1),
+            "gone.txt", new DocumentRegistry(gone, "gone.txt", "hash", 5L, 1)));
+        Files.setPosixFilePermissions(locked, Set.of());
+        try {
+            assumeFalse(Files.isReadable(locked), "permissions are not enforced for this user");
+
+            // When
+            DirectorySyncService.SyncResult result = service.syncAll();
+
+            // Then
+            assertThat(result.removed()).isEqualTo(1);
+            verify(registryService).deleteDocument(gone, "gone.txt");
+            verify(registryService, never()).deleteDocument(inside, "locked/a.txt");
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+}
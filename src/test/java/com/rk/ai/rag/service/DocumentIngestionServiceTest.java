@@ -1,23 +1,37 @@
 package com.rk.ai.rag.service;
 
+import com.rk.ai.rag.config.IngestionProperties;
 import com.rk.ai.rag.exception.DocumentProcessingException;
 import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.model.IngestionStage;
+import com.rk.ai.rag.model.PipelineStageStats;
 import com.rk.ai.rag.model.UploadResponse;
 import com.rk.ai.rag.reader.*;
+import com.rk.ai.rag.repository.VectorStoreRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,7 +43,22 @@ import static org.mockito.Mockito.*;
 class DocumentIngestionServiceTest {
 
     @Mock
-    private VectorStore vectorStore;
+    private EmbeddingBatcher embeddingBatcher;
+
+    @Mock
+    private EmbeddingCache embeddingCache;
+
+    @TempDir
+    static Path textCacheDirectory;
+
+    @Spy
+    private ExtractedTextCache textCache = new ExtractedTextCache(textCacheProperties());
+
+    @Mock
+    private VectorStoreRepository vectorStoreRepository;
+
+    @Mock
+    private NearDuplicateIndex nearDuplicateIndex;
 
     @Mock
     private ChunkingService chunkingService;
@@ -55,6 +84,15 @@ class DocumentIngestionServiceTest {
     @Mock
     private TextDocumentReader textReader;
 
+    @Mock
+    private TaskExecutor jobExecutor;
+
+    @Spy
+    private IngestionProperties properties = new IngestionProperties();
+
+    @Spy
+    private IngestionJobService jobService = new IngestionJobService(new IngestionProperties());
+
     @InjectMocks
     private DocumentIngestionService service;
 
@@ -87,6 +125,11 @@ class DocumentIngestionServiceTest {
         mockChunks.add(new Document("Chunk 3", metadata));
     }
 
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
     @Test
     @DisplayName("Should successfully process single text file")
     void shouldSuccessfullyProcessSingleTextFile() throws Exception {
@@ -94,12 +137,10 @@ class DocumentIngestionServiceTest {
         MultipartFile[] files = {validTextFile};
         String extractedContent = "This is test content";
 
-        when(textReader.extractText(any(), anyString())).thenReturn(extractedContent);
-        when(chunkingService.chunkDocument(anyString(), anyMap(), anyString())).thenReturn(mockChunks);
-        doNothing().when(vectorStore).add(anyList());
-        when(documentRegistryService.findByFilename(anyString())).thenReturn(Optional.empty());
-        when(documentRegistryService.register(any(UUID.class), anyString(), anyString(), anyLong(), anyInt()))
-            .thenReturn(new DocumentRegistry(UUID.randomUUID(), "test.txt", "hash", 100L, 3));
+        stubText(textReader, extractedContent);
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -111,10 +152,10 @@ class DocumentIngestionServiceTest {
         assertThat(response.getProcessedFiles()).isEqualTo(1);
         assertThat(response.getTotalChunks()).isEqualTo(3);
 
-        verify(textReader, times(1)).extractText(any(), anyString());
-        verify(chunkingService, times(1)).chunkDocument(anyString(), anyMap(), anyString());
-        verify(vectorStore, times(1)).add(anyList());
-        verify(documentRegistryService, times(1)).register(any(UUID.class), anyString(), anyString(), anyLong(), anyInt());
+        verify(textReader, times(1)).readSegments(any(), anyString(), any());
+        verify(chunkingService, times(1)).openChunker(anyMap(), anyString(), any());
+        verify(vectorStoreRepository, times(1)).saveChunks(anyList(), anyList());
+        verify(documentRegistryService, times(1)).registerAll(argThat(entries -> entries.size() == 1));
     }
 
     @Test
@@ -125,12 +166,10 @@ class DocumentIngestionServiceTest {
         MockMultipartFile file2 = new MockMultipartFile("file2", "doc2.md", "text/markdown", "Content 2".getBytes());
         MultipartFile[] files = {file1, file2};
 
-        when(textReader.extractText(any(), anyString())).thenReturn("Content");
-        when(chunkingService.chunkDocument(anyString(), anyMap(), anyString())).thenReturn(mockChunks);
-        doNothing().when(vectorStore).add(anyList());
-        when(documentRegistryService.findByFilename(anyString())).thenReturn(Optional.empty());
-        when(documentRegistryService.register(any(UUID.class), anyString(), anyString(), anyLong(), anyInt()))
-            .thenReturn(new DocumentRegistry(UUID.randomUUID(), "test.txt", "hash", 100L, 3));
+        stubText(textReader, "Content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -141,9 +180,139 @@ class DocumentIngestionServiceTest {
         assertThat(response.getTotalFiles()).isEqualTo(2);
         assertThat(response.getProcessedFiles()).isEqualTo(2);
 
-        verify(textReader, times(2)).extractText(any(), anyString());
-        verify(chunkingService, times(2)).chunkDocument(anyString(), anyMap(), anyString());
-        verify(vectorStore, times(2)).add(anyList());
+        verify(textReader, times(2)).readSegments(any(), anyString(), any());
+        verify(chunkingService, times(2)).openChunker(anyMap(), anyString(), any());
+        verify(vectorStoreRepository, times(2)).saveChunks(anyList(), anyList());
+        // One registry lookup and one batch write for the whole upload
+        verify(documentRegistryService, times(1)).findByFilenames(List.of("doc1.txt", "doc2.md"));
+        verify(documentRegistryService, times(1)).registerAll(argThat(entries -> entries.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Should fail stored files when the registry batch write fails")
+    void shouldFailStoredFilesWhenRegistryWriteFails() throws Exception {
+        // Given
+        MultipartFile[] files = {validTextFile};
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        doThrow(new RuntimeException("connection reset")).when(documentRegistryService).registerAll(anyCollection());
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("FAILED");
+        assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
+        assertThat(response.getDocuments().get(0).getErrorMessage()).contains("Failed to register document");
+    }
+
+    @Test
+    @DisplayName("Should extract files of one batch concurrently")
+    void shouldExtractFilesOfOneBatchConcurrently() throws Exception {
+        // Given - each extraction waits until the other file has started extracting too
+        properties.getPipeline().getExtract().setWorkers(2);
+        DocumentIngestionService concurrentService = new DocumentIngestionService(
+            embeddingBatcher, embeddingCache, textCache, vectorStoreRepository, nearDuplicateIndex, chunkingService, documentRegistryService, pdfReader, wordReader, excelReader,
+            csvReader, jsonReader, textReader, jobService, jobExecutor, properties);
+        MockMultipartFile file1 = new MockMultipartFile("file1", "doc1.txt", "text/plain", "Content 1".getBytes());
+        MockMultipartFile file2 = new MockMultipartFile("file2", "doc2.txt", "text/plain", "Content 2".getBytes());
+        MultipartFile[] files = {file1, file2};
+
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            bothStarted.countDown();
+            if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Files were not extracted concurrently");
+            }
+            DocumentReader.SegmentConsumer consumer = invocation.getArgument(2);
+            consumer.accept(TextSegment.of("Content"));
+            return null;
+        }).when(textReader).readSegments(any(), anyString(), any());
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+
+        // When
+        UploadResponse response;
+        try {
+            response = concurrentService.ingestDocuments(files);
+        } finally {
+            concurrentService.shutdown();
+        }
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(response.getProcessedFiles()).isEqualTo(2);
+        assertThat(response.getTotalChunks()).isEqualTo(6);
+        assertThat(response.getDocuments())
+            .extracting(UploadResponse.DocumentInfo::getFilename)
+            .containsExactly("doc1.txt", "doc2.txt");
+    }
+
+    @Test
+    @DisplayName("Should let a second job with the same filename wait until the first has registered it")
+    void shouldSerializeJobsWithSameFilename() throws Exception {
+        // Given - the first job's extraction holds until released
+        properties.getPipeline().getExtract().setWorkers(2);
+        DocumentIngestionService concurrentService = new DocumentIngestionService(
+            embeddingBatcher, embeddingCache, textCache, vectorStoreRepository, nearDuplicateIndex, chunkingService, documentRegistryService, pdfReader, wordReader, excelReader,
+            csvReader, jsonReader, textReader, jobService, jobExecutor, properties);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (firstStarted.getCount() > 0) {
+                firstStarted.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            DocumentReader.SegmentConsumer consumer = invocation.getArgument(2);
+            consumer.accept(TextSegment.of("Content"));
+            return null;
+        }).when(textReader).readSegments(any(), anyString(), any());
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of());
+
+        // When
+        CompletableFuture<UploadResponse> first = CompletableFuture.supplyAsync(
+            () -> concurrentService.ingestDocuments(new MultipartFile[]{validTextFile}));
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<UploadResponse> second = CompletableFuture.supplyAsync(
+            () -> concurrentService.ingestDocuments(new MultipartFile[]{validTextFile}));
+
+        // Then - the second job does not look the filename up while the first is still ingesting it
+        verify(documentRegistryService, after(200).times(1)).findByFilenames(List.of("test.txt"));
+        release.countDown();
+        try {
+            assertThat(first.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo("COMPLETED");
+            assertThat(second.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo("COMPLETED");
+        } finally {
+            concurrentService.shutdown();
+        }
+        InOrder registry = inOrder(documentRegistryService);
+        registry.verify(documentRegistryService).findByFilenames(List.of("test.txt"));
+        registry.verify(documentRegistryService).registerAll(anyCollection());
+        registry.verify(documentRegistryService).findByFilenames(List.of("test.txt"));
+    }
+
+    @Test
+    @DisplayName("Should keep a new document out of maintenance sweeps until it is registered")
+    void shouldMarkNewDocumentInFlightUntilRegistered() throws Exception {
+        // Given - records what a sweep would have to skip while the chunks are written
+        List<Set<String>> skippedWhileStoring = new ArrayList<>();
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        doAnswer(invocation -> skippedWhileStoring.add(jobService.excludingInFlight(ids -> ids)))
+            .when(vectorStoreRepository).saveChunks(anyList(), anyList());
+
+        // When
+        UploadResponse response = service.ingestDocuments(new MultipartFile[]{validTextFile});
+
+        // Then
+        String documentId = response.getDocuments().get(0).getDocumentId();
+        assertThat(skippedWhileStoring).containsExactly(Set.of(documentId));
+        assertThat(jobService.excludingInFlight(ids -> ids)).isEmpty();
     }
 
     @Test
@@ -167,7 +336,7 @@ class DocumentIngestionServiceTest {
         assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
         assertThat(response.getDocuments().get(0).getErrorMessage()).contains("File is empty");
 
-        verify(vectorStore, never()).add(anyList());
+        verify(vectorStoreRepository, never()).saveChunks(anyList(), anyList());
     }
 
     @Test
@@ -192,7 +361,7 @@ class DocumentIngestionServiceTest {
         assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
         assertThat(response.getDocuments().get(0).getErrorMessage()).contains("exceeds maximum allowed size");
 
-        verify(vectorStore, never()).add(anyList());
+        verify(vectorStoreRepository, never()).saveChunks(anyList(), anyList());
     }
 
     @Test
@@ -216,7 +385,7 @@ class DocumentIngestionServiceTest {
         assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
         assertThat(response.getDocuments().get(0).getErrorMessage()).contains("Unsupported file type");
 
-        verify(vectorStore, never()).add(anyList());
+        verify(vectorStoreRepository, never()).saveChunks(anyList(), anyList());
     }
 
     @Test
@@ -226,12 +395,10 @@ class DocumentIngestionServiceTest {
         MultipartFile[] files = {validPdfFile};
         String extractedContent = "PDF text content";
 
-        when(pdfReader.extractText(any(), anyString())).thenReturn(extractedContent);
-        when(chunkingService.chunkDocument(anyString(), anyMap(), anyString())).thenReturn(mockChunks);
-        doNothing().when(vectorStore).add(anyList());
-        when(documentRegistryService.findByFilename(anyString())).thenReturn(Optional.empty());
-        when(documentRegistryService.register(any(UUID.class), anyString(), anyString(), anyLong(), anyInt()))
-            .thenReturn(new DocumentRegistry(UUID.randomUUID(), "document.pdf", "hash", 100L, 3));
+        stubText(pdfReader, extractedContent);
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -240,8 +407,8 @@ class DocumentIngestionServiceTest {
         assertThat(response.getStatus()).isEqualTo("COMPLETED");
         assertThat(response.getProcessedFiles()).isEqualTo(1);
 
-        verify(pdfReader, times(1)).extractText(any(), eq("document.pdf"));
-        verify(vectorStore, times(1)).add(anyList());
+        verify(pdfReader, times(1)).readSegments(any(), eq("document.pdf"), any());
+        verify(vectorStoreRepository, times(1)).saveChunks(anyList(), anyList());
     }
 
     @Test
@@ -258,8 +425,9 @@ class DocumentIngestionServiceTest {
             UUID.randomUUID(), "test.txt", contentHash, 100L, 5
         );
 
-        when(textReader.extractText(any(), anyString())).thenReturn(extractedContent);
-        when(documentRegistryService.findByFilename("test.txt")).thenReturn(Optional.of(existingDoc));
+        stubText(textReader, extractedContent);
+        stubChunks(List.of());
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of("test.txt", existingDoc));
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -269,9 +437,51 @@ class DocumentIngestionServiceTest {
         assertThat(response.getProcessedFiles()).isEqualTo(1);
         assertThat(response.getTotalChunks()).isEqualTo(5); // Uses cached chunk count
 
-        verify(chunkingService, never()).chunkDocument(anyString(), anyMap(), anyString());
-        verify(vectorStore, never()).add(anyList());
-        verify(documentRegistryService, never()).register(any(), anyString(), anyString(), anyLong(), anyInt());
+        verify(embeddingBatcher, never()).embed(anyList());
+        verify(vectorStoreRepository, never()).saveChunks(anyList(), anyList());
+        verify(documentRegistryService, never()).registerAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should skip unchanged file without extracting it")
+    void shouldSkipUnchangedFileWithoutExtractingIt() throws Exception {
+        // Given - the registry already holds the hash of exactly these bytes
+        MultipartFile[] files = {validTextFile};
+        DocumentRegistry existingDoc = new DocumentRegistry(UUID.randomUUID(), "test.txt", "contentHash", 100L, 5);
+        existingDoc.setRawHash(calculateActualSha256Hash("This is test content"));
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of("test.txt", existingDoc));
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(response.getTotalChunks()).isEqualTo(5);
+        assertThat(response.getDocuments().get(0).getStage()).isEqualTo(IngestionStage.UNCHANGED);
+        verify(textReader, never()).readSegments(any(), anyString(), any());
+        verify(documentRegistryService, never()).registerAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should record raw hash when only the bytes changed")
+    void shouldRecordRawHashWhenOnlyTheBytesChanged() throws Exception {
+        // Given - same extracted text, registered before raw hashes existed
+        MultipartFile[] files = {validTextFile};
+        String extractedContent = "This is test content";
+        DocumentRegistry existingDoc = new DocumentRegistry(
+            UUID.randomUUID(), "test.txt", calculateActualSha256Hash(extractedContent), 100L, 5);
+        stubText(textReader, extractedContent);
+        stubChunks(List.of());
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of("test.txt", existingDoc));
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(existingDoc.getRawHash()).isEqualTo(calculateActualSha256Hash("This is test content"));
+        verify(documentRegistryService, times(1)).registerAll(List.of(existingDoc));
+        verify(embeddingBatcher, never()).embed(anyList());
     }
 
     @Test
@@ -285,13 +495,10 @@ class DocumentIngestionServiceTest {
             UUID.randomUUID(), "test.txt", "oldHash123", 100L, 5
         );
 
-        when(textReader.extractText(any(), anyString())).thenReturn(extractedContent);
-        when(documentRegistryService.findByFilename("test.txt")).thenReturn(Optional.of(existingDoc));
-        doNothing().when(documentRegistryService).deleteDocument(any(UUID.class), anyString());
-        when(chunkingService.chunkDocument(anyString(), anyMap(), anyString())).thenReturn(mockChunks);
-        doNothing().when(vectorStore).add(anyList());
-        when(documentRegistryService.register(any(UUID.class), anyString(), anyString(), anyLong(), anyInt()))
-            .thenReturn(new DocumentRegistry(UUID.randomUUID(), "test.txt", "newHash", 100L, 3));
+        stubText(textReader, extractedContent);
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of("test.txt", existingDoc));
+        stubChunks(mockChunks);
+        stubEmbeddings();
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -300,10 +507,73 @@ class DocumentIngestionServiceTest {
         assertThat(response.getStatus()).isEqualTo("COMPLETED");
         assertThat(response.getProcessedFiles()).isEqualTo(1);
 
-        verify(documentRegistryService, times(1)).deleteDocument(existingDoc.getDocumentId(), "test.txt");
-        verify(chunkingService, times(1)).chunkDocument(anyString(), anyMap(), anyString());
-        verify(vectorStore, times(1)).add(anyList());
-        verify(documentRegistryService, times(1)).register(any(), anyString(), anyString(), anyLong(), anyInt());
+        assertThat(response.getDocuments().get(0).getDocumentId()).isEqualTo(existingDoc.getDocumentId().toString());
+        verify(vectorStoreRepository, times(1)).deleteChunksExcept(
+            eq(existingDoc.getDocumentId().toString()), argThat(kept -> kept.size() == mockChunks.size()));
+        verify(documentRegistryService, never()).deleteDocument(any(UUID.class), anyString());
+        verify(chunkingService, times(1)).openChunker(anyMap(), eq(existingDoc.getDocumentId().toString()), any());
+        verify(vectorStoreRepository, times(1)).saveChunks(anyList(), anyList());
+        verify(documentRegistryService, times(1)).registerAll(argThat(entries -> entries.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should only embed and write chunks that changed since the previous version")
+    void shouldOnlyEmbedAndWriteChangedChunks() throws Exception {
+        // Given - the stored version already has chunks 1 and 3
+        MultipartFile[] files = {validTextFile};
+        DocumentRegistry existingDoc = new DocumentRegistry(UUID.randomUUID(), "test.txt", "oldHash123", 100L, 3);
+        String documentId = existingDoc.getDocumentId().toString();
+        String storedId1 = UUID.randomUUID().toString();
+        String storedId3 = UUID.randomUUID().toString();
+        List<Document> chunks = List.of(
+            chunkWithHash("Chunk 1", "hash-1"), chunkWithHash("Chunk 2", "hash-2"), chunkWithHash("Chunk 3", "hash-3"));
+
+        stubText(textReader, "This is NEW test content");
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of("test.txt", existingDoc));
+        stubChunks(chunks);
+        when(vectorStoreRepository.findChunkIdsByHash(documentId)).thenReturn(new HashMap<>(Map.of(
+            "hash-1", new ArrayList<>(List.of(storedId1)),
+            "hash-3", new ArrayList<>(List.of(storedId3)),
+            "hash-old", new ArrayList<>(List.of(UUID.randomUUID().toString())))));
+        stubEmbeddings();
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(response.getTotalChunks()).isEqualTo(3);
+        verify(embeddingBatcher, times(1)).embed(List.of("Chunk 2"));
+        InOrder writes = inOrder(vectorStoreRepository);
+        writes.verify(vectorStoreRepository, times(1)).saveChunks(
+            argThat(saved -> saved.size() == 1 && saved.get(0).getText().equals("Chunk 2")), anyList());
+        writes.verify(vectorStoreRepository, times(1)).updateMetadata(
+            argThat(kept -> kept.stream().map(Document::getId).toList().equals(List.of(storedId1, storedId3))));
+        // The new chunk is kept along with the unchanged ones
+        writes.verify(vectorStoreRepository, times(1)).deleteChunksExcept(eq(documentId),
+            argThat(kept -> kept.size() == 3 && kept.containsAll(Set.of(storedId1, storedId3))));
+    }
+
+    @Test
+    @DisplayName("Should keep the stored version's chunks when writing the new chunks fails")
+    void shouldKeepStoredChunksWhenSaveFails() throws Exception {
+        // Given
+        MultipartFile[] files = {validTextFile};
+        DocumentRegistry existingDoc = new DocumentRegistry(UUID.randomUUID(), "test.txt", "oldHash123", 100L, 3);
+
+        stubText(textReader, "This is NEW test content");
+        when(documentRegistryService.findByFilenames(List.of("test.txt"))).thenReturn(Map.of("test.txt", existingDoc));
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        doThrow(new RuntimeException("connection reset")).when(vectorStoreRepository).saveChunks(anyList(), anyList());
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
+        verify(vectorStoreRepository, never()).deleteChunksExcept(anyString(), anyCollection());
+        verify(documentRegistryService, never()).registerAll(anyCollection());
     }
 
     @Test
@@ -314,12 +584,10 @@ class DocumentIngestionServiceTest {
         MockMultipartFile badFile = new MockMultipartFile("file2", "bad.xyz", "application/unknown", "Content".getBytes());
         MultipartFile[] files = {goodFile, badFile};
 
-        when(textReader.extractText(any(), anyString())).thenReturn("Content");
-        when(chunkingService.chunkDocument(anyString(), anyMap(), anyString())).thenReturn(mockChunks);
-        doNothing().when(vectorStore).add(anyList());
-        when(documentRegistryService.findByFilename(anyString())).thenReturn(Optional.empty());
-        when(documentRegistryService.register(any(UUID.class), anyString(), anyString(), anyLong(), anyInt()))
-            .thenReturn(new DocumentRegistry(UUID.randomUUID(), "good.txt", "hash", 100L, 3));
+        stubText(textReader, "Content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -344,7 +612,7 @@ class DocumentIngestionServiceTest {
     void shouldHandleTextExtractionFailure() throws Exception {
         // Given
         MultipartFile[] files = {validTextFile};
-        when(textReader.extractText(any(), anyString())).thenThrow(new IOException("Read error"));
+        doThrow(new IOException("Read error")).when(textReader).readSegments(any(), anyString(), any());
 
         // When
         UploadResponse response = service.ingestDocuments(files);
@@ -354,7 +622,573 @@ class DocumentIngestionServiceTest {
         assertThat(response.getProcessedFiles()).isEqualTo(0);
         assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
 
-        verify(vectorStore, never()).add(anyList());
+        verify(vectorStoreRepository, never()).saveChunks(anyList(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should fail document when embedding fails")
+    void shouldFailDocumentWhenEmbeddingFails() throws Exception {
+        // Given
+        MultipartFile[] files = {validTextFile};
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        stubEmptyEmbeddingCache();
+        when(embeddingBatcher.embed(anyList()))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Embedding service unavailable")));
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("FAILED");
+        assertThat(response.getDocuments().get(0).getErrorMessage()).contains("Failed to generate embeddings");
+        assertThat(response.getDocuments().get(0).getStage()).isEqualTo(IngestionStage.CHUNKED);
+
+        verify(vectorStoreRepository, never()).saveChunks(anyList(), anyList());
+        verify(documentRegistryService, never()).registerAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should only embed chunks missing from the embedding cache")
+    void shouldOnlyEmbedChunksMissingFromEmbeddingCache() throws Exception {
+        // Given - chunks 1 and 3 are cached, chunk 2 changed
+        MultipartFile[] files = {validTextFile};
+        float[] cached1 = {1f};
+        float[] cached3 = {3f};
+        float[] fresh2 = {2f};
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        when(embeddingCache.lookup(List.of("Chunk 1", "Chunk 2", "Chunk 3")))
+            .thenReturn(Arrays.asList(cached1, null, cached3));
+        when(embeddingBatcher.embed(List.of("Chunk 2"))).thenReturn(CompletableFuture.completedFuture(List.of(fresh2)));
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        verify(embeddingBatcher, times(1)).embed(List.of("Chunk 2"));
+        verify(embeddingCache, times(1)).put(List.of("Chunk 2"), List.of(fresh2));
+        verify(vectorStoreRepository, times(1)).saveChunks(mockChunks, List.of(cached1, fresh2, cached3));
+    }
+
+    @Test
+    @DisplayName("Should skip the embedding model when every chunk is cached")
+    void shouldSkipEmbeddingModelWhenEveryChunkIsCached() throws Exception {
+        // Given
+        MultipartFile[] files = {validTextFile};
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        when(embeddingCache.lookup(anyList())).thenReturn(List.of(new float[]{1f}, new float[]{2f}, new float[]{3f}));
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        verify(embeddingBatcher, never()).embed(anyList());
+        verify(embeddingCache, never()).put(anyList(), anyList());
+        verify(vectorStoreRepository, times(1)).saveChunks(eq(mockChunks), anyList());
+    }
+
+    @Test
+    @DisplayName("Should link near-duplicates of stored chunks instead of embedding them")
+    void shouldLinkNearDuplicatesInsteadOfEmbedding() throws Exception {
+        // Given - chunk 2 nearly repeats a chunk of another document
+        MultipartFile[] files = {validTextFile};
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        when(nearDuplicateIndex.claim(any(), anyString(), any())).thenAnswer(invocation -> {
+            Document chunk = invocation.getArgument(2);
+            return "Chunk 2".equals(chunk.getText()) ? "stored-chunk-id" : null;
+        });
+
+        // When
+        UploadResponse response = service.ingestDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        verify(embeddingBatcher, times(1)).embed(List.of("Chunk 1", "Chunk 3"));
+        verify(vectorStoreRepository, times(1)).saveChunks(eq(List.of(mockChunks.get(0), mockChunks.get(2))), anyList());
+        verify(nearDuplicateIndex, times(1)).commit(any(), anyString(), eq(false), anySet());
+        verify(nearDuplicateIndex, never()).release(any());
+    }
+
+    @Test
+    @DisplayName("Should turn CSV rows into chunks and embed them while the file is read")
+    void shouldChunkCsvRowsWhileReading() throws Exception {
+        // Given
+        properties.getEmbedding().setBatchSize(2);
+        MockMultipartFile csvFile = new MockMultipartFile("file", "rows.csv", "text/csv", "a,b\n1,2\n".getBytes());
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        stubCsvRows("rows.csv", "a: 1, b: 2", "a: 3, b: 4", "a: 5, b: 6");
+        stubRecordChunks(new ArrayList<>());
+        stubEmbeddings();
+
+        // When
+        UploadResponse response = service.ingestDocuments(new MultipartFile[]{csvFile});
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(response.getTotalChunks()).isEqualTo(3);
+        verify(embeddingBatcher, times(1)).embed(List.of("a: 1, b: 2", "a: 3, b: 4"));
+        verify(embeddingBatcher, times(1)).embed(List.of("a: 5, b: 6"));
+        verify(chunkingService, never()).openChunker(anyMap(), anyString(), any());
+        verify(csvReader, never()).readSegments(any(), anyString(), any());
+        // Document-level attributes are registered once instead of being copied into every chunk
+        verify(vectorStoreRepository, times(1)).saveChunks(argThat(chunks -> chunks.size() == 3
+            && chunks.stream().noneMatch(chunk -> chunk.getMetadata().containsKey("filename"))), anyList());
+        verify(documentRegistryService, times(1)).registerAll(argThat(entries -> entries.size() == 1
+            && entries.iterator().next().getChunkCount() == 3
+            && "text/csv".equals(entries.iterator().next().getContentType())));
+    }
+
+    @Test
+    @DisplayName("Should store a new document's embedded batches while the file is still read")
+    void shouldStoreEmbeddedBatchesWhileReading() throws Exception {
+        // Given - 14 rows in batches of two; four batches may be in flight
+        properties.getEmbedding().setBatchSize(2);
+        MockMultipartFile csvFile = new MockMultipartFile("file", "big.csv", "text/csv", "n\n1\n".getBytes());
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        String[] rows = new String[14];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = "n: " + (i + 1);
+        }
+        List<Integer> writtenWhileReading = new ArrayList<>();
+        doAnswer(invocation -> {
+            CsvDocumentReader.RowConsumer consumer = invocation.getArgument(2);
+            for (String row : rows) {
+                consumer.accept(row);
+            }
+            mockingDetails(vectorStoreRepository).getInvocations().stream()
+                .filter(call -> call.getMethod().getName().equals("saveChunks"))
+                .forEach(call -> writtenWhileReading.add(call.<List<Document>>getArgument(0).size()));
+            return rows.length;
+        }).when(csvReader).readRows(any(), eq("big.csv"), any());
+        stubRecordChunks(new ArrayList<>());
+        stubEmbeddings();
+
+        // When
+        UploadResponse response = service.ingestDocuments(new MultipartFile[]{csvFile});
+
+        // Then - the fifth to seventh batches each pushed the oldest one out, the rest went to the store stage
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(writtenWhileReading).containsExactly(2, 2, 2);
+        InOrder inOrder = inOrder(vectorStoreRepository);
+        inOrder.verify(vectorStoreRepository).saveChunks(argThat(chunks -> chunks.size() == 2
+            && chunks.get(0).getText().equals("n: 1")), argThat(vectors -> vectors.get(0)[0] == 4f));
+        inOrder.verify(vectorStoreRepository, times(2)).saveChunks(argThat(chunks -> chunks.size() == 2), anyList());
+        inOrder.verify(vectorStoreRepository).saveChunks(argThat(chunks -> chunks.size() == 8
+            && chunks.get(0).getText().equals("n: 7")), anyList());
+        verify(documentRegistryService).registerAll(argThat(entries -> entries.iterator().next().getChunkCount() == 14));
+    }
+
+    @Test
+    @DisplayName("Should remove the batches stored while reading when the file fails later")
+    void shouldRemoveEarlyStoredBatchesOnFailure() throws Exception {
+        // Given
+        properties.getEmbedding().setBatchSize(2);
+        MockMultipartFile csvFile = new MockMultipartFile("file", "broken.csv", "text/csv", "n\n1\n".getBytes());
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        doAnswer(invocation -> {
+            CsvDocumentReader.RowConsumer consumer = invocation.getArgument(2);
+            for (int i = 1; i <= 12; i++) {
+                consumer.accept("n: " + i);
+            }
+            throw new IOException("truncated file");
+        }).when(csvReader).readRows(any(), eq("broken.csv"), any());
+        stubRecordChunks(new ArrayList<>());
+        stubEmbeddings();
+
+        // When
+        UploadResponse response = service.ingestDocuments(new MultipartFile[]{csvFile});
+
+        // Then
+        assertThat(response.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
+        verify(vectorStoreRepository, times(2)).saveChunks(argThat(chunks -> chunks.size() == 2), anyList());
+        verify(vectorStoreRepository).deleteBySourceDocumentId(response.getDocuments().get(0).getDocumentId());
+        verify(documentRegistryService, never()).registerAll(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should store each JSON record as a chunk with its JSON path")
+    void shouldStoreJsonRecordsWithPath() throws Exception {
+        // Given
+        MockMultipartFile jsonFile = new MockMultipartFile("file", "events.ndjson", "application/x-ndjson",
+            "{\"id\":1}\n{\"id\":2}\n".getBytes());
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+        doAnswer(invocation -> {
+            JsonDocumentReader.RecordConsumer consumer = invocation.getArgument(2);
+            consumer.accept("$[0]", "id: 1");
+            consumer.accept("$[1]", "id: 2");
+            return 2;
+        }).when(jsonReader).readRecords(any(), eq("events.ndjson"), any());
+        List<String> records = new ArrayList<>();
+        stubRecordChunks(records);
+        stubEmbeddings();
+
+        // When
+        UploadResponse response = service.ingestDocuments(new MultipartFile[]{jsonFile});
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("COMPLETED");
+        assertThat(records).containsExactly("$[0] id: 1", "$[1] id: 2");
+        verify(vectorStoreRepository).saveChunks(argThat(chunks -> chunks.size() == 2
+            && "$[1]".equals(chunks.get(1).getMetadata().get("json_path"))), anyList());
+        verify(jsonReader, never()).readSegments(any(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should group the cached CSV rows again when reindexing")
+    void shouldRegroupCachedRowsOnReindex() throws Exception {
+        // Given - the first ingestion cached the rows, not the chunks they were grouped into
+        MockMultipartFile csvFile = new MockMultipartFile("file", "orders.csv", "text/csv", "id\n1\n2\n".getBytes());
+        when(documentRegistryService.findByFilenames(List.of("orders.csv"))).thenReturn(Map.of());
+        stubCsvRows("orders.csv", "id: 1", "id: 2");
+        List<String> records = new ArrayList<>();
+        stubRecordChunks(records);
+        stubEmbeddings();
+        service.ingestDocuments(new MultipartFile[]{csvFile});
+
+        DocumentRegistry registered = new DocumentRegistry(UUID.randomUUID(), "orders.csv", "contentHash", 9L, 2);
+        registered.setRawHash(calculateActualSha256Hash("id\n1\n2\n"));
+        when(documentRegistryService.findAll()).thenReturn(List.of(registered));
+        when(documentRegistryService.findByFilenames(List.of("orders.csv"))).thenReturn(Map.of("orders.csv", registered));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(jobExecutor).execute(any(Runnable.class));
+
+        // When
+        UploadResponse accepted = service.submitReindex();
+
+        // Then - the reader ran once, the record chunker got the same rows both times
+        assertThat(service.getJob(accepted.getJobId()).orElseThrow().getStatus()).isEqualTo("COMPLETED");
+        verify(csvReader, times(1)).readRows(any(), anyString(), any());
+        verify(chunkingService, times(2)).openRecordChunker(anyMap(), anyString(), any());
+        assertThat(records).containsExactly(" id: 1", " id: 2", " id: 1", " id: 2");
+    }
+
+    @Test
+    @DisplayName("Should accept upload and process it in the background")
+    void shouldAcceptUploadAndProcessInBackground() throws Exception {
+        // Given
+        MultipartFile[] files = {validTextFile};
+        List<Runnable> submittedJobs = new ArrayList<>();
+        doAnswer(invocation -> submittedJobs.add(invocation.getArgument(0)))
+            .when(jobExecutor).execute(any(Runnable.class));
+
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+
+        // When
+        UploadResponse accepted = service.submitDocuments(files);
+
+        // Then - nothing processed until the executor runs the job
+        assertThat(accepted.getStatus()).isEqualTo("PROCESSING");
+        assertThat(accepted.getJobId()).isNotNull();
+        assertThat(accepted.getTotalFiles()).isEqualTo(1);
+        assertThat(accepted.getDocuments().get(0).getStage()).isEqualTo(IngestionStage.PENDING);
+        verify(textReader, never()).readSegments(any(), anyString(), any());
+
+        submittedJobs.forEach(Runnable::run);
+
+        UploadResponse finished = service.getJob(accepted.getJobId()).orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo("COMPLETED");
+        assertThat(finished.getTotalChunks()).isEqualTo(3);
+        assertThat(finished.getDocuments().get(0).getStatus()).isEqualTo("SUCCESS");
+        assertThat(finished.getDocuments().get(0).getStage()).isEqualTo(IngestionStage.STORED);
+    }
+
+    @Test
+    @DisplayName("Should reject upload when job queue is full")
+    void shouldRejectUploadWhenJobQueueIsFull() {
+        // Given
+        MultipartFile[] files = {validTextFile};
+        doThrow(new TaskRejectedException("queue full")).when(jobExecutor).execute(any(Runnable.class));
+
+        // When
+        UploadResponse response = service.submitDocuments(files);
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("REJECTED");
+        assertThat(response.getJobId()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should import archive entries under their path and fail unsupported ones")
+    void shouldImportArchiveEntries() throws Exception {
+        // Given
+        byte[] archive = zip(Map.of(
+            "docs/a.txt", "First document",
+            "docs/b.md", "Second document",
+            "images/logo.png", "not a document"));
+        List<Runnable> submittedJobs = new ArrayList<>();
+        doAnswer(invocation -> submittedJobs.add(invocation.getArgument(0)))
+            .when(jobExecutor).execute(any(Runnable.class));
+        properties.getArchive().setBatchSize(1);
+
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+
+        // When
+        UploadResponse accepted = service.submitArchive(new java.io.ByteArrayInputStream(archive));
+        submittedJobs.forEach(Runnable::run);
+
+        // Then
+        assertThat(accepted.getStatus()).isEqualTo("PROCESSING");
+        UploadResponse finished = service.getJob(accepted.getJobId()).orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo("PARTIAL_SUCCESS");
+        assertThat(finished.getTotalFiles()).isEqualTo(3);
+        assertThat(finished.getProcessedFiles()).isEqualTo(2);
+        assertThat(finished.getDocuments())
+            .filteredOn(doc -> "SUCCESS".equals(doc.getStatus()))
+            .extracting(UploadResponse.DocumentInfo::getFilename)
+            .containsExactlyInAnyOrder("docs/a.txt", "docs/b.md");
+        verify(textReader, never()).readSegments(any(), eq("images/logo.png"), any());
+        // One registry batch per entry with a batch size of 1
+        verify(documentRegistryService, times(2)).registerAll(argThat(entries -> entries.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should fail an archive entry of unknown size once it exceeds the maximum file size")
+    void shouldFailOversizedArchiveEntryOfUnknownSize() throws Exception {
+        // Given - streamed zip entries do not declare their size
+        byte[] archive = zip(Map.of(
+            "docs/a.txt", "First document",
+            "docs/huge.txt", "x".repeat(10 * 1024 * 1024 + 1)));
+        List<Runnable> submittedJobs = new ArrayList<>();
+        doAnswer(invocation -> submittedJobs.add(invocation.getArgument(0)))
+            .when(jobExecutor).execute(any(Runnable.class));
+
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+
+        // When
+        UploadResponse accepted = service.submitArchive(new java.io.ByteArrayInputStream(archive));
+        submittedJobs.forEach(Runnable::run);
+
+        // Then - the entry is cut one byte past the limit and never ingested
+        UploadResponse finished = service.getJob(accepted.getJobId()).orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo("PARTIAL_SUCCESS");
+        assertThat(finished.getDocuments())
+            .filteredOn(doc -> "docs/huge.txt".equals(doc.getFilename()))
+            .singleElement()
+            .satisfies(doc -> {
+                assertThat(doc.getStatus()).isEqualTo("FAILED");
+                assertThat(doc.getFileSize()).isEqualTo(10 * 1024 * 1024 + 1);
+            });
+        verify(textReader, never()).readSegments(any(), eq("docs/huge.txt"), any());
+    }
+
+    @Test
+    @DisplayName("Should reject import of data that is not an archive")
+    void shouldRejectImportOfNonArchive() {
+        // When
+        UploadResponse response = service.submitArchive(
+            new java.io.ByteArrayInputStream("just some text".getBytes()));
+
+        // Then
+        assertThat(response.getStatus()).isEqualTo("INVALID");
+        assertThat(response.getJobId()).isNull();
+        verifyNoInteractions(jobExecutor);
+    }
+
+    @Test
+    @DisplayName("Should report stats for every pipeline stage")
+    void shouldReportStatsForEveryPipelineStage() throws Exception {
+        // Given
+        stubText(textReader, "This is test content");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        when(documentRegistryService.findByFilenames(anyCollection())).thenReturn(Map.of());
+
+        // When
+        service.ingestDocuments(new MultipartFile[]{validTextFile});
+
+        // Then
+        assertThat(service.getPipelineStats())
+            .extracting(PipelineStageStats::getStage)
+            .containsExactly("extract", "embed", "store");
+        assertThat(service.getPipelineStats())
+            .allSatisfy(stats -> {
+                assertThat(stats.getWorkers()).isPositive();
+                assertThat(stats.getQueueDepth()).isZero();
+                assertThat(stats.getQueueCapacity()).isPositive();
+                assertThat(stats.getFailedItems()).isZero();
+            });
+    }
+
+    @Test
+    @DisplayName("Should reindex a document from its cached text without the upload")
+    void shouldReindexFromCachedText() throws Exception {
+        // Given - the first ingestion cached the extracted text under the hash of the file's bytes
+        MockMultipartFile file = new MockMultipartFile("file", "manual.txt", "text/plain", "Manual, first edition".getBytes());
+        when(documentRegistryService.findByFilenames(List.of("manual.txt"))).thenReturn(Map.of());
+        stubText(textReader, "Manual, first edition");
+        stubChunks(mockChunks);
+        stubEmbeddings();
+        service.ingestDocuments(new MultipartFile[]{file});
+
+        DocumentRegistry registered = new DocumentRegistry(UUID.randomUUID(), "manual.txt", "contentHash", 21L, 3);
+        registered.setRawHash(calculateActualSha256Hash("Manual, first edition"));
+        when(documentRegistryService.findAll()).thenReturn(List.of(registered));
+        when(documentRegistryService.findByFilenames(List.of("manual.txt"))).thenReturn(Map.of("manual.txt", registered));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(jobExecutor).execute(any(Runnable.class));
+
+        // When
+        UploadResponse accepted = service.submitReindex();
+
+        // Then - chunked again from the cache, every stored chunk replaced, the reader only used once
+        UploadResponse finished = service.getJob(accepted.getJobId()).orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo("COMPLETED");
+        assertThat(finished.getDocuments().get(0).getStage()).isEqualTo(IngestionStage.STORED);
+        verify(textReader, times(1)).readSegments(any(), anyString(), any());
+        verify(chunkingService, times(2)).openChunker(anyMap(), anyString(), any());
+        verify(vectorStoreRepository, times(1)).deleteChunksExcept(
+            eq(registered.getDocumentId().toString()), argThat(kept -> kept.size() == mockChunks.size()));
+    }
+
+    @Test
+    @DisplayName("Should report documents without cached text when reindexing")
+    void shouldReportDocumentsWithoutCachedText() {
+        // Given - registered before raw hashes, so its text was never cached
+        DocumentRegistry registered = new DocumentRegistry(UUID.randomUUID(), "legacy.pdf", "contentHash", 100L, 5);
+        when(documentRegistryService.findAll()).thenReturn(List.of(registered));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(jobExecutor).execute(any(Runnable.class));
+
+        // When
+        UploadResponse accepted = service.submitReindex();
+
+        // Then
+        UploadResponse finished = service.getJob(accepted.getJobId()).orElseThrow();
+        assertThat(finished.getDocuments().get(0).getStatus()).isEqualTo("FAILED");
+        assertThat(finished.getDocuments().get(0).getErrorMessage()).contains("not cached");
+        verifyNoInteractions(pdfReader, chunkingService, vectorStoreRepository);
+    }
+
+    @Test
+    @DisplayName("Should return empty for unknown job")
+    void shouldReturnEmptyForUnknownJob() {
+        assertThat(service.getJob("no-such-job")).isEmpty();
+    }
+
+    private static IngestionProperties textCacheProperties() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getTextCache().setDirectory(textCacheDirectory.toString());
+        return properties;
+    }
+
+    // Lets the reader hand out the whole text as one segment
+    private void stubText(DocumentReader reader, String text) throws Exception {
+        doAnswer(invocation -> {
+            DocumentReader.SegmentConsumer consumer = invocation.getArgument(2);
+            consumer.accept(TextSegment.of(text));
+            return null;
+        }).when(reader).readSegments(any(), anyString(), any());
+    }
+
+    // Lets the chunker produce the given chunks once the text is complete
+    private void stubChunks(List<Document> chunks) {
+        when(chunkingService.openChunker(anyMap(), anyString(), any())).thenAnswer(invocation -> {
+            Consumer<Document> consumer = invocation.getArgument(2);
+            return new ChunkingService.Chunker() {
+                @Override
+                public void append(CharSequence text, Map<String, Object> hints) {
+                }
+
+                @Override
+                public int finish() {
+                    chunks.forEach(consumer);
+                    return chunks.size();
+                }
+            };
+        });
+    }
+
+    private void stubCsvRows(String filename, String... rows) throws Exception {
+        doAnswer(invocation -> {
+            CsvDocumentReader.RowConsumer consumer = invocation.getArgument(2);
+            for (String row : rows) {
+                consumer.accept(row);
+            }
+            return rows.length;
+        }).when(csvReader).readRows(any(), eq(filename), any());
+    }
+
+    // Makes every record a chunk of its own and records it as "<json_path> <text>"
+    private void stubRecordChunks(List<String> records) {
+        when(chunkingService.openRecordChunker(anyMap(), anyString(), any())).thenAnswer(invocation -> {
+            Consumer<Document> consumer = invocation.getArgument(2);
+            return new ChunkingService.Chunker() {
+                private int count;
+
+                @Override
+                public void append(CharSequence text, Map<String, Object> hints) {
+                    records.add(Objects.toString(hints.get("json_path"), "") + " " + text);
+                    consumer.accept(new Document(text.toString(), new HashMap<>(hints)));
+                    count++;
+                }
+
+                @Override
+                public int finish() {
+                    return count;
+                }
+            };
+        });
+    }
+
+    // Answers every embedding request with one vector per chunk text, with nothing cached
+    private void stubEmbeddings() throws InterruptedException {
+        stubEmptyEmbeddingCache();
+        when(embeddingBatcher.embed(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = texts.stream().map(text -> new float[]{text.length()}).toList();
+            return CompletableFuture.completedFuture(vectors);
+        });
+    }
+
+    private byte[] zip(Map<String, String> entries) throws IOException {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        try (java.util.zip.ZipOutputStream zip = new java.util.zip.ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(entries).entrySet()) {
+                zip.putNextEntry(new java.util.zip.ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private Document chunkWithHash(String text, String chunkHash) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("filename", "test.txt");
+        metadata.put("chunk_hash", chunkHash);
+        return new Document(text, metadata);
+    }
+
+    private void stubEmptyEmbeddingCache() {
+        when(embeddingCache.lookup(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return Arrays.asList(new float[texts.size()][]);
+        });
     }
 
     // Helper method to calculate actual SHA-256 hash like the service does
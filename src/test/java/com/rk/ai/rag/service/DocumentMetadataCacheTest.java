@@ -0,0 +1,127 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.model.DocumentRegistry;
+import com.rk.ai.rag.repository.DocumentRegistryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DocumentMetadataCache Tests")
+class DocumentMetadataCacheTest {
+
+    @Mock
+    private DocumentRegistryRepository repository;
+
+    private DocumentMetadataCache cache;
+    private DocumentRegistry registered;
+    private String documentId;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DocumentMetadataCache(repository);
+        registered = new DocumentRegistry(UUID.randomUUID(), "manual.pdf", "contentHash", 2048L, 12);
+        registered.setContentType("application/pdf");
+        documentId = registered.getDocumentId().toString();
+    }
+
+    @Test
+    @DisplayName("Should add the registry attributes to every chunk of the document")
+    void shouldAddRegistryAttributesToChunks() {
+        // Given
+        when(repository.findAllById(Set.of(registered.getDocumentId()))).thenReturn(List.of(registered));
+        List<Document> chunks = List.of(chunk(documentId, 0), chunk(documentId, 1));
+
+        // When
+        cache.hydrate(chunks);
+
+        // Then
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.getMetadata())
+            .containsEntry("filename", "manual.pdf")
+            .containsEntry("file_size", 2048L)
+            .containsEntry("content_type", "application/pdf")
+            .containsEntry("content_hash", "contentHash")
+            .containsEntry("total_chunks", 12)
+            .containsEntry("document_id", documentId)
+            .containsKey("upload_timestamp"));
+        assertThat(chunks.get(1).getMetadata()).containsEntry("chunk_index", 1);
+    }
+
+    @Test
+    @DisplayName("Should query the registry only for documents not cached yet")
+    void shouldQueryRegistryOnlyForUncachedDocuments() {
+        // Given
+        when(repository.findAllById(Set.of(registered.getDocumentId()))).thenReturn(List.of(registered));
+        cache.hydrate(List.of(chunk(documentId, 0)));
+
+        // When
+        List<Document> chunks = List.of(chunk(documentId, 3));
+        cache.hydrate(chunks);
+
+        // Then
+        assertThat(chunks.get(0).getMetadata()).containsEntry("filename", "manual.pdf");
+        verify(repository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Should reload a document after its registry entry changed")
+    void shouldReloadDocumentAfterEviction() {
+        // Given
+        DocumentRegistry updated = new DocumentRegistry(registered.getDocumentId(), "manual.pdf", "newHash", 4096L, 20);
+        when(repository.findAllById(Set.of(registered.getDocumentId())))
+            .thenReturn(List.of(registered))
+            .thenReturn(List.of(updated));
+        cache.hydrate(List.of(chunk(documentId, 0)));
+
+        // When
+        cache.evict(List.of(registered.getDocumentId()));
+        List<Document> chunks = List.of(chunk(documentId, 0));
+        cache.hydrate(chunks);
+
+        // Then
+        assertThat(chunks.get(0).getMetadata())
+            .containsEntry("content_hash", "newHash")
+            .containsEntry("total_chunks", 20)
+            .doesNotContainKey("content_type");
+    }
+
+    @Test
+    @DisplayName("Should leave chunks of unregistered documents unchanged")
+    void shouldLeaveChunksOfUnregisteredDocumentsUnchanged() {
+        // Given - an orphaned chunk and one written before chunks had a document reference
+        UUID unknown = UUID.randomUUID();
+        when(repository.findAllById(Set.of(unknown))).thenReturn(List.of());
+        Document orphan = chunk(unknown.toString(), 0);
+        Document legacy = new Document("legacy", new HashMap<>(Map.of("filename", "old.txt")));
+
+        // When
+        cache.hydrate(List.of(orphan, legacy));
+        cache.hydrate(List.of(orphan));
+
+        // Then
+        assertThat(orphan.getMetadata()).containsOnlyKeys("source_document_id", "chunk_index");
+        assertThat(legacy.getMetadata()).containsOnly(Map.entry("filename", "old.txt"));
+        verify(repository, times(1)).findAllById(anyIterable());
+    }
+
+    private static Document chunk(String documentId, int chunkIndex) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("source_document_id", documentId);
+        metadata.put("chunk_index", chunkIndex);
+        return new Document("Chunk " + chunkIndex, metadata);
+    }
+}
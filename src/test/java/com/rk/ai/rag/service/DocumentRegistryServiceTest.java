@@ -2,6 +2,7 @@ package com.rk.ai.rag.service;
 
 import com.rk.ai.rag.model.DocumentRegistry;
 import com.rk.ai.rag.repository.DocumentRegistryRepository;
+import com.rk.ai.rag.repository.VectorStoreRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,16 +11,17 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.ai.vectorstore.VectorStore;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,7 +32,13 @@ class DocumentRegistryServiceTest {
     private DocumentRegistryRepository repository;
 
     @Mock
-    private VectorStore vectorStore;
+    private VectorStoreRepository vectorStoreRepository;
+
+    @Mock
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    @Mock
+    private DocumentMetadataCache documentMetadataCache;
 
     @InjectMocks
     private DocumentRegistryService service;
@@ -152,30 +160,33 @@ class DocumentRegistryServiceTest {
     @DisplayName("Should delete document from both vector store and registry")
     void shouldDeleteDocument() {
         // Given
-        doNothing().when(vectorStore).delete(any(List.class));
+        when(vectorStoreRepository.deleteBySourceDocumentId(testDocumentId.toString())).thenReturn(5000);
         doNothing().when(repository).deleteById(testDocumentId);
 
         // When
         service.deleteDocument(testDocumentId, testFilename);
 
-        // Then
-        verify(vectorStore, times(1)).delete(eq(List.of(testDocumentId.toString())));
+        // Then - chunks are matched by their source_document_id metadata, not by their own IDs
+        verify(vectorStoreRepository, times(1)).deleteBySourceDocumentId(testDocumentId.toString());
         verify(repository, times(1)).deleteById(testDocumentId);
+        verify(nearDuplicateIndex, times(1)).handOverLinkedChunks(testDocumentId.toString(), Set.of());
+        verify(nearDuplicateIndex, times(1)).removeDocument(testDocumentId.toString());
+        verify(documentMetadataCache, times(1)).evict(List.of(testDocumentId));
     }
 
     @Test
     @DisplayName("Should throw exception when delete fails")
     void shouldThrowExceptionWhenDeleteFails() {
         // Given
-        doThrow(new RuntimeException("Vector store error"))
-            .when(vectorStore).delete(any(List.class));
+        when(vectorStoreRepository.deleteBySourceDocumentId(anyString()))
+            .thenThrow(new RuntimeException("Vector store error"));
 
         // When & Then
         assertThatThrownBy(() -> service.deleteDocument(testDocumentId, testFilename))
             .isInstanceOf(RuntimeException.class)
             .hasMessageContaining("Failed to delete document");
 
-        verify(vectorStore, times(1)).delete(any(List.class));
+        verify(vectorStoreRepository, times(1)).deleteBySourceDocumentId(anyString());
         verify(repository, never()).deleteById(any());
     }
 
@@ -204,4 +215,53 @@ class DocumentRegistryServiceTest {
         assertThatThrownBy(() -> service.generateDocumentId(null))
             .isInstanceOf(NullPointerException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should look up a batch of filenames with one query")
+    void shouldLookUpBatchOfFilenamesWithOneQuery() {
+        // Given
+        DocumentRegistry doc = new DocumentRegistry(
+            testDocumentId, testFilename, testContentHash, testFileSize, testChunkCount
+        );
+        List<String> filenames = List.of(testFilename, "unknown.txt");
+        when(repository.findByFilenameIn(filenames)).thenReturn(List.of(doc));
+
+        // When
+        Map<String, DocumentRegistry> result = service.findByFilenames(filenames);
+
+        // Then
+        assertThat(result).containsOnlyKeys(testFilename);
+        assertThat(result.get(testFilename)).isSameAs(doc);
+        verify(repository, times(1)).findByFilenameIn(filenames);
+        verify(repository, never()).findByFilename(any());
+    }
+
+    @Test
+    @DisplayName("Should skip the query for an empty batch")
+    void shouldSkipQueryForEmptyBatch() {
+        // When
+        Map<String, DocumentRegistry> result = service.findByFilenames(List.of());
+
+        // Then
+        assertThat(result).isEmpty();
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Should write a batch of documents with one upsert")
+    void shouldWriteBatchOfDocumentsWithOneUpsert() {
+        // Given
+        List<DocumentRegistry> docs = List.of(
+            new DocumentRegistry(UUID.randomUUID(), "a.txt", "hashA", 10L, 1),
+            new DocumentRegistry(UUID.randomUUID(), "b.txt", "hashB", 20L, 2)
+        );
+
+        // When
+        service.registerAll(docs);
+
+        // Then
+        verify(repository, times(1)).upsertAll(docs);
+        verify(repository, never()).save(any());
+        verify(documentMetadataCache, times(1)).evict(List.of(docs.get(0).getDocumentId(), docs.get(1).getDocumentId()));
+    }
+}
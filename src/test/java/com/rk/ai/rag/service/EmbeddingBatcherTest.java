@@ -0,0 +1,138 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EmbeddingBatcher Tests")
+class EmbeddingBatcherTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final WordPieceTokenizer tokenizer = new WordPieceTokenizer(new IngestionProperties());
+    private IngestionProperties properties;
+    private EmbeddingBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IngestionProperties();
+        properties.getEmbedding().setLinger(Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should combine chunks of several documents into one request")
+    void shouldCombineChunksOfSeveralDocumentsIntoOneRequest() throws Exception {
+        // Given
+        stubEmbeddingByLength();
+        batcher = new EmbeddingBatcher(embeddingModel, tokenizer, properties);
+
+        // When
+        CompletableFuture<List<float[]>> first = batcher.embed(List.of("a", "bb"));
+        CompletableFuture<List<float[]>> second = batcher.embed(List.of("ccc"));
+
+        // Then - each document gets its own vectors back, in order
+        assertThat(first.get(5, TimeUnit.SECONDS)).extracting(vector -> vector[0]).containsExactly(1f, 2f);
+        assertThat(second.get(5, TimeUnit.SECONDS)).extracting(vector -> vector[0]).containsExactly(3f);
+        verify(embeddingModel, times(1)).embed(List.of("a", "bb", "ccc"));
+    }
+
+    @Test
+    @DisplayName("Should split large documents into requests of batch size")
+    void shouldSplitLargeDocumentsIntoRequestsOfBatchSize() throws Exception {
+        // Given
+        properties.getEmbedding().setBatchSize(2);
+        stubEmbeddingByLength();
+        batcher = new EmbeddingBatcher(embeddingModel, tokenizer, properties);
+
+        // When
+        List<float[]> vectors = batcher.embed(List.of("a", "bb", "ccc", "dddd", "eeeee")).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(vectors).extracting(vector -> vector[0]).containsExactly(1f, 2f, 3f, 4f, 5f);
+        verify(embeddingModel, times(3)).embed(anyList());
+    }
+
+    @Test
+    @DisplayName("Should split requests exceeding the token budget")
+    void shouldSplitRequestsExceedingTheTokenBudget() throws Exception {
+        // Given - each text holds 100 tokens
+        properties.getEmbedding().setMaxBatchTokens(150);
+        stubEmbeddingByLength();
+        batcher = new EmbeddingBatcher(embeddingModel, tokenizer, properties);
+        String text = "token ".repeat(100).trim();
+
+        // When
+        List<float[]> vectors = batcher.embed(List.of(text, text)).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(vectors).hasSize(2);
+        verify(embeddingModel, times(2)).embed(List.of(text));
+    }
+
+    @Test
+    @DisplayName("Should fail every document of a failed request")
+    void shouldFailEveryDocumentOfFailedRequest() throws Exception {
+        // Given
+        when(embeddingModel.embed(anyList())).thenThrow(new RuntimeException("Embedding service unavailable"));
+        batcher = new EmbeddingBatcher(embeddingModel, tokenizer, properties);
+
+        // When
+        CompletableFuture<List<float[]>> first = batcher.embed(List.of("a"));
+        CompletableFuture<List<float[]>> second = batcher.embed(List.of("b"));
+
+        // Then
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasMessageContaining("Embedding service unavailable");
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    @DisplayName("Should return immediately for empty input")
+    void shouldReturnImmediatelyForEmptyInput() throws Exception {
+        // Given
+        batcher = new EmbeddingBatcher(embeddingModel, tokenizer, properties);
+
+        // When
+        List<float[]> vectors = batcher.embed(List.of()).get();
+
+        // Then
+        assertThat(vectors).isEmpty();
+        verifyNoInteractions(embeddingModel);
+    }
+
+    // Answers each text with a one-dimensional vector holding its length
+    private void stubEmbeddingByLength() {
+        when(embeddingModel.embed(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[]{text.length()}).toList();
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.repository.EmbeddingCacheRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EmbeddingCache Tests")
+class EmbeddingCacheTest {
+
+    @Mock
+    private EmbeddingCacheRepository repository;
+
+    @Test
+    @DisplayName("Should return cached vectors and null for misses")
+    void shouldReturnCachedVectorsAndNullForMisses() {
+        // Given - cache what the first put stores for "cached"
+        EmbeddingCache cache = newCache("model-a", 768);
+        float[] vector = {0.5f};
+        cache.put(List.of("cached"), List.of(vector));
+        Map<String, float[]> stored = captureSavedEntries();
+        when(repository.findByKeys(anyCollection())).thenReturn(stored);
+
+        // When
+        List<float[]> result = cache.lookup(List.of("cached", "new"));
+
+        // Then
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0)).isSameAs(vector);
+        assertThat(result.get(1)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should use different keys for different models and dimensions")
+    void shouldUseDifferentKeysForDifferentModelsAndDimensions() {
+        // Given
+        newCache("model-a", 768).put(List.of("text"), List.of(new float[]{1f}));
+        newCache("model-b", 768).put(List.of("text"), List.of(new float[]{1f}));
+        newCache("model-a", 1024).put(List.of("text"), List.of(new float[]{1f}));
+
+        // When
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, float[]>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(repository, times(3)).saveAll(captor.capture());
+
+        // Then
+        assertThat(captor.getAllValues())
+            .flatExtracting(Map::keySet)
+            .doesNotHaveDuplicates()
+            .allSatisfy(key -> assertThat((String) key).hasSize(64));
+    }
+
+    @Test
+    @DisplayName("Should treat lookup failures as cache misses")
+    void shouldTreatLookupFailuresAsCacheMisses() {
+        // Given
+        EmbeddingCache cache = newCache("model-a", 768);
+        when(repository.findByKeys(anyCollection())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // When
+        List<float[]> result = cache.lookup(List.of("a", "b"));
+
+        // Then
+        assertThat(result).containsExactly(null, null);
+    }
+
+    @Test
+    @DisplayName("Should not touch the database when disabled")
+    void shouldNotTouchDatabaseWhenDisabled() {
+        // Given
+        IngestionProperties properties = new IngestionProperties();
+        properties.getEmbedding().setCacheEnabled(false);
+        EmbeddingCache cache = new EmbeddingCache(repository, properties, "model-a", 768);
+
+        // When
+        List<float[]> result = cache.lookup(List.of("a"));
+        cache.put(List.of("a"), List.of(new float[]{1f}));
+
+        // Then
+        assertThat(result).containsExactly((float[]) null);
+        verifyNoInteractions(repository);
+    }
+
+    private EmbeddingCache newCache(String model, int dimensions) {
+        return new EmbeddingCache(repository, new IngestionProperties(), model, dimensions);
+    }
+
+    private Map<String, float[]> captureSavedEntries() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, float[]>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,150 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.reader.TextSegment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ExtractedTextCache Tests")
+class ExtractedTextCacheTest {
+
+    private static final String HASH_A = "a".repeat(64);
+    private static final String HASH_B = "b".repeat(64);
+
+    @TempDir
+    Path directory;
+
+    private ExtractedTextCache cache;
+
+    @BeforeEach
+    void setUp() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getTextCache().setDirectory(directory.toString());
+        cache = new ExtractedTextCache(properties);
+    }
+
+    @Test
+    @DisplayName("Should replay committed segments with their hints")
+    void shouldReplayCommittedSegmentsWithHints() throws Exception {
+        // Given - a page longer than writeUTF could hold
+        String longPage = "word ".repeat(20_000);
+        try (ExtractedTextCache.Writer writer = cache.open(HASH_A)) {
+            writer.write(TextSegment.of("Page one\n", "page", 1));
+            writer.write(TextSegment.of(longPage, "page", 2));
+            writer.write(new TextSegment("Sheet", Map.of("sheet", "Q1", "row", 7L)));
+            writer.commit();
+        }
+
+        // When
+        List<TextSegment> segments = new ArrayList<>();
+        cache.read(HASH_A, segments::add);
+
+        // Then
+        assertThat(cache.contains(HASH_A)).isTrue();
+        assertThat(segments).containsExactly(
+            TextSegment.of("Page one\n", "page", 1),
+            TextSegment.of(longPage, "page", 2),
+            new TextSegment("Sheet", Map.of("sheet", "Q1", "row", 7L)));
+    }
+
+    @Test
+    @DisplayName("Should discard an entry that was not committed")
+    void shouldDiscardUncommittedEntry() throws Exception {
+        // When - extraction failed halfway
+        try (ExtractedTextCache.Writer writer = cache.open(HASH_A)) {
+            writer.write(TextSegment.of("partial"));
+        }
+
+        // Then
+        assertThat(cache.contains(HASH_A)).isFalse();
+        assertThatThrownBy(() -> cache.read(HASH_A, segment -> { }))
+            .isInstanceOf(NoSuchFileException.class);
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Should remove a corrupt entry when reading it")
+    void shouldRemoveCorruptEntry() throws Exception {
+        // Given
+        try (ExtractedTextCache.Writer writer = cache.open(HASH_A)) {
+            writer.write(TextSegment.of("text ".repeat(1000)));
+            writer.commit();
+        }
+        Path entry = directory.resolve("aa").resolve(HASH_A + ".txt.gz");
+        byte[] bytes = Files.readAllBytes(entry);
+        Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+
+        // When / Then
+        assertThatThrownBy(() -> cache.read(HASH_A, segment -> { })).isInstanceOf(IOException.class);
+        assertThat(cache.contains(HASH_A)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should remove an entry with a negative string length when reading it")
+    void shouldRemoveEntryWithNegativeStringLength() throws Exception {
+        // Given - the length of the first segment's text, after the format version and the segment flag, is -1
+        try (ExtractedTextCache.Writer writer = cache.open(HASH_A)) {
+            writer.write(TextSegment.of("text"));
+            writer.commit();
+        }
+        Path entry = directory.resolve("aa").resolve(HASH_A + ".txt.gz");
+        byte[] bytes;
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(entry))) {
+            bytes = in.readAllBytes();
+        }
+        Arrays.fill(bytes, 5, 9, (byte) 0xff);
+        try (GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(entry))) {
+            out.write(bytes);
+        }
+
+        // When / Then
+        assertThatThrownBy(() -> cache.read(HASH_A, segment -> { }))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("-1");
+        assertThat(cache.contains(HASH_A)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should prune entries no registered document refers to")
+    void shouldPruneUnreferencedEntries() throws Exception {
+        // Given
+        for (String hash : List.of(HASH_A, HASH_B)) {
+            try (ExtractedTextCache.Writer writer = cache.open(hash)) {
+                writer.write(TextSegment.of(hash));
+                writer.commit();
+            }
+        }
+
+        // When - only entries older than the cut-off are candidates
+        int keptYoung = cache.retainOnly(Set.of(HASH_A), FileTime.from(Instant.EPOCH));
+        int removed = cache.retainOnly(Set.of(HASH_A), FileTime.from(Instant.now().plusSeconds(60)));
+
+        // Then
+        assertThat(keptYoung).isZero();
+        assertThat(removed).isEqualTo(1);
+        assertThat(cache.contains(HASH_A)).isTrue();
+        assertThat(cache.contains(HASH_B)).isFalse();
+    }
+}
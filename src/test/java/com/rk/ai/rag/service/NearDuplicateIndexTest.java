@@ -0,0 +1,314 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.repository.ChunkFingerprintRepository;
+import com.rk.ai.rag.repository.ChunkFingerprintRepository.Fingerprint;
+import com.rk.ai.rag.repository.VectorStoreRepository;
+import com.rk.ai.rag.repository.VectorStoreRepository.Reassignment;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NearDuplicateIndex Tests")
+class NearDuplicateIndexTest {
+
+    private static final String FOOTER = "This document is confidential and intended solely for the use of the individual "
+        + "or entity to whom it is addressed. If you have received it in error, please notify the sender immediately.";
+
+    private static final String REPORT = "Quarterly revenue grew by twelve percent, driven by strong demand for cloud "
+        + "services in Europe and a recovery of hardware sales in Asia, while operating costs stayed flat.";
+
+    @Mock
+    private ChunkFingerprintRepository repository;
+
+    @Mock
+    private VectorStoreRepository vectorStoreRepository;
+
+    @Test
+    @DisplayName("Should link a chunk that repeats a stored chunk of another document")
+    void shouldLinkChunkThatRepeatsStoredChunk() {
+        // Given - the footer is stored for document A
+        String storedId = UUID.randomUUID().toString();
+        stubStored(new Fingerprint(storedId, "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+        Document footer = chunk(FOOTER.toUpperCase().replace(".", " ;"));
+
+        // When
+        String duplicateOf = index.claim(ingestion, "doc-b", footer);
+        index.commit(ingestion, "doc-b", false, Set.of());
+
+        // Then
+        assertThat(duplicateOf).isEqualTo(storedId);
+        assertThat(savedRows()).containsExactly(new Fingerprint(footer.getId(), "doc-b", fingerprint(FOOTER), storedId));
+    }
+
+    @Test
+    @DisplayName("Should claim a chunk with different text and store its fingerprint")
+    void shouldClaimChunkWithDifferentText() {
+        // Given
+        stubStored(new Fingerprint(UUID.randomUUID().toString(), "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+        Document report = chunk(REPORT);
+
+        // When
+        String duplicateOf = index.claim(ingestion, "doc-b", report);
+        index.commit(ingestion, "doc-b", false, Set.of());
+
+        // Then
+        assertThat(duplicateOf).isNull();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(savedRows()).containsExactly(new Fingerprint(report.getId(), "doc-b", fingerprint(REPORT), null));
+    }
+
+    @Test
+    @DisplayName("Should not match a document against the stored version it replaces")
+    void shouldNotMatchStoredVersionOfSameDocument() {
+        // Given
+        String storedId = UUID.randomUUID().toString();
+        stubStored(new Fingerprint(storedId, "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+        Document footer = chunk(FOOTER);
+
+        // When
+        String duplicateOf = index.claim(ingestion, "doc-a", footer);
+        index.commit(ingestion, "doc-a", true, Set.of());
+
+        // Then - the previous version's fingerprint is replaced by the new chunk's
+        assertThat(duplicateOf).isNull();
+        assertThat(index.size()).isEqualTo(1);
+        verify(repository).deleteChunksExcept("doc-a", Set.of(footer.getId()));
+        assertThat(savedRows()).extracting(Fingerprint::chunkId).containsExactly(footer.getId());
+    }
+
+    @Test
+    @DisplayName("Should not link chunks to those claimed by another running ingestion")
+    void shouldNotLinkToChunksOfRunningIngestion() {
+        // Given
+        stubStored();
+        NearDuplicateIndex index = newIndex(0.9);
+        Object first = new Object();
+        Object second = new Object();
+        index.claim(first, "doc-a", chunk(FOOTER));
+
+        // When - the first ingestion fails after the second one read the same footer
+        Document copy = chunk(FOOTER);
+        String duplicateOf = index.claim(second, "doc-b", copy);
+        index.release(first);
+        index.commit(second, "doc-b", false, Set.of());
+
+        // Then - the second ingestion stored its own copy instead of pointing at one never stored
+        assertThat(duplicateOf).isNull();
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(savedRows()).containsExactly(new Fingerprint(copy.getId(), "doc-b", fingerprint(FOOTER), null));
+        assertThat(index.claim(new Object(), "doc-c", chunk(FOOTER))).isEqualTo(copy.getId());
+    }
+
+    @Test
+    @DisplayName("Should link repeated chunks within the running ingestion")
+    void shouldLinkRepeatedChunksOfSameIngestion() {
+        // Given
+        stubStored();
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+        Document first = chunk(FOOTER);
+        index.claim(ingestion, "doc-a", first);
+
+        // When
+        String duplicateOf = index.claim(ingestion, "doc-a", chunk(FOOTER));
+
+        // Then
+        assertThat(duplicateOf).isEqualTo(first.getId());
+    }
+
+    @Test
+    @DisplayName("Should drop the fingerprints of a deleted document")
+    void shouldDropFingerprintsOfDeletedDocument() {
+        // Given
+        stubStored(new Fingerprint(UUID.randomUUID().toString(), "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        index.claim(new Object(), "doc-b", chunk(REPORT));
+
+        // When
+        index.removeDocument("doc-a");
+
+        // Then
+        assertThat(index.claim(new Object(), "doc-c", chunk(FOOTER))).isNull();
+        verify(repository).deleteChunksExcept("doc-a", List.of());
+    }
+
+    @Test
+    @DisplayName("Should hand a removed chunk over to the first chunk linked to it")
+    void shouldHandRemovedChunkOverToFirstLinkedChunk() {
+        // Given - documents B and C link their footers to the one stored for document A
+        String storedId = UUID.randomUUID().toString();
+        stubStored(new Fingerprint(storedId, "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        Fingerprint first = new Fingerprint(UUID.randomUUID().toString(), "doc-b", fingerprint(FOOTER), storedId);
+        Fingerprint second = new Fingerprint(UUID.randomUUID().toString(), "doc-c", fingerprint(FOOTER), storedId);
+        when(repository.findLinksTo("doc-a", Set.of())).thenReturn(List.of(first, second));
+        index.claim(new Object(), "doc-d", chunk(REPORT));
+
+        // When - document A is deleted
+        index.handOverLinkedChunks("doc-a", Set.of());
+        index.removeDocument("doc-a");
+
+        // Then - B's footer takes over A's row, and new footers link to it
+        verify(vectorStoreRepository).reassignChunks(List.of(new Reassignment(storedId, first.chunkId(), "doc-b")));
+        verify(repository).promote(Map.of(storedId, first.chunkId()));
+        assertThat(index.claim(new Object(), "doc-e", chunk(FOOTER))).isEqualTo(first.chunkId());
+    }
+
+    @Test
+    @DisplayName("Should hand a removed chunk over to a running ingestion linked to it")
+    void shouldHandRemovedChunkOverToRunningIngestion() {
+        // Given - a running ingestion of document B linked its footer to the one stored for document A
+        String storedId = UUID.randomUUID().toString();
+        stubStored(new Fingerprint(storedId, "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+        Document copy = chunk(FOOTER);
+        assertThat(index.claim(ingestion, "doc-b", copy)).isEqualTo(storedId);
+        when(repository.findLinksTo("doc-a", Set.of())).thenReturn(List.of());
+
+        // When - document A is deleted before B is stored
+        index.handOverLinkedChunks("doc-a", Set.of());
+        index.commit(ingestion, "doc-b", false, Set.of());
+
+        // Then - B's footer took over A's row and is stored
+        verify(vectorStoreRepository).reassignChunks(List.of(new Reassignment(storedId, copy.getId(), "doc-b")));
+        assertThat(savedRows()).containsExactly(new Fingerprint(copy.getId(), "doc-b", fingerprint(FOOTER), null));
+        assertThat(index.claim(new Object(), "doc-c", chunk(FOOTER))).isEqualTo(copy.getId());
+    }
+
+    @Test
+    @DisplayName("Should keep the chunks linked to a document when the hand-over fails")
+    void shouldKeepLinksWhenHandOverFails() {
+        // Given
+        String storedId = UUID.randomUUID().toString();
+        stubStored(new Fingerprint(storedId, "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        index.claim(new Object(), "doc-d", chunk(REPORT));
+        when(repository.findLinksTo("doc-a", Set.of()))
+            .thenReturn(List.of(new Fingerprint(UUID.randomUUID().toString(), "doc-b", fingerprint(FOOTER), storedId)));
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(vectorStoreRepository).reassignChunks(anyList());
+
+        // When
+        index.handOverLinkedChunks("doc-a", Set.of());
+
+        // Then - the links stay as they were
+        verify(repository, never()).promote(any());
+        assertThat(index.claim(new Object(), "doc-c", chunk(FOOTER))).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep the fingerprints of a document being ingested when dropping unregistered ones")
+    void shouldKeepFingerprintsOfDocumentBeingIngested() {
+        // Given - doc-a is an orphan, doc-b has committed its fingerprints but is not registered yet
+        stubStored(new Fingerprint(UUID.randomUUID().toString(), "doc-a", fingerprint(FOOTER), null));
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+        Document report = chunk(REPORT);
+        index.claim(ingestion, "doc-b", report);
+        index.commit(ingestion, "doc-b", false, Set.of());
+        when(repository.deleteUnregistered(Set.of("doc-b"))).thenReturn(List.of("doc-a"));
+
+        // When
+        int removed = index.removeUnregisteredDocuments(Set.of("doc-b"));
+
+        // Then
+        assertThat(removed).isEqualTo(1);
+        assertThat(index.claim(new Object(), "doc-c", chunk(FOOTER))).isNull();
+        assertThat(index.claim(new Object(), "doc-d", chunk(REPORT))).isEqualTo(report.getId());
+    }
+
+    @Test
+    @DisplayName("Should never link chunks too short for a fingerprint")
+    void shouldNeverLinkShortChunks() {
+        // Given
+        NearDuplicateIndex index = newIndex(0.9);
+
+        // When / Then
+        assertThat(NearDuplicateIndex.fingerprint("Page 1 of 12")).isEmpty();
+        assertThat(index.claim(new Object(), "doc-a", chunk("Page 1 of 12"))).isNull();
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("Should store every chunk when the fingerprints cannot be loaded")
+    void shouldDisableWhenFingerprintsCannotBeLoaded() {
+        // Given
+        doThrow(new DataAccessResourceFailureException("relation \"chunk_fingerprint\" does not exist"))
+            .when(repository).forEachStored(any());
+        NearDuplicateIndex index = newIndex(0.9);
+        Object ingestion = new Object();
+
+        // When
+        String duplicateOf = index.claim(ingestion, "doc-a", chunk(FOOTER));
+        index.commit(ingestion, "doc-a", false, Set.of());
+
+        // Then
+        assertThat(duplicateOf).isNull();
+        assertThat(index.isEnabled()).isFalse();
+        verify(repository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Should reject a similarity outside the supported range")
+    void shouldRejectInvalidSimilarity() {
+        assertThatThrownBy(() -> newIndex(0.5))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("rag.ingestion.deduplication.similarity");
+    }
+
+    private NearDuplicateIndex newIndex(double similarity) {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getDeduplication().setSimilarity(similarity);
+        return new NearDuplicateIndex(repository, vectorStoreRepository, properties);
+    }
+
+    private void stubStored(Fingerprint... rows) {
+        doAnswer(invocation -> {
+            Consumer<Fingerprint> consumer = invocation.getArgument(0);
+            for (Fingerprint row : rows) {
+                consumer.accept(row);
+            }
+            return null;
+        }).when(repository).forEachStored(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Fingerprint> savedRows() {
+        ArgumentCaptor<List<Fingerprint>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static Document chunk(String text) {
+        return new Document(UUID.randomUUID().toString(), text, Map.of());
+    }
+
+    private static long fingerprint(String text) {
+        return NearDuplicateIndex.fingerprint(text).orElseThrow();
+    }
+}
@@ -0,0 +1,158 @@
+package com.rk.ai.rag.service;
+
+import com.rk.ai.rag.config.IngestionProperties;
+import com.rk.ai.rag.model.MaintenanceReport;
+import com.rk.ai.rag.repository.VectorStoreRepository;
+import com.rk.ai.rag.repository.VectorStoreRepository.SweepBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("VectorMaintenanceService Tests")
+class VectorMaintenanceServiceTest {
+
+    @Mock
+    private VectorStoreRepository vectorStoreRepository;
+
+    @Mock
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    private IngestionJobService jobService;
+
+    private VectorMaintenanceService service;
+
+    @BeforeEach
+    void setUp() {
+        IngestionProperties properties = new IngestionProperties();
+        properties.getMaintenance().setBatchSize(2);
+        properties.getMaintenance().setBatchDelay(Duration.ZERO);
+        properties.getMaintenance().setReindexDeadRatio(0.2);
+        jobService = new IngestionJobService(properties);
+        service = new VectorMaintenanceService(vectorStoreRepository, nearDuplicateIndex, jobService, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    @DisplayName("Should sweep the table batch by batch and report deleted chunks")
+    void shouldSweepInBatches() {
+        // Given
+        when(vectorStoreRepository.deleteOrphanedChunks(isNull(), eq(2), anyCollection())).thenReturn(new SweepBatch("id-2", 2, 1));
+        when(vectorStoreRepository.deleteOrphanedChunks(eq("id-2"), eq(2), anyCollection())).thenReturn(new SweepBatch("id-4", 2, 2));
+        when(vectorStoreRepository.deleteOrphanedChunks(eq("id-4"), eq(2), anyCollection())).thenReturn(new SweepBatch(null, 0, 0));
+        when(vectorStoreRepository.deadTupleRatio()).thenReturn(0.05);
+
+        // When
+        MaintenanceReport report = service.run().orElseThrow();
+
+        // Then
+        assertThat(report.getStatus()).isEqualTo("COMPLETED");
+        assertThat(report.getScannedChunks()).isEqualTo(4);
+        assertThat(report.getDeletedChunks()).isEqualTo(3);
+        assertThat(report.isReindexed()).isFalse();
+        assertThat(report.getFinishedAt()).isNotNull();
+        verify(vectorStoreRepository, never()).reindexConcurrently(anyString());
+        verify(nearDuplicateIndex, times(1)).removeUnregisteredDocuments(Set.of());
+        assertThat(service.getLastReport()).containsSame(report);
+    }
+
+    @Test
+    @DisplayName("Should rebuild the vector index once dead rows pass the configured ratio")
+    void shouldReindexAboveDeadRatio() {
+        // Given
+        when(vectorStoreRepository.deleteOrphanedChunks(isNull(), anyInt(), anyCollection())).thenReturn(new SweepBatch(null, 0, 0));
+        when(vectorStoreRepository.deadTupleRatio()).thenReturn(0.35);
+        when(vectorStoreRepository.reindexConcurrently("spring_ai_vector_index")).thenReturn(true);
+
+        // When
+        MaintenanceReport report = service.run().orElseThrow();
+
+        // Then
+        assertThat(report.isReindexed()).isTrue();
+        assertThat(report.getDeadTupleRatio()).isEqualTo(0.35);
+    }
+
+    @Test
+    @DisplayName("Should report failure when a sweep batch fails")
+    void shouldReportFailure() {
+        // Given
+        when(vectorStoreRepository.deleteOrphanedChunks(any(), anyInt(), anyCollection()))
+            .thenThrow(new RuntimeException("connection lost"));
+
+        // When
+        MaintenanceReport report = service.run().orElseThrow();
+
+        // Then
+        assertThat(report.getStatus()).isEqualTo("FAILED");
+        assertThat(report.getMessage()).contains("connection lost");
+        verify(vectorStoreRepository, never()).deadTupleRatio();
+    }
+
+    @Test
+    @DisplayName("Should leave the chunks of documents that are still being ingested")
+    void shouldSkipDocumentsBeingIngested() throws Exception {
+        // Given - one document is being ingested when the sweep starts, another one starts during the sweep
+        jobService.markInFlight(List.of("doc-ingesting"));
+        CompletableFuture<Void> lateStart = new CompletableFuture<>();
+        when(vectorStoreRepository.deleteOrphanedChunks(isNull(), eq(2), anyCollection())).thenAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> jobService.markInFlight(List.of("doc-late")))
+                .whenComplete((ignored, e) -> lateStart.complete(null));
+            Thread.sleep(100);
+            // The late document cannot store chunks the running batch would see
+            assertThat(lateStart).isNotDone();
+            return new SweepBatch(null, 1, 0);
+        }).thenReturn(new SweepBatch(null, 1, 0));
+        when(vectorStoreRepository.deadTupleRatio()).thenReturn(0.0);
+
+        // When
+        MaintenanceReport first = service.run().orElseThrow();
+        lateStart.get(5, TimeUnit.SECONDS);
+        MaintenanceReport second = service.run().orElseThrow();
+
+        // Then - each sweep skips the documents being ingested when it ran
+        assertThat(first.getStatus()).isEqualTo("COMPLETED");
+        assertThat(second.getStatus()).isEqualTo("COMPLETED");
+        verify(vectorStoreRepository).deleteOrphanedChunks(isNull(), eq(2), eq(Set.of("doc-ingesting")));
+        verify(vectorStoreRepository).deleteOrphanedChunks(isNull(), eq(2), eq(Set.of("doc-ingesting", "doc-late")));
+        verify(nearDuplicateIndex, atLeastOnce()).removeUnregisteredDocuments(Set.of("doc-ingesting", "doc-late"));
+    }
+
+    @Test
+    @DisplayName("Should sweep the chunks of a document once its ingestion has ended")
+    void shouldSweepDocumentAfterIngestionEnded() {
+        // Given
+        jobService.markInFlight(List.of("doc-failed"));
+        jobService.clearInFlight(List.of("doc-failed"));
+        when(vectorStoreRepository.deleteOrphanedChunks(isNull(), eq(2), anyCollection()))
+            .thenReturn(new SweepBatch(null, 1, 1));
+        when(vectorStoreRepository.deadTupleRatio()).thenReturn(0.0);
+
+        // When
+        service.run().orElseThrow();
+
+        // Then
+        verify(vectorStoreRepository).deleteOrphanedChunks(isNull(), eq(2), eq(Set.of()));
+    }
+}
@@ -0,0 +1,91 @@
+package com.rk.ai.rag.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("WordPieceTokenizer Tests")
+class WordPieceTokenizerTest {
+
+    @TempDir
+    Path directory;
+
+    private WordPieceTokenizer tokenizer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path vocabulary = directory.resolve("vocab.txt");
+        Files.write(vocabulary, List.of("[PAD]", "[UNK]", "un", "the", "chunk", "embed", "##aff", "##able", "##s",
+            "##ding", "##d", "!", ","), StandardCharsets.UTF_8);
+        tokenizer = new WordPieceTokenizer("file:" + vocabulary);
+    }
+
+    @Test
+    @DisplayName("Should split words into the longest matching pieces")
+    void shouldSplitWordsIntoLongestPieces() {
+        assertThat(tokenizer.countTokens("unaffable")).isEqualTo(3);
+        assertThat(tokenizer.countTokens("the chunks")).isEqualTo(3);
+        assertThat(tokenizer.countTokens("embedding embeds")).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should ignore case and split off punctuation")
+    void shouldIgnoreCaseAndSplitPunctuation() {
+        assertThat(tokenizer.countTokens("The CHUNK!")).isEqualTo(3);
+        assertThat(tokenizer.countTokens("chunk,chunk")).isEqualTo(3);
+        assertThat(tokenizer.countTokens(" \n\t ")).isZero();
+    }
+
+    @Test
+    @DisplayName("Should count every character the vocabulary cannot match")
+    void shouldCountUnknownCharacters() {
+        // Given - unknown letters, ideographs and a character outside the BMP
+        String text = "xyz 检索 😀";
+
+        // When
+        int tokens = tokenizer.countTokens(text);
+
+        // Then
+        assertThat(tokens).isEqualTo(6);
+        assertThat(tokenizer.countTokens("x".repeat(250))).isEqualTo(250);
+    }
+
+    @Test
+    @DisplayName("Should find prefixes and suffixes of whole words within a token budget")
+    void shouldFindPrefixesAndSuffixesWithinBudget() {
+        // Given - 2 + 1 + 3 + 1 tokens
+        String text = "chunks the unaffable chunk";
+
+        // When / Then
+        assertThat(text.substring(0, tokenizer.prefixEnd(text, 0, text.length(), 5))).isEqualTo("chunks the");
+        assertThat(text.substring(tokenizer.suffixStart(text, 0, text.length(), 4))).isEqualTo("unaffable chunk");
+        assertThat(text.substring(tokenizer.suffixStart(text, 0, text.length(), 3))).isEqualTo("chunk");
+        assertThat(tokenizer.suffixStart(text, 0, text.length(), 0)).isEqualTo(text.length());
+    }
+
+    @Test
+    @DisplayName("Should cut a word between its pieces when it alone exceeds the budget")
+    void shouldCutOversizedWordBetweenPieces() {
+        String text = "unaffable the";
+
+        assertThat(text.substring(0, tokenizer.prefixEnd(text, 0, text.length(), 2))).isEqualTo("unaff");
+    }
+
+    @Test
+    @DisplayName("Should fail when the vocabulary cannot be read")
+    void shouldFailForMissingVocabulary() {
+        assertThatThrownBy(() -> new WordPieceTokenizer("file:" + directory.resolve("missing.txt")))
+            .isInstanceOf(UncheckedIOException.class)
+            .hasMessageContaining("missing.txt");
+    }
+}